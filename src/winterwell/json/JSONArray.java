@@ -858,6 +858,8 @@ public class JSONArray {
                     ((JSONObject)v).write(writer);
                 } else if (v instanceof JSONArray) {
                     ((JSONArray)v).write(writer);
+                } else if (v instanceof String) {
+                    JSONObject.quote((String) v, writer);
                 } else {
                     writer.write(JSONObject.valueToString(v));
                 }
@@ -25,12 +25,13 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * A JSONObject is an unordered collection of name/value pairs. Its
@@ -82,6 +83,19 @@ import java.util.Map;
  * <li>Comments written in the slashshlash, slashstar, and hash conventions
  *     will be ignored.</li>
  * </ul>
+ * <p>
+ * Storage: keys and values are kept in a pair of arrays, in insertion order.
+ * Most JSON objects are small (e.g. the entities in a tweet have 2 to 5 keys),
+ * so up to {@link #COMPACT_MAX} keys are found by a linear scan -- which is
+ * faster than hashing at that size, and avoids the table and entry objects of
+ * a HashMap. Bigger objects add an open-addressed index into the arrays.
+ * Keys are compared by identity first, so interned keys are cheapest.
+ * <p>
+ * Integers are stored unboxed, in a long[], when parsed or put via
+ * {@link #put(String, long)} / {@link #put(String, int)}. So
+ * {@link #getLong(String)} and friends do not allocate, and ids above 2^53
+ * never pass through a double. {@link #opt(String)} boxes on demand, giving
+ * an Integer or Long as before.
  * @author JSON.org
  * @version 2
  */
@@ -129,9 +143,74 @@ public class JSONObject {
 
 
     /**
-     * The hash map where the JSONObject's properties are kept.
+     * Objects with up to this many keys use the compact arrays.
+     */
+    static final int COMPACT_MAX = 8;
+
+    /**
+     * Stands in for a value held in myLongs. These are shared: there is one
+     * per slot (and type).
+     */
+    private static final class Unboxed {
+        /** true to box as an Integer, false for a Long */
+        final boolean isInt;
+        final int slot;
+
+        Unboxed(int slot, boolean isInt) {
+            this.slot = slot;
+            this.isInt = isInt;
+        }
+    }
+
+    /**
+     * Objects with more integers than this box the rest.
+     */
+    private static final int MAX_UNBOXED = 64;
+
+    private static final Unboxed[] UNBOXED_INTS = new Unboxed[MAX_UNBOXED];
+
+    private static final Unboxed[] UNBOXED_LONGS = new Unboxed[MAX_UNBOXED];
+
+    static {
+        for (int i = 0; i < MAX_UNBOXED; i++) {
+            UNBOXED_INTS[i] = new Unboxed(i, true);
+            UNBOXED_LONGS[i] = new Unboxed(i, false);
+        }
+    }
+
+    /**
+     * The keys, in insertion order. null if empty.
+     */
+    private String[] myKeys;
+
+    /**
+     * The values, parallel to myKeys. An {@link Unboxed} marker for numbers
+     * held in myLongs.
+     */
+    private Object[] myValues;
+
+    /**
+     * Unboxed integer values, in the order they were added. null until
+     * needed.
      */
-    private HashMap myHashMap;
+    private long[] myLongs;
+
+    /**
+     * Number of slots used in myLongs. Slots are not re-used after a remove.
+     */
+    private int myLongCount;
+
+    /**
+     * Number of keys.
+     */
+    private int mySize;
+
+    /**
+     * Hash index for objects with more than COMPACT_MAX keys: open addressing
+     * with linear probing, holding position+1 (0 for an empty slot). null for
+     * small objects.
+     */
+    private int[] myIndex;
 
 
     /**
@@ -147,7 +226,6 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.myHashMap = new HashMap();
     }
 
 
@@ -188,8 +266,7 @@ public class JSONObject {
             case '}':
                 return;
             default:
-                x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey(c);
             }
 
             /*
@@ -204,7 +281,13 @@ public class JSONObject {
             } else if (c != ':') {
                 throw x.syntaxError("Expected a ':' after a key");
             }
-            put(key, x.nextValue());
+            Object v = x.nextValue(key);
+            if (v == JSONTokener.NUMBER) {
+                long n = x.number;
+                putLong0(key, n, (int) n == n);
+            } else {
+                put(key, v);
+            }
 
             /*
              * Pairs are separated by ','. We will also tolerate ';'.
@@ -233,9 +316,12 @@ public class JSONObject {
      *  the JSONObject.
      */
     public JSONObject(Map map) {
-        this.myHashMap = (map == null) ?
-        	new HashMap() :
-        	new HashMap(map);
+        if (map != null) {
+            Map<?, ?> m = map;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                put0(String.valueOf(e.getKey()), e.getValue());
+            }
+        }
     }
 
 
@@ -410,6 +496,10 @@ public class JSONObject {
      *  if the value is not a Number object and cannot be converted to a number.
      */
     public double getDouble(String key) throws JSONException {
+        Object v = optRaw(key);
+        if (v instanceof Unboxed) {
+            return this.myLongs[((Unboxed) v).slot];
+        }
         Object o = get(key);
         try {
             return o instanceof Number ?
@@ -432,6 +522,10 @@ public class JSONObject {
      *  be converted to an integer.
      */
     public int getInt(String key) throws JSONException {
+        Object v = optRaw(key);
+        if (v instanceof Unboxed) {
+            return (int) this.myLongs[((Unboxed) v).slot];
+        }
         Object o = get(key);
         return o instanceof Number ?
                 ((Number)o).intValue() : (int)getDouble(key);
@@ -484,6 +578,10 @@ public class JSONObject {
      *  be converted to a long.
      */
     public long getLong(String key) throws JSONException {
+        Object v = optRaw(key);
+        if (v instanceof Unboxed) {
+            return this.myLongs[((Unboxed) v).slot];
+        }
         Object o = get(key);
         return o instanceof Number ?
                 ((Number)o).longValue() : (long)getDouble(key);
@@ -508,7 +606,47 @@ public class JSONObject {
      * @return      true if the key exists in the JSONObject.
      */
     public boolean has(String key) {
-        return this.myHashMap.containsKey(key);
+        return indexOf(key) != -1;
+    }
+
+
+    /**
+     * @return position in myKeys, or -1
+     */
+    private int indexOf(String key) {
+        final String[] ks = this.myKeys;
+        final int[] index = this.myIndex;
+        if (index != null) {
+            if (key == null) {
+                return -1;
+            }
+            final int mask = index.length - 1;
+            for (int j = spread(key.hashCode()) & mask; ; j = (j + 1) & mask) {
+                int p = index[j] - 1;
+                if (p == -1) {
+                    return -1;
+                }
+                String k = ks[p];
+                if (k == key || k.equals(key)) {
+                    return p;
+                }
+            }
+        }
+        final int n = this.mySize;
+        for (int i = 0; i < n; i++) {
+            if (ks[i] == key) {
+                return i;
+            }
+        }
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < n; i++) {
+            if (key.equals(ks[i])) {
+                return i;
+            }
+        }
+        return -1;
     }
 
 
@@ -530,7 +668,28 @@ public class JSONObject {
      * @return An iterator of the keys.
      */
     public Iterator keys() {
-        return this.myHashMap.keySet().iterator();
+        return new Iterator<String>() {
+            private int next;
+
+            public boolean hasNext() {
+                return this.next < JSONObject.this.mySize;
+            }
+
+            public String next() {
+                if (this.next >= JSONObject.this.mySize) {
+                    throw new NoSuchElementException();
+                }
+                return JSONObject.this.myKeys[this.next++];
+            }
+
+            public void remove() {
+                if (this.next == 0) {
+                    throw new IllegalStateException();
+                }
+                this.next--;
+                remove0(JSONObject.this.myKeys[this.next]);
+            }
+        };
     }
 
 
@@ -540,7 +699,7 @@ public class JSONObject {
      * @return The number of keys in the JSONObject.
      */
     public int length() {
-        return this.myHashMap.size();
+        return this.mySize;
     }
 
 
@@ -593,7 +752,32 @@ public class JSONObject {
      * @return      An object which is the value, or null if there is no value.
      */
     public Object opt(String key) {
-        return key == null ? null : this.myHashMap.get(key);
+        int i = indexOf(key);
+        return i == -1 ? null : value(i);
+    }
+
+
+    /**
+     * Like opt(), but without boxing or overriding.
+     * @return the stored value, which may be an {@link Unboxed} marker
+     */
+    private Object optRaw(String key) {
+        int i = indexOf(key);
+        return i == -1 ? null : this.myValues[i];
+    }
+
+
+    /**
+     * @return the value at position i, boxed if need be
+     */
+    private Object value(int i) {
+        Object v = this.myValues[i];
+        if (v instanceof Unboxed) {
+            Unboxed u = (Unboxed) v;
+            long n = this.myLongs[u.slot];
+            return u.isInt ? (Object) Integer.valueOf((int) n) : Long.valueOf(n);
+        }
+        return v;
     }
 
 
@@ -667,6 +851,13 @@ public class JSONObject {
      * @return      An object which is the value.
      */
     public double optDouble(String key, double defaultValue) {
+        Object v = optRaw(key);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Unboxed) {
+            return this.myLongs[((Unboxed) v).slot];
+        }
         try {
             Object o = opt(key);
             return o instanceof Number ? ((Number)o).doubleValue() :
@@ -702,6 +893,13 @@ public class JSONObject {
      * @return      An object which is the value.
      */
     public int optInt(String key, int defaultValue) {
+        Object v = optRaw(key);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Unboxed) {
+            return (int) this.myLongs[((Unboxed) v).slot];
+        }
         try {
             return getInt(key);
         } catch (Exception e) {
@@ -763,6 +961,13 @@ public class JSONObject {
      * @return      An object which is the value.
      */
     public long optLong(String key, long defaultValue) {
+        Object v = optRaw(key);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Unboxed) {
+            return this.myLongs[((Unboxed) v).slot];
+        }
         try {
             return getLong(key);
         } catch (Exception e) {
@@ -835,7 +1040,10 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, int value) throws JSONException {
-        put(key, new Integer(value));
+        if (key == null) {
+            throw new JSONException("Null key.");
+        }
+        putLong0(key, value, true);
         return this;
     }
 
@@ -849,7 +1057,10 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, long value) throws JSONException {
-        put(key, new Long(value));
+        if (key == null) {
+            throw new JSONException("Null key.");
+        }
+        putLong0(key, value, false);
         return this;
     }
 
@@ -885,7 +1096,7 @@ public class JSONObject {
         }
         if (value != null) {
             testValidity(value);
-            this.myHashMap.put(key, value);
+            put0(key, value);
         } else {
             remove(key);
         }
@@ -893,6 +1104,111 @@ public class JSONObject {
     }
 
 
+    private void put0(String key, Object value) {
+        int i = indexOf(key);
+        if (i == -1) {
+            i = add(key);
+        }
+        this.myValues[i] = value;
+    }
+
+
+    /**
+     * @param isInt true to box as an Integer, false for a Long
+     */
+    private void putLong0(String key, long value, boolean isInt) {
+        int i = indexOf(key);
+        if (i == -1) {
+            i = add(key);
+        }
+        Object old = this.myValues[i];
+        int slot;
+        if (old instanceof Unboxed) {
+            slot = ((Unboxed) old).slot;
+        } else {
+            slot = this.myLongCount;
+            if (slot == MAX_UNBOXED) {
+                this.myValues[i] = isInt ? (Object) Integer.valueOf((int) value)
+                        : Long.valueOf(value);
+                return;
+            }
+            if (this.myLongs == null) {
+                this.myLongs = new long[4];
+            } else if (slot == this.myLongs.length) {
+                long[] ls = new long[slot * 2];
+                System.arraycopy(this.myLongs, 0, ls, 0, slot);
+                this.myLongs = ls;
+            }
+            this.myLongCount = slot + 1;
+        }
+        this.myLongs[slot] = value;
+        this.myValues[i] = isInt ? UNBOXED_INTS[slot] : UNBOXED_LONGS[slot];
+    }
+
+
+    /**
+     * Append a new key (which must not be present already).
+     * @return its position. The caller sets the value.
+     */
+    private int add(String key) {
+        int n = this.mySize;
+        if (this.myKeys == null) {
+            this.myKeys = new String[4];
+            this.myValues = new Object[4];
+        } else if (n == this.myKeys.length) {
+            String[] ks = new String[n * 2];
+            Object[] vs = new Object[n * 2];
+            System.arraycopy(this.myKeys, 0, ks, 0, n);
+            System.arraycopy(this.myValues, 0, vs, 0, n);
+            this.myKeys = ks;
+            this.myValues = vs;
+        }
+        this.myKeys[n] = key;
+        this.mySize = n + 1;
+        if (n + 1 > COMPACT_MAX) {
+            if (this.myIndex == null || (n + 1) * 2 > this.myIndex.length) {
+                reindex();
+            } else {
+                index(n);
+            }
+        }
+        return n;
+    }
+
+
+    /**
+     * Rebuild myIndex: sized for a load factor of at most 1/2, or null if
+     * the object is small.
+     */
+    private void reindex() {
+        int n = this.mySize;
+        if (n <= COMPACT_MAX) {
+            this.myIndex = null;
+            return;
+        }
+        this.myIndex = new int[Integer.highestOneBit(n * 4 - 1)];
+        for (int p = 0; p < n; p++) {
+            index(p);
+        }
+    }
+
+
+    private void index(int p) {
+        final int[] index = this.myIndex;
+        final int mask = index.length - 1;
+        int j = spread(this.myKeys[p].hashCode()) & mask;
+        while (index[j] != 0) {
+            j = (j + 1) & mask;
+        }
+        index[j] = p + 1;
+    }
+
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+
     /**
      * Put a key/value pair in the JSONObject, but only if the
      * key and the value are both non-null.
@@ -923,57 +1239,85 @@ public class JSONObject {
         if (string == null || string.length() == 0) {
             return "\"\"";
         }
+        StringWriter sw = new StringWriter(string.length() + 4);
+        try {
+            quote(string, sw);
+        } catch (IOException e) {
+            // can't happen with a StringWriter
+            throw new JSONException(e);
+        }
+        return sw.toString();
+    }
+
+
+    /**
+     * Like {@link #quote(String)}, but writes straight to a Writer. Runs of
+     * characters which need no escaping are written in one go.
+     * @param string A String. null is treated as empty.
+     * @param w Where to write it
+     * @return w
+     * @throws IOException from w
+     */
+    public static Writer quote(String string, Writer w) throws IOException {
+        if (string == null || string.length() == 0) {
+            w.write("\"\"");
+            return w;
+        }
 
         char         b;
         char         c = 0;
-        int          i;
         int          len = string.length();
-        StringBuffer sb = new StringBuffer(len + 4);
+        int          run = 0;
         String       t;
 
-        sb.append('"');
-        for (i = 0; i < len; i += 1) {
+        w.write('"');
+        for (int i = 0; i < len; i += 1) {
             b = c;
             c = string.charAt(i);
             switch (c) {
             case '\\':
+                t = "\\\\";
+                break;
             case '"':
-                sb.append('\\');
-                sb.append(c);
+                t = "\\\"";
                 break;
             case '/':
-                if (b == '<') {
-                    sb.append('\\');
+                if (b != '<') {
+                    continue;
                 }
-                sb.append(c);
+                t = "\\/";
                 break;
             case '\b':
-                sb.append("\\b");
+                t = "\\b";
                 break;
             case '\t':
-                sb.append("\\t");
+                t = "\\t";
                 break;
             case '\n':
-                sb.append("\\n");
+                t = "\\n";
                 break;
             case '\f':
-                sb.append("\\f");
+                t = "\\f";
                 break;
             case '\r':
-                sb.append("\\r");
+                t = "\\r";
                 break;
             default:
                 if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
-                		       (c >= '\u2000' && c < '\u2100')) {
+                               (c >= '\u2000' && c < '\u2100')) {
                     t = "000" + Integer.toHexString(c);
-                    sb.append("\\u" + t.substring(t.length() - 4));
+                    t = "\\u" + t.substring(t.length() - 4);
                 } else {
-                    sb.append(c);
+                    continue;
                 }
             }
+            w.write(string, run, i - run);
+            w.write(t);
+            run = i + 1;
         }
-        sb.append('"');
-        return sb.toString();
+        w.write(string, run, len - run);
+        w.write('"');
+        return w;
     }
 
     /**
@@ -983,7 +1327,31 @@ public class JSONObject {
      * or null if there was no value.
      */
     public Object remove(String key) {
-        return this.myHashMap.remove(key);
+        return remove0(key);
+    }
+
+
+    /**
+     * remove() without any overriding.
+     */
+    private Object remove0(String key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        Object v = value(i);
+        int n = this.mySize - 1;
+        // keep the order
+        System.arraycopy(this.myKeys, i + 1, this.myKeys, i, n - i);
+        System.arraycopy(this.myValues, i + 1, this.myValues, i, n - i);
+        this.myKeys[n] = null;
+        this.myValues[n] = null;
+        this.mySize = n;
+        if (this.myIndex != null) {
+            // positions have shifted
+            reindex();
+        }
+        return v;
     }
 
 
@@ -1053,7 +1421,7 @@ public class JSONObject {
                 Object o = keys.next();
                 sb.append(quote(o.toString()));
                 sb.append(':');
-                sb.append(valueToString(this.myHashMap.get(o)));
+                sb.append(valueToString(opt(o.toString())));
             }
             sb.append('}');
             return sb.toString();
@@ -1107,7 +1475,7 @@ public class JSONObject {
             o = keys.next();
             sb.append(quote(o.toString()));
             sb.append(": ");
-            sb.append(valueToString(this.myHashMap.get(o), indentFactor,
+            sb.append(valueToString(opt(o.toString()), indentFactor,
                     indent));
         } else {
             while (keys.hasNext()) {
@@ -1122,7 +1490,7 @@ public class JSONObject {
                 }
                 sb.append(quote(o.toString()));
                 sb.append(": ");
-                sb.append(valueToString(this.myHashMap.get(o), indentFactor,
+                sb.append(valueToString(opt(o.toString()), indentFactor,
                         newindent));
             }
             if (sb.length() > 1) {
@@ -1245,13 +1613,15 @@ public class JSONObject {
                     writer.write(',');
                 }
                 Object k = keys.next();
-                writer.write(quote(k.toString()));
+                quote(k.toString(), writer);
                 writer.write(':');
-                Object v = this.myHashMap.get(k);
+                Object v = opt(k.toString());
                 if (v instanceof JSONObject) {
                     ((JSONObject)v).write(writer);
                 } else if (v instanceof JSONArray) {
                     ((JSONArray)v).write(writer);
+                } else if (v instanceof String) {
+                    quote((String) v, writer);
                 } else {
                     writer.write(valueToString(v));
                 }
@@ -0,0 +1,551 @@
+package winterwell.json;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A pull (StAX-style) reader for JSON. Instead of building a tree of
+ * {@link JSONObject}s, this steps through the text one token at a time, and
+ * lets you skip over the parts you are not interested in. E.g.
+ *
+ * <pre>
+ * <code>
+ * JSONReader r = new JSONReader(json);
+ * r.next(); // START_OBJECT
+ * while (r.nextField()) {
+ *     String key = r.getString();
+ *     if ("text".equals(key)) {
+ *         r.next();
+ *         text = r.getString();
+ *     } else {
+ *         r.skipValue();
+ *     }
+ * }
+ * </code>
+ * </pre>
+ *
+ * This accepts the same (slightly relaxed) syntax as {@link JSONObject} and
+ * {@link JSONArray}, and produces the same value types. Skipped values are
+ * scanned rather than parsed, so errors inside them will not be spotted.
+ * <p>
+ * Several top-level values can follow one another (e.g. the newline separated
+ * messages in a Twitter stream): keep calling {@link #next()} until it
+ * returns {@link Token#END_DOCUMENT}.
+ * <p>
+ * Not thread safe.
+ *
+ * @author daniel
+ * @testedby {@link JSONReaderTest}
+ */
+public class JSONReader {
+
+    /**
+     * The things {@link JSONReader#next()} can return.
+     */
+    public static enum Token {
+        END_ARRAY,
+        /** There is no more input. */
+        END_DOCUMENT,
+        END_OBJECT,
+        /** An object key. Use {@link JSONReader#getString()} to get it. */
+        FIELD_NAME,
+        START_ARRAY,
+        START_OBJECT,
+        VALUE_FALSE,
+        VALUE_NULL,
+        /** An Integer, Long or Double */
+        VALUE_NUMBER,
+        VALUE_STRING,
+        VALUE_TRUE
+    }
+
+    private static final int ARRAY = 1;
+
+    private static final int OBJECT = 2;
+
+    private int depth;
+
+    /**
+     * true if the next thing in the current object is a key
+     */
+    private boolean expectKey;
+
+    /**
+     * The most recent field name
+     */
+    private String key;
+
+    /**
+     * true if a value has been read, so a separator (or close) is due
+     */
+    private boolean needComma;
+
+    /**
+     * The current integer, if {@link #unboxed}
+     */
+    private long number;
+
+    private int[] stack = new int[16];
+
+    /**
+     * Field name or string value
+     */
+    private String string;
+
+    private Token token;
+
+    /**
+     * true if the current value is an integer held in {@link #number}. It is
+     * only boxed if {@link #getValue()} asks for it.
+     */
+    private boolean unboxed;
+
+    /**
+     * The current scalar value
+     */
+    private Object value;
+
+    private final JSONTokener x;
+
+
+    /**
+     * @param x The source. This reader takes over from wherever the tokener
+     * has got to.
+     */
+    public JSONReader(JSONTokener x) {
+        this.x = x;
+    }
+
+
+    /**
+     * @param source JSON text
+     */
+    public JSONReader(String source) {
+        this(new JSONTokener(source));
+    }
+
+
+    /**
+     * @param utf8 JSON as UTF-8 bytes. Only the strings you read get decoded.
+     * @see JSONTokener#JSONTokener(byte[], int, int)
+     */
+    public JSONReader(byte[] utf8) {
+        this(new JSONTokener(utf8, 0, utf8.length));
+    }
+
+
+    /**
+     * @param utf8 JSON as UTF-8 bytes
+     * @see JSONTokener#JSONTokener(ByteBuffer)
+     */
+    public JSONReader(ByteBuffer utf8) {
+        this(new JSONTokener(utf8));
+    }
+
+
+    /**
+     * @param utf8 JSON as UTF-8 bytes. This is read to the end and closed
+     * straight away.
+     * @throws JSONException if the stream cannot be read
+     */
+    public JSONReader(InputStream utf8) throws JSONException {
+        this(new JSONTokener(utf8));
+    }
+
+
+    /**
+     * @return the number of objects/arrays we are inside. 0 at the top level.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+
+    /**
+     * @return the current value as a double
+     * @throws JSONException if it is not a number
+     */
+    public double getDouble() throws JSONException {
+        if (this.unboxed) {
+            return this.number;
+        }
+        Object v = this.value;
+        if (v instanceof Number) {
+            return ((Number) v).doubleValue();
+        }
+        try {
+            return Double.parseDouble((String) v);
+        } catch (Exception e) {
+            throw this.x.syntaxError(v + " is not a number");
+        }
+    }
+
+
+    /**
+     * @return the current value as an int
+     * @throws JSONException if it is not a number
+     */
+    public int getInt() throws JSONException {
+        if (this.unboxed) {
+            return (int) this.number;
+        }
+        Object v = this.value;
+        if (v instanceof Number) {
+            return ((Number) v).intValue();
+        }
+        return (int) getDouble();
+    }
+
+
+    /**
+     * @return the current value as a long
+     * @throws JSONException if it is not a number
+     */
+    public long getLong() throws JSONException {
+        if (this.unboxed) {
+            return this.number;
+        }
+        Object v = this.value;
+        if (v instanceof Number) {
+            return ((Number) v).longValue();
+        }
+        try {
+            return Long.parseLong((String) v);
+        } catch (Exception e) {
+            return (long) getDouble();
+        }
+    }
+
+
+    /**
+     * @return the key for FIELD_NAME, the text for VALUE_STRING, or the
+     * toString() of a number or boolean. null for VALUE_NULL or the
+     * start/end of an object or array.
+     */
+    public String getString() {
+        switch (this.token) {
+        case FIELD_NAME:
+        case VALUE_STRING:
+            return this.string;
+        case VALUE_NUMBER:
+            if (this.unboxed) {
+                return Long.toString(this.number);
+            }
+            return this.value.toString();
+        case VALUE_TRUE:
+        case VALUE_FALSE:
+            return this.value.toString();
+        default:
+            return null;
+        }
+    }
+
+
+    /**
+     * @return the last token returned by {@link #next()}. null if nothing has
+     * been read yet, or after {@link #skipValue()}.
+     */
+    public Token getToken() {
+        return this.token;
+    }
+
+
+    /**
+     * @return the current scalar value: a String, Boolean, Integer, Long,
+     * Double or {@link JSONObject#NULL}. null if the current token is not a
+     * value.
+     */
+    public Object getValue() {
+        if (this.unboxed && this.value == null) {
+            this.value = JSONTokener.box(this.number);
+        }
+        return this.value;
+    }
+
+
+    /**
+     * @return true if the current token is VALUE_TRUE -- or a string "true",
+     * in the same spirit as {@link JSONObject#optBoolean(String)}.
+     */
+    public boolean isTrue() {
+        return this.token == Token.VALUE_TRUE
+                || (this.token == Token.VALUE_STRING
+                        && "true".equalsIgnoreCase(this.string));
+    }
+
+
+    /**
+     * Step forward.
+     * @return the next token. END_DOCUMENT at the end of the input.
+     * @throws JSONException on a syntax error
+     */
+    public Token next() throws JSONException {
+        char c = nextStart();
+        this.value = null;
+        this.string = null;
+        this.unboxed = false;
+        switch (c) {
+        case 0:
+            if (this.depth != 0) {
+                throw this.x.syntaxError("Unexpected end of text");
+            }
+            return this.token = Token.END_DOCUMENT;
+        case '}':
+            pop(OBJECT);
+            return this.token = Token.END_OBJECT;
+        case ']':
+            pop(ARRAY);
+            return this.token = Token.END_ARRAY;
+        }
+
+        if (this.expectKey) {
+            // The key is followed by ':'. We will also tolerate '=' or '=>'.
+            this.string = this.x.nextKey(c);
+            this.key = this.string;
+            c = this.x.nextClean();
+            if (c == '=') {
+                if (this.x.next() != '>') {
+                    this.x.back();
+                }
+            } else if (c != ':') {
+                throw this.x.syntaxError("Expected a ':' after a key");
+            }
+            this.expectKey = false;
+            return this.token = Token.FIELD_NAME;
+        }
+
+        // a value
+        this.needComma = true;
+        switch (c) {
+        case '{':
+            push(OBJECT);
+            this.expectKey = true;
+            return this.token = Token.START_OBJECT;
+        case '[':
+            push(ARRAY);
+            return this.token = Token.START_ARRAY;
+        case '"':
+        case '\'':
+            this.string = this.x.nextString(c, this.key, false);
+            this.value = this.string;
+            return this.token = Token.VALUE_STRING;
+        }
+        this.x.back();
+        Object v = this.x.nextValue(this.key);
+        if (v == JSONTokener.NUMBER) {
+            this.number = this.x.number;
+            this.unboxed = true;
+            return this.token = Token.VALUE_NUMBER;
+        }
+        this.value = v;
+        if (v instanceof Number) {
+            return this.token = Token.VALUE_NUMBER;
+        }
+        if (v == Boolean.TRUE) {
+            return this.token = Token.VALUE_TRUE;
+        }
+        if (v == Boolean.FALSE) {
+            return this.token = Token.VALUE_FALSE;
+        }
+        if (v == JSONObject.NULL) {
+            return this.token = Token.VALUE_NULL;
+        }
+        // unquoted text
+        this.string = (String) v;
+        return this.token = Token.VALUE_STRING;
+    }
+
+
+    /**
+     * Convenience for looping over the fields of an object.
+     * @return true if the next token is a FIELD_NAME, false if it is the
+     * END_OBJECT.
+     * @throws JSONException if it is anything else
+     */
+    public boolean nextField() throws JSONException {
+        Token t = next();
+        if (t == Token.FIELD_NAME) {
+            return true;
+        }
+        if (t == Token.END_OBJECT) {
+            return false;
+        }
+        throw this.x.syntaxError("Expected a key or '}' but got " + t);
+    }
+
+
+    /**
+     * Handle separators.
+     * @return the first character of the next token
+     */
+    private char nextStart() throws JSONException {
+        char c = this.x.nextClean();
+        if (this.depth != 0 && this.needComma) {
+            // Pairs are separated by ','. We will also tolerate ';'.
+            if (c == ',' || c == ';') {
+                this.needComma = false;
+                this.expectKey = this.stack[this.depth - 1] == OBJECT;
+                c = this.x.nextClean();
+            } else if (c != '}' && c != ']') {
+                throw this.x.syntaxError(this.stack[this.depth - 1] == OBJECT
+                        ? "Expected a ',' or '}'" : "Expected a ',' or ']'");
+            }
+        }
+        return c;
+    }
+
+
+    private void pop(int type) throws JSONException {
+        if (this.depth == 0 || this.stack[this.depth - 1] != type
+                || (type == OBJECT && !this.expectKey && !this.needComma)) {
+            throw this.x.syntaxError("Unexpected " + (type == OBJECT ? '}' : ']'));
+        }
+        this.depth--;
+        // the object/array was a value in its parent
+        this.needComma = true;
+        this.expectKey = false;
+    }
+
+
+    private void push(int type) {
+        if (this.depth == this.stack.length) {
+            int[] s2 = new int[this.depth * 2];
+            System.arraycopy(this.stack, 0, s2, 0, this.depth);
+            this.stack = s2;
+        }
+        this.stack[this.depth++] = type;
+        this.needComma = false;
+    }
+
+
+    /**
+     * Call this just after START_ARRAY to read the rest of the array as a
+     * JSONArray. Afterwards, the current token is END_ARRAY.
+     * @return the array
+     * @throws JSONException
+     */
+    public JSONArray readArray() throws JSONException {
+        if (this.token != Token.START_ARRAY) {
+            throw this.x.syntaxError("Not at the start of an array: " + this.token);
+        }
+        this.x.back();
+        JSONArray arr = new JSONArray(this.x);
+        pop(ARRAY);
+        this.token = Token.END_ARRAY;
+        return arr;
+    }
+
+
+    /**
+     * Call this just after START_OBJECT to read the rest of the object as a
+     * JSONObject. Afterwards, the current token is END_OBJECT.
+     * @return the object
+     * @throws JSONException
+     */
+    public JSONObject readObject() throws JSONException {
+        if (this.token != Token.START_OBJECT) {
+            throw this.x.syntaxError("Not at the start of an object: " + this.token);
+        }
+        this.x.back();
+        JSONObject obj = new JSONObject(this.x);
+        pop(OBJECT);
+        this.token = Token.END_OBJECT;
+        return obj;
+    }
+
+
+    /**
+     * If the current token is START_OBJECT or START_ARRAY, skip to the
+     * matching END_OBJECT/END_ARRAY. Otherwise do nothing.
+     * @throws JSONException
+     */
+    public void skipChildren() throws JSONException {
+        if (this.token == Token.START_OBJECT) {
+            this.x.skipNested();
+            pop(OBJECT);
+            this.token = Token.END_OBJECT;
+        } else if (this.token == Token.START_ARRAY) {
+            this.x.skipNested();
+            pop(ARRAY);
+            this.token = Token.END_ARRAY;
+        }
+    }
+
+
+    /**
+     * Skip the next value, e.g. after a FIELD_NAME you don't want. If the
+     * value is an object or array, the whole thing is skipped.
+     * @throws JSONException
+     */
+    public void skipValue() throws JSONException {
+        char c = nextStart();
+        if (this.expectKey) {
+            throw this.x.syntaxError("Expected a key, not a value");
+        }
+        if (c == 0 || c == '}' || c == ']') {
+            throw this.x.syntaxError("Missing value");
+        }
+        this.x.back();
+        this.x.skipValue();
+        this.needComma = true;
+        this.token = null;
+        this.value = null;
+        this.string = null;
+        this.unboxed = false;
+    }
+
+
+    /**
+     * Read the next value -- which should be an object, or null -- as a
+     * {@link LazyJSONObject}: it is only scanned for now, and its values are
+     * decoded if and when they are asked for. It gets its own copy of its
+     * text, so holding on to it doesn't keep the rest of the source alive.
+     * Afterwards, the reader is just past the object, as with
+     * {@link #skipValue()}.
+     * <p>
+     * This is for parts of a message which are often not wanted, e.g. the
+     * retweeted_status inside a retweet.
+     * @return the object, or null for a json null
+     * @throws JSONException if the value is something else
+     */
+    public LazyJSONObject nextLazyObject() throws JSONException {
+        char c = nextStart();
+        if (this.expectKey) {
+            throw this.x.syntaxError("Expected a key, not a value");
+        }
+        if (c == 0 || c == '}' || c == ']') {
+            throw this.x.syntaxError("Missing value");
+        }
+        this.x.back();
+        int s = this.x.getIndex();
+        this.x.skipValue();
+        int e = this.x.getIndex();
+        this.needComma = true;
+        this.token = null;
+        this.value = null;
+        this.string = null;
+        this.unboxed = false;
+        if (c == '{') {
+            return new LazyJSONObject(this.x.slice(s, e));
+        }
+        if (this.x.matches(s, e, "null")) {
+            return null;
+        }
+        throw this.x.syntaxError("Expected an object");
+    }
+
+
+    /**
+     * @param message
+     * @return an exception with position info
+     */
+    public JSONException syntaxError(String message) {
+        return this.x.syntaxError(message);
+    }
+
+
+    @Override
+    public String toString() {
+        return "JSONReader[" + this.token + this.x + "]";
+    }
+}
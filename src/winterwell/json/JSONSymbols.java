@@ -0,0 +1,197 @@
+package winterwell.json;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A symbol table for {@link JSONTokener}: re-uses String objects for keys and
+ * for repeated values, instead of allocating a fresh copy every time. E.g.
+ * every tweet has "id_str", "created_at", "screen_name" keys, and many share
+ * the same "source", "lang" and "time_zone" values.
+ * <p>
+ * - Keys are interned: the table is seeded with a known vocabulary, and new
+ * keys are added (via {@link String#intern()}) until the table is full. Since
+ * code which reads JSON uses string literals for keys, lookups in
+ * {@link JSONObject} then hit on identity.<br>
+ * - Values are de-duplicated through a fixed-size cache, if they are short,
+ * or belong to one of the given "repeated" keys. A cache slot just holds the
+ * last string which hashed to it, so memory use is bounded.
+ * <p>
+ * For strings without escapes, a hit costs no allocation at all: the source
+ * text is compared with the cached String in place.
+ * <p>
+ * Thread safe. Tables can be shared between tokeners, and threads. Updates
+ * are unsynchronised, but Strings are immutable, so the worst a race can do is
+ * lose a cache entry.
+ *
+ * @author daniel
+ * @testedby {@link JSONSymbolsTest}
+ */
+public final class JSONSymbols {
+
+    /**
+     * Keys (and repeated-value keys) for Twitter's JSON. The table is shared
+     * by the JTwitter parsing code.
+     */
+    public static final JSONSymbols TWITTER = new JSONSymbols(Arrays.asList(
+            "attributes", "bounding_box", "contributors",
+            "contributors_enabled", "coordinates", "country", "country_code",
+            "created_at", "default_profile", "default_profile_image", "delete",
+            "description", "display_url", "entities", "event",
+            "expanded_url", "favorited", "favourites_count",
+            "follow_request_sent", "followers_count", "following",
+            "friends", "friends_count", "full_name", "geo", "geo_enabled",
+            "hashtags", "id", "id_str", "in_reply_to_screen_name",
+            "in_reply_to_status_id", "in_reply_to_status_id_str",
+            "in_reply_to_user_id", "in_reply_to_user_id_str", "indices",
+            "is_translator", "lang", "limit", "listed_count", "location",
+            "media", "media_url", "name", "notifications", "place",
+            "place_type", "possibly_sensitive", "profile_background_color",
+            "profile_background_image_url",
+            "profile_background_image_url_https", "profile_background_tile",
+            "profile_image_url", "profile_image_url_https",
+            "profile_link_color", "profile_sidebar_border_color",
+            "profile_sidebar_fill_color", "profile_text_color",
+            "profile_use_background_image", "protected", "recipient",
+            "retweet_count", "retweeted", "retweeted_status", "screen_name",
+            "sender", "show_all_inline_media", "source", "status",
+            "statuses_count", "target", "target_object", "text", "time_zone",
+            "track", "truncated", "type", "url", "urls", "user", "user_id",
+            "user_id_str", "user_mentions", "utc_offset", "verified",
+            "withheld_in_countries"),
+            Arrays.asList("country", "full_name", "lang", "location",
+                    "place_type", "profile_background_image_url",
+                    "profile_background_image_url_https", "source",
+                    "time_zone", "type"), 4096, 16);
+
+    private final String[] keys;
+
+    private int keyCount;
+
+    private final int maxKeys;
+
+    private final int maxShortValue;
+
+    private final Set<String> repeatedKeys;
+
+    private final String[] values;
+
+
+    /**
+     * @param vocabulary Keys to start with. More are added as they are seen.
+     * @param repeatedKeys Keys whose values are often repeated. Can be null.
+     * @param valueCacheSize Number of value slots (rounded up to a power of
+     * 2). 0 for no value de-duplication.
+     * @param maxShortValue Values up to this length are cached, whatever their
+     * key.
+     */
+    public JSONSymbols(Collection<String> vocabulary,
+            Collection<String> repeatedKeys, int valueCacheSize,
+            int maxShortValue) {
+        // room for 4x the vocabulary, at a load factor of 1/2
+        int n = Integer.highestOneBit(Math.max(64, vocabulary.size() * 8) - 1) << 1;
+        this.keys = new String[n];
+        this.maxKeys = n / 2;
+        for (String k : vocabulary) {
+            String ik = k.intern();
+            int i = ik.hashCode() & (n - 1);
+            while (this.keys[i] != null && !this.keys[i].equals(ik)) {
+                i = (i + 1) & (n - 1);
+            }
+            if (this.keys[i] == null) {
+                this.keys[i] = ik;
+                this.keyCount++;
+            }
+        }
+        this.repeatedKeys = repeatedKeys == null ? new HashSet<String>()
+                : new HashSet<String>(repeatedKeys);
+        this.values = valueCacheSize <= 0 ? null : new String[
+                Integer.highestOneBit(valueCacheSize - 1) << 1];
+        this.maxShortValue = maxShortValue;
+    }
+
+
+    /**
+     * @param key The most recent key. Can be null.
+     * @param length Length of the value
+     * @return true if this value should go through the value cache
+     */
+    boolean isRepeated(String key, int length) {
+        if (this.values == null) {
+            return false;
+        }
+        return length <= this.maxShortValue || (length <= 256 && key != null
+                && this.repeatedKeys.contains(key));
+    }
+
+
+    /**
+     * @param x Source
+     * @param s Start index
+     * @param e End index (exclusive)
+     * @param hash {@link String#hashCode()} of the text
+     * @return the interned key
+     */
+    String key(JSONTokener x, int s, int e, int hash) {
+        final String[] t = this.keys;
+        final int mask = t.length - 1;
+        int i = hash & mask;
+        for (int probe = 0; probe < 16; probe++) {
+            String k = t[i];
+            if (k == null) {
+                String nk = x.text(s, e);
+                if (this.keyCount < this.maxKeys) {
+                    nk = nk.intern();
+                    t[i] = nk;
+                    this.keyCount++;
+                }
+                return nk;
+            }
+            if (k.hashCode() == hash && x.matches(s, e, k)) {
+                return k;
+            }
+            i = (i + 1) & mask;
+        }
+        // crowded
+        return x.text(s, e);
+    }
+
+
+    /**
+     * @param x Source
+     * @param s Start index
+     * @param e End index (exclusive)
+     * @param hash {@link String#hashCode()} of the text
+     * @return a shared copy of the value
+     */
+    String value(JSONTokener x, int s, int e, int hash) {
+        final String[] t = this.values;
+        int i = hash & (t.length - 1);
+        String v = t[i];
+        if (v != null && v.hashCode() == hash && x.matches(s, e, v)) {
+            return v;
+        }
+        v = x.text(s, e);
+        t[i] = v;
+        return v;
+    }
+
+
+    /**
+     * @param v A freshly decoded value
+     * @return a shared copy of v -- so v itself can be garbage collected
+     */
+    String value(String v) {
+        final String[] t = this.values;
+        int i = v.hashCode() & (t.length - 1);
+        String old = t[i];
+        if (v.equals(old)) {
+            return old;
+        }
+        t[i] = v;
+        return v;
+    }
+
+}
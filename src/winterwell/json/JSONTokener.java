@@ -1,5 +1,12 @@
 package winterwell.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 /*
 Copyright (c) 2002 JSON.org
 
@@ -28,21 +35,76 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * This scans a char[] by index. Strings without escapes are copied out in one
+ * go, and plain integers are parsed in place (no substring, no
+ * exceptions-as-control-flow).
+ * <p>
+ * It can also scan UTF-8 bytes directly (e.g. straight off the network),
+ * without decoding the whole input to chars first. All the JSON syntax is
+ * ASCII, and in UTF-8 the bytes of a multi-byte character are never ASCII --
+ * so only the strings which are actually returned need decoding. Skipped
+ * values are never decoded. For byte input, positions in error messages are
+ * byte offsets.
  * @author JSON.org
  * @version 2
  */
 public class JSONTokener {
 
+    /**
+     * Characters which end an unquoted value (plus anything below space).
+     */
+    private static final boolean[] VALUE_END = new boolean[128];
+    static {
+        for (int i = 0; i < ' '; i++) {
+            VALUE_END[i] = true;
+        }
+        String ends = ",:]}/\\\"[{;=#";
+        for (int i = 0; i < ends.length(); i++) {
+            VALUE_END[ends.charAt(i)] = true;
+        }
+    }
+
+    /**
+     * The source being tokenized. null for byte input.
+     */
+    private final char[] buf;
+
+    /**
+     * UTF-8 source. null for char input.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Index after the last character.
+     */
+    private final int end;
+
     /**
      * The index of the next character.
      */
     private int myIndex;
 
+    /**
+     * Index of the first character -- for error messages.
+     */
+    private final int start;
 
     /**
-     * The source string being tokenized.
+     * Can be null
      */
-    private String mySource;
+    private JSONSymbols symbols;
+
+    /**
+     * Returned by {@link #nextValue(String)} for a plain integer, whose value
+     * is then in {@link #number}.
+     */
+    static final Object NUMBER = new Object();
+
+    /**
+     * The last integer read, when {@link #nextValue(String)} returned NUMBER.
+     */
+    long number;
 
 
     /**
@@ -51,8 +113,218 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this.myIndex = 0;
-        this.mySource = s;
+        this(s.toCharArray(), 0, s.length());
+    }
+
+
+    /**
+     * Construct a JSONTokener over part of a char array. The array is not
+     * copied, so don't modify it whilst parsing.
+     *
+     * @param chars
+     * @param offset
+     * @param length
+     */
+    public JSONTokener(char[] chars, int offset, int length) {
+        this.buf = chars;
+        this.bytes = null;
+        this.start = offset;
+        this.myIndex = offset;
+        this.end = offset + length;
+        assert offset >= 0 && this.end <= chars.length;
+    }
+
+
+    /**
+     * Construct a JSONTokener over part of a UTF-8 byte array. The array is
+     * not copied, so don't modify it whilst parsing. A leading byte order
+     * mark is skipped.
+     *
+     * @param utf8
+     * @param offset
+     * @param length
+     */
+    public JSONTokener(byte[] utf8, int offset, int length) {
+        this.buf = null;
+        this.bytes = utf8;
+        this.end = offset + length;
+        assert offset >= 0 && this.end <= utf8.length;
+        if (length >= 3 && utf8[offset] == (byte) 0xEF
+                && utf8[offset + 1] == (byte) 0xBB
+                && utf8[offset + 2] == (byte) 0xBF) {
+            offset += 3;
+        }
+        this.start = offset;
+        this.myIndex = offset;
+    }
+
+
+    /**
+     * A second tokener over the same source, at a different position.
+     */
+    private JSONTokener(JSONTokener source, int index) {
+        this.buf = source.buf;
+        this.bytes = source.bytes;
+        this.start = source.start;
+        this.end = source.end;
+        this.myIndex = index;
+        this.symbols = source.symbols;
+    }
+
+
+    /**
+     * Construct a JSONTokener over the remaining UTF-8 bytes in a buffer. For
+     * a heap buffer, the backing array is used directly; otherwise the bytes
+     * are copied. The buffer's position is not changed.
+     *
+     * @param utf8
+     */
+    public JSONTokener(ByteBuffer utf8) {
+        this(array(utf8), utf8.hasArray()
+                ? utf8.arrayOffset() + utf8.position() : 0, utf8.remaining());
+    }
+
+
+    /**
+     * Construct a JSONTokener from a UTF-8 stream. The stream is read to the
+     * end (but not decoded), then closed.
+     *
+     * @param utf8
+     * @throws JSONException if the stream cannot be read
+     */
+    public JSONTokener(InputStream utf8) throws JSONException {
+        this(readAll(utf8));
+    }
+
+
+    private static byte[] array(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            return bb.array();
+        }
+        byte[] copy = new byte[bb.remaining()];
+        bb.duplicate().get(copy);
+        return copy;
+    }
+
+
+    private static ByteBuffer readAll(InputStream in) throws JSONException {
+        try {
+            byte[] b = new byte[8192];
+            int n = 0;
+            for (;;) {
+                int r = in.read(b, n, b.length - n);
+                if (r == -1) {
+                    break;
+                }
+                n += r;
+                if (n == b.length) {
+                    byte[] b2 = new byte[b.length * 2];
+                    System.arraycopy(b, 0, b2, 0, n);
+                    b = b2;
+                }
+            }
+            ByteBuffer bb = ByteBuffer.wrap(b);
+            bb.limit(n);
+            return bb;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+
+    /**
+     * @return the char (or for byte input, the byte) at index i
+     */
+    private char at(int i) {
+        return this.buf != null ? this.buf[i] : (char) (this.bytes[i] & 0xFF);
+    }
+
+
+    /**
+     * Append the text in [s, e) -- decoding it, for byte input.
+     */
+    private void append(StringBuilder sb, int s, int e) {
+        if (this.buf != null) {
+            sb.append(this.buf, s, e - s);
+            return;
+        }
+        char[] chars = new char[e - s];
+        int n = decode(this.bytes, s, e, chars);
+        sb.append(chars, 0, n);
+    }
+
+
+    /**
+     * Decode UTF-8. Malformed input becomes U+FFFD.
+     * @param out Must have room for e - s chars (which is always enough).
+     * @return number of chars written
+     */
+    static int decode(byte[] b, int s, int e, char[] out) {
+        int o = 0;
+        int i = s;
+        while (i < e) {
+            int c = b[i++];
+            if (c >= 0) {
+                out[o++] = (char) c;
+                continue;
+            }
+            c &= 0xFF;
+            if (c >= 0xC2 && c < 0xE0 && i < e && isCont(b[i])) {
+                out[o++] = (char) (((c & 0x1F) << 6) | (b[i++] & 0x3F));
+            } else if (c >= 0xE0 && c < 0xF0 && i + 1 < e && isCont(b[i])
+                    && isCont(b[i + 1])) {
+                out[o++] = (char) (((c & 0x0F) << 12) | ((b[i] & 0x3F) << 6)
+                        | (b[i + 1] & 0x3F));
+                i += 2;
+            } else if (c >= 0xF0 && c < 0xF5 && i + 2 < e && isCont(b[i])
+                    && isCont(b[i + 1]) && isCont(b[i + 2])) {
+                int cp = ((c & 0x07) << 18) | ((b[i] & 0x3F) << 12)
+                        | ((b[i + 1] & 0x3F) << 6) | (b[i + 2] & 0x3F);
+                i += 3;
+                if (cp < 0x10000 || cp > 0x10FFFF) {
+                    out[o++] = '\uFFFD';
+                } else {
+                    cp -= 0x10000;
+                    out[o++] = (char) (0xD800 | (cp >> 10));
+                    out[o++] = (char) (0xDC00 | (cp & 0x3FF));
+                }
+            } else {
+                out[o++] = '\uFFFD';
+            }
+        }
+        return o;
+    }
+
+
+    private static boolean isCont(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+
+    /**
+     * @return the text in [s, e) as a String -- decoding it, for byte input.
+     */
+    @SuppressWarnings("deprecation")
+    String text(int s, int e) {
+        if (this.buf != null) {
+            return new String(this.buf, s, e - s);
+        }
+        final byte[] b = this.bytes;
+        for (int i = s; i < e; i++) {
+            if (b[i] < 0) {
+                char[] chars = new char[e - s];
+                int n = decode(b, s, e, chars);
+                return new String(chars, 0, n);
+            }
+        }
+        // pure ascii (the commonest case): a straight copy
+        return new String(b, 0, s, e - s);
     }
 
 
@@ -62,7 +334,7 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() {
-        if (this.myIndex > 0) {
+        if (this.myIndex > this.start) {
             this.myIndex -= 1;
         }
     }
@@ -89,26 +361,114 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Use a symbol table to share key and value Strings, instead of making new
+     * ones every time.
+     * @param symbols Can be null (the default) for no sharing.
+     */
+    public void setSymbols(JSONSymbols symbols) {
+        this.symbols = symbols;
+    }
+
+
+    /**
+     * @return true if the text in [s, e) equals str. Only valid for ASCII
+     * text if this is byte input.
+     */
+    boolean matches(int s, int e, String str) {
+        if (str.length() != e - s) {
+            return false;
+        }
+        for (int i = s; i < e; i++) {
+            if (at(i) != str.charAt(i - s)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Look up the text in [s, e) in the symbol table.
+     */
+    private String symbol(int s, int e, boolean isKey) {
+        int h = 0;
+        for (int i = s; i < e; i++) {
+            char c = at(i);
+            if (c >= 128 && this.bytes != null) {
+                // undecoded UTF-8
+                return text(s, e);
+            }
+            h = 31 * h + c;
+        }
+        return isKey ? this.symbols.key(this, s, e, h)
+                : this.symbols.value(this, s, e, h);
+    }
+
+
+    /**
+     * @return the index of the next character. Used by {@link LazyJSONObject}
+     * to remember where values are.
+     */
+    int getIndex() {
+        return this.myIndex;
+    }
+
+
+    /**
+     * @param index from {@link #getIndex()}
+     * @return a new tokener over the same source (which is shared, not
+     * copied), positioned at index. This one is unaffected.
+     */
+    JSONTokener copy(int index) {
+        assert index >= this.start && index <= this.end : index;
+        return new JSONTokener(this, index);
+    }
+
+
+    /**
+     * @param s from {@link #getIndex()}
+     * @param e from {@link #getIndex()}
+     * @return a new tokener over a copy of the source in [s, e), so that
+     * holding on to it doesn't keep the rest of the source alive. The symbol
+     * table is shared.
+     */
+    JSONTokener slice(int s, int e) {
+        assert s >= this.start && s <= e && e <= this.end : s + " " + e;
+        JSONTokener t;
+        if (this.buf != null) {
+            char[] chars = new char[e - s];
+            System.arraycopy(this.buf, s, chars, 0, e - s);
+            t = new JSONTokener(chars, 0, chars.length);
+        } else {
+            byte[] b = new byte[e - s];
+            System.arraycopy(this.bytes, s, b, 0, e - s);
+            t = new JSONTokener(b, 0, b.length);
+        }
+        t.symbols = this.symbols;
+        return t;
+    }
+
+
     /**
      * Determine if the source string still contains characters that next()
      * can consume.
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
-        return this.myIndex < this.mySource.length();
+        return this.myIndex < this.end;
     }
 
 
     /**
-     * Get the next character in the source string.
+     * Get the next character in the source string. For byte input, this is
+     * the next byte: non-ASCII characters are not decoded.
      *
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() {
-        if (more()) {
-            char c = this.mySource.charAt(this.myIndex);
-            this.myIndex += 1;
-            return c;
+        if (this.myIndex < this.end) {
+            return at(this.myIndex++);
         }
         return 0;
     }
@@ -132,7 +492,8 @@ public class JSONTokener {
 
 
     /**
-     * Get the next n characters.
+     * Get the next n characters (for byte input, the next n bytes,
+     * decoded).
      *
      * @param n     The number of characters to take.
      * @return      A string of n characters.
@@ -143,11 +504,11 @@ public class JSONTokener {
      public String next(int n) throws JSONException {
          int i = this.myIndex;
          int j = i + n;
-         if (j >= this.mySource.length()) {
+         if (j > this.end) {
             throw syntaxError("Substring bounds error");
          }
-         this.myIndex += n;
-         return this.mySource.substring(i, j);
+         this.myIndex = j;
+         return text(i, j);
      }
 
 
@@ -159,7 +520,21 @@ public class JSONTokener {
      */
     public char nextClean() throws JSONException {
         for (;;) {
-            char c = next();
+            // fast skip over whitespace
+            int i = this.myIndex;
+            char c = 0;
+            while (i < this.end) {
+                c = at(i);
+                if (c > ' ' || c == 0) {
+                    break;
+                }
+                i++;
+            }
+            if (i == this.end) {
+                this.myIndex = i;
+                return 0;
+            }
+            this.myIndex = i + 1;
             if (c == '/') {
                 switch (next()) {
                 case '/':
@@ -189,7 +564,7 @@ public class JSONTokener {
                 do {
                     c = next();
                 } while (c != '\n' && c != '\r' && c != 0);
-            } else if (c == 0 || c > ' ') {
+            } else {
                 return c;
             }
         }
@@ -208,12 +583,73 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
-        char c;
-        StringBuffer sb = new StringBuffer();
+        return nextString(quote, null, false);
+    }
+
+
+    /**
+     * Read a key. The symbol table, if set, is used.
+     * @param c The first character of the key, which has been consumed.
+     * @return the key
+     * @throws JSONException
+     */
+    String nextKey(char c) throws JSONException {
+        if (c == '"' || c == '\'') {
+            return nextString(c, null, true);
+        }
+        back();
+        return nextValue().toString();
+    }
+
+
+    /**
+     * @param key The key for this value (for deciding whether to use the
+     * symbol table). Can be null.
+     * @param isKey true if this string is itself a key
+     */
+    String nextString(char quote, String key, boolean isKey)
+            throws JSONException {
+        // Fast path: no escapes, so copy straight out of the buffer
+        final int s = this.myIndex;
+        for (int i = s; i < this.end; i++) {
+            char c = at(i);
+            if (c == quote) {
+                this.myIndex = i + 1;
+                if (this.symbols != null && (isKey ? i - s <= 64
+                        : this.symbols.isRepeated(key, i - s))) {
+                    return symbol(s, i, isKey);
+                }
+                return text(s, i);
+            }
+            if (c == '\\' || c == '\n' || c == '\r') {
+                // slow path
+                StringBuilder sb = new StringBuilder(i - s + 16);
+                append(sb, s, i);
+                this.myIndex = i;
+                String str = nextString2(quote, sb);
+                if (this.symbols != null && !isKey
+                        && this.symbols.isRepeated(key, str.length())) {
+                    return this.symbols.value(str);
+                }
+                return str;
+            }
+        }
+        this.myIndex = this.end;
+        throw syntaxError("Unterminated string");
+    }
+
+
+    private String nextString2(char quote, StringBuilder sb) throws JSONException {
         for (;;) {
-            c = next();
+            char c = next();
             switch (c) {
             case 0:
+                if (this.myIndex < this.end) {
+                    // a genuine 0 char
+                    sb.append(c);
+                    break;
+                }
+                throw syntaxError("Unterminated string");
             case '\n':
             case '\r':
                 throw syntaxError("Unterminated string");
@@ -236,25 +672,69 @@ public class JSONTokener {
                     sb.append('\r');
                     break;
                 case 'u':
-                    sb.append((char)Integer.parseInt(next(4), 16));
+                    sb.append((char) nextHex(4));
                     break;
                 case 'x' :
-                    sb.append((char) Integer.parseInt(next(2), 16));
+                    sb.append((char) nextHex(2));
                     break;
                 default:
-                    sb.append(c);
+                    if (c < 128) {
+                        sb.append(c);
+                    } else {
+                        // an escaped non-ASCII character (only possible
+                        // with byte input): copy it as plain text
+                        back();
+                        int s = this.myIndex;
+                        int i = s + 1;
+                        while (i < this.end && (at(i) & 0xC0) == 0x80) {
+                            i++;
+                        }
+                        append(sb, s, i);
+                        this.myIndex = i;
+                    }
                 }
                 break;
             default:
                 if (c == quote) {
                     return sb.toString();
                 }
-                sb.append(c);
+                // copy a run of plain characters in one go
+                int s = this.myIndex - 1;
+                int i = this.myIndex;
+                while (i < this.end) {
+                    char d = at(i);
+                    if (d == quote || d == '\\' || d == '\n' || d == '\r') {
+                        break;
+                    }
+                    i++;
+                }
+                append(sb, s, i);
+                this.myIndex = i;
             }
         }
     }
 
 
+    /**
+     * @param n number of hex digits
+     * @return the value
+     */
+    private int nextHex(int n) throws JSONException {
+        if (this.myIndex + n > this.end) {
+            throw syntaxError("Substring bounds error");
+        }
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            int h = dehexchar(at(this.myIndex++));
+            if (h == -1) {
+                throw syntaxError("Bad hex escape");
+            }
+            v = (v << 4) | h;
+        }
+        return v;
+    }
+
+
     /**
      * Get the text up but not including the specified character or the
      * end of line, whichever comes first.
@@ -262,17 +742,17 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char d) {
-        StringBuffer sb = new StringBuffer();
-        for (;;) {
-            char c = next();
+        int s = this.myIndex;
+        int i = s;
+        while (i < this.end) {
+            char c = at(i);
             if (c == d || c == 0 || c == '\n' || c == '\r') {
-                if (c != 0) {
-                    back();
-                }
-                return sb.toString().trim();
+                break;
             }
-            sb.append(c);
+            i++;
         }
+        this.myIndex = i;
+        return text(s, i).trim();
     }
 
 
@@ -283,19 +763,18 @@ public class JSONTokener {
      * @return A string, trimmed.
      */
     public String nextTo(String delimiters) {
-        char c;
-        StringBuffer sb = new StringBuffer();
-        for (;;) {
-            c = next();
+        int s = this.myIndex;
+        int i = s;
+        while (i < this.end) {
+            char c = at(i);
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
                     c == '\n' || c == '\r') {
-                if (c != 0) {
-                    back();
-                }
-                return sb.toString().trim();
+                break;
             }
-            sb.append(c);
+            i++;
         }
+        this.myIndex = i;
+        return text(s, i).trim();
     }
 
 
@@ -307,13 +786,36 @@ public class JSONTokener {
      * @return An object.
      */
     public Object nextValue() throws JSONException {
+        Object v = nextValue(null);
+        return v == NUMBER ? box(this.number) : v;
+    }
+
+
+    /**
+     * @return an Integer if n fits, otherwise a Long
+     */
+    static Number box(long n) {
+        if ((int) n == n) {
+            return Integer.valueOf((int) n);
+        }
+        return Long.valueOf(n);
+    }
+
+
+    /**
+     * @param key The key for this value (for deciding whether to use the
+     * symbol table). Can be null.
+     * @return as {@link #nextValue()}, except that plain integers are not
+     * boxed: this returns {@link #NUMBER}, and the value is in
+     * {@link #number}.
+     */
+    Object nextValue(String key) throws JSONException {
         char c = nextClean();
-        String s;
 
         switch (c) {
             case '"':
             case '\'':
-                return nextString(c);
+                return nextString(c, key, false);
             case '{':
                 back();
                 return new JSONObject(this);
@@ -327,36 +829,98 @@ public class JSONTokener {
          * null, or it can be a number. An implementation (such as this one)
          * is allowed to also accept non-standard forms.
          *
-         * Accumulate characters until we reach the end of the text or a
+         * Find the end of the text: the end of the source or a
          * formatting character.
          */
-
-        StringBuffer sb = new StringBuffer();
-        char b = c;
-        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
-            sb.append(c);
-            c = next();
+        if (c == 0) {
+            throw syntaxError("Missing value");
+        }
+        int s = this.myIndex - 1;
+        int e = s;
+        while (e < this.end) {
+            char d = at(e);
+            if (d < 128 && VALUE_END[d]) {
+                break;
+            }
+            e++;
+        }
+        this.myIndex = e;
+        // trim (the start is already clean)
+        while (e > s && at(e - 1) <= ' ') {
+            e--;
+        }
+        int len = e - s;
+        if (len == 0) {
+            throw syntaxError("Missing value");
         }
-        back();
 
         /*
          * If it is true, false, or null, return the proper value.
          */
 
-        s = sb.toString().trim();
-        if (s.equals("")) {
-            throw syntaxError("Missing value");
-        }
-        if (s.equalsIgnoreCase("true")) {
+        if (matchesIgnoreCase(s, len, "true")) {
             return Boolean.TRUE;
         }
-        if (s.equalsIgnoreCase("false")) {
+        if (matchesIgnoreCase(s, len, "false")) {
             return Boolean.FALSE;
         }
-        if (s.equalsIgnoreCase("null")) {
+        if (matchesIgnoreCase(s, len, "null")) {
             return JSONObject.NULL;
         }
 
+        if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+') {
+            // Fast path: a plain decimal integer
+            if (nextValue2_integer(s, len)) {
+                return NUMBER;
+            }
+            return nextValue2_number(text(s, e), c);
+        }
+        return text(s, e);
+    }
+
+
+    /**
+     * @return true if this is a plain decimal integer that fits in a long, in
+     *         which case it is put in {@link #number}. false for other forms,
+     *         including the legacy octal form.
+     */
+    private boolean nextValue2_integer(int s, int len) {
+        int i = s;
+        int e = s + len;
+        boolean neg = false;
+        char c = at(i);
+        if (c == '-' || c == '+') {
+            neg = c == '-';
+            i++;
+        }
+        int digits = e - i;
+        // 19 digits covers a long (and today's tweet ids). Leading 0s mean
+        // octal (see below).
+        if (digits == 0 || digits > 19 || (at(i) == '0' && digits != 1)) {
+            return false;
+        }
+        long v = 0;
+        for (; i < e; i++) {
+            int d = at(i) - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            if (v >= Long.MAX_VALUE / 10
+                    && (v > Long.MAX_VALUE / 10 || d > 7)) {
+                // overflow (Long.MIN_VALUE also ends up here)
+                return false;
+            }
+            v = v * 10 + d;
+        }
+        this.number = neg ? -v : v;
+        return true;
+    }
+
+
+    /**
+     * The slow path for numbers: doubles, big numbers, and odd forms.
+     */
+    private static Object nextValue2_number(String s, char b) {
         /*
          * If it might be a number, try converting it. We support the 0- and 0x-
          * conventions. If a number cannot be produced, then the value will just
@@ -364,40 +928,168 @@ public class JSONTokener {
          * conventions are non-standard. A JSON parser is free to accept
          * non-JSON forms as long as it accepts all correct JSON forms.
          */
-
-        if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
-            if (b == '0') {
-                if (s.length() > 2 &&
-                        (s.charAt(1) == 'x' || s.charAt(1) == 'X')) {
-                    try {
-                        return new Integer(Integer.parseInt(s.substring(2),
-                                16));
-                    } catch (Exception e) {
-                        /* Ignore the error */
-                    }
-                } else {
-                    try {
-                        return new Integer(Integer.parseInt(s, 8));
-                    } catch (Exception e) {
-                        /* Ignore the error */
-                    }
+        if (b == '0') {
+            if (s.length() > 2 &&
+                    (s.charAt(1) == 'x' || s.charAt(1) == 'X')) {
+                try {
+                    return Integer.valueOf(Integer.parseInt(s.substring(2),
+                            16));
+                } catch (Exception e) {
+                    /* Ignore the error */
+                }
+            } else {
+                try {
+                    return Integer.valueOf(Integer.parseInt(s, 8));
+                } catch (Exception e) {
+                    /* Ignore the error */
                 }
             }
+        }
+        try {
+            return Integer.valueOf(s);
+        } catch (Exception e) {
             try {
-                return new Integer(s);
-            } catch (Exception e) {
+                return Long.valueOf(s);
+            } catch (Exception f) {
                 try {
-                    return new Long(s);
-                } catch (Exception f) {
-                    try {
-                        return new Double(s);
-                    }  catch (Exception g) {
-                        return s;
-                    }
+                    return Double.valueOf(s);
+                }  catch (Exception g) {
+                    return s;
                 }
             }
         }
-        return s;
+    }
+
+
+    private boolean matchesIgnoreCase(int s, int len, String word) {
+        if (len != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (Character.toLowerCase(at(s + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * A quick structural scan over an array, which finds where each element
+     * starts without decoding anything. This is for sharing out the elements
+     * of a big array between threads. Afterwards, this tokener is just past
+     * the closing ']'.
+     * @return A tokener for each element (nulls included), positioned at its
+     * start. They share the source, so don't modify it whilst they are in use.
+     * Each one can be used on a different thread.
+     * @throws JSONException If this is not an array, or its structure is bad.
+     */
+    public List<JSONTokener> splitArray() throws JSONException {
+        if (nextClean() != '[') {
+            throw syntaxError("A JSONArray text must start with '['");
+        }
+        List<JSONTokener> elements = new ArrayList<JSONTokener>();
+        if (nextClean() == ']') {
+            return elements;
+        }
+        back();
+        for (;;) {
+            elements.add(copy(this.myIndex));
+            skipValue();
+            switch (nextClean()) {
+            case ',':
+                break;
+            case ']':
+                return elements;
+            default:
+                throw syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
+
+    /**
+     * Skip over the next value (which can be an object or array) without
+     * building it. Used by {@link JSONReader}. This is a scan, not a parse:
+     * it does not check the skipped text is valid JSON.
+     * @throws JSONException
+     */
+    void skipValue() throws JSONException {
+        char c = nextClean();
+        switch (c) {
+        case 0:
+            throw syntaxError("Missing value");
+        case '"':
+        case '\'':
+            skipString(c);
+            return;
+        case '{':
+        case '[':
+            skipNested();
+            return;
+        }
+        // unquoted text
+        int i = this.myIndex;
+        while (i < this.end) {
+            char d = at(i);
+            if (d < 128 && VALUE_END[d]) {
+                break;
+            }
+            i++;
+        }
+        this.myIndex = i;
+    }
+
+
+    /**
+     * Skip to just after the close of the current object or array (the
+     * opening bracket has already been read).
+     * @throws JSONException if the end of the source is reached first
+     */
+    void skipNested() throws JSONException {
+        int depth = 1;
+        int i = this.myIndex;
+        while (i < this.end) {
+            char c = at(i++);
+            switch (c) {
+            case '"':
+            case '\'':
+                this.myIndex = i;
+                skipString(c);
+                i = this.myIndex;
+                break;
+            case '{':
+            case '[':
+                depth++;
+                break;
+            case '}':
+            case ']':
+                depth--;
+                if (depth == 0) {
+                    this.myIndex = i;
+                    return;
+                }
+                break;
+            }
+        }
+        this.myIndex = this.end;
+        throw syntaxError("Unclosed object or array");
+    }
+
+
+    private void skipString(char quote) throws JSONException {
+        for (int i = this.myIndex; i < this.end; i++) {
+            char c = at(i);
+            if (c == quote) {
+                this.myIndex = i + 1;
+                return;
+            }
+            if (c == '\\') {
+                i++;
+            }
+        }
+        this.myIndex = this.end;
+        throw syntaxError("Unterminated string");
     }
 
 
@@ -409,17 +1101,13 @@ public class JSONTokener {
      * is not found.
      */
     public char skipTo(char to) {
-        char c;
-        int index = this.myIndex;
-        do {
-            c = next();
-            if (c == 0) {
-                this.myIndex = index;
-                return c;
+        for (int i = this.myIndex; i < this.end; i++) {
+            if (at(i) == to) {
+                this.myIndex = i;
+                return to;
             }
-        } while (c != to);
-        back();
-        return c;
+        }
+        return 0;
     }
 
 
@@ -429,14 +1117,26 @@ public class JSONTokener {
      * @param to A string to skip past.
      */
     public boolean skipPast(String to) {
-        this.myIndex = this.mySource.indexOf(to, this.myIndex);
-        if (this.myIndex < 0) {
-            this.myIndex = this.mySource.length();
-            return false;
+        int n = to.length();
+        if (n == 0) {
+            return true;
         }
-        this.myIndex += to.length();
-        return true;
-
+        char first = to.charAt(0);
+        outer:
+        for (int i = this.myIndex; i <= this.end - n; i++) {
+            if (at(i) != first) {
+                continue;
+            }
+            for (int j = 1; j < n; j++) {
+                if (at(i + j) != to.charAt(j)) {
+                    continue outer;
+                }
+            }
+            this.myIndex = i + n;
+            return true;
+        }
+        this.myIndex = this.end;
+        return false;
     }
 
 
@@ -458,6 +1158,8 @@ public class JSONTokener {
      */
     @Override
 	public String toString() {
-        return " at character " + this.myIndex + " of " + this.mySource;
+        return (this.buf != null ? " at character " : " at byte ")
+                + (this.myIndex - this.start) + " of "
+                + text(this.start, this.end);
     }
-}
\ No newline at end of file
+}
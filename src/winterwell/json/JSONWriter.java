@@ -111,22 +111,39 @@ public class JSONWriter {
         if (s == null) {
             throw new JSONException("Null pointer");
         }
-        if (this.mode == 'o' || this.mode == 'a') {
-            try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
-                }
-                this.writer.write(s);
-            } catch (IOException e) {
-                throw new JSONException(e);
-            }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
+        try {
+            beginValue();
+            this.writer.write(s);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return endValue();
+    }
+
+    /**
+     * Check that a value is allowed here, and write the comma before it if
+     * need be.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private void beginValue() throws JSONException, IOException {
+        if (this.mode != 'o' && this.mode != 'a') {
+            throw new JSONException("Value out of sequence.");
+        }
+        if (this.comma && this.mode == 'a') {
+            this.writer.write(',');
+        }
+    }
+
+    /**
+     * Call after writing a value.
+     * @return this
+     */
+    private JSONWriter endValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
         }
-        throw new JSONException("Value out of sequence.");
+        this.comma = true;
+        return this;
     }
 
     /**
@@ -207,7 +224,7 @@ public class JSONWriter {
                 if (this.comma) {
                     this.writer.write(',');
                 }
-                this.writer.write(JSONObject.quote(s));
+                JSONObject.quote(s, this.writer);
                 this.writer.write(':');
                 this.comma = false;
                 this.mode = 'o';
@@ -304,15 +321,54 @@ public class JSONWriter {
     }
 
 
+    /**
+     * Append a string value. It is escaped straight into the writer, without
+     * building a quoted copy.
+     * @param s A string. Can be null.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public JSONWriter value(String s) throws JSONException {
+        try {
+            beginValue();
+            if (s == null) {
+                this.writer.write("null");
+            } else {
+                JSONObject.quote(s, this.writer);
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return endValue();
+    }
+
+
     /**
      * Append an object value.
      * @param o The object to append. It can be null, or a Boolean, Number,
      *   String, JSONObject, or JSONArray, or an object with a toJSONString()
-     *   method.
+     *   method. JSONObjects and JSONArrays are streamed, rather than turned
+     *   into a String first.
      * @return this
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object o) throws JSONException {
+        if (o instanceof String) {
+            return value((String) o);
+        }
+        if (o instanceof JSONObject || o instanceof JSONArray) {
+            try {
+                beginValue();
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            if (o instanceof JSONObject) {
+                ((JSONObject) o).write(this.writer);
+            } else {
+                ((JSONArray) o).write(this.writer);
+            }
+            return endValue();
+        }
         return this.append(JSONObject.valueToString(o));
     }
 }
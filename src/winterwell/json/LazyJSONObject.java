@@ -0,0 +1,229 @@
+package winterwell.json;
+
+/**
+ * A JSONObject which only parses values when you ask for them. Construction
+ * does a quick structural scan of the source: the keys are read, but for
+ * each value we just note where it starts and skip over it. A value is
+ * decoded the first time {@link #opt(String)} (or any of the get/opt methods
+ * built on it) asks for it. Nested objects are themselves lazy.
+ * <p>
+ * This is a win when you only look at some of the fields -- e.g. a tweet's
+ * user has a dozen profile_* fields which JTwitter never reads, and the
+ * retweeted_status duplicates a whole second tweet. Use it in place of
+ * {@link JSONObject#JSONObject(String)}; code which takes a JSONObject does
+ * not need to change.
+ * <p>
+ * It is a loss when you read (nearly) everything: each value is scanned
+ * once to skip it, then again to decode it. Building a whole Status from a
+ * LazyJSONObject measured about 40% slower than from a JSONObject -- so
+ * don't use it for that. Use {@link JSONReader} to decode a whole object.
+ * <p>
+ * Notes:<br>
+ * - The source is kept (shared, not copied) until every value has been
+ * decoded. Don't modify a char[] or byte[] source whilst it is in use.<br>
+ * - Syntax errors inside a value are only spotted when that value is
+ * decoded. The JSONException is thrown from opt/get, rather than the
+ * constructor.<br>
+ * - Decoding modifies the object, so reading from several threads at once
+ * is not safe (which is also true of JSONObject if anyone writes to it).
+ *
+ * @author daniel
+ * @testedby {@link LazyJSONObjectTest}
+ */
+public class LazyJSONObject extends JSONObject {
+
+    /**
+     * Stands in for a value which has not been decoded yet.
+     */
+    private static final class Unread {
+        final int index;
+
+        Unread(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * The source. Never advanced after construction -- values are decoded
+     * via copies.
+     */
+    private final JSONTokener x;
+
+
+    /**
+     * Scan an object from a JSONTokener. Afterwards, the tokener is just
+     * past the closing '}'.
+     * @param x A JSONTokener object containing the source string.
+     * @throws JSONException If there is a syntax error in the structure (but
+     * see the class notes).
+     */
+    public LazyJSONObject(JSONTokener x) throws JSONException {
+        super();
+        char c;
+        String key;
+
+        if (x.nextClean() != '{') {
+            throw x.syntaxError("A JSONObject text must begin with '{'");
+        }
+        // a private view, so the caller can carry on with x
+        this.x = x.copy(x.getIndex());
+        for (;;) {
+            c = x.nextClean();
+            switch (c) {
+            case 0:
+                throw x.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return;
+            default:
+                key = x.nextKey(c);
+            }
+
+            /*
+             * The key is followed by ':'. We will also tolerate '=' or '=>'.
+             */
+
+            c = x.nextClean();
+            if (c == '=') {
+                if (x.next() != '>') {
+                    x.back();
+                }
+            } else if (c != ':') {
+                throw x.syntaxError("Expected a ':' after a key");
+            }
+            put(key, new Unread(x.getIndex()));
+            x.skipValue();
+
+            /*
+             * Pairs are separated by ','. We will also tolerate ';'.
+             */
+
+            switch (x.nextClean()) {
+            case ';':
+            case ',':
+                if (x.nextClean() == '}') {
+                    return;
+                }
+                x.back();
+                break;
+            case '}':
+                return;
+            default:
+                throw x.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+
+    /**
+     * @param string JSON text, beginning with <code>{</code>
+     * @throws JSONException If there is a syntax error in the structure (but
+     * see the class notes).
+     */
+    public LazyJSONObject(String string) throws JSONException {
+        this(new JSONTokener(string));
+    }
+
+
+    /**
+     * Get an optional value associated with a key, decoding it if this is
+     * the first time it has been asked for.
+     * @param key   A key string.
+     * @return      An object which is the value, or null if there is no value.
+     * @throws JSONException if the value is badly formed
+     */
+    @Override
+    public Object opt(String key) {
+        Object v = super.opt(key);
+        if (v instanceof Unread) {
+            v = readValue(this.x.copy(((Unread) v).index), key);
+            put(key, v);
+        }
+        return v;
+    }
+
+
+    /**
+     * @return a new JSONReader over this object's source text, for when you
+     * want all of it: decoding it in one pass is quicker than asking for
+     * every value. The first call to next() returns START_OBJECT. Changes
+     * made via put() are not seen.
+     */
+    public JSONReader reader() {
+        JSONTokener t = this.x.copy(this.x.getIndex());
+        // back to the '{'
+        t.back();
+        return new JSONReader(t);
+    }
+
+
+    /**
+     * Like {@link JSONTokener#nextValue()}, but objects are lazy.
+     */
+    private static Object readValue(JSONTokener x, String key)
+            throws JSONException {
+        char c = x.nextClean();
+        x.back();
+        if (c == '{') {
+            return new LazyJSONObject(x);
+        }
+        if (c == '[') {
+            return readArray(x, key);
+        }
+        Object v = x.nextValue(key);
+        return v == JSONTokener.NUMBER ? JSONTokener.box(x.number) : v;
+    }
+
+
+    /**
+     * Like {@link JSONArray#JSONArray(JSONTokener)}, but objects in the array
+     * are lazy.
+     */
+    private static JSONArray readArray(JSONTokener x, String key)
+            throws JSONException {
+        JSONArray arr = new JSONArray();
+        if (x.nextClean() != '[') {
+            throw x.syntaxError("A JSONArray text must start with '['");
+        }
+        if (x.nextClean() == ']') {
+            return arr;
+        }
+        x.back();
+        for (;;) {
+            if (x.nextClean() == ',') {
+                x.back();
+                arr.put((Object) null);
+            } else {
+                x.back();
+                arr.put(readValue(x, key));
+            }
+            switch (x.nextClean()) {
+            case ';':
+            case ',':
+                if (x.nextClean() == ']') {
+                    return arr;
+                }
+                x.back();
+                break;
+            case ']':
+                return arr;
+            default:
+                throw x.syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
+
+    /**
+     * Remove a name and its value, if present.
+     * @param key The name to be removed.
+     * @return The value that was associated with the name,
+     * or null if there was no value.
+     */
+    @Override
+    public Object remove(String key) {
+        Object v = opt(key);
+        super.remove(key);
+        return v;
+    }
+
+}
@@ -1,10 +1,9 @@
 package winterwell.jtwitter;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
@@ -18,6 +17,8 @@ import java.util.Random;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONSymbols;
+import winterwell.json.JSONTokener;
 import winterwell.jtwitter.AStream.IListen;
 import winterwell.jtwitter.Twitter.IHttpClient;
 import winterwell.jtwitter.Twitter.ITweet;
@@ -75,6 +76,167 @@ public abstract class AStream implements Closeable {
 		boolean processTweet(ITweet tweet);
 	}
 
+	/**
+	 * An {@link IListen} which gets delete and limit notices as typed
+	 * {@link Notice}s, rather than as Object[]s via
+	 * {@link #processSystemEvent(Object[])} (which still gets the other system
+	 * events, such as reconnects).
+	 */
+	public static interface IListenNotices extends IListen {
+		/**
+		 * @param notice
+		 *            A {@link DeleteNotice} or {@link LimitNotice}. WARNING: if
+		 *            {@link AStream#setReuseNotices(boolean)} is on, this object
+		 *            is recycled for the next notice -- use
+		 *            {@link Notice#copy()} to keep it.
+		 * @return true to pass this on to any other, earlier-added, listeners.
+		 *         false to stop earlier listeners from hearing this event.
+		 */
+		boolean processNotice(Notice notice);
+	}
+
+	/**
+	 * A system message from Twitter, such as "delete this tweet". These are
+	 * small: just the numbers, no fake objects.
+	 */
+	public static abstract class Notice implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		Notice() {
+		}
+
+		/**
+		 * @return an un-recycled copy of this
+		 */
+		public abstract Notice copy();
+
+		/**
+		 * @return this in the old format, as used by
+		 *         {@link AStream#getSystemEvents()} and
+		 *         {@link IListen#processSystemEvent(Object[])}. E.g.
+		 *         {"delete", Status, user-id} or {"limit", count}
+		 */
+		public abstract Object[] toArray();
+	}
+
+	/**
+	 * "Delete this tweet". Sent when a user deletes a tweet -- you should then
+	 * remove it from any stored copies.
+	 */
+	public static final class DeleteNotice extends Notice {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * Not final, so the stream can recycle notices (see
+		 * {@link AStream#setReuseNotices(boolean)}). Never edited otherwise.
+		 */
+		long statusId;
+		long userId;
+
+		public DeleteNotice(long statusId, long userId) {
+			this.statusId = statusId;
+			this.userId = userId;
+		}
+
+		@Override
+		public DeleteNotice copy() {
+			return new DeleteNotice(statusId, userId);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DeleteNotice))
+				return false;
+			DeleteNotice other = (DeleteNotice) obj;
+			return statusId == other.statusId && userId == other.userId;
+		}
+
+		/**
+		 * @return the id of the deleted tweet
+		 */
+		public long getStatusId() {
+			return statusId;
+		}
+
+		/**
+		 * @return the id of the tweet's author
+		 */
+		public long getUserId() {
+			return userId;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (statusId ^ (statusId >>> 32));
+		}
+
+		/**
+		 * @return {"delete", Status (a stub, with just the id), user-id (a
+		 *         Long)}
+		 */
+		@Override
+		public Object[] toArray() {
+			Status deadTweet = new Status(null, null, statusId, null);
+			return new Object[] { "delete", deadTweet, userId };
+		}
+
+		@Override
+		public String toString() {
+			return "delete[" + statusId + " by " + userId + "]";
+		}
+	}
+
+	/**
+	 * Twitter is not sending all the matching tweets, as there are too many.
+	 */
+	public static final class LimitNotice extends Notice {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * Not final: see {@link DeleteNotice#statusId}
+		 */
+		int track;
+
+		public LimitNotice(int track) {
+			this.track = track;
+		}
+
+		@Override
+		public LimitNotice copy() {
+			return new LimitNotice(track);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof LimitNotice
+					&& track == ((LimitNotice) obj).track;
+		}
+
+		/**
+		 * @return the number of matching tweets which have not been sent,
+		 *         since the connection was opened
+		 */
+		public int getTrack() {
+			return track;
+		}
+
+		@Override
+		public int hashCode() {
+			return track;
+		}
+
+		/**
+		 * @return {"limit", count (an Integer)}
+		 */
+		@Override
+		public Object[] toArray() {
+			return new Object[] { "limit", track };
+		}
+
+		@Override
+		public String toString() {
+			return "limit[" + track + "]";
+		}
+	}
+
 	public static final class Outage implements Serializable {
 		private static final long serialVersionUID = 1L;
 		final BigInteger sinceId;
@@ -115,6 +277,21 @@ public abstract class AStream implements Closeable {
 
 	static Object read3_parse(JSONObject jo, Twitter jtwitr)
 			throws JSONException {
+		return read3_parse(jo, jtwitr, null, null);
+	}
+
+	/**
+	 * @param recycleDelete
+	 *            If not null, deletes are returned in this (edited) object
+	 *            rather than a new one.
+	 * @param recycleLimit
+	 *            If not null, as recycleDelete for limits
+	 * @return a Status, TwitterEvent, {@link Notice}, or the json if it's
+	 *         something else.
+	 */
+	static Object read3_parse(JSONObject jo, Twitter jtwitr,
+			DeleteNotice recycleDelete, LimitNotice recycleLimit)
+			throws JSONException {
 		// tweets
 		// TODO DMs?? They don't seem to get sent!
 		if (jo.has("text")) {
@@ -132,10 +309,13 @@ public abstract class AStream implements Closeable {
 		JSONObject del = jo.optJSONObject("delete");
 		if (del != null) {
 			JSONObject s = del.getJSONObject("status");
-			BigInteger id = new BigInteger(s.getString("id_str"));
+			long id = InternalUtils.jsonGetId("id", s);
 			long userId = s.getLong("user_id");
-			Status deadTweet = new Status(null, null, id, null);
-			return new Object[] { "delete", deadTweet, userId };
+			if (recycleDelete == null)
+				return new DeleteNotice(id, userId);
+			recycleDelete.statusId = id;
+			recycleDelete.userId = userId;
+			return recycleDelete;
 		}
 		// e.g. {"limit":{"track":1234}}
 		JSONObject limit = jo.optJSONObject("limit");
@@ -144,7 +324,10 @@ public abstract class AStream implements Closeable {
 			if (cnt == 0) {
 				System.out.println(jo); // API change :( - a new limit object
 			}
-			return new Object[] { "limit", cnt };
+			if (recycleLimit == null)
+				return new LimitNotice(cnt);
+			recycleLimit.track = cnt;
+			return recycleLimit;
 		}
 		// ??
 		System.out.println(jo);
@@ -168,7 +351,7 @@ public abstract class AStream implements Closeable {
 	 */
 	final Twitter jtwit;
 
-	private BigInteger lastId = BigInteger.ZERO;
+	private long lastId;
 
 	final List<IListen> listeners = new ArrayList(0);
 
@@ -191,6 +374,11 @@ public abstract class AStream implements Closeable {
 	 */
 	boolean listenersOnly;
 
+	/**
+	 * default: false. See {@link #setReuseNotices(boolean)}
+	 */
+	boolean reuseNotices;
+
 	public AStream(Twitter jtwit) {
 		this.client = jtwit.getHttpClient();
 		this.jtwit = jtwit;
@@ -518,7 +706,8 @@ public abstract class AStream implements Closeable {
 	}
 
 	private void read2(String json) throws JSONException {
-		JSONObject jobj = new JSONObject(json);
+		// share key & common value Strings across the buffered tweets
+		JSONObject jobj = new JSONObject(InternalUtils.jsonTokener(json));
 
 		// the 1st object for a user stream is a list of friend ids
 		JSONArray _friends = jobj.optJSONArray("friends");
@@ -541,8 +730,8 @@ public abstract class AStream implements Closeable {
 				return;
 			tweets.add(tweet);
 			// track the last id for tracking outages
-			if (tweet.id.compareTo(lastId) > 0) {
-				lastId = tweet.id;
+			if (tweet.getIdLong() > lastId) {
+				lastId = tweet.getIdLong();
 			}
 			forgotten += forgetIfFull(tweets);
 			return;
@@ -556,29 +745,40 @@ public abstract class AStream implements Closeable {
 			return;
 		}
 		// Deletes and other system events, like limits
-		if (object instanceof Object[]) {
-			Object[] sysEvent = (Object[]) object;
-			// delete?
-			if ("delete".equals(sysEvent[0])) {
-				Status deadTweet = (Status) sysEvent[1];
-				// prune local (which is unlikely to do much)
-				boolean pruned = tweets.remove(deadTweet);
-				if (!pruned) {
-					sysEvents.add(sysEvent);
-					forgotten += forgetIfFull(sysEvents);
-				}
+		if (object instanceof DeleteNotice) {
+			DeleteNotice del = (DeleteNotice) object;
+			// prune local (which is unlikely to do much)
+			if (read3_prune(del.statusId))
 				return;
-			} else if ("limit".equals(sysEvent[0])) {
-				Integer cnt = (Integer) sysEvent[1];				
-				sysEvents.add(sysEvent);
-				forgotten += cnt;
-				return;				
-			}
+			sysEvents.add(del.toArray());
+			forgotten += forgetIfFull(sysEvents);
+			return;
+		}
+		if (object instanceof LimitNotice) {
+			LimitNotice limit = (LimitNotice) object;
+			sysEvents.add(limit.toArray());
+			forgotten += limit.track;
+			return;
 		}
 		// ??
 		System.out.println(jobj);
 	}
 
+	/**
+	 * @param statusId
+	 * @return true if a buffered tweet with this id was removed
+	 */
+	private boolean read3_prune(long statusId) {
+		for (int i = 0, n = tweets.size(); i < n; i++) {
+			ITweet tweet = tweets.get(i);
+			if (tweet instanceof Status && ((Status) tweet).getIdLong() == statusId) {
+				tweets.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void read3_friends(JSONArray _friends) throws JSONException {
 		List<Long> oldFriends = friends;
 		friends = new ArrayList(_friends.length());
@@ -620,8 +820,9 @@ public abstract class AStream implements Closeable {
 
 		// store the outage
 		// TODO merge small outages
-		if (lastId != BigInteger.ZERO) {
-			outages.add(new Outage(lastId, System.currentTimeMillis()));
+		if (lastId != 0) {
+			outages.add(new Outage(BigInteger.valueOf(lastId),
+					System.currentTimeMillis()));
 			// paranoia: avoid memory leaks
 			if (outages.size() > 100000) {
 				for (int i = 0; i < 1000; i++) {
@@ -703,6 +904,18 @@ public abstract class AStream implements Closeable {
 		reconnect();
 	}
 
+	/**
+	 * default: false. If true (and {@link TwitterStream#setListenersOnly(boolean)}
+	 * is on), the delete and limit notices sent to {@link IListenNotices} are
+	 * recycled: one object is edited for each new notice, so listeners must
+	 * not hold on to them (use {@link Notice#copy()}). This saves an
+	 * allocation per notice -- deletes can be a good share of the sample
+	 * stream.
+	 */
+	public void setReuseNotices(boolean reuseNotices) {
+		this.reuseNotices = reuseNotices;
+	}
+
 	public boolean removeListener(IListen listener) {
 		synchronized (listeners) {
 			return listeners.remove(listener);
@@ -762,6 +975,13 @@ final class StreamGobbler extends Thread {
 
 	final AStream stream;
 
+	/**
+	 * For {@link AStream#setReuseNotices(boolean)}
+	 */
+	private final AStream.DeleteNotice recycleDelete = new AStream.DeleteNotice(0, 0);
+
+	private final AStream.LimitNotice recycleLimit = new AStream.LimitNotice(0);
+
 	public StreamGobbler(AStream stream) {
 		setDaemon(true);
 		this.stream = stream;
@@ -797,13 +1017,13 @@ final class StreamGobbler extends Thread {
 		return arr;
 	}
 
-	private void readJson(BufferedReader br, int len) throws IOException {
-		// Read len chars from the stream
+	private void readJson(InputStream in, int len) throws IOException {
+		// Read len bytes from the stream (the length is in bytes, not chars)
 		assert len > 0;
-		char[] sb = new char[len];
+		byte[] utf8 = new byte[len];
 		int cnt = 0;
 		while (len > 0) {
-			int rd = br.read(sb, cnt, len);
+			int rd = in.read(utf8, cnt, len);
 			if (rd == -1)
 				throw new IOException("end of stream");
 			// continue;
@@ -811,8 +1031,8 @@ final class StreamGobbler extends Thread {
 			len -= rd;
 		}
 		
-		String json = new String(sb);
 		if ( ! stream.listenersOnly) {
+			String json = new String(utf8, "UTF-8");
 			synchronized (this) {
 				jsons.add(json);
 				// forget a batch?
@@ -821,24 +1041,42 @@ final class StreamGobbler extends Thread {
 		}
 
 		// push notifications
-		readJson2_notifyListeners(json);
+		readJson2_notifyListeners(utf8);
 	}
 
-	private void readJson2_notifyListeners(String json) {
+	/**
+	 * @param utf8 Parsed directly, without decoding to a String first.
+	 */
+	private void readJson2_notifyListeners(byte[] utf8) {
 		if (stream.listeners.size() == 0)
 			return;
 		synchronized (stream.listeners) {
 			try {
-				JSONObject jo = new JSONObject(json);
-				Object obj = AStream.read3_parse(jo, stream.jtwit);
+				JSONTokener x = new JSONTokener(utf8, 0, utf8.length);
+				x.setSymbols(JSONSymbols.TWITTER);
+				JSONObject jo = new JSONObject(x);
+				boolean recycle = stream.reuseNotices && stream.listenersOnly;
+				Object obj = recycle ? AStream.read3_parse(jo, stream.jtwit,
+						recycleDelete, recycleLimit) : AStream.read3_parse(jo,
+						stream.jtwit);
+				// the old format, made only if a listener wants it
+				Object[] sysEvent = null;
 				for (IListen listener : stream.listeners) {
 					boolean carryOn;
 					if (obj instanceof ITweet) {
 						carryOn = listener.processTweet((ITweet) obj);
 					} else if (obj instanceof TwitterEvent) {
 						carryOn = listener.processEvent((TwitterEvent) obj);
+					} else if (obj instanceof AStream.Notice
+							&& listener instanceof AStream.IListenNotices) {
+						carryOn = ((AStream.IListenNotices) listener)
+								.processNotice((AStream.Notice) obj);
 					} else {
-						carryOn = listener.processSystemEvent((Object[]) obj);
+						if (sysEvent == null) {
+							sysEvent = obj instanceof AStream.Notice ? ((AStream.Notice) obj)
+									.toArray() : (Object[]) obj;
+						}
+						carryOn = listener.processSystemEvent(sysEvent);
 					}
 					// hide from earlier listeners?
 					if (!carryOn) {
@@ -854,14 +1092,14 @@ final class StreamGobbler extends Thread {
 
 	/**
 	 * Read a number from the stream -- which is the length of the next message.
-	 * @param br
+	 * @param in
 	 * @return
 	 * @throws IOException
 	 */
-	private int readLength(BufferedReader br) throws IOException {
+	private int readLength(InputStream in) throws IOException {
 		StringBuilder numSb = new StringBuilder();
 		while (true) {
-			int ich = br.read();
+			int ich = in.read();
 			if (ich == -1)
 				throw new IOException("end of stream " + this);
 			// continue;
@@ -887,11 +1125,10 @@ final class StreamGobbler extends Thread {
 		while (!stopFlag) {			
 			assert stream.stream != null : stream;
 			try {
-				InputStreamReader isr = new InputStreamReader(stream.stream);
-				BufferedReader br = new BufferedReader(isr);
+				InputStream in = new BufferedInputStream(stream.stream);
 				while (!stopFlag) {
-					int len = readLength(br);
-					readJson(br, len);
+					int len = readLength(in);
+					readJson(in, len);
 				}
 			} catch (Exception ioe) {
 				if (stopFlag) {
@@ -0,0 +1,284 @@
+package winterwell.jtwitter;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the objects written by a {@link BinaryWriter}, one at a time. See
+ * there for the format.
+ * <p>
+ * Users who come with a tweet are shared between tweets as usual (see
+ * {@link Twitter#USER_CACHE_SIZE}).
+ * <p>
+ * Not thread safe.
+ *
+ * @author daniel
+ * @testedby {@link BinaryWriterTest}
+ */
+public class BinaryReader implements Closeable {
+
+	private final byte[] buf = new byte[64 * 1024];
+
+	private long count;
+
+	private final InputStream in;
+
+	/**
+	 * As {@link BinaryWriter}'s
+	 */
+	private long lastId;
+
+	private long lastTime;
+
+	/**
+	 * The end of the data in buf
+	 */
+	private int limit;
+
+	private int pos;
+
+	private final List<String> symbols = new ArrayList<String>();
+
+	/**
+	 * The version of the stream
+	 */
+	private final int version;
+
+	/**
+	 * @param in
+	 *            Does not need a buffer (this has its own). The header is
+	 *            read straight away.
+	 * @throws TwitterException.IO
+	 *             if the input fails, or isn't from a BinaryWriter, or is
+	 *             from a newer version of JTwitter
+	 */
+	public BinaryReader(InputStream in) throws TwitterException {
+		assert in != null;
+		this.in = in;
+		try {
+			for (byte m : BinaryWriter.MAGIC) {
+				if (readByte() != m)
+					throw new StreamCorruptedException(
+							"Not a JTwitter binary stream");
+			}
+			version = readByte();
+			if (version < 1 || version > BinaryWriter.VERSION)
+				throw new StreamCorruptedException("Unsupported version "
+						+ version + " (this is version "
+						+ BinaryWriter.VERSION + ")");
+		} catch (IOException e) {
+			throw new TwitterException.IO(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @return the number of records read so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the format version of this stream
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the next object -- a {@link Status}, {@link User},
+	 *         {@link Message} or {@link Place} -- or null at the end of the
+	 *         stream.
+	 * @throws TwitterException.IO
+	 *             if the input fails, or is corrupt or cut short
+	 */
+	public Object read() throws TwitterException {
+		try {
+			if (pos == limit && !fill())
+				return null;
+			byte type = buf[pos++];
+			count++;
+			switch (type) {
+			case BinaryWriter.STATUS:
+				return new Status(this, null);
+			case BinaryWriter.USER:
+				return new User(this, null);
+			case BinaryWriter.MESSAGE:
+				return new Message(this);
+			case BinaryWriter.PLACE:
+				return new Place(this);
+			default:
+				throw new StreamCorruptedException("Unknown record type "
+						+ type + " (record " + count + ")");
+			}
+		} catch (IOException e) {
+			throw new TwitterException.IO(e);
+		}
+	}
+
+	/**
+	 * Read more bytes into the buffer, keeping what hasn't been read yet.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean fill() throws IOException {
+		int left = limit - pos;
+		System.arraycopy(buf, pos, buf, 0, left);
+		pos = 0;
+		limit = left;
+		int n = in.read(buf, limit, buf.length - limit);
+		if (n <= 0)
+			return false;
+		limit += n;
+		return true;
+	}
+
+	private byte readByte() throws IOException {
+		if (pos == limit && !fill())
+			throw new EOFException();
+		return buf[pos++];
+	}
+
+	/**
+	 * @see BinaryWriter#writeDate(Date, boolean)
+	 */
+	Date readDate(boolean delta) throws IOException {
+		long v = readVarLong();
+		if (v == 0)
+			return null;
+		long base = delta ? lastTime : 0;
+		long t;
+		if ((v & 3) == 1) {
+			t = (base / 1000 + unzigzag(v >>> 2)) * 1000;
+		} else if ((v & 3) == 2) {
+			t = base + unzigzag(v >>> 2);
+		} else
+			throw new StreamCorruptedException("Bad date " + v);
+		if (delta) {
+			lastTime = t;
+		}
+		return new Date(t);
+	}
+
+	/**
+	 * @see BinaryWriter#writeDouble(double)
+	 */
+	double readDouble() throws IOException {
+		long v = readVarLong();
+		if ((v & 1) == 0)
+			return unzigzag(v >>> 1);
+		long bits = 0;
+		for (int i = 0; i < 8; i++) {
+			bits |= (readByte() & 0xFFL) << (8 * i);
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * @see BinaryWriter#writeId(long)
+	 */
+	long readId() throws IOException {
+		lastId += unzigzag(readVarLong());
+		return lastId;
+	}
+
+	/**
+	 * @see BinaryWriter#writeInt(int)
+	 */
+	int readInt() throws IOException {
+		return (int) readVarLong();
+	}
+
+	/**
+	 * @see BinaryWriter#writeSigned(long)
+	 */
+	long readSigned() throws IOException {
+		return unzigzag(readVarLong());
+	}
+
+	/**
+	 * @see BinaryWriter#writeString(String)
+	 */
+	String readString() throws IOException {
+		long len = readVarLong();
+		if (len == 0)
+			return null;
+		if (len > Integer.MAX_VALUE)
+			throw new StreamCorruptedException("Bad string length " + len);
+		int n = (int) len - 1;
+		char[] cs = new char[n];
+		for (int i = 0; i < n; i++) {
+			// fast path for ascii
+			if (pos < limit && buf[pos] >= 0) {
+				cs[i] = (char) buf[pos++];
+				continue;
+			}
+			int b = readByte() & 0xFF;
+			if (b < 0x80) {
+				cs[i] = (char) b;
+			} else if (b < 0xE0) {
+				cs[i] = (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+			} else {
+				int b2 = readByte() & 0x3F;
+				cs[i] = (char) (((b & 0x0F) << 12) | (b2 << 6) | (readByte() & 0x3F));
+			}
+		}
+		return new String(cs);
+	}
+
+	/**
+	 * @see BinaryWriter#writeSymbol(String)
+	 */
+	String readSymbol() throws IOException {
+		long v = readVarLong();
+		if (v == 0)
+			return null;
+		if (v == 1) {
+			String s = readString();
+			if (s == null)
+				throw new StreamCorruptedException("null symbol");
+			if (symbols.size() < BinaryWriter.MAX_SYMBOLS) {
+				symbols.add(s);
+			}
+			return s;
+		}
+		if (v - 2 >= symbols.size())
+			throw new StreamCorruptedException("Unknown symbol " + (v - 2));
+		return symbols.get((int) (v - 2));
+	}
+
+	/**
+	 * @see BinaryWriter#writeVarLong(long)
+	 */
+	long readVarLong() throws IOException {
+		long x = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = pos < limit ? buf[pos++] : readByte();
+			x |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return x;
+		}
+		throw new StreamCorruptedException("Bad varint");
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryReader[" + count + " records]";
+	}
+
+	private static long unzigzag(long x) {
+		return (x >>> 1) ^ -(x & 1);
+	}
+
+}
@@ -0,0 +1,335 @@
+package winterwell.jtwitter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bulk export in a compact binary format: for disk caches and queues between
+ * processes, where Java serialization is slow and bulky, and json is bulky.
+ * Read it back with {@link BinaryReader}.
+ * <p>
+ * The format:
+ * <ul>
+ * <li>A header: the bytes "JTB" and a version number (currently
+ * {@link #VERSION}). Readers reject versions they don't know.
+ * <li>Then records, each a type byte followed by the object's fields (see the
+ * <code>writeBinary()</code> methods of {@link Status}, {@link User},
+ * {@link Message} and {@link Place}).
+ * <li>Numbers are varints (7 bits per byte, low bits first), with zig-zag
+ * encoding where they can be negative.
+ * <li>Status ids and tweet times are written as the difference from the
+ * previous ones -- small, since a stream of tweets is usually in order.
+ * Times in whole seconds (as Twitter's are) are written as seconds.
+ * <li>Short, repetitive strings -- screen-names, profile fields, sources,
+ * places -- go into a dictionary the first time they are seen, and are
+ * written as a reference after that. So a user who tweets a lot costs a few
+ * bytes per tweet. Tweet texts are written as they are.
+ * </ul>
+ * Entities are written as made (so the reader doesn't need to redo the
+ * offsets). Objects are not shared in the stream, except via the dictionary:
+ * a User is written with each of their tweets.
+ * <p>
+ * Not thread safe.
+ *
+ * @author daniel
+ * @testedby {@link BinaryWriterTest}
+ */
+public class BinaryWriter implements Closeable, Flushable {
+
+	/**
+	 * The first 3 bytes of a stream: "JTB"
+	 */
+	static final byte[] MAGIC = { 'J', 'T', 'B' };
+
+	/**
+	 * At most this many strings go in the dictionary, so a long stream of
+	 * new users can't eat all the memory (of the reader as well as the
+	 * writer). After that, new strings are written out in full every time.
+	 */
+	static final int MAX_SYMBOLS = 1 << 18;
+
+	/**
+	 * Record types
+	 */
+	static final byte STATUS = 1, USER = 2, MESSAGE = 3, PLACE = 4;
+
+	/**
+	 * The format version. Increase this when the format changes.
+	 */
+	public static final int VERSION = 1;
+
+	private byte[] buf = new byte[64 * 1024];
+
+	private long count;
+
+	/**
+	 * For delta encoding. Only touched by status ids.
+	 */
+	private long lastId;
+
+	/**
+	 * For delta encoding tweet and message times.
+	 */
+	private long lastTime;
+
+	private final OutputStream out;
+
+	private int pos;
+
+	private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+	/**
+	 * @param out
+	 *            Does not need a buffer (this has its own). The header is
+	 *            written straight away.
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public BinaryWriter(OutputStream out) throws TwitterException {
+		assert out != null;
+		this.out = out;
+		ensure(4);
+		System.arraycopy(MAGIC, 0, buf, 0, 3);
+		buf[3] = VERSION;
+		pos = 4;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		out.close();
+	}
+
+	/**
+	 * Make sure there's room for n more bytes in the buffer.
+	 */
+	private void ensure(int n) throws TwitterException.IO {
+		if (pos + n <= buf.length)
+			return;
+		try {
+			out.write(buf, 0, pos);
+		} catch (IOException e) {
+			throw new TwitterException.IO(e);
+		}
+		pos = 0;
+		if (n > buf.length) {
+			buf = new byte[n];
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.write(buf, 0, pos);
+		pos = 0;
+		out.flush();
+	}
+
+	/**
+	 * @return the number of records written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	private void start(byte type) {
+		ensure(1);
+		buf[pos++] = type;
+		count++;
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryWriter[" + count + " records]";
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Message message) throws TwitterException {
+		start(MESSAGE);
+		message.writeBinary(this);
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Place place) throws TwitterException {
+		start(PLACE);
+		place.writeBinary(this);
+	}
+
+	/**
+	 * @param status
+	 *            Written with its user (but not the user's status)
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Status status) throws TwitterException {
+		start(STATUS);
+		status.writeBinary(this, true);
+	}
+
+	/**
+	 * @param user
+	 *            Written with their status, if we have it
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(User user) throws TwitterException {
+		start(USER);
+		user.writeBinary(this, true);
+	}
+
+	/**
+	 * @param date
+	 *            Can be null
+	 * @param delta
+	 *            true to write it as the difference from the last delta
+	 *            date: for tweet times, which go up slowly. false for
+	 *            e.g. a user's sign-up date.
+	 */
+	void writeDate(Date date, boolean delta) {
+		if (date == null) {
+			writeVarLong(0);
+			return;
+		}
+		long t = date.getTime();
+		long base = delta ? lastTime : 0;
+		if (delta) {
+			lastTime = t;
+		}
+		// Twitter's times are in whole seconds
+		if (t % 1000 == 0) {
+			writeVarLong((zigzag(t / 1000 - base / 1000) << 2) | 1);
+		} else {
+			writeVarLong((zigzag(t - base) << 2) | 2);
+		}
+	}
+
+	/**
+	 * 8 bytes, or fewer for whole numbers (e.g. a utc offset).
+	 */
+	void writeDouble(double x) {
+		long l = (long) x;
+		if (l == x && Math.abs(l) < (1L << 48)) {
+			writeVarLong(zigzag(l) << 1);
+			return;
+		}
+		writeVarLong(1);
+		long bits = Double.doubleToLongBits(x);
+		ensure(8);
+		for (int i = 0; i < 8; i++) {
+			buf[pos++] = (byte) (bits >>> (8 * i));
+		}
+	}
+
+	/**
+	 * A status id: as the difference from the previous one.
+	 */
+	void writeId(long id) {
+		writeVarLong(zigzag(id - lastId));
+		lastId = id;
+	}
+
+	/**
+	 * Any int, as an unsigned varint. Cheapest for small positive numbers,
+	 * and 5 bytes for a negative one.
+	 */
+	void writeInt(int x) {
+		writeVarLong(x & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Zig-zag encoded, so small negative numbers are cheap too.
+	 */
+	void writeSigned(long x) {
+		writeVarLong(zigzag(x));
+	}
+
+	/**
+	 * Write a string in full: its length, then the characters, each as
+	 * UTF-8 would (surrogates are written separately, as in Java's
+	 * "modified UTF-8", so every String survives the trip).
+	 *
+	 * @param s
+	 *            Can be null
+	 */
+	void writeString(String s) {
+		if (s == null) {
+			writeVarLong(0);
+			return;
+		}
+		int n = s.length();
+		writeVarLong(n + 1L);
+		ensure(3 * n);
+		byte[] b = buf;
+		int p = pos;
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				b[p++] = (byte) c;
+			} else if (c < 0x800) {
+				b[p++] = (byte) (0xC0 | (c >> 6));
+				b[p++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				b[p++] = (byte) (0xE0 | (c >> 12));
+				b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[p++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		pos = p;
+	}
+
+	/**
+	 * Write a string via the dictionary: 0 for null, 1 and the string if
+	 * it's new, else 2 + its number.
+	 *
+	 * @param s
+	 *            Can be null
+	 * @see #MAX_SYMBOLS
+	 */
+	void writeSymbol(String s) {
+		if (s == null) {
+			writeVarLong(0);
+			return;
+		}
+		Integer i = symbols.get(s);
+		if (i != null) {
+			writeVarLong(i + 2L);
+			return;
+		}
+		writeVarLong(1);
+		writeString(s);
+		if (symbols.size() < MAX_SYMBOLS) {
+			symbols.put(s, symbols.size());
+		}
+	}
+
+	/**
+	 * An unsigned varint: 7 bits per byte, low bits first, with the top bit
+	 * set on all but the last byte.
+	 */
+	void writeVarLong(long x) {
+		ensure(10);
+		byte[] b = buf;
+		int p = pos;
+		while ((x & ~0x7FL) != 0) {
+			b[p++] = (byte) ((x & 0x7F) | 0x80);
+			x >>>= 7;
+		}
+		b[p++] = (byte) x;
+		pos = p;
+	}
+
+	private static long zigzag(long x) {
+		return (x << 1) ^ (x >> 63);
+	}
+
+}
@@ -0,0 +1,276 @@
+package winterwell.jtwitter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import winterwell.jtwitter.Twitter.IHttpClient;
+import winterwell.jtwitter.Twitter.KRequestType;
+
+/**
+ * Wraps another {@link IHttpClient} so that identical GETs which are in flight
+ * at the same time share one request to Twitter (aka "single-flight"). E.g. if
+ * 10 worker threads all call {@link Twitter#show(String)} for the same hot
+ * account within a few milliseconds, Twitter sees one call, and your rate
+ * limit pays for one call.
+ * <p>
+ * "Identical" means the same url, vars and authentication. This is not a
+ * cache: once a request has finished, the next identical GET goes to Twitter
+ * as normal. POSTs are never merged -- they go straight through.
+ * <p>
+ * Copies made via {@link #copy()} share the set of in-flight requests and the
+ * counters, so you can give each thread its own {@link Twitter} object. E.g.
+ *
+ * <pre>
+ * <code>
+ * CoalescingHttpClient client = new CoalescingHttpClient(new OAuthSignpostClient(...));
+ * Twitter jtwit = new Twitter(null, client);
+ * // for each worker thread...
+ * Twitter jtwitCopy = new Twitter(jtwit);
+ * </code>
+ * </pre>
+ * <p>
+ * Notes: {@link #getHeader(String)} reports the last request made by this
+ * client's own delegate -- which may not be the request that answered a merged
+ * GET. Errors are shared too: if the shared request fails, all the waiting
+ * callers get the same exception.
+ *
+ * @author daniel
+ * @testedby {@link CoalescingHttpClientTest}
+ */
+public class CoalescingHttpClient implements IHttpClient, Serializable {
+
+	/**
+	 * A GET in progress. Callers who arrive while it is running wait for it.
+	 */
+	private static final class Call {
+		final CountDownLatch done = new CountDownLatch(1);
+		/**
+		 * Whatever the leader's request threw (including Errors). Set before
+		 * {@link #done} counts down.
+		 */
+		Throwable error;
+		String page;
+	}
+
+	/**
+	 * State shared between copies.
+	 */
+	private static final class Shared {
+		final AtomicLong gets = new AtomicLong();
+		final AtomicLong hits = new AtomicLong();
+		final ConcurrentMap<String, Call> inFlight = new ConcurrentHashMap<String, Call>();
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private final IHttpClient base;
+
+	private transient Shared shared;
+
+	/**
+	 * @param base
+	 *            The client which does the actual work. Use this wrapper
+	 *            instead of it.
+	 */
+	public CoalescingHttpClient(IHttpClient base) {
+		this(base, new Shared());
+	}
+
+	private CoalescingHttpClient(IHttpClient base, Shared shared) {
+		assert base != null;
+		assert !(base instanceof CoalescingHttpClient) : base;
+		this.base = base;
+		this.shared = shared;
+	}
+
+	@Override
+	public boolean canAuthenticate() {
+		return base.canAuthenticate();
+	}
+
+	/**
+	 * Not merged: this hands back a live connection.
+	 */
+	@Override
+	public HttpURLConnection connect(String url, Map<String, String> vars,
+			boolean authenticate) throws IOException {
+		return base.connect(url, vars, authenticate);
+	}
+
+	/**
+	 * @return a wrapper round a copy of the base client, which shares in-flight
+	 *         requests (and hit counters) with this one.
+	 */
+	@Override
+	public IHttpClient copy() {
+		return new CoalescingHttpClient(base.copy(), getShared());
+	}
+
+	/**
+	 * @return the underlying client
+	 */
+	public IHttpClient getBase() {
+		return base;
+	}
+
+	/**
+	 * @return number of GETs that were answered by piggy-backing on another
+	 *         identical request, rather than calling Twitter. This is shared
+	 *         between copies.
+	 */
+	public long getCoalescedCount() {
+		return getShared().hits.get();
+	}
+
+	/**
+	 * @return total number of GETs made via this client (and its copies),
+	 *         including merged ones.
+	 */
+	public long getGetCount() {
+		return getShared().gets.get();
+	}
+
+	@Override
+	public String getHeader(String headerName) {
+		return base.getHeader(headerName);
+	}
+
+	/**
+	 * The key for "identical" requests. The vars are sorted, so that map
+	 * ordering does not matter.
+	 */
+	String getKey(String url, Map<String, String> vars, boolean authenticate) {
+		StringBuilder key = new StringBuilder(url.length() + 64);
+		if (authenticate) {
+			key.append(getAuthKey());
+		}
+		key.append(' ').append(url).append(' ');
+		if (vars != null && !vars.isEmpty()) {
+			InternalUtils.encodeVars(new TreeMap<String, String>(vars), key);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Who are we? Copies of a client log in as the same user, so they give the
+	 * same answer.
+	 */
+	private String getAuthKey() {
+		if (base instanceof OAuthSignpostClient) {
+			String[] token = ((OAuthSignpostClient) base).getAccessToken();
+			if (token != null)
+				return token[0];
+		} else if (base instanceof OAuthScribeClient) {
+			if (((OAuthScribeClient) base).getAccessToken() != null)
+				return ((OAuthScribeClient) base).getAccessToken().getToken();
+		} else if (base instanceof URLConnectionHttpClient) {
+			String key = ((URLConnectionHttpClient) base).getAuthKey();
+			if (key != null)
+				return key;
+		}
+		// Unknown: don't share with anyone else
+		return "@" + System.identityHashCode(base);
+	}
+
+	@Override
+	public String getPage(String uri, Map<String, String> vars,
+			boolean authenticate) throws TwitterException {
+		Shared s = getShared();
+		s.gets.incrementAndGet();
+		String key = getKey(uri, vars, authenticate);
+		Call call = new Call();
+		Call running = s.inFlight.putIfAbsent(key, call);
+		if (running != null) {
+			// piggy-back
+			s.hits.incrementAndGet();
+			return getPage2_wait(running);
+		}
+		// we're the leader
+		boolean ok = false;
+		try {
+			call.page = base.getPage(uri, vars, authenticate);
+			ok = true;
+			return call.page;
+		} catch (RuntimeException ex) {
+			call.error = ex;
+			throw ex;
+		} catch (Error ex) {
+			call.error = ex;
+			throw ex;
+		} finally {
+			if (!ok && call.error == null) {
+				// paranoia: the waiters must not see a null page as success
+				call.error = new TwitterException("Coalesced request failed: "
+						+ uri);
+			}
+			// remove first, so late-comers make a fresh request
+			s.inFlight.remove(key, call);
+			call.done.countDown();
+		}
+	}
+
+	private String getPage2_wait(Call running) {
+		try {
+			running.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TwitterException(e);
+		}
+		Throwable error = running.error;
+		if (error == null)
+			return running.page;
+		// TwitterExceptions are RuntimeExceptions
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		TwitterException ex = new TwitterException("Coalesced request failed: "
+				+ error);
+		ex.initCause(error);
+		throw ex;
+	}
+
+	@Override
+	public RateLimit getRateLimit(KRequestType reqType) {
+		return base.getRateLimit(reqType);
+	}
+
+	private synchronized Shared getShared() {
+		// null after de-serialisation
+		if (shared == null) {
+			shared = new Shared();
+		}
+		return shared;
+	}
+
+	/**
+	 * Never merged.
+	 */
+	@Override
+	public String post(String uri, Map<String, String> vars,
+			boolean authenticate) throws TwitterException {
+		return base.post(uri, vars, authenticate);
+	}
+
+	@Override
+	public HttpURLConnection post2_connect(String uri, Map<String, String> vars)
+			throws Exception {
+		return base.post2_connect(uri, vars);
+	}
+
+	@Override
+	public void setTimeout(int millisecs) {
+		base.setTimeout(millisecs);
+	}
+
+	@Override
+	public String toString() {
+		return "CoalescingHttpClient[" + base + "]";
+	}
+
+}
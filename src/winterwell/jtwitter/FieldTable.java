@@ -0,0 +1,72 @@
+package winterwell.jtwitter;
+
+/**
+ * Maps json keys to enum constants, so a decoder can <code>switch</code> on
+ * the field instead of running down a chain of <code>equals()</code> tests.
+ * Each constant's name is its key -- except that a trailing '_' is dropped,
+ * for keys which are Java keywords (e.g. <code>protected_</code>).
+ * <p>
+ * Keys from the parser are usually interned (see
+ * {@link winterwell.json.JSONSymbols}), as are enum names, so a lookup is
+ * normally one hash probe and one == test. Thread safe once built.
+ *
+ * @author daniel
+ */
+final class FieldTable<E extends Enum<E>> {
+
+	private final String[] keys;
+
+	private final int mask;
+
+	private final E[] values;
+
+	/**
+	 * @param type
+	 *            the enum whose constants are the fields
+	 */
+	@SuppressWarnings("unchecked")
+	FieldTable(Class<E> type) {
+		E[] fields = type.getEnumConstants();
+		// at most half full
+		int size = Integer.highestOneBit(Math.max(fields.length, 1) * 4 - 1);
+		keys = new String[size];
+		values = (E[]) java.lang.reflect.Array.newInstance(type, size);
+		mask = size - 1;
+		for (E f : fields) {
+			String key = f.name();
+			if (key.endsWith("_")) {
+				key = key.substring(0, key.length() - 1).intern();
+			}
+			int i = spread(key.hashCode()) & mask;
+			while (keys[i] != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = f;
+		}
+	}
+
+	/**
+	 * @param key
+	 *            can be null
+	 * @return the field, or null if the key is not one of ours
+	 */
+	E get(String key) {
+		if (key == null)
+			return null;
+		int i = spread(key.hashCode()) & mask;
+		while (true) {
+			String k = keys[i];
+			if (k == null)
+				return null;
+			if (k == key || k.equals(key))
+				return values[i];
+			i = (i + 1) & mask;
+		}
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -10,7 +10,6 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLEncoder;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -34,6 +33,9 @@ import com.winterwell.jgeoplanet.IPlace;
 
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONSymbols;
+import winterwell.json.JSONTokener;
 import winterwell.utils.web.WebUtilsTest;
 
 /**
@@ -92,10 +94,15 @@ public class InternalUtils {
 
 	/**
 	 * The date format used by Marko from Marakana. This is needed for *some*
-	 * installs of Status.Net, though not for Identi.ca.
+	 * installs of Status.Net, though not for Identi.ca. One per thread, as
+	 * SimpleDateFormat is not thread safe.
 	 */
-	static final DateFormat dfMarko = new SimpleDateFormat(
-			"EEE MMM dd HH:mm:ss ZZZZZ yyyy");
+	private static final ThreadLocal<DateFormat> dfMarko = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			return new SimpleDateFormat("EEE MMM dd HH:mm:ss ZZZZZ yyyy");
+		}
+	};
 
 	/**
 	 * Matches latitude, longitude, including with the UberTwitter UT: prefix
@@ -110,7 +117,9 @@ public class InternalUtils {
 	static final Comparator<Status> NEWEST_FIRST = new Comparator<Status>() {
 		@Override
 		public int compare(Status o1, Status o2) {
-			return -o1.id.compareTo(o2.id);
+			// not o2.id - o1.id, which can overflow
+			long id1 = o1.getIdLong(), id2 = o2.getIdLong();
+			return id1 < id2 ? 1 : (id1 == id2 ? 0 : -1);
 		}
 	};
 
@@ -192,15 +201,113 @@ public class InternalUtils {
 		}
 	}
 
+	/**
+	 * RFC 3986 percent-encoding (UTF-8). Spaces become %20, not +.
+	 * 
+	 * @param x
+	 *            Converted via String.valueOf()
+	 * @see #encode(String, StringBuilder)
+	 */
 	static String encode(Object x) {
-		String encd;
-		try {
-			encd = URLEncoder.encode(String.valueOf(x), "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			// This shouldn't happen as UTF-8 is standard
-			encd = URLEncoder.encode(String.valueOf(x));
+		String s = String.valueOf(x);
+		// fast path: nothing to encode
+		int i = 0, n = s.length();
+		while (i < n && isUnreserved(s.charAt(i))) {
+			i++;
 		}
-		return encd.replace("+", "%20");
+		if (i == n)
+			return s;
+		StringBuilder sb = new StringBuilder(n + 16);
+		sb.append(s, 0, i);
+		encode2(s, i, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * RFC 3986 percent-encoding (UTF-8), written straight into a buffer. Only
+	 * A-Z a-z 0-9 - . _ ~ are left as-is. This is used for GET urls, POST
+	 * bodies and OAuth signature base strings.
+	 * 
+	 * @param s
+	 * @param out
+	 *            The encoded text is appended to this.
+	 */
+	static void encode(String s, StringBuilder out) {
+		encode2(s, 0, out);
+	}
+
+	private static void encode2(String s, int start, StringBuilder out) {
+		for (int i = start, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			if (isUnreserved(c)) {
+				out.append(c);
+				continue;
+			}
+			// UTF-8 encode
+			int cp = c;
+			if (Character.isHighSurrogate(c) && i + 1 < n
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				cp = Character.toCodePoint(c, s.charAt(i + 1));
+				i++;
+			}
+			if (cp < 0x80) {
+				encodeByte(cp, out);
+			} else if (cp < 0x800) {
+				encodeByte(0xC0 | (cp >> 6), out);
+				encodeByte(0x80 | (cp & 0x3F), out);
+			} else if (cp < 0x10000) {
+				encodeByte(0xE0 | (cp >> 12), out);
+				encodeByte(0x80 | ((cp >> 6) & 0x3F), out);
+				encodeByte(0x80 | (cp & 0x3F), out);
+			} else {
+				encodeByte(0xF0 | (cp >> 18), out);
+				encodeByte(0x80 | ((cp >> 12) & 0x3F), out);
+				encodeByte(0x80 | ((cp >> 6) & 0x3F), out);
+				encodeByte(0x80 | (cp & 0x3F), out);
+			}
+		}
+	}
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private static void encodeByte(int b, StringBuilder out) {
+		out.append('%');
+		out.append(HEX[(b >> 4) & 0xF]);
+		out.append(HEX[b & 0xF]);
+	}
+
+	private static boolean isUnreserved(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_'
+				|| c == '~';
+	}
+
+	/**
+	 * Append key=value pairs, percent-encoded, to a url query or form body.
+	 * Null values are skipped.
+	 * 
+	 * @param vars
+	 *            Can be null
+	 * @param out
+	 * @return true if anything was added
+	 */
+	static boolean encodeVars(Map<String, String> vars, StringBuilder out) {
+		if (vars == null)
+			return false;
+		boolean first = true;
+		for (Map.Entry<String, String> e : vars.entrySet()) {
+			if (e.getValue() == null) {
+				continue;
+			}
+			if (!first) {
+				out.append('&');
+			}
+			encode(e.getKey(), out);
+			out.append('=');
+			encode(e.getValue(), out);
+			first = false;
+		}
+		return !first;
 	}
 
 	/**
@@ -308,8 +415,151 @@ public class InternalUtils {
 		return s;
 	}
 
+	/**
+	 * Read an id. The number is used if there is one -- JSONObject keeps it
+	 * as an exact long -- otherwise the key+"_str" version.
+	 * 
+	 * @return 0 if there is no id (Twitter never use 0)
+	 */
+	static long jsonGetId(String key, JSONObject jsonObj) {
+		Object val = jsonObj.opt(key);
+		if (val instanceof Long || val instanceof Integer) {
+			return ((Number) val).longValue();
+		}
+		String s = jsonGet(key + "_str", jsonObj);
+		if (s == null || s.length() == 0) {
+			s = val == null || JSONObject.NULL.equals(val) ? null : val
+					.toString();
+		}
+		return s == null ? 0 : Long.parseLong(s);
+	}
+
+	/**
+	 * Read the next value as an id. Numbers are read as a long, without
+	 * going via a String.
+	 * 
+	 * @return 0 if there is no id (Twitter never use 0)
+	 */
+	static long jsonGetId(JSONReader r) throws JSONException {
+		r.next();
+		r.skipChildren();
+		switch (r.getToken()) {
+		case VALUE_NUMBER:
+			return r.getLong();
+		case VALUE_STRING:
+			String s = r.getString();
+			return s.length() == 0 ? 0 : Long.parseLong(s);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Read the next value as an "id_str" fallback. The number is exact, so
+	 * if we already have the id, the string is skipped.
+	 * 
+	 * @param id
+	 *            The id read so far, or 0
+	 * @return id if set, else the id read from r
+	 */
+	static long jsonGetIdStr(JSONReader r, long id) throws JSONException {
+		if (id != 0) {
+			r.skipValue();
+			return id;
+		}
+		return jsonGetId(r);
+	}
+
+	/**
+	 * @param json
+	 * @return a tokener which shares key and common value Strings via
+	 *         {@link JSONSymbols#TWITTER}
+	 */
+	static JSONTokener jsonTokener(String json) {
+		JSONTokener x = new JSONTokener(json);
+		x.setSymbols(JSONSymbols.TWITTER);
+		return x;
+	}
+
+	/**
+	 * {@link #jsonGet(String, JSONObject)} for a {@link JSONReader}: reads the
+	 * next value.
+	 * 
+	 * @return the value as a String, or null for JSON null. Objects and arrays
+	 *         are skipped and give null.
+	 */
+	static String jsonGet(JSONReader r) throws JSONException {
+		r.next();
+		r.skipChildren();
+		return r.getString();
+	}
+
+	/**
+	 * Read the next value with {@link JSONObject#optBoolean(String)} rules.
+	 */
+	static boolean jsonGetBoolean(JSONReader r) throws JSONException {
+		r.next();
+		r.skipChildren();
+		return r.isTrue();
+	}
+
+	/**
+	 * Read the next value with {@link JSONObject#optInt(String, int)} rules.
+	 */
+	static int jsonGetInt(JSONReader r, int dflt) throws JSONException {
+		r.next();
+		r.skipChildren();
+		try {
+			switch (r.getToken()) {
+			case VALUE_NUMBER:
+				return r.getInt();
+			case VALUE_STRING:
+				return (int) Double.parseDouble(r.getString());
+			default:
+				return dflt;
+			}
+		} catch (NumberFormatException e) {
+			return dflt;
+		}
+	}
+
+	/**
+	 * {@link #getOptBoolean(JSONObject, String)} for a {@link JSONReader}.
+	 */
+	static Boolean jsonGetOptBoolean(JSONReader r) throws JSONException {
+		r.next();
+		r.skipChildren();
+		switch (r.getToken()) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_TRUE:
+			return true;
+		case VALUE_FALSE:
+			return false;
+		case VALUE_STRING:
+			String s = r.getString();
+			if (s.equalsIgnoreCase("false")) return false;
+			if (s.equalsIgnoreCase("true")) return true;
+		}
+		throw r.syntaxError(r.getString() + " is not boolean");
+	}
+
+	/**
+	 * Thread safe.
+	 * 
+	 * @param c
+	 *            Usually Twitter's format, e.g.
+	 *            "Wed Aug 27 13:08:45 +0000 2008" (which is handled by a fast
+	 *            path). Also milliseconds since the epoch, or anything else
+	 *            which {@link Date#Date(String)} can handle (e.g. search's
+	 *            "Wed, 27 Aug 2008 13:08:45 +0000").
+	 * @throws TwitterException.Parsing
+	 */
 	static Date parseDate(String c) {
-		if (InternalUtils.REGEX_JUST_DIGITS.matcher(c).matches())
+		long t = parseDate(c, 0, c.length());
+		if (t != NOT_A_DATE)
+			return new Date(t);
+		if (parseDate2_isDigits(c))
 			return new Date(Long.valueOf(c));
 		try {
 			Date _createdAt = new Date(c);
@@ -317,14 +567,163 @@ public class InternalUtils {
 		} catch (Exception e) { // Bug reported by Marakana with *some*
 								// Status.Net sites
 			try {
-				Date _createdAt = InternalUtils.dfMarko.parse(c);
-				return _createdAt;
+				return dfMarko.get().parse(c);
 			} catch (ParseException e1) {
 				throw new TwitterException.Parsing(c, e1);
 			}
 		}
 	}
 
+	/**
+	 * Returned by {@link #parseDate(CharSequence, int, int)} for "not in
+	 * Twitter's format".
+	 */
+	static final long NOT_A_DATE = Long.MIN_VALUE;
+
+	/**
+	 * Fast path for Twitter's date format, "EEE MMM dd HH:mm:ss Z yyyy", e.g.
+	 * "Wed Aug 27 13:08:45 +0000 2008". Done by hand, as
+	 * {@link Date#Date(String)} and SimpleDateFormat are slow, and the latter
+	 * is not thread safe. This does not allocate.
+	 * 
+	 * @param s
+	 * @param from
+	 * @param to
+	 * @return milliseconds since the epoch, or {@link #NOT_A_DATE} if
+	 *         s[from, to) is not in Twitter's format
+	 */
+	static long parseDate(CharSequence s, int from, int to) {
+		if (to - from != 30)
+			return NOT_A_DATE;
+		// punctuation
+		if (s.charAt(from + 3) != ' ' || s.charAt(from + 7) != ' '
+				|| s.charAt(from + 10) != ' ' || s.charAt(from + 13) != ':'
+				|| s.charAt(from + 16) != ':' || s.charAt(from + 19) != ' '
+				|| s.charAt(from + 25) != ' ')
+			return NOT_A_DATE;
+		// the day name is redundant, but check it's a word
+		for (int i = from; i < from + 3; i++) {
+			if (!Character.isLetter(s.charAt(i)))
+				return NOT_A_DATE;
+		}
+		int month = parseDate2_month(s, from + 4);
+		int day = parseDate2_digits(s, from + 8, 2);
+		int hour = parseDate2_digits(s, from + 11, 2);
+		int min = parseDate2_digits(s, from + 14, 2);
+		int sec = parseDate2_digits(s, from + 17, 2);
+		int offset = parseDate2_digits(s, from + 21, 4);
+		int year = parseDate2_digits(s, from + 26, 4);
+		char sign = s.charAt(from + 20);
+		if (month < 0 || day < 1 || day > 31 || hour < 0 || hour > 23
+				|| min < 0 || min > 59 || sec < 0 || sec > 59 || offset < 0
+				|| offset % 100 > 59 || year < 0
+				|| (sign != '+' && sign != '-'))
+			return NOT_A_DATE;
+		int offsetMins = (offset / 100) * 60 + offset % 100;
+		if (sign == '-') {
+			offsetMins = -offsetMins;
+		}
+		// days since the epoch from a civil date (after Howard Hinnant)
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		long days = era * 146097L + doe - 719468;
+		long mins = (days * 24 + hour) * 60 + min - offsetMins;
+		return (mins * 60 + sec) * 1000;
+	}
+
+	/**
+	 * @return n digits as a number, or -1 if they aren't all digits
+	 */
+	private static int parseDate2_digits(CharSequence s, int i, int n) {
+		int v = 0;
+		for (int end = i + n; i < end; i++) {
+			int d = s.charAt(i) - '0';
+			if (d < 0 || d > 9)
+				return -1;
+			v = v * 10 + d;
+		}
+		return v;
+	}
+
+	private static boolean parseDate2_isDigits(String s) {
+		int n = s.length();
+		if (n == 0)
+			return false;
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return 1 to 12, or -1
+	 */
+	private static int parseDate2_month(CharSequence s, int i) {
+		char a = s.charAt(i), b = s.charAt(i + 1), c = s.charAt(i + 2);
+		for (int m = 0; m < 12; m++) {
+			String name = MONTHS[m];
+			if (name.charAt(0) == a && name.charAt(1) == b
+					&& name.charAt(2) == c)
+				return m + 1;
+		}
+		return -1;
+	}
+
+	/** 1st Jan 1970 was a Thursday */
+	private static final String[] DAYS = { "Thu", "Fri", "Sat", "Sun", "Mon",
+			"Tue", "Wed" };
+
+	private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr",
+			"May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	/**
+	 * Format a date the way Twitter do, e.g.
+	 * "Wed Aug 27 13:08:45 +0000 2008" (always in UTC). This can be read back
+	 * by {@link #parseDate(String)}.
+	 * <p>
+	 * Done by hand, as SimpleDateFormat is slow and not thread safe.
+	 */
+	static String formatDate(Date date) {
+		long t = date.getTime();
+		long days = t / 86400000L;
+		int ms = (int) (t % 86400000L);
+		if (ms < 0) {
+			days--;
+			ms += 86400000;
+		}
+		// civil date from days since the epoch (after Howard Hinnant)
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long y = yoe + era * 400;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int d = doy - (153 * mp + 2) / 5 + 1;
+		int m = mp < 10 ? mp + 3 : mp - 9;
+		if (m <= 2) {
+			y++;
+		}
+		int secs = ms / 1000;
+		StringBuilder sb = new StringBuilder(30);
+		sb.append(DAYS[(int) (((days % 7) + 7) % 7)]).append(' ')
+				.append(MONTHS[m - 1]).append(' ');
+		formatDate2(d, sb).append(' ');
+		formatDate2(secs / 3600, sb).append(':');
+		formatDate2(secs / 60 % 60, sb).append(':');
+		formatDate2(secs % 60, sb).append(" +0000 ").append(y);
+		return sb.toString();
+	}
+
+	private static StringBuilder formatDate2(int n, StringBuilder sb) {
+		return sb.append((char) ('0' + n / 10)).append((char) ('0' + n % 10));
+	}
+
 	/**
 	 * @param on
 	 *            true to activate {@link #getAPIUsageStats()}. false to switch
@@ -367,12 +766,13 @@ public class InternalUtils {
 			reader = reader instanceof BufferedReader ? (BufferedReader) reader
 					: new BufferedReader(reader);
 			StringBuilder output = new StringBuilder();
+			char[] cbuf = new char[4096];
 			while (true) {
-				int c = reader.read();
-				if (c == -1) {
+				int n = reader.read(cbuf);
+				if (n == -1) {
 					break;
 				}
-				output.append((char) c);
+				output.append(cbuf, 0, n);
 			}
 			return output.toString();
 		} catch (IOException ex) {
@@ -382,31 +782,200 @@ public class InternalUtils {
 		}
 	}
 
+	/**
+	 * The reverse of {@link #unencode(String)}, as far as Twitter go: encodes
+	 * &amp;, &lt; and &gt; (but not quotes).
+	 * 
+	 * @param text
+	 *            Can be null (which returns null)
+	 * @return text as Twitter would send it. The same object if there was
+	 *         nothing to encode.
+	 */
+	static String encodeEntities(String text) {
+		if (text == null)
+			return null;
+		int i = 0, n = text.length();
+		for (; i < n; i++) {
+			char c = text.charAt(i);
+			if (c == '&' || c == '<' || c == '>')
+				break;
+		}
+		if (i == n)
+			return text;
+		StringBuilder sb = new StringBuilder(n + 16);
+		sb.append(text, 0, i);
+		for (; i < n; i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Twitter html encodes some entities: ", ', <, >, &
+	 * <p>
+	 * Decodes those, &amp;nbsp; and numeric entities (e.g. &amp;#39; or
+	 * &amp;#x27;) in one pass. Unknown entities are left as they are. Text
+	 * without a '&amp;' (the usual case) is returned as is.
 	 * 
 	 * @param text
 	 *            Can be null (which returns null)
 	 * @return normal-ish text
+	 * @see #unencodedIndex(String, int)
 	 */
 	static String unencode(String text) {
 		if (text == null)
 			return null;
-		// TODO use Jakarta to handle all html entities?
-		text = text.replace("&quot;", "\"");
-		text = text.replace("&apos;", "'");
-		text = text.replace("&nbsp;", " ");
-		text = text.replace("&amp;", "&");
-		text = text.replace("&gt;", ">");
-		text = text.replace("&lt;", "<");
-		// zero-byte chars are a rare but annoying occurrence
-		if (text.indexOf(0) != -1) {
-			text = text.replace((char) 0, ' ').trim();
-		}
-		// if (Pattern.compile("&\\w+;").matcher(text).find()) {
-		// System.out.print(text);
-		// }
-		return text;
+		int n = text.length();
+		int i = 0;
+		while (i < n) {
+			char c = text.charAt(i);
+			if (c == '&' || c == 0) {
+				break;
+			}
+			i++;
+		}
+		if (i == n)
+			return text;
+		StringBuilder sb = new StringBuilder(n);
+		sb.append(text, 0, i);
+		boolean zero = false;
+		while (i < n) {
+			char c = text.charAt(i);
+			if (c == '&') {
+				int end = unencode2_end(text, i);
+				int cp = end == -1 ? -1 : unencode2_value(text, i + 1, end);
+				if (cp != -1) {
+					sb.appendCodePoint(cp);
+					i = end + 1;
+					continue;
+				}
+			} else if (c == 0) {
+				// zero-byte chars are a rare but annoying occurrence
+				c = ' ';
+				zero = true;
+			}
+			sb.append(c);
+			i++;
+		}
+		String s = sb.toString();
+		return zero ? s.trim() : s;
+	}
+
+	/**
+	 * @param text
+	 * @param amp
+	 *            index of a '&amp;'
+	 * @return the index of the ';' which ends the entity, or -1
+	 */
+	private static int unencode2_end(String text, int amp) {
+		// the longest we decode is &#x10FFFF;
+		int max = Math.min(text.length(), amp + 10);
+		for (int i = amp + 1; i < max; i++) {
+			char c = text.charAt(i);
+			if (c == ';')
+				return i > amp + 1 ? i : -1;
+			if (!Character.isLetterOrDigit(c) && c != '#')
+				return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param text
+	 * @param from
+	 *            start of the entity name, after the '&amp;'
+	 * @param to
+	 *            the ';'
+	 * @return the code point, or -1 if this isn't an entity we decode
+	 */
+	private static int unencode2_value(String text, int from, int to) {
+		int len = to - from;
+		if (text.charAt(from) == '#') {
+			int radix = 10;
+			from++;
+			if (from < to && (text.charAt(from) == 'x' || text.charAt(from) == 'X')) {
+				radix = 16;
+				from++;
+			}
+			if (from == to)
+				return -1;
+			int cp = 0;
+			for (int i = from; i < to; i++) {
+				int d = Character.digit(text.charAt(i), radix);
+				if (d == -1)
+					return -1;
+				cp = cp * radix + d;
+			}
+			// (at most 7 digits, so no overflow)
+			if (cp == 0 || cp > Character.MAX_CODE_POINT
+					|| (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+				return -1;
+			return cp;
+		}
+		switch (len) {
+		case 2:
+			if (text.startsWith("lt", from))
+				return '<';
+			if (text.startsWith("gt", from))
+				return '>';
+			return -1;
+		case 3:
+			return text.startsWith("amp", from) ? '&' : -1;
+		case 4:
+			if (text.startsWith("quot", from))
+				return '"';
+			if (text.startsWith("apos", from))
+				return '\'';
+			if (text.startsWith("nbsp", from))
+				return ' ';
+			return -1;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Map an index in html-encoded text (e.g. a tweet entity's indices, as
+	 * Twitter send them) to the same place in the {@link #unencode(String)}d
+	 * text. Just arithmetic: nothing is built.
+	 * <p>
+	 * Note: doesn't allow for the trimming which unencode does if there are
+	 * zero-byte chars.
+	 * 
+	 * @param encoded
+	 * @param index
+	 *            An index into encoded. If this is inside an entity, the
+	 *            result is the entity's (decoded) start.
+	 * @return the index in unencode(encoded)
+	 */
+	static int unencodedIndex(String encoded, int index) {
+		int shift = 0;
+		for (int i = encoded.indexOf('&'); i != -1 && i < index; i = encoded
+				.indexOf('&', i + 1)) {
+			int end = unencode2_end(encoded, i);
+			int cp = end == -1 ? -1 : unencode2_value(encoded, i + 1, end);
+			if (cp == -1) {
+				continue;
+			}
+			if (end >= index)
+				return i - shift;
+			shift += end + 1 - i - Character.charCount(cp);
+			i = end;
+		}
+		return index - shift;
 	}
 
 	/**
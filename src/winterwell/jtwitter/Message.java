@@ -1,5 +1,6 @@
 package winterwell.jtwitter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -10,6 +11,7 @@ import java.util.List;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONWriter;
 import winterwell.jtwitter.Twitter.ITweet;
 import winterwell.jtwitter.Twitter.KEntityType;
 import winterwell.jtwitter.Twitter.TweetEntity;
@@ -114,6 +116,29 @@ public final class Message implements ITweet {
 		}
 	}
 
+	/**
+	 * Read a message written by {@link #writeBinary(BinaryWriter)}.
+	 */
+	Message(BinaryReader in) throws IOException {
+		long _id = in.readVarLong();
+		id = _id == 0 ? null : _id - 1;
+		long irt = in.readVarLong();
+		inReplyToMessageId = irt == 0 ? null : irt - 1;
+		createdAt = in.readDate(true);
+		text = in.readString();
+		sender = new User(in, null);
+		recipient = in.readInt() == 0 ? null : new User(in, null);
+		if (in.readInt() != 0) {
+			entities = TweetEntity.readBinary(in, this);
+		}
+		if (in.readInt() != 0) {
+			place = new Place(in);
+			location = place.toString();
+		} else {
+			location = in.readSymbol();
+		}
+	}
+
 	/**
 	 * Tests by class=Message and tweet id number
 	 */
@@ -201,4 +226,73 @@ public final class Message implements ITweet {
 		return text;
 	}
 
+	/**
+	 * Write this message as json, in Twitter's format (only the fields which
+	 * JTwitter reads). Fields go straight to the writer.
+	 * 
+	 * @param w
+	 * @throws JSONException
+	 *             (wrapping an IOException) if the writer fails
+	 * @see NDJSONWriter
+	 */
+	public void writeJSON(JSONWriter w) throws JSONException {
+		w.object();
+		w.key("id").value(id.longValue());
+		w.key("id_str").value(id.toString());
+		w.key("text").value(InternalUtils.encodeEntities(text));
+		if (createdAt != null) {
+			w.key("created_at").value(InternalUtils.formatDate(createdAt));
+		}
+		w.key("sender");
+		sender.writeJSON(w);
+		if (recipient != null) {
+			w.key("recipient");
+			recipient.writeJSON(w);
+		}
+		if (entities != null) {
+			w.key("entities");
+			TweetEntity.writeJSON(w, entities);
+		}
+		if (place != null) {
+			w.key("place");
+			place.writeJSON(w);
+		} else if (location != null) {
+			w.key("location").value(location);
+		}
+		w.endObject();
+	}
+
+	/**
+	 * Write this message in {@link BinaryWriter}'s format. Read it back with
+	 * {@link #Message(BinaryReader)}.
+	 */
+	void writeBinary(BinaryWriter out) {
+		// ids are 0 for null, else id + 1
+		out.writeVarLong(id == null ? 0 : id + 1);
+		out.writeVarLong(inReplyToMessageId == null ? 0 : inReplyToMessageId
+				.longValue() + 1);
+		out.writeDate(createdAt, true);
+		out.writeString(text);
+		sender.writeBinary(out, true);
+		if (recipient == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(1);
+			recipient.writeBinary(out, true);
+		}
+		if (entities == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(1);
+			TweetEntity.writeBinary(out, entities);
+		}
+		if (place == null) {
+			out.writeInt(0);
+			out.writeSymbol(location);
+		} else {
+			out.writeInt(1);
+			place.writeBinary(out);
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package winterwell.jtwitter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+import winterwell.json.JSONException;
+import winterwell.json.JSONWriter;
+
+/**
+ * Bulk export: writes tweets, users, etc. as newline-delimited json (aka
+ * NDJSON or JSON Lines) -- one object per line, in Twitter's own format. Each
+ * object is streamed straight to the output via its <code>writeJSON()</code>
+ * method, so no intermediate JSONObjects or Strings are built.
+ * <p>
+ * Since the format is Twitter's, each line can be parsed just like a message
+ * from the API (or the streaming API).
+ * <p>
+ * Not thread safe.
+ *
+ * @author daniel
+ * @testedby {@link NDJSONWriterTest}
+ */
+public class NDJSONWriter implements Closeable, Flushable {
+
+	private long count;
+
+	private final Writer out;
+
+	/**
+	 * @param out
+	 *            Will be UTF-8 encoded, with a buffer.
+	 */
+	public NDJSONWriter(OutputStream out) {
+		this(utf8(out));
+	}
+
+	/**
+	 * @param out
+	 *            Use a buffered writer! (this does lots of small writes)
+	 */
+	public NDJSONWriter(Writer out) {
+		assert out != null;
+		this.out = out;
+	}
+
+	private static Writer utf8(OutputStream out) {
+		try {
+			return new BufferedWriter(new OutputStreamWriter(out, "UTF-8"),
+					64 * 1024);
+		} catch (UnsupportedEncodingException e) {
+			throw new TwitterException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * @return the number of lines written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Each line gets its own JSONWriter (they can only write one json text).
+	 */
+	private JSONWriter start() {
+		return new JSONWriter(out);
+	}
+
+	private void end() {
+		try {
+			out.write('\n');
+		} catch (IOException e) {
+			throw new TwitterException.IO(e);
+		}
+		count++;
+	}
+
+	private static TwitterException wrap(JSONException e) {
+		if (e.getCause() instanceof IOException)
+			return new TwitterException.IO((IOException) e.getCause());
+		return new TwitterException.Parsing(null, e);
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Message message) throws TwitterException {
+		try {
+			message.writeJSON(start());
+		} catch (JSONException e) {
+			throw wrap(e);
+		}
+		end();
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Place place) throws TwitterException {
+		try {
+			place.writeJSON(start());
+		} catch (JSONException e) {
+			throw wrap(e);
+		}
+		end();
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(Status status) throws TwitterException {
+		try {
+			status.writeJSON(start());
+		} catch (JSONException e) {
+			throw wrap(e);
+		}
+		end();
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(TwitterEvent event) throws TwitterException {
+		try {
+			event.writeJSON(start());
+		} catch (JSONException e) {
+			throw wrap(e);
+		}
+		end();
+	}
+
+	/**
+	 * @throws TwitterException.IO
+	 *             if the output fails
+	 */
+	public void write(User user) throws TwitterException {
+		try {
+			user.writeJSON(start());
+		} catch (JSONException e) {
+			throw wrap(e);
+		}
+		end();
+	}
+
+	@Override
+	public String toString() {
+		return "NDJSONWriter[" + count + " lines]";
+	}
+}
@@ -5,7 +5,6 @@ import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLEncoder;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -101,11 +100,6 @@ public class OAuthScribeClient implements IHttpClient {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
-	private static String encode(Object x) {
-		return URLEncoder.encode(String.valueOf(x));
-	}
-
 	private Token accessToken;
 
 	private String callbackUrl;
@@ -115,8 +109,7 @@ public class OAuthScribeClient implements IHttpClient {
 	private final Map<KRequestType, RateLimit> rateLimits = new EnumMap(
 			KRequestType.class);
 	private Token requestToken;
-	private boolean retryingFlag;
-	private boolean retryOnError;
+	private RetryPolicy retryPolicy;
 	private Scribe scribe;
 	// TODO use this!
 	private int timeout;
@@ -224,7 +217,7 @@ public class OAuthScribeClient implements IHttpClient {
 				consumerSecret, accessToken);
 		c.callbackUrl = callbackUrl;
 		c.setTimeout(timeout);
-		c.setRetryOnError(retryOnError);
+		c.setRetryPolicy(retryPolicy);
 		return c;
 	}
 
@@ -247,38 +240,39 @@ public class OAuthScribeClient implements IHttpClient {
 	@Override
 	public String getPage(String uri, Map<String, String> vars,
 			boolean authenticate) throws TwitterException {
-		try {
-			assert canAuthenticate();
-			if (vars != null && vars.size() != 0) {
-				uri += "?";
-				for (Entry<String, String> e : vars.entrySet()) {
-					if (e.getValue() == null) {
-						continue;
-					}
-					uri += encode(e.getKey()) + "=" + encode(e.getValue())
-							+ "&";
-				}
-			}
-			Request request = new Request(Verb.GET, uri);
-			// request.setTimeout(timeout);
-			scribe.signRequest(request, accessToken);
-			Response response = request.send();
-			processError(response);
-			return response.getBody();
-
-			// retry on error?
-		} catch (TwitterException.E50X e) {
-			if (!retryOnError || retryingFlag)
-				throw e;
-			try {
-				retryingFlag = true;
-				Thread.sleep(1000);
-				return getPage(uri, vars, authenticate);
-			} catch (InterruptedException ex) {
-				throw new TwitterException(ex);
-			} finally {
-				retryingFlag = false;
+		assert canAuthenticate();
+		if (vars != null && vars.size() != 0) {
+			StringBuilder sb = new StringBuilder(uri);
+			sb.append('?');
+			InternalUtils.encodeVars(vars, sb);
+			uri = sb.toString();
+		}
+		final String url = uri;
+		return send(new RetryPolicy.IRequest() {
+			@Override
+			public String run() throws Exception {
+				Request request = new Request(Verb.GET, url);
+				// request.setTimeout(timeout);
+				scribe.signRequest(request, accessToken);
+				Response response = request.send();
+				processError(response);
+				return response.getBody();
 			}
+		}, true);
+	}
+
+	/**
+	 * Run the request, with retries if a {@link RetryPolicy} is set.
+	 */
+	private String send(RetryPolicy.IRequest req, boolean idempotent) {
+		try {
+			if (retryPolicy == null)
+				return req.run();
+			return retryPolicy.execute(req, idempotent);
+		} catch (TwitterException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new TwitterException(e);
 		}
 	}
 
@@ -312,40 +306,28 @@ public class OAuthScribeClient implements IHttpClient {
 	}
 
 	@Override
-	public String post(String uri, Map<String, String> vars,
+	public String post(final String uri, final Map<String, String> vars,
 			boolean authenticate) throws TwitterException {
-		try {
-
-			assert canAuthenticate();
-			Request request = new Request(Verb.POST, uri);
-			if (vars != null && vars.size() != 0) {
-				for (Entry<String, String> e : vars.entrySet()) {
-					if (e.getValue() == null) {
-						continue;
+		assert canAuthenticate();
+		return send(new RetryPolicy.IRequest() {
+			@Override
+			public String run() throws Exception {
+				Request request = new Request(Verb.POST, uri);
+				if (vars != null && vars.size() != 0) {
+					for (Entry<String, String> e : vars.entrySet()) {
+						if (e.getValue() == null) {
+							continue;
+						}
+						request.addBodyParameter(e.getKey(), e.getValue());
 					}
-					request.addBodyParameter(e.getKey(), e.getValue());
 				}
+				// request.setTimeout(timeout);
+				scribe.signRequest(request, accessToken);
+				Response response = request.send();
+				processError(response);
+				return response.getBody();
 			}
-			// request.setTimeout(timeout);
-			scribe.signRequest(request, accessToken);
-			Response response = request.send();
-			processError(response);
-			return response.getBody();
-
-			// retry on error?
-		} catch (TwitterException.E50X e) {
-			if (!retryOnError || retryingFlag)
-				throw e;
-			try {
-				retryingFlag = true;
-				Thread.sleep(1000);
-				return getPage(uri, vars, authenticate);
-			} catch (InterruptedException ex) {
-				throw new TwitterException(ex);
-			} finally {
-				retryingFlag = false;
-			}
-		}
+		}, false);
 	}
 
 	@Override
@@ -410,10 +392,21 @@ public class OAuthScribeClient implements IHttpClient {
 	/**
 	 * False by default. Setting this to true switches on a robustness
 	 * workaround: when presented with a 50X server error, the system will wait
-	 * 1 second and make a second attempt. This is NOT thread safe.
+	 * 1/2 a second and make a second attempt.
+	 * <p>
+	 * This is a convenience for {@link #setRetryPolicy(RetryPolicy)} with
+	 * {@link RetryPolicy#simple()}.
 	 */
 	public void setRetryOnError(boolean retryOnError) {
-		this.retryOnError = retryOnError;
+		this.retryPolicy = retryOnError ? RetryPolicy.simple() : null;
+	}
+
+	/**
+	 * @param retryPolicy
+	 *            Can be null for no retries (the default).
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
 	}
 
 	/**
@@ -0,0 +1,228 @@
+package winterwell.jtwitter;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import winterwell.jtwitter.guts.Base64Encoder;
+
+/**
+ * Native OAuth 1.0a HMAC-SHA1 signing, used by {@link OAuthSignpostClient} for
+ * every authenticated request. Signpost is still used for the token dance
+ * (request token, authorise, access token) -- but that only happens once per
+ * user, whereas signing happens for every call.
+ * <p>
+ * Why not just use Signpost? It wraps each request, copies and sorts its
+ * parameters via several maps, and creates a new Mac each time. This keeps the
+ * keyed Mac for the consumer/token pair, and builds the signature base string
+ * in one buffer.
+ * <p>
+ * Thread safe.
+ *
+ * @author daniel
+ * @testedby {@link OAuthSignerTest}
+ */
+final class OAuthSigner {
+
+	private static final Random nonces = new Random();
+
+	private final String consumerKey;
+
+	/**
+	 * Keyed with consumer-secret & token-secret. Mac is not thread safe, so
+	 * synchronise on it.
+	 */
+	private final Mac mac;
+
+	private final String token;
+
+	/**
+	 * @param consumerKey
+	 * @param consumerSecret
+	 * @param token
+	 *            Can be null
+	 * @param tokenSecret
+	 *            Can be null
+	 */
+	OAuthSigner(String consumerKey, String consumerSecret, String token,
+			String tokenSecret) {
+		assert consumerKey != null && consumerSecret != null;
+		this.consumerKey = consumerKey;
+		this.token = token;
+		String key = InternalUtils.encode(consumerSecret) + "&"
+				+ (tokenSecret == null ? "" : InternalUtils.encode(tokenSecret));
+		try {
+			mac = Mac.getInstance("HmacSHA1");
+			mac.init(new SecretKeySpec(key.getBytes("UTF-8"), "HmacSHA1"));
+		} catch (GeneralSecurityException e) {
+			throw new TwitterException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new TwitterException(e);
+		}
+	}
+
+	/**
+	 * @param token
+	 * @return true if this signer uses the given token
+	 */
+	boolean isFor(String token) {
+		return this.token == null ? token == null : this.token.equals(token);
+	}
+
+	/**
+	 * @param method
+	 *            "GET" or "POST"
+	 * @param url
+	 *            Can include a (url-encoded) query string
+	 * @param bodyVars
+	 *            Form parameters for a POST. Can be null. These are NOT encoded.
+	 * @return the value for the Authorization header
+	 */
+	String sign(String method, URL url, Map<String, String> bodyVars) {
+		String nonce = Long.toHexString(nonces.nextLong());
+		long timestamp = System.currentTimeMillis() / 1000;
+		return sign(method, url, bodyVars, nonce, timestamp);
+	}
+
+	String sign(String method, URL url, Map<String, String> bodyVars,
+			String nonce, long timestamp) {
+		// collect the (encoded) parameters
+		String query = url.getQuery();
+		int n = 6 + (bodyVars == null ? 0 : bodyVars.size())
+				+ (query == null ? 0 : (query.length() + 1) / 2);
+		String[] keys = new String[n];
+		String[] vals = new String[n];
+		int cnt = 0;
+		keys[cnt] = "oauth_consumer_key";
+		vals[cnt++] = InternalUtils.encode(consumerKey);
+		keys[cnt] = "oauth_nonce";
+		vals[cnt++] = nonce;
+		keys[cnt] = "oauth_signature_method";
+		vals[cnt++] = "HMAC-SHA1";
+		keys[cnt] = "oauth_timestamp";
+		vals[cnt++] = Long.toString(timestamp);
+		if (token != null) {
+			keys[cnt] = "oauth_token";
+			vals[cnt++] = InternalUtils.encode(token);
+		}
+		keys[cnt] = "oauth_version";
+		vals[cnt++] = "1.0";
+		if (query != null && query.length() != 0) {
+			for (String kv : query.split("&")) {
+				if (kv.length() == 0) {
+					continue;
+				}
+				int eq = kv.indexOf('=');
+				String k = eq == -1 ? kv : kv.substring(0, eq);
+				String v = eq == -1 ? "" : kv.substring(eq + 1);
+				keys[cnt] = InternalUtils.encode(decode(k));
+				vals[cnt++] = InternalUtils.encode(decode(v));
+			}
+		}
+		if (bodyVars != null) {
+			for (Entry<String, String> e : bodyVars.entrySet()) {
+				if (e.getValue() == null) {
+					continue;
+				}
+				keys[cnt] = InternalUtils.encode(e.getKey());
+				vals[cnt++] = InternalUtils.encode(e.getValue());
+			}
+		}
+		sort(keys, vals, cnt);
+
+		// the signature base string
+		StringBuilder base = new StringBuilder(256);
+		base.append(method.toUpperCase());
+		base.append('&');
+		InternalUtils.encode(normaliseUrl(url), base);
+		base.append('&');
+		for (int i = 0; i < cnt; i++) {
+			if (i != 0) {
+				base.append("%26"); // &
+			}
+			InternalUtils.encode(keys[i], base);
+			base.append("%3D"); // =
+			InternalUtils.encode(vals[i], base);
+		}
+		// the base string is pure ascii
+		byte[] bytes = new byte[base.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) base.charAt(i);
+		}
+		byte[] sig;
+		synchronized (mac) {
+			sig = mac.doFinal(bytes);
+		}
+
+		// the header
+		StringBuilder header = new StringBuilder(256);
+		header.append("OAuth ");
+		for (int i = 0; i < cnt; i++) {
+			if (!keys[i].startsWith("oauth_")) {
+				continue;
+			}
+			header.append(keys[i]).append("=\"").append(vals[i]).append("\", ");
+		}
+		header.append("oauth_signature=\"");
+		InternalUtils.encode(Base64Encoder.encode(sig), header);
+		header.append('"');
+		return header.toString();
+	}
+
+	private static String decode(String s) {
+		if (s.indexOf('%') == -1 && s.indexOf('+') == -1)
+			return s;
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new TwitterException(e);
+		}
+	}
+
+	/**
+	 * scheme://host[:port]/path -- lowercase, no default ports, no query.
+	 */
+	private static String normaliseUrl(URL url) {
+		String scheme = url.getProtocol().toLowerCase();
+		int port = url.getPort();
+		StringBuilder sb = new StringBuilder(64);
+		sb.append(scheme).append("://").append(url.getHost().toLowerCase());
+		if (port != -1 && !(port == 80 && "http".equals(scheme))
+				&& !(port == 443 && "https".equals(scheme))) {
+			sb.append(':').append(port);
+		}
+		String path = url.getPath();
+		sb.append(path.length() == 0 ? "/" : path);
+		return sb.toString();
+	}
+
+	/**
+	 * Insertion sort by key, then value. There are rarely more than a dozen
+	 * parameters.
+	 */
+	private static void sort(String[] keys, String[] vals, int n) {
+		for (int i = 1; i < n; i++) {
+			String k = keys[i], v = vals[i];
+			int j = i - 1;
+			while (j >= 0) {
+				int c = keys[j].compareTo(k);
+				if (c < 0 || (c == 0 && vals[j].compareTo(v) <= 0)) {
+					break;
+				}
+				keys[j + 1] = keys[j];
+				vals[j + 1] = vals[j];
+				j--;
+			}
+			keys[j + 1] = k;
+			vals[j + 1] = v;
+		}
+	}
+
+}
@@ -1,10 +1,8 @@
 package winterwell.jtwitter;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.io.StringBufferInputStream;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URI;
@@ -163,6 +161,10 @@ public class OAuthSignpostClient extends URLConnectionHttpClient implements
 	private String consumerKey;
 	private String consumerSecret;
 	private DefaultOAuthProvider provider;
+	/**
+	 * Does the per-request signing. Rebuilt if the token changes.
+	 */
+	private transient OAuthSigner signer;
 
 	/**
 	 * 
@@ -261,7 +263,8 @@ public class OAuthSignpostClient extends URLConnectionHttpClient implements
 					callbackUrl);
 		}
 		c.setTimeout(timeout);
-		c.setRetryOnError(retryOnError);
+		c.setRetryPolicy(retryPolicy);
+		c.setKeepAlive(keepAlive);
 		c.setMinRateLimit(minRateLimit);
 		c.rateLimits.putAll(rateLimits);
 		return c;
@@ -324,18 +327,9 @@ public class OAuthSignpostClient extends URLConnectionHttpClient implements
 		connection.setReadTimeout(timeout);
 		connection.setConnectTimeout(timeout);
 		final String payload = post2_getPayload(vars);
-		// needed for OAuthConsumer.collectBodyParameters() not to get upset
-		HttpURLConnectionRequestAdapter wrapped = new HttpURLConnectionRequestAdapter(
-				connection) {
-			@Override
-			public InputStream getMessagePayload() throws IOException {
-				// SHould we use ByteArrayInputStream instead? With what
-				// encoding?
-				return new StringBufferInputStream(payload);
-			}
-		};
-		// safetyCheck();
-		consumer.sign(wrapped);
+		// sign -- including the body parameters
+		connection.setRequestProperty("Authorization",
+				getSigner().sign("POST", connection.getURL(), vars));
 
 		// add the payload
 		OutputStream os = connection.getOutputStream();
@@ -347,16 +341,27 @@ public class OAuthSignpostClient extends URLConnectionHttpClient implements
 		return connection;
 	}
 
+	/**
+	 * @return a signer for the current consumer & token. 
+	 */
+	private OAuthSigner getSigner() {
+		String token = consumer.getToken();
+		OAuthSigner s = signer;
+		if (s == null || ! s.isFor(token)) {
+			s = new OAuthSigner(consumerKey, consumerSecret, token,
+					consumer.getTokenSecret());
+			signer = s;
+		}
+		return s;
+	}
+
 	@Override
 	protected void setAuthentication(URLConnection connection, String name,
 			String password) {
-		// safetyCheck();
-		try {
-			// sign the request
-			consumer.sign(connection);
-		} catch (OAuthException e) {
-			throw new TwitterException(e);
-		}
+		// sign the request
+		HttpURLConnection hc = (HttpURLConnection) connection;
+		hc.setRequestProperty("Authorization",
+				getSigner().sign(hc.getRequestMethod(), hc.getURL(), null));
 	}
 
 	/**
@@ -0,0 +1,149 @@
+package winterwell.jtwitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import winterwell.json.JSONException;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONTokener;
+
+/**
+ * Decodes the elements of a big json array -- e.g. a 200 tweet timeline, or
+ * a 100 user lookup -- on several threads. A quick structural scan (see
+ * {@link JSONTokener#splitArray()}) finds where each element starts. Then the
+ * elements are decoded in batches on a shared pool of daemon threads, with
+ * the calling thread doing the first batch. Order is preserved.
+ * <p>
+ * Used by {@link Status#getStatuses(String)} and
+ * {@link User#getUsers(String)} for json longer than
+ * {@link Twitter#PARALLEL_PARSE_THRESHOLD}.
+ *
+ * @author daniel
+ */
+abstract class ParallelParser<T> {
+
+	/**
+	 * Batches smaller than this aren't worth handing to another thread.
+	 */
+	private static final int MIN_BATCH = 4;
+
+	private static ExecutorService pool;
+
+	/**
+	 * How many threads to split the work between (the calling thread
+	 * included). Not final, so that tests can try the parallel path on a
+	 * single processor machine.
+	 */
+	static int threads = Runtime.getRuntime().availableProcessors();
+
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			// the calling thread does a share of the work
+			pool = Executors.newFixedThreadPool(Math.max(1, threads - 1),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "JTwitter-parse");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return pool;
+	}
+
+	/**
+	 * @return true if json is big enough to be worth splitting up
+	 */
+	static boolean isWorthIt(String json) {
+		return threads > 1
+				&& json.length() > Twitter.PARALLEL_PARSE_THRESHOLD;
+	}
+
+	/**
+	 * Decode one element. Called from several threads at once.
+	 *
+	 * @param r
+	 *            At the start of the element: call next() to read it.
+	 * @return the element, or null to leave it out
+	 */
+	abstract T decode(JSONReader r) throws JSONException, TwitterException;
+
+	private void decode(List<JSONTokener> elements, Object[] results,
+			int from, int to) throws TwitterException {
+		for (int i = from; i < to; i++) {
+			try {
+				results[i] = decode(new JSONReader(elements.get(i)));
+			} catch (JSONException e) {
+				throw new TwitterException.Parsing(null, e);
+			}
+		}
+	}
+
+	/**
+	 * @param json
+	 *            a json array
+	 * @return the decoded elements, in order
+	 * @throws TwitterException
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> parse(String json) throws TwitterException {
+		final List<JSONTokener> elements;
+		try {
+			elements = InternalUtils.jsonTokener(json).splitArray();
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(json, e);
+		}
+		int n = elements.size();
+		final Object[] results = new Object[n];
+		int batches = Math.max(1, Math.min(threads, n / MIN_BATCH));
+		int batchSize = (n + batches - 1) / batches;
+		List<Future<?>> futures = new ArrayList<Future<?>>(batches);
+		try {
+			for (int from = batchSize; from < n; from += batchSize) {
+				final int f = from, t = Math.min(n, from + batchSize);
+				futures.add(getPool().submit(new Callable<Object>() {
+					@Override
+					public Object call() {
+						decode(elements, results, f, t);
+						return null;
+					}
+				}));
+			}
+			decode(elements, results, 0, Math.min(n, batchSize));
+			// also makes the other threads' results visible
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TwitterException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new TwitterException(e);
+		} finally {
+			// only does anything if we're bailing out
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+		List<T> list = new ArrayList<T>(n);
+		for (Object o : results) {
+			if (o != null) {
+				list.add((T) o);
+			}
+		}
+		return list;
+	}
+
+}
@@ -1,5 +1,6 @@
 package winterwell.jtwitter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.AbstractList;
 import java.util.ArrayList;
@@ -12,6 +13,8 @@ import com.winterwell.jgeoplanet.Location;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONWriter;
 
 /**
  * Support for Twitter's geo location features.
@@ -61,14 +64,7 @@ public class Place implements IPlace, Serializable {
 		if (bbox instanceof JSONObject) {
 			// probably the 4 corners of a box
 			List<Location> bb = parseCoords((JSONObject) bbox);
-			double n=-90, e=-180, s=90, w=180;
-			for (Location ll : bb) {
-				n = Math.max(ll.latitude, n);
-				s = Math.min(ll.latitude, s);
-				e = Math.max(ll.longitude, e);
-				w = Math.min(ll.longitude, w);
-			}
-			this.boundingBox = new BoundingBox(new Location(n,e), new Location(s,w));
+			setBoundingBox(bb);
 		}
 		Object geo = _place.opt("geometry");
 		if (geo instanceof JSONObject) {
@@ -76,6 +72,92 @@ public class Place implements IPlace, Serializable {
 		}
 	}
 
+	/**
+	 * The keys read by {@link #Place(JSONReader)}.
+	 */
+	private enum Field {
+		id, woeid, place_type, full_name, name, country_code, country,
+		bounding_box, geometry
+	}
+
+	private static final FieldTable<Field> FIELDS = new FieldTable<Field>(Field.class);
+
+	/**
+	 * Read a place with a {@link JSONReader}, which must have just returned
+	 * START_OBJECT. Equivalent to {@link #Place(JSONObject)}.
+	 */
+	Place(JSONReader r) throws JSONException {
+		String fullName = null, woeid = null;
+		while (r.nextField()) {
+			Field f = FIELDS.get(r.getString());
+			if (f == null) {
+				r.skipValue();
+				continue;
+			}
+			switch (f) {
+			case id:
+				id = InternalUtils.jsonGet(r);
+				break;
+			case woeid:
+				woeid = InternalUtils.jsonGet(r);
+				break;
+			case place_type:
+				type = InternalUtils.jsonGet(r);
+				break;
+			case full_name:
+				fullName = InternalUtils.jsonGet(r);
+				break;
+			case name:
+				name = InternalUtils.jsonGet(r);
+				break;
+			case country_code:
+				countryCode = InternalUtils.jsonGet(r);
+				break;
+			case country:
+				country = InternalUtils.jsonGet(r);
+				break;
+			case bounding_box:
+				List<Location> bb = readCoords(r);
+				if (bb != null) {
+					setBoundingBox(bb);
+				}
+				break;
+			case geometry:
+				geometry = readCoords(r);
+				break;
+			}
+		}
+		if (id == null) {
+			id = woeid;
+		}
+		if (fullName != null) {
+			name = fullName;
+		}
+	}
+
+	/**
+	 * Read a place written by {@link #writeBinary(BinaryWriter)}.
+	 */
+	Place(BinaryReader in) throws IOException {
+		id = in.readSymbol();
+		type = in.readSymbol();
+		name = in.readSymbol();
+		countryCode = in.readSymbol();
+		country = in.readSymbol();
+		if (in.readInt() != 0) {
+			Location ne = new Location(in.readDouble(), in.readDouble());
+			Location sw = new Location(in.readDouble(), in.readDouble());
+			boundingBox = new BoundingBox(ne, sw);
+		}
+		int n = in.readInt() - 1;
+		if (n >= 0) {
+			geometry = new ArrayList<Location>(n);
+			for (int i = 0; i < n; i++) {
+				geometry.add(new Location(in.readDouble(), in.readDouble()));
+			}
+		}
+	}
+
 	/**
 	 * @return list of lat/long pairs. Can be null
 	 */
@@ -140,11 +222,156 @@ public class Place implements IPlace, Serializable {
 		return coordinates;
 	}
 
+	/**
+	 * Read a {"coordinates":[[[long,lat],...]]} object -- the streaming
+	 * version of {@link #parseCoords(JSONObject)}.
+	 * @return null if the value was not an object
+	 */
+	private static List<Location> readCoords(JSONReader r) throws JSONException {
+		if (r.next() != JSONReader.Token.START_OBJECT) {
+			r.skipChildren();
+			return null;
+		}
+		List<Location> coordinates = null;
+		while (r.nextField()) {
+			if ( ! "coordinates".equals(r.getString())) {
+				r.skipValue();
+				continue;
+			}
+			// pointless nesting?
+			if (r.next() != JSONReader.Token.START_ARRAY
+					|| r.next() != JSONReader.Token.START_ARRAY) {
+				throw r.syntaxError("Expected [[");
+			}
+			coordinates = new ArrayList<Location>();
+			while (r.next() == JSONReader.Token.START_ARRAY) {
+				// these are longitude, latitude pairs
+				r.next();
+				double lng = r.getDouble();
+				r.next();
+				double lat = r.getDouble();
+				r.next();
+				r.skipChildren();
+				coordinates.add(new Location(lat, lng));
+			}
+			// skip any further polygons
+			while (r.next() != JSONReader.Token.END_ARRAY) {
+				r.skipChildren();
+			}
+		}
+		return coordinates;
+	}
+
+	/**
+	 * @param bb probably the 4 corners of a box
+	 */
+	private void setBoundingBox(List<Location> bb) {
+		double n=-90, e=-180, s=90, w=180;
+		for (Location ll : bb) {
+			n = Math.max(ll.latitude, n);
+			s = Math.min(ll.latitude, s);
+			e = Math.max(ll.longitude, e);
+			w = Math.min(ll.longitude, w);
+		}
+		this.boundingBox = new BoundingBox(new Location(n,e), new Location(s,w));
+	}
+
 	@Override
 	public String toString() {
 		return getName();
 	}
 
+	/**
+	 * Write this place as json, in Twitter's format. The bounding box is
+	 * written as its 4 corners.
+	 * 
+	 * @param w
+	 * @throws JSONException
+	 *             (wrapping an IOException) if the writer fails
+	 */
+	public void writeJSON(JSONWriter w) throws JSONException {
+		w.object();
+		if (id != null) {
+			w.key("id").value(id);
+		}
+		if (type != null) {
+			w.key("place_type").value(type);
+		}
+		if (name != null) {
+			w.key("full_name").value(name);
+		}
+		if (countryCode != null) {
+			w.key("country_code").value(countryCode);
+		}
+		if (country != null) {
+			w.key("country").value(country);
+		}
+		if (boundingBox != null) {
+			// Note: not getNorthWest() / getSouthEast(), which mix up
+			// latitude and longitude
+			Location ne = boundingBox.getNorthEast();
+			Location sw = boundingBox.getSouthWest();
+			List<Location> corners = new ArrayList<Location>(4);
+			corners.add(sw);
+			corners.add(new Location(sw.latitude, ne.longitude));
+			corners.add(ne);
+			corners.add(new Location(ne.latitude, sw.longitude));
+			w.key("bounding_box");
+			writeCoords(w, corners);
+		}
+		if (geometry != null) {
+			w.key("geometry");
+			writeCoords(w, geometry);
+		}
+		w.endObject();
+	}
+
+	/**
+	 * Write this place in {@link BinaryWriter}'s format. Read it back with
+	 * {@link #Place(BinaryReader)}.
+	 */
+	void writeBinary(BinaryWriter out) {
+		out.writeSymbol(id);
+		out.writeSymbol(type);
+		out.writeSymbol(name);
+		out.writeSymbol(countryCode);
+		out.writeSymbol(country);
+		if (boundingBox == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(1);
+			Location ne = boundingBox.getNorthEast();
+			Location sw = boundingBox.getSouthWest();
+			out.writeDouble(ne.latitude);
+			out.writeDouble(ne.longitude);
+			out.writeDouble(sw.latitude);
+			out.writeDouble(sw.longitude);
+		}
+		if (geometry == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(geometry.size() + 1);
+			for (Location ll : geometry) {
+				out.writeDouble(ll.latitude);
+				out.writeDouble(ll.longitude);
+			}
+		}
+	}
+
+	/**
+	 * The reverse of {@link #readCoords(JSONReader)}
+	 */
+	private static void writeCoords(JSONWriter w, List<Location> coords)
+			throws JSONException {
+		w.object().key("type").value("Polygon");
+		w.key("coordinates").array().array();
+		for (Location ll : coords) {
+			// longitude, latitude pairs
+			w.array().value(ll.longitude).value(ll.latitude).endArray();
+		}
+		w.endArray().endArray().endObject();
+	}
+
 	@Override
 	public Location getCentroid() {
 		if (boundingBox==null) return null;
@@ -0,0 +1,214 @@
+package winterwell.jtwitter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import winterwell.jtwitter.Twitter.IHttpClient;
+import winterwell.jtwitter.Twitter.KRequestType;
+
+/**
+ * For bulk jobs: runs many small GETs over a small, fixed number of persistent
+ * connections. Each connection is a worker thread with its own copy of the
+ * base client, so this works with any client -- basic-auth
+ * {@link URLConnectionHttpClient}, {@link OAuthSignpostClient}, etc.
+ * <p>
+ * Use {@link #getPageAsync(String, Map, boolean)} to queue requests. The
+ * normal {@link IHttpClient} methods are also supported, and run on the
+ * calling thread via the base client.
+ * <p>
+ * Why not HTTP/2 multiplexing? JTwitter runs on Java 5 and Android, where
+ * HttpURLConnection only speaks HTTP/1.1. Instead, this keeps a few
+ * keep-alive connections busy in parallel -- which gives most of the benefit
+ * for lots of small requests: no per-request handshakes, and no single slow
+ * response blocking the queue.
+ * <p>
+ * Copies made via {@link #copy()} (e.g. by {@link Twitter#Twitter(Twitter)})
+ * share the worker threads. Call {@link #close()} when done to release them
+ * (they are daemon threads, so they won't stop the JVM exiting).
+ *
+ * @author daniel
+ * @testedby {@link PooledHttpClientTest}
+ */
+public class PooledHttpClient implements IHttpClient, Serializable {
+
+	private static final AtomicInteger poolCount = new AtomicInteger();
+
+	private static final long serialVersionUID = 1L;
+
+	private final IHttpClient base;
+
+	private final int connections;
+
+	/**
+	 * Each worker thread uses its own copy of base, made on first use. null
+	 * after de-serialisation.
+	 */
+	private transient ThreadLocal<IHttpClient> workerClient;
+
+	/**
+	 * Shared between copies. null after de-serialisation.
+	 */
+	private transient ExecutorService workers;
+
+	/**
+	 * @param base
+	 *            Setup authentication, timeouts, retries etc on this before
+	 *            creating the pool. Worker threads use copies of it.
+	 * @param connections
+	 *            Number of requests to run in parallel (and hence connections
+	 *            to keep open). Note that the JVM only keeps 5 idle
+	 *            connections per host by default (see the system property
+	 *            http.maxConnections), so going above that will not re-use
+	 *            connections.
+	 */
+	public PooledHttpClient(IHttpClient base, int connections) {
+		this(base, connections, null);
+	}
+
+	private PooledHttpClient(IHttpClient base, int connections,
+			ExecutorService workers) {
+		assert base != null && connections > 0;
+		this.base = base;
+		this.connections = connections;
+		this.workers = workers;
+	}
+
+	private synchronized ExecutorService getWorkers() {
+		if (workers != null)
+			return workers;
+		final int id = poolCount.incrementAndGet();
+		workers = Executors.newFixedThreadPool(connections,
+				new ThreadFactory() {
+					private final AtomicInteger cnt = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "JTwitter-pool" + id + "-"
+								+ cnt.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		return workers;
+	}
+
+	private synchronized ThreadLocal<IHttpClient> getWorkerClient() {
+		if (workerClient == null) {
+			workerClient = new ThreadLocal<IHttpClient>() {
+				@Override
+				protected IHttpClient initialValue() {
+					return base.copy();
+				}
+			};
+		}
+		return workerClient;
+	}
+
+	@Override
+	public boolean canAuthenticate() {
+		return base.canAuthenticate();
+	}
+
+	/**
+	 * Stop the worker threads -- for this and its copies. Queued requests are
+	 * abandoned. Synchronous calls will still work.
+	 */
+	public void close() {
+		getWorkers().shutdownNow();
+	}
+
+	@Override
+	public HttpURLConnection connect(String url, Map<String, String> vars,
+			boolean authenticate) throws IOException {
+		return base.connect(url, vars, authenticate);
+	}
+
+	/**
+	 * @return a client using a copy of the base client, which shares this
+	 *         one's worker threads.
+	 */
+	@Override
+	public IHttpClient copy() {
+		return new PooledHttpClient(base.copy(), connections, getWorkers());
+	}
+
+	/**
+	 * @return the client used for synchronous calls
+	 */
+	public IHttpClient getBase() {
+		return base;
+	}
+
+	@Override
+	public String getHeader(String headerName) {
+		return base.getHeader(headerName);
+	}
+
+	@Override
+	public String getPage(String uri, Map<String, String> vars,
+			boolean authenticate) throws TwitterException {
+		return base.getPage(uri, vars, authenticate);
+	}
+
+	/**
+	 * Queue a GET request.
+	 *
+	 * @param uri
+	 * @param vars
+	 *            Can be null. Do not modify after calling this!
+	 * @param authenticate
+	 * @return the page, when it arrives. {@link Future#get()} will throw an
+	 *         ExecutionException wrapping the TwitterException if the request
+	 *         fails.
+	 */
+	public Future<String> getPageAsync(final String uri,
+			final Map<String, String> vars, final boolean authenticate) {
+		final ThreadLocal<IHttpClient> client = getWorkerClient();
+		return getWorkers().submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return client.get().getPage(uri, vars, authenticate);
+			}
+		});
+	}
+
+	@Override
+	public RateLimit getRateLimit(KRequestType reqType) {
+		return base.getRateLimit(reqType);
+	}
+
+	@Override
+	public String post(String uri, Map<String, String> vars,
+			boolean authenticate) throws TwitterException {
+		return base.post(uri, vars, authenticate);
+	}
+
+	@Override
+	public HttpURLConnection post2_connect(String uri, Map<String, String> vars)
+			throws Exception {
+		return base.post2_connect(uri, vars);
+	}
+
+	/**
+	 * Sets the timeout on the base client. Worker threads which have already
+	 * made their copy will not see this.
+	 */
+	@Override
+	public void setTimeout(int millisecs) {
+		base.setTimeout(millisecs);
+	}
+
+	@Override
+	public String toString() {
+		return "PooledHttpClient[" + connections + " x " + base + "]";
+	}
+
+}
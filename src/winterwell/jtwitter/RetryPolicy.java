@@ -0,0 +1,373 @@
+package winterwell.jtwitter;
+
+import java.io.Serializable;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry (and optionally hedging) behaviour for http clients. This is shared by
+ * {@link URLConnectionHttpClient} (and hence {@link OAuthSignpostClient}) and
+ * {@link OAuthScribeClient}, so they all smooth out Twitter's intermittent
+ * service in the same way.
+ * <p>
+ * Features:
+ * <ul>
+ * <li>Exponential back-off with jitter between attempts.
+ * <li>Idempotency awareness: GETs are retried, POSTs are only retried if
+ * {@link #setRetryPosts(boolean)} is on (a timed-out POST may have worked!).
+ * <li>A retry budget: retries are paid for by successful requests, so a
+ * Twitter outage does not get multiplied into a retry storm.
+ * <li>Optional hedged GETs: if a GET is slower than the recent 95th percentile,
+ * a 2nd identical request is sent, and whichever answers first wins.
+ * </ul>
+ * <p>
+ * This is thread safe, and can be shared between copies of a client.
+ *
+ * @author daniel
+ * @testedby {@link RetryPolicyTest}
+ */
+public class RetryPolicy implements Serializable {
+
+	/**
+	 * One attempt at an http request. Called once per try.
+	 */
+	public static interface IRequest {
+		/**
+		 * @return the response body
+		 */
+		String run() throws Exception;
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of recent GET latencies kept for estimating the hedge delay.
+	 */
+	private static final int LATENCY_WINDOW = 64;
+
+	/**
+	 * Don't hedge until we have this many latency samples.
+	 */
+	private static final int MIN_LATENCY_SAMPLES = 20;
+
+	private static ExecutorService hedgePool;
+
+	/**
+	 * The old retry-on-error behaviour: wait 1/2 a second, then make a 2nd
+	 * attempt. Applies to both GETs and POSTs, and has no retry budget (it
+	 * always retries).
+	 */
+	public static RetryPolicy simple() {
+		RetryPolicy rp = new RetryPolicy(1, 500, 500);
+		rp.setRetryPosts(true);
+		rp.setJitter(false);
+		rp.setBudget(0, Double.POSITIVE_INFINITY);
+		return rp;
+	}
+
+	private static synchronized ExecutorService getHedgePool() {
+		if (hedgePool == null) {
+			hedgePool = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "JTwitter-hedge");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return hedgePool;
+	}
+
+	private final long baseDelay;
+
+	/**
+	 * Current retry credit. Starts full.
+	 */
+	private double budget;
+
+	private double budgetPerSuccess = 0.1;
+
+	private boolean hedge;
+
+	private boolean jitter = true;
+
+	/**
+	 * Ring buffer of recent GET latencies in milliseconds
+	 */
+	private final long[] latencies = new long[LATENCY_WINDOW];
+	private int latencyCount;
+
+	private final int maxAttempts;
+
+	private double maxBudget = 10;
+
+	private final long maxDelay;
+
+	private long minHedgeDelay = 50;
+
+	private transient Random rnd;
+
+	private boolean retryPosts;
+
+	/**
+	 *
+	 * @param maxRetries
+	 *            Max number of retries after the first attempt. E.g. 2 means
+	 *            upto 3 attempts.
+	 * @param baseDelayMillis
+	 *            Wait before the 1st retry. This doubles for each subsequent
+	 *            retry.
+	 * @param maxDelayMillis
+	 *            Cap on the wait between retries.
+	 */
+	public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+		assert maxRetries >= 0 && baseDelayMillis >= 0
+				&& maxDelayMillis >= baseDelayMillis;
+		this.maxAttempts = maxRetries + 1;
+		this.baseDelay = baseDelayMillis;
+		this.maxDelay = maxDelayMillis;
+		this.budget = maxBudget;
+	}
+
+	/**
+	 * Run a request, retrying (and hedging) according to this policy.
+	 *
+	 * @param request
+	 * @param idempotent
+	 *            true for GETs, false for POSTs
+	 * @return the response
+	 * @throws Exception
+	 *             the last failure, if all the attempts failed. The caller is
+	 *             responsible for converting this into a TwitterException.
+	 */
+	public String execute(IRequest request, boolean idempotent)
+			throws Exception {
+		boolean canRetry = idempotent || retryPosts;
+		for (int attempt = 0;; attempt++) {
+			try {
+				String response = idempotent && hedge ? execute2_hedged(request)
+						: execute2_timed(request, idempotent);
+				deposit();
+				return response;
+			} catch (Exception ex) {
+				if (!canRetry || attempt + 1 >= maxAttempts
+						|| !isRetryable(ex) || !withdraw())
+					throw ex;
+				Thread.sleep(getDelay(attempt));
+			}
+		}
+	}
+
+	/**
+	 * Send the request, and if it's slow, send it again. Use whichever answer
+	 * comes back first.
+	 */
+	private String execute2_hedged(final IRequest request) throws Exception {
+		long hedgeDelay = getHedgeDelay();
+		if (hedgeDelay < 0)
+			return execute2_timed(request, true);
+		CompletionService<String> ecs = new ExecutorCompletionService<String>(
+				getHedgePool());
+		Callable<String> call = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return execute2_timed(request, true);
+			}
+		};
+		Future<String> first = ecs.submit(call);
+		Future<String> second = null;
+		Future<String> done = ecs.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+		try {
+			if (done == null) {
+				// slow! send a hedge
+				second = ecs.submit(call);
+				done = ecs.take();
+			}
+			try {
+				return done.get();
+			} catch (ExecutionException ex) {
+				if (second == null)
+					throw ex;
+				// one failed -- wait for the other
+				done = ecs.take();
+				return done.get();
+			}
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw (Error) cause;
+		} finally {
+			// stop the loser (if it will listen)
+			first.cancel(true);
+			if (second != null) {
+				second.cancel(true);
+			}
+		}
+	}
+
+	private String execute2_timed(IRequest request, boolean idempotent)
+			throws Exception {
+		if (!idempotent)
+			return request.run();
+		long start = System.currentTimeMillis();
+		String response = request.run();
+		addLatency(System.currentTimeMillis() - start);
+		return response;
+	}
+
+	private synchronized void addLatency(long millis) {
+		latencies[latencyCount % LATENCY_WINDOW] = millis;
+		latencyCount++;
+	}
+
+	private synchronized void deposit() {
+		budget = Math.min(maxBudget, budget + budgetPerSuccess);
+	}
+
+	/**
+	 * @return true if there was credit to pay for a retry
+	 */
+	private synchronized boolean withdraw() {
+		if (budget < 1)
+			return false;
+		budget--;
+		return true;
+	}
+
+	/**
+	 * @return remaining retry credit. Mainly for monitoring.
+	 */
+	public synchronized double getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @param attempt
+	 *            0 for the wait before the 1st retry
+	 * @return milliseconds to wait
+	 */
+	long getDelay(int attempt) {
+		long delay = baseDelay << Math.min(attempt, 30);
+		if (delay > maxDelay || delay < 0) {
+			delay = maxDelay;
+		}
+		if (!jitter || delay == 0)
+			return delay;
+		if (rnd == null) {
+			rnd = new Random();
+		}
+		// "equal jitter": somewhere between half and all of the delay
+		long half = delay / 2;
+		return half + (long) (rnd.nextDouble() * (delay - half));
+	}
+
+	/**
+	 * @return the 95th percentile of recent GET latencies, or -1 if there
+	 *         isn't enough data yet.
+	 */
+	synchronized long getHedgeDelay() {
+		if (latencyCount < MIN_LATENCY_SAMPLES)
+			return -1;
+		int n = Math.min(latencyCount, LATENCY_WINDOW);
+		long[] sorted = new long[n];
+		System.arraycopy(latencies, 0, sorted, 0, n);
+		Arrays.sort(sorted);
+		long p95 = sorted[(int) (0.95 * (n - 1))];
+		return Math.max(p95, minHedgeDelay);
+	}
+
+	/**
+	 * Which errors are worth another go? Server errors & timeouts -- but not
+	 * user errors (E40X) or rate limits.
+	 */
+	boolean isRetryable(Exception ex) {
+		if (ex instanceof TwitterException.E50X)
+			return true; // includes Timeout
+		if (ex instanceof SocketTimeoutException)
+			return true;
+		if (ex instanceof TwitterException.IO)
+			return ((TwitterException.IO) ex).getCause() instanceof SocketTimeoutException;
+		return false;
+	}
+
+	public boolean isRetryPosts() {
+		return retryPosts;
+	}
+
+	/**
+	 * Configure the retry budget.
+	 *
+	 * @param perSuccess
+	 *            How much credit each successful request earns. Each retry
+	 *            costs 1. E.g. 0.1 (the default) allows roughly 1 retry per
+	 *            10 good requests.
+	 * @param max
+	 *            Cap on saved-up credit. 10 by default.
+	 *            Double.POSITIVE_INFINITY for no budget: always retry.
+	 */
+	public synchronized void setBudget(double perSuccess, double max) {
+		assert perSuccess >= 0 && max >= 0;
+		this.budgetPerSuccess = perSuccess;
+		this.maxBudget = max;
+		this.budget = Double.isInfinite(max) ? max : Math.min(budget, max);
+	}
+
+	/**
+	 * Off by default. If on, GETs which are slower than the recent
+	 * 95th-percentile latency will get a 2nd identical request in parallel.
+	 * This trims tail latency at the cost of some extra calls (roughly 5%) --
+	 * which do count against your rate limit!
+	 *
+	 * @param hedge
+	 */
+	public void setHedging(boolean hedge) {
+		this.hedge = hedge;
+	}
+
+	/**
+	 * @param jitter
+	 *            true by default. If true, the wait between retries is
+	 *            randomised a bit, so that lots of clients don't all retry at
+	 *            the same moment.
+	 */
+	public void setJitter(boolean jitter) {
+		this.jitter = jitter;
+	}
+
+	/**
+	 * @param minHedgeDelay
+	 *            Never send a hedge request sooner than this. 50 milliseconds
+	 *            by default.
+	 */
+	public void setMinHedgeDelay(long minHedgeDelay) {
+		this.minHedgeDelay = minHedgeDelay;
+	}
+
+	/**
+	 * @param retryPosts
+	 *            false by default. POSTs are not idempotent: a POST which timed
+	 *            out may still have worked, and retrying it can e.g. produce a
+	 *            duplicate tweet. Set true if you'd rather risk that.
+	 */
+	public void setRetryPosts(boolean retryPosts) {
+		this.retryPosts = retryPosts;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy[retries=" + (maxAttempts - 1) + ", delay="
+				+ baseDelay + "-" + maxDelay + ", hedge=" + hedge + "]";
+	}
+}
@@ -1,5 +1,8 @@
 package winterwell.jtwitter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -13,6 +16,9 @@ import java.util.regex.Pattern;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONWriter;
+import winterwell.json.LazyJSONObject;
 import winterwell.jtwitter.Twitter.ITweet;
 import winterwell.jtwitter.Twitter.KEntityType;
 import winterwell.jtwitter.Twitter.TweetEntity;
@@ -34,6 +40,38 @@ public final class Status implements ITweet {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Convert from a json object into a tweet. Equivalent to
+	 * <code>new Status(new JSONObject(json), null)</code>, but decoded in one
+	 * pass without building a JSONObject.
+	 * 
+	 * @param json
+	 *            must not be null
+	 * @throws TwitterException
+	 */
+	static Status getStatus(String json) throws TwitterException {
+		try {
+			JSONReader r = new JSONReader(InternalUtils.jsonTokener(json));
+			if (r.next() != JSONReader.Token.START_OBJECT)
+				throw r.syntaxError("A JSONObject text must begin with '{'");
+			return new Status(r, null);
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(json, e);
+		}
+	}
+
+	private static final ParallelParser<Status> PARSER = new ParallelParser<Status>() {
+		@Override
+		Status decode(JSONReader r) throws JSONException, TwitterException {
+			JSONReader.Token t = r.next();
+			if (t == JSONReader.Token.VALUE_NULL)
+				return null;
+			if (t != JSONReader.Token.START_OBJECT)
+				throw r.syntaxError("Expected a status object");
+			return new Status(r, null);
+		}
+	};
+
 	/**
 	 * Convert from a json array of objects into a list of tweets.
 	 * 
@@ -44,16 +82,20 @@ public final class Status implements ITweet {
 	static List<Status> getStatuses(String json) throws TwitterException {
 		if (json.trim().equals(""))
 			return Collections.emptyList();
+		if (ParallelParser.isWorthIt(json))
+			return PARSER.parse(json);
 		try {
 			List<Status> tweets = new ArrayList<Status>();
-			JSONArray arr = new JSONArray(json);
-			for (int i = 0; i < arr.length(); i++) {
-				Object ai = arr.get(i);
-				if (JSONObject.NULL.equals(ai)) {
-					continue;
-				}
-				JSONObject obj = (JSONObject) ai;
-				Status tweet = new Status(obj, null);
+			JSONReader r = new JSONReader(InternalUtils.jsonTokener(json));
+			if (r.next() != JSONReader.Token.START_ARRAY)
+				throw r.syntaxError("A JSONArray text must start with '['");
+			while (true) {
+				JSONReader.Token t = r.next();
+				if (t == JSONReader.Token.END_ARRAY) break;
+				if (t == JSONReader.Token.VALUE_NULL) continue;
+				if (t != JSONReader.Token.START_OBJECT)
+					throw r.syntaxError("Expected a status object");
+				Status tweet = new Status(r, null);
 				tweets.add(tweet);
 			}
 			return tweets;
@@ -82,7 +124,7 @@ public final class Status implements ITweet {
 				String userScreenName = obj.getString("from_user");
 				String profileImgUrl = obj.getString("profile_image_url");
 				User user = new User(userScreenName);
-				user.profileImageUrl = InternalUtils.URI(profileImgUrl);
+				user.rawProfileImageUrl = profileImgUrl;
 				Status s = new Status(obj, user);
 				users.add(s);
 			}
@@ -105,12 +147,7 @@ public final class Status implements ITweet {
 		}
 		JSONObject _place = object.optJSONObject("place");
 		if (_location != null) {
-			// normalise UT (UberTwitter?) locations
-			Matcher m = InternalUtils.latLongLocn.matcher(_location);
-			if (m.matches()) {
-				_location = m.group(2) + "," + m.group(3);
-			}
-			return _location; // should we also check geo and place for extra
+			return jsonGetLocn2(_location); // should we also check geo and place for extra
 								// info??
 		}
 		// Twitter place
@@ -127,10 +164,119 @@ public final class Status implements ITweet {
 		return _location;
 	}
 
+	/**
+	 * {@link #jsonGetLocn(JSONObject)} for when the pieces have been read with
+	 * a {@link JSONReader}.
+	 * 
+	 * @param _location
+	 *            Can be null
+	 * @param _place
+	 *            Can be null
+	 * @param geo
+	 *            Can be null
+	 * @return place, location, failing which geo coordinates
+	 */
+	static Object jsonGetLocn(String _location, Place _place, String geo) {
+		if (_location != null && _location.length() != 0)
+			return jsonGetLocn2(_location);
+		if (_place != null)
+			return _place;
+		return geo;
+	}
+
+	/**
+	 * normalise UT (UberTwitter?) locations
+	 */
+	private static String jsonGetLocn2(String _location) {
+		Matcher m = InternalUtils.latLongLocn.matcher(_location);
+		if (m.matches()) {
+			_location = m.group(2) + "," + m.group(3);
+		}
+		return _location;
+	}
+
+	/**
+	 * Read a geo object, e.g. {"type":"Point","coordinates":[55.9,-3.2]}
+	 * 
+	 * @return "latitude,longitude" or null
+	 */
+	static String jsonGetGeo(JSONReader r) throws JSONException {
+		if (r.next() != JSONReader.Token.START_OBJECT) {
+			r.skipChildren();
+			return null;
+		}
+		String latLong = null;
+		while (r.nextField()) {
+			if ( ! "coordinates".equals(r.getString())) {
+				r.skipValue();
+				continue;
+			}
+			if (r.next() != JSONReader.Token.START_ARRAY)
+				throw r.syntaxError("Expected [lat, long]");
+			r.next();
+			Object lat = r.getValue();
+			r.next();
+			Object lng = r.getValue();
+			latLong = lat + "," + lng;
+			while (r.next() != JSONReader.Token.END_ARRAY) {
+				r.skipChildren();
+			}
+		}
+		return latLong;
+	}
+
+	/**
+	 * For a truncated retweet: the "RT @name: " which starts the text.
+	 * Equivalent to <code>"RT @"+original.getUser()+": "</code>, but
+	 * decoding just the original's screen-name.
+	 * 
+	 * @param original
+	 *            the retweeted_status
+	 */
+	private static String rtStart(JSONObject original) throws JSONException {
+		JSONObject jsonUser = original.optJSONObject("user");
+		String sn = jsonUser == null ? null : InternalUtils.jsonGet(
+				"screen_name", jsonUser);
+		if (sn != null && !Twitter.CASE_SENSITIVE_SCREENNAMES) {
+			sn = sn.toLowerCase();
+		}
+		return "RT @" + sn + ": ";
+	}
+
 	public final Date createdAt;
 
+	/**
+	 * Made on first use, from {@link #rawEntities}. null if Twitter didn't
+	 * send any.
+	 */
 	private EnumMap<KEntityType, List<TweetEntity>> entities;
 
+	/**
+	 * The entities as sent by Twitter -- a JSONObject, or a list of
+	 * {@link TweetEntity.Raw} -- until someone asks for them. Matching the
+	 * offsets up with the text isn't free, and most stream consumers never
+	 * look. null once {@link #entities} has been made.
+	 */
+	private transient Object rawEntities;
+
+	/**
+	 * The text as sent (i.e. entity-encoded), for correcting the entity
+	 * offsets. Usually the same object as {@link #text}. Only kept until the
+	 * entities are made.
+	 */
+	private transient String rawText;
+
+	/**
+	 * For a truncated retweet, the length of the "RT @name: " prefix: the
+	 * entities are then taken from the original. Otherwise 0.
+	 */
+	private final int rtPrefix;
+
+	/**
+	 * Made on first use by {@link #getMentions()}
+	 */
+	private transient volatile List<String> mentions;
+
 	private boolean favorited;
 
 	/**
@@ -138,20 +284,44 @@ public final class Status implements ITweet {
 	 */
 	public final BigInteger id;
 
+	/**
+	 * {@link #id} as a primitive, for cheap sorting and comparisons.
+	 * Twitter's ids fit in a (signed) long. 0 for a fake Status made without
+	 * an id.
+	 * <p>
+	 * Not final: it's set from id by {@link #readObject(ObjectInputStream)},
+	 * so that the serialized form is unchanged.
+	 */
+	private transient long idLong;
+
 	/**
 	 * Often null (even when this Status is a reply). This is the in-reply-to
 	 * status id as reported by Twitter.
 	 */
 	public final BigInteger inReplyToStatusId;
 
+	/**
+	 * {@link #inReplyToStatusId} as a primitive. 0 for none.
+	 */
+	private transient long inReplyToIdLong;
+
 	private String location;
 
 	/**
 	 * null, except for official retweets when this is the original retweeted
-	 * Status.
+	 * Status. Made on first use, from {@link #rawOriginal}.
 	 */
 	private Status original;
 
+	/**
+	 * The retweeted status as sent by Twitter, until someone asks for it.
+	 * Most of a firehose is retweets, and most consumers never look at the
+	 * original -- so only the bits this Status needs (its id, and for a
+	 * truncated retweet the name and text) are decoded up front. null once
+	 * {@link #original} has been made.
+	 */
+	private transient JSONObject rawOriginal;
+
 	private Place place;
 
 	/**
@@ -178,9 +348,20 @@ public final class Status implements ITweet {
 	 * - If creating a "fake" tweet via
 	 * {@link Status#Status(User, String, long, Date)} and supplying a null
 	 * User!
+	 * <p>
+	 * Can be a stub (see {@link User#isStub()}). If so, {@link #getUser()}
+	 * gives the full user once
+	 * {@link Twitter_Users#hydrate(java.util.Collection)} has fetched it.
 	 */
 	public final User user;
 
+	/**
+	 * The full user for a stub {@link #user}. Set by
+	 * {@link Twitter_Users#hydrate(java.util.Collection)}, maybe on another
+	 * thread -- hence volatile.
+	 */
+	private volatile User hydratedUser;
+
 //	private String[] withheldIn;
 	
 //	/**
@@ -202,23 +383,25 @@ public final class Status implements ITweet {
 	@SuppressWarnings("deprecation")
 	Status(JSONObject object, User user) throws TwitterException {
 		try {
-			String _id = object.optString("id_str");
-			id = new BigInteger(_id == "" ? object.get("id").toString() : _id);
-			// retweet?
-			JSONObject retweeted = object.optJSONObject("retweeted_status");
-			if (retweeted != null) {
-				original = new Status(retweeted, null);
+			idLong = InternalUtils.jsonGetId("id", object);
+			if (idLong == 0) {
+				throw new JSONException("No id");
 			}
+			id = BigInteger.valueOf(idLong);
+			// retweet? made on demand -- see getOriginal()
+			JSONObject retweeted = object.optJSONObject("retweeted_status");
+			rawOriginal = retweeted;
 			// text!
-			String _text = InternalUtils.jsonGet("text", object);
+			String sentText = InternalUtils.jsonGet("text", object);
+			String _text;
 			// Twitter have started truncating RTs -- let's fix the text up if we can
 			boolean truncated = object.optBoolean("truncated");
 			String rtStart = null;
-			if (truncated && original!=null && _text.startsWith("RT ")) {
-				rtStart = "RT @"+original.getUser()+": ";
-				_text = rtStart+original.getText();				
+			if (truncated && retweeted!=null && sentText.startsWith("RT ")) {
+				rtStart = rtStart(retweeted);
+				_text = rtStart+InternalUtils.unencode(InternalUtils.jsonGet("text", retweeted));
 			} else {
-				_text = InternalUtils.unencode(_text); // bugger - this screws up the indices in tweet entities
+				_text = InternalUtils.unencode(sentText); // this shifts the entity indices -- hence rawText
 			}
 			text = _text; 
 			// date
@@ -229,14 +412,16 @@ public final class Status implements ITweet {
 			String src = InternalUtils.jsonGet("source", object);
 			source = src.contains("&lt;") ? InternalUtils.unencode(src) : src;
 			// threading
-			String irt = InternalUtils.jsonGet("in_reply_to_status_id", object);
-			if (irt == null) {
+			long irt = InternalUtils.jsonGetId("in_reply_to_status_id", object);
+			if (irt == 0) {
 				// Twitter doesn't give in-reply-to for retweets
 				// - but since we have the info, let's make it available
-				inReplyToStatusId = original == null ? null : original.getId();
+				inReplyToIdLong = retweeted == null ? 0 : InternalUtils.jsonGetId("id", retweeted);
 			} else {
-				inReplyToStatusId = new BigInteger(irt);
+				inReplyToIdLong = irt;
 			}
+			inReplyToStatusId = inReplyToIdLong == 0 ? null : BigInteger
+					.valueOf(inReplyToIdLong);
 			favorited = object.optBoolean("favorited");
 
 			// set user
@@ -251,19 +436,13 @@ public final class Status implements ITweet {
 				} else if (jsonUser.length() < 3) {
 					// TODO seen a bug where the jsonUser is just
 					// {"id":24147187,"id_str":"24147187"}
-					// Not sure when/why this happens
-					String _uid = jsonUser.optString("id_str");
-					BigInteger userId = new BigInteger(_uid == "" ? object.get(
-							"id").toString() : _uid);
-					try {
-						user = new Twitter().show(userId);
-					} catch (Exception e) {
-						// ignore
-					}
-					this.user = user;
+					// Not sure when/why this happens.
+					// No fetching here: parsing must not do I/O
+					long userId = InternalUtils.jsonGetId("id", jsonUser);
+					this.user = userId == 0 ? null : User.stub(userId);
 				} else {
 					// normal JSON case
-					this.user = new User(jsonUser, this);
+					this.user = User.intern(new User(jsonUser, this));
 				}
 
 			}
@@ -280,35 +459,12 @@ public final class Status implements ITweet {
 			// retweeted = object.optBoolean("retweeted");
 			
 			// Entities (switched on by Twitter.setIncludeTweetEntities(true))
-			JSONObject jsonEntities = object.optJSONObject("entities");
 			// Note: Twitter filters out dud @names
-			if (jsonEntities != null) {
-				entities = new EnumMap<Twitter.KEntityType, List<TweetEntity>>(
-						KEntityType.class);
-				if (rtStart!=null) {
-					// truncation! the entities returned are likely to be duds -- adjust from the original instead
-					int rt = rtStart.length();
-					for (KEntityType type : KEntityType.values()) {
-						List<TweetEntity> es = original.getTweetEntities(type);
-						if (es==null) continue;
-						ArrayList rtEs = new ArrayList(es.size());
-						for (TweetEntity e : es) {
-							TweetEntity rte = new TweetEntity(this, e.type, 
-									/* safety checks on length are paranoia (could be removed) */
-									Math.min(rt+e.start, text.length()), Math.min(rt+e.end, text.length()), e.display);
-							rtEs.add(rte);
-						}
-						entities.put(type, rtEs);
-					}					
-				} else {
-					// normal case
-					for (KEntityType type : KEntityType.values()) {
-						List<TweetEntity> es = TweetEntity.parse(this, _text, type,
-								jsonEntities);
-						entities.put(type, es);
-					}
-				}								
-			}
+			// These are made on demand -- see getEntities()
+			rawEntities = object.optJSONObject("entities");
+			rawText = rawEntities == null ? null : sentText;
+			// truncation! the entities returned are likely to be duds -- adjust from the original instead
+			rtPrefix = rtStart == null ? 0 : rtStart.length();
 			
 			// censorship flags
 			// Should we have this??
@@ -323,6 +479,284 @@ public final class Status implements ITweet {
 		}
 	}
 
+	/**
+	 * The keys read by {@link #Status(JSONReader, User)}, in roughly
+	 * Twitter's order.
+	 */
+	private enum Field {
+		created_at, id, id_str, text, source, truncated, in_reply_to_status_id,
+		user, location, geo, place, retweet_count, favorited, possibly_sensitive,
+		entities, retweeted_status
+	}
+
+	private static final FieldTable<Field> FIELDS = new FieldTable<Field>(Field.class);
+
+	/**
+	 * Create a Status with a {@link JSONReader}, which must have just returned
+	 * START_OBJECT. Equivalent to {@link #Status(JSONObject, User)}, but
+	 * without building a JSONObject.
+	 * 
+	 * @param r
+	 * @param user
+	 *            Set when parsing the json returned for a User. null when
+	 *            parsing the json returned for a Status.
+	 * @throws TwitterException
+	 */
+	@SuppressWarnings("deprecation")
+	Status(JSONReader r, User user) throws TwitterException {
+		String _text = null, c = null, src = null, _location = null, geo = null;
+		long _id = 0, irt = 0;
+		boolean truncated = false, fav = false, sens = false;
+		int rtc = -1;
+		Place _place = null;
+		JSONObject retweeted = null;
+		User _user = null;
+		List<TweetEntity.Raw> rawEntities = null;
+		try {
+			while (r.nextField()) {
+				Field f = FIELDS.get(r.getString());
+				if (f == null) {
+					r.skipValue();
+					continue;
+				}
+				switch (f) {
+				case created_at:
+					c = InternalUtils.jsonGet(r);
+					break;
+				case id_str:
+					_id = InternalUtils.jsonGetIdStr(r, _id);
+					break;
+				case id:
+					_id = InternalUtils.jsonGetId(r);
+					break;
+				case text:
+					_text = InternalUtils.jsonGet(r);
+					break;
+				case source:
+					src = InternalUtils.jsonGet(r);
+					break;
+				case truncated:
+					truncated = InternalUtils.jsonGetBoolean(r);
+					break;
+				case in_reply_to_status_id:
+					irt = InternalUtils.jsonGetId(r);
+					break;
+				case user:
+					if (user != null) {
+						r.skipValue();
+					} else if (r.next() == JSONReader.Token.START_OBJECT) {
+						_user = new User(r, this);
+					} else {
+						r.skipChildren();
+					}
+					break;
+				case location:
+					_location = InternalUtils.jsonGet(r);
+					break;
+				case geo:
+					geo = jsonGetGeo(r);
+					break;
+				case place:
+					if (r.next() == JSONReader.Token.START_OBJECT) {
+						_place = new Place(r);
+					} else {
+						r.skipChildren();
+					}
+					break;
+				case retweet_count:
+					rtc = InternalUtils.jsonGetInt(r, -1);
+					break;
+				case favorited:
+					fav = InternalUtils.jsonGetBoolean(r);
+					break;
+				case possibly_sensitive:
+					sens = InternalUtils.jsonGetBoolean(r);
+					break;
+				case entities:
+					if (r.next() == JSONReader.Token.START_OBJECT) {
+						rawEntities = TweetEntity.read(r);
+					} else {
+						r.skipChildren();
+					}
+					break;
+				case retweeted_status:
+					// made on demand -- see getOriginal()
+					retweeted = r.nextLazyObject();
+					break;
+				}
+			}
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(null, e);
+		}
+		if (_id == 0) {
+			throw new TwitterException.Parsing(null, new JSONException("No id"));
+		}
+		idLong = _id;
+		id = BigInteger.valueOf(_id);
+		rawOriginal = retweeted;
+		// Twitter have started truncating RTs -- let's fix the text up if we can
+		String sentText = _text;
+		String rtStart = null;
+		try {
+			if (truncated && retweeted!=null && _text.startsWith("RT ")) {
+				rtStart = rtStart(retweeted);
+				_text = rtStart+InternalUtils.unencode(InternalUtils.jsonGet("text", retweeted));
+			} else {
+				_text = InternalUtils.unencode(_text); // this shifts the entity indices -- hence rawText
+			}
+			// threading
+			if (irt == 0) {
+				// Twitter doesn't give in-reply-to for retweets
+				irt = retweeted == null ? 0 : InternalUtils.jsonGetId("id", retweeted);
+			}
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(null, e);
+		}
+		text = _text;
+		inReplyToIdLong = irt;
+		inReplyToStatusId = irt == 0 ? null : BigInteger.valueOf(irt);
+		createdAt = InternalUtils.parseDate(c);
+		// source - sometimes encoded (search), sometimes not (timelines)!
+		source = src.contains("&lt;") ? InternalUtils.unencode(src) : src;
+		favorited = fav;
+		if (user != null) {
+			this.user = user;
+		} else if (_user != null && _user.screenName == null) {
+			// TODO seen a bug where the json user is just
+			// {"id":24147187,"id_str":"24147187"}
+			// No fetching here: parsing must not do I/O
+			this.user = _user.id == null ? null : User.stub(_user.id);
+		} else {
+			this.user = _user == null ? null : User.intern(_user);
+		}
+		Object _locn = jsonGetLocn(_location, _place, geo);
+		location = _locn == null ? null : _locn.toString();
+		if (_locn instanceof Place) {
+			place = (Place) _locn;
+		}
+		retweetCount = rtc;
+		// made on demand -- see getEntities()
+		this.rawEntities = rawEntities;
+		this.rawText = rawEntities == null ? null : sentText;
+		rtPrefix = rtStart == null ? 0 : rtStart.length();
+		sensitive = sens;
+	}
+
+	/**
+	 * Bits for the flags in {@link #writeBinary(BinaryWriter, boolean)}
+	 */
+	private static final int FAVORITED = 1, SENSITIVE = 2, HAS_USER = 4,
+			HAS_PLACE = 8, HAS_ENTITIES = 16, HAS_ORIGINAL = 32, HAS_REPLY = 64;
+
+	/**
+	 * Read a Status written by {@link #writeBinary(BinaryWriter, boolean)}.
+	 *
+	 * @param user
+	 *            Set when reading a User's status. null otherwise.
+	 */
+	Status(BinaryReader in, User user) throws IOException {
+		int flags = in.readInt();
+		idLong = in.readId();
+		inReplyToIdLong = (flags & HAS_REPLY) == 0 ? 0 : idLong - in.readSigned();
+		id = BigInteger.valueOf(idLong);
+		inReplyToStatusId = inReplyToIdLong == 0 ? null : BigInteger
+				.valueOf(inReplyToIdLong);
+		createdAt = in.readDate(true);
+		text = in.readString();
+		source = in.readSymbol();
+		retweetCount = in.readInt() - 1;
+		rtPrefix = in.readInt();
+		favorited = (flags & FAVORITED) != 0;
+		sensitive = (flags & SENSITIVE) != 0;
+		if ((flags & HAS_USER) != 0) {
+			this.user = User.intern(new User(in, this));
+		} else {
+			this.user = user;
+		}
+		if ((flags & HAS_PLACE) != 0) {
+			place = new Place(in);
+			location = place.toString();
+		} else {
+			location = in.readSymbol();
+		}
+		if ((flags & HAS_ENTITIES) != 0) {
+			entities = TweetEntity.readBinary(in, this);
+		}
+		if ((flags & HAS_ORIGINAL) != 0) {
+			original = new Status(in, null);
+		}
+	}
+
+	/**
+	 * Make the entities from {@link #rawEntities}, if that hasn't been done
+	 * yet.
+	 * 
+	 * @return the entities, or null if Twitter didn't send any
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized EnumMap<KEntityType, List<TweetEntity>> getEntities() {
+		if (rawEntities == null)
+			return entities;
+		EnumMap<KEntityType, List<TweetEntity>> es = new EnumMap<KEntityType, List<TweetEntity>>(
+				KEntityType.class);
+		if (rtPrefix != 0) {
+			setEntitiesFromOriginal(es, rtPrefix);
+		} else {
+			for (KEntityType type : KEntityType.values()) {
+				es.put(type,
+						rawEntities instanceof JSONObject ? TweetEntity.parse(this,
+								rawText, type, (JSONObject) rawEntities)
+								: TweetEntity.parse(this, rawText, type,
+										(List<TweetEntity.Raw>) rawEntities));
+			}
+		}
+		entities = es;
+		rawEntities = null;
+		rawText = null;
+		return es;
+	}
+
+	/**
+	 * The raw entities and original aren't serializable: make the real ones
+	 * first.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getEntities();
+		getOriginal();
+		out.defaultWriteObject();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		idLong = id == null ? 0 : id.longValue();
+		inReplyToIdLong = inReplyToStatusId == null ? 0 : inReplyToStatusId
+				.longValue();
+	}
+
+	/**
+	 * For truncated retweets: the entities Twitter send are likely to be duds
+	 * -- adjust the original's instead.
+	 * 
+	 * @param rt
+	 *            length of the "RT @name: " prefix
+	 */
+	private void setEntitiesFromOriginal(
+			EnumMap<KEntityType, List<TweetEntity>> entities, int rt) {
+		for (KEntityType type : KEntityType.values()) {
+			List<TweetEntity> es = getOriginal().getTweetEntities(type);
+			if (es==null) continue;
+			ArrayList rtEs = new ArrayList(es.size());
+			for (TweetEntity e : es) {
+				TweetEntity rte = new TweetEntity(this, e.type, 
+						/* safety checks on length are paranoia (could be removed) */
+						Math.min(rt+e.start, text.length()), Math.min(rt+e.end, text.length()), e.display);
+				rtEs.add(rte);
+			}
+			entities.put(type, rtEs);
+		}
+	}
+
 	/**
 	 * Create a *fake* Status object. This does not represent a real tweet!
 	 * Uses: few and far between. There is no real contract as to how objects
@@ -345,12 +779,14 @@ public final class Status implements ITweet {
 		this.text = text;
 		this.user = user;
 		this.createdAt = createdAt;
-		this.id = id == null ? null
-				: (id instanceof BigInteger ? (BigInteger) id : new BigInteger(
-						id.toString()));
+		this.id = id == null ? null : id instanceof BigInteger ? (BigInteger) id
+				: BigInteger.valueOf(id.longValue());
+		idLong = id == null ? 0 : id.longValue();
 		inReplyToStatusId = null;
+		inReplyToIdLong = 0;
 		source = FAKE;
 		retweetCount = -1;
+		rtPrefix = 0;
 	}
 
 	/**
@@ -365,7 +801,7 @@ public final class Status implements ITweet {
 		if (getClass() != obj.getClass())
 			return false;
 		Status other = (Status) obj;
-		return id.equals(other.id);
+		return idLong == other.idLong;
 	}
 
 	@Override
@@ -375,12 +811,37 @@ public final class Status implements ITweet {
 
 	/**
 	 * @return The Twitter id for this post. This is used by some API methods.
+	 *         null for a fake Status made without an id.
+	 * @see #id
 	 */
 	@Override
 	public BigInteger getId() {
 		return id;
 	}
 
+	/**
+	 * @return the in-reply-to status id as reported by Twitter, or null.
+	 * @see #inReplyToStatusId
+	 */
+	public BigInteger getInReplyToStatusId() {
+		return inReplyToStatusId;
+	}
+
+	/**
+	 * @return {@link #id} as a primitive, for cheap sorting and comparisons.
+	 *         0 for a fake Status made without an id.
+	 */
+	long getIdLong() {
+		return idLong;
+	}
+
+	/**
+	 * @return {@link #inReplyToStatusId} as a primitive. 0 for none.
+	 */
+	long getInReplyToIdLong() {
+		return inReplyToIdLong;
+	}
+
 	@Override
 	public String getLocation() {
 		return location;
@@ -394,8 +855,37 @@ public final class Status implements ITweet {
 	 */
 	@Override
 	public List<String> getMentions() {
-		// TODO test & use this
-		// List<TweetEntity> ms = entities.get(KEntityType.user_mentions);
+		List<String> ms = mentions;
+		if (ms == null) {
+			ms = Collections.unmodifiableList(getMentions2());
+			mentions = ms;
+		}
+		return ms;
+	}
+
+	private List<String> getMentions2() {
+		// Use Twitter's own list if we have it (it skips dud @names).
+		// Not for truncated retweets, as the original's entities don't
+		// include the "RT @name: " prefix.
+		EnumMap<KEntityType, List<TweetEntity>> es = rtPrefix == 0 ? getEntities()
+				: null;
+		if (es != null) {
+			List<TweetEntity> ums = es.get(KEntityType.user_mentions);
+			if (ums == null)
+				return Collections.emptyList();
+			List<String> list = new ArrayList<String>(ums.size());
+			for (TweetEntity um : ums) {
+				String mention = um.toString();
+				if (mention.startsWith("@")) {
+					mention = mention.substring(1);
+				}
+				if (!Twitter.CASE_SENSITIVE_SCREENNAMES) {
+					mention = mention.toLowerCase();
+				}
+				list.add(mention);
+			}
+			return list;
+		}
 		Matcher m = AT_YOU_SIR.matcher(text);
 		List<String> list = new ArrayList<String>(2);
 		while (m.find()) {
@@ -417,8 +907,29 @@ public final class Status implements ITweet {
 	/**
 	 * Only set for official new-style retweets. This is the original retweeted
 	 * Status. null otherwise.
+	 * <p>
+	 * The original is decoded on the first call.
+	 * 
+	 * @throws TwitterException.Parsing
+	 *             if the original is badly formed (which isn't spotted until
+	 *             now)
 	 */
-	public Status getOriginal() {
+	public synchronized Status getOriginal() {
+		if (rawOriginal == null)
+			return original;
+		if (rawOriginal instanceof LazyJSONObject) {
+			// one pass over the json is quicker than a lookup per field
+			JSONReader r = ((LazyJSONObject) rawOriginal).reader();
+			try {
+				r.next();
+			} catch (JSONException e) {
+				throw new TwitterException.Parsing(null, e);
+			}
+			original = new Status(r, null);
+		} else {
+			original = new Status(rawOriginal, null);
+		}
+		rawOriginal = null;
 		return original;
 	}
 
@@ -436,17 +947,38 @@ public final class Status implements ITweet {
 
 	@Override
 	public List<TweetEntity> getTweetEntities(KEntityType type) {
-		return entities == null ? null : entities.get(type);
+		EnumMap<KEntityType, List<TweetEntity>> es = getEntities();
+		return es == null ? null : es.get(type);
 	}
 
+	/**
+	 * Tweets by the same author usually share one User object (see
+	 * {@link Twitter#USER_CACHE_SIZE}). A shared User has no status. It is
+	 * only shared between tweets which came with the same profile and counts,
+	 * so the counts are always the ones Twitter sent with this tweet.
+	 * <p>
+	 * If {@link #user} is a stub which has been hydrated, this is the full
+	 * user.
+	 */
 	@Override
 	public User getUser() {
-		return user;
+		User hydrated = hydratedUser;
+		return hydrated == null ? user : hydrated;
+	}
+
+	/**
+	 * @param full
+	 *            The full version of the stub {@link #user}
+	 * @see Twitter_Users#hydrate(java.util.Collection)
+	 */
+	void setHydratedUser(User full) {
+		assert user != null && user.isStub() && full.id.equals(user.id) : full;
+		hydratedUser = full;
 	}
 
 	@Override
 	public int hashCode() {
-		return id.hashCode();
+		return (int) (idLong ^ (idLong >>> 32));
 	}
 
 	/**
@@ -477,6 +1009,113 @@ public final class Status implements ITweet {
 		return text;
 	}
 
+	/**
+	 * Write this status as json, in Twitter's format (only the fields which
+	 * JTwitter reads). Nothing is buffered: fields go straight to the writer,
+	 * so this is suitable for bulk export (see {@link NDJSONWriter}). The
+	 * output parses back to an equivalent Status.
+	 * 
+	 * @param w
+	 * @throws JSONException
+	 *             (wrapping an IOException) if the writer fails
+	 */
+	public void writeJSON(JSONWriter w) throws JSONException {
+		writeJSON2(w, true);
+	}
+
+	/**
+	 * @param withUser
+	 *            false when writing the status inside its user
+	 */
+	void writeJSON2(JSONWriter w, boolean withUser) throws JSONException {
+		w.object();
+		if (createdAt != null) {
+			w.key("created_at").value(InternalUtils.formatDate(createdAt));
+		}
+		w.key("id").value(idLong);
+		w.key("id_str").value(Long.toString(idLong));
+		w.key("text").value(InternalUtils.encodeEntities(text));
+		if (source != null) {
+			w.key("source").value(source);
+		}
+		if (inReplyToIdLong != 0) {
+			w.key("in_reply_to_status_id").value(inReplyToIdLong);
+			w.key("in_reply_to_status_id_str").value(Long.toString(inReplyToIdLong));
+		}
+		User _user = getUser();
+		if (withUser && _user != null) {
+			w.key("user");
+			_user.writeJSON2(w, false);
+		}
+		if (place != null) {
+			w.key("place");
+			place.writeJSON(w);
+		} else if (location != null) {
+			w.key("location").value(location);
+		}
+		if (retweetCount != -1) {
+			w.key("retweet_count").value(retweetCount);
+		}
+		w.key("favorited").value(favorited);
+		if (sensitive) {
+			w.key("possibly_sensitive").value(true);
+		}
+		EnumMap<KEntityType, List<TweetEntity>> es = getEntities();
+		if (es != null) {
+			w.key("entities");
+			TweetEntity.writeJSON(w, es);
+		}
+		Status _original = getOriginal();
+		if (_original != null) {
+			w.key("retweeted_status");
+			_original.writeJSON2(w, true);
+		}
+		w.endObject();
+	}
+
+	/**
+	 * Write this status in {@link BinaryWriter}'s format. Read it back with
+	 * {@link #Status(BinaryReader, User)}.
+	 *
+	 * @param withUser
+	 *            false when writing the status inside its user
+	 */
+	void writeBinary(BinaryWriter out, boolean withUser) {
+		EnumMap<KEntityType, List<TweetEntity>> es = getEntities();
+		Status _original = getOriginal();
+		User _user = getUser();
+		boolean hasUser = withUser && _user != null;
+		out.writeInt((favorited ? FAVORITED : 0) | (sensitive ? SENSITIVE : 0)
+				| (hasUser ? HAS_USER : 0) | (place != null ? HAS_PLACE : 0)
+				| (es != null ? HAS_ENTITIES : 0)
+				| (_original != null ? HAS_ORIGINAL : 0)
+				| (inReplyToIdLong != 0 ? HAS_REPLY : 0));
+		out.writeId(idLong);
+		if (inReplyToIdLong != 0) {
+			// replies are usually to a recent tweet
+			out.writeSigned(idLong - inReplyToIdLong);
+		}
+		out.writeDate(createdAt, true);
+		out.writeString(text);
+		out.writeSymbol(source);
+		out.writeInt(retweetCount + 1);
+		out.writeInt(rtPrefix);
+		if (hasUser) {
+			_user.writeBinary(out, false);
+		}
+		if (place != null) {
+			place.writeBinary(out);
+		} else {
+			out.writeSymbol(location);
+		}
+		if (es != null) {
+			TweetEntity.writeBinary(out, es);
+		}
+		if (_original != null) {
+			_original.writeBinary(out, true);
+		}
+	}
+
 	/**
 	 * @return text, with the t.co urls replaced.
 	 * Use-case: for filtering based on text contents, when we want to
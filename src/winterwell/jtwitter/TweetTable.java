@@ -0,0 +1,674 @@
+package winterwell.jtwitter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import winterwell.json.JSONException;
+import winterwell.json.JSONReader;
+import winterwell.jtwitter.Twitter.KEntityType;
+import winterwell.jtwitter.Twitter.TweetEntity;
+
+/**
+ * A column store for tweets, for analytics over fetched timelines, searches
+ * or streams: count by user, by time window, by hashtag, etc.
+ * <p>
+ * Each field is held in its own array -- primitive arrays for the ids,
+ * timestamps, user ids and retweet counts; dictionary codes for the text,
+ * source, screen-names and hashtags (and the user ids again, for counting).
+ * So a scan over one field reads consecutive memory, instead of chasing
+ * Status -&gt; User -&gt; EnumMap pointers.
+ * <p>
+ * Filters return a {@link BitSet} of rows, which can be combined with
+ * {@link BitSet#and(BitSet)} etc. Aggregates take such a selection, or null
+ * for all rows.
+ * <p>
+ * Not thread safe.
+ *
+ * @author daniel
+ * @testedby {@link TweetTableTest}
+ */
+public class TweetTable {
+
+	/**
+	 * Maps Strings to int codes, so a column of repeated Strings (e.g. the
+	 * source) is an int[].
+	 */
+	private static final class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<String, Integer>();
+		private final List<String> values = new ArrayList<String>();
+
+		/**
+		 * @return the code for s, adding it if needed. -1 for null
+		 */
+		int code(String s) {
+			if (s == null)
+				return -1;
+			Integer c = codes.get(s);
+			if (c == null) {
+				c = values.size();
+				values.add(s);
+				codes.put(s, c);
+			}
+			return c;
+		}
+
+		/**
+		 * @return the code for s, or -1 if it isn't here
+		 */
+		int find(String s) {
+			Integer c = codes.get(s);
+			return c == null ? -1 : c;
+		}
+
+		String get(int code) {
+			return code == -1 ? null : values.get(code);
+		}
+
+		int size() {
+			return values.size();
+		}
+	}
+
+	/**
+	 * The keys read by {@link #add(JSONReader)}
+	 */
+	private enum Field {
+		id, id_str, created_at, text, source, retweet_count, user, entities
+	}
+
+	private static final FieldTable<Field> FIELDS = new FieldTable<Field>(Field.class);
+
+	/**
+	 * @param json
+	 *            A json array of tweets, as returned by e.g. a timeline call.
+	 * @return a table of the tweets. This is decoded straight from the json,
+	 *         without making Status objects.
+	 * @throws TwitterException.Parsing
+	 */
+	public static TweetTable parse(String json) throws TwitterException {
+		TweetTable table = new TweetTable();
+		try {
+			JSONReader r = new JSONReader(InternalUtils.jsonTokener(json));
+			if (r.next() != JSONReader.Token.START_ARRAY)
+				throw r.syntaxError("A JSONArray text must start with '['");
+			while (r.next() != JSONReader.Token.END_ARRAY) {
+				if (r.getToken() == JSONReader.Token.VALUE_NULL)
+					continue;
+				if (r.getToken() != JSONReader.Token.START_OBJECT)
+					throw r.syntaxError("Expected a tweet object");
+				table.add(r);
+			}
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(json, e);
+		}
+		return table;
+	}
+
+	private int[] hashtags = new int[16];
+
+	/**
+	 * The hashtags for row i are hashtags[hashtagStarts[i] ...
+	 * hashtagStarts[i+1]-1]
+	 */
+	private int[] hashtagStarts = new int[17];
+
+	private final Dictionary hashtagDict = new Dictionary();
+
+	private long[] ids = new long[16];
+
+	private int[] retweetCounts = new int[16];
+
+	private int size;
+
+	private int[] sources = new int[16];
+
+	private final Dictionary sourceDict = new Dictionary();
+
+	private int[] texts = new int[16];
+
+	/**
+	 * Dictionary encoded, as retweets share their text
+	 */
+	private final Dictionary textDict = new Dictionary();
+
+	/**
+	 * Milliseconds since the epoch. 0 if unknown.
+	 */
+	private long[] times = new long[16];
+
+	private long[] userIds = new long[16];
+
+	/**
+	 * The user ids again, dictionary encoded, so that counting by user is
+	 * counting into an array.
+	 */
+	private int[] users = new int[16];
+
+	/**
+	 * user id to code
+	 */
+	private final Map<Long, Integer> userCodes = new HashMap<Long, Integer>();
+
+	/**
+	 * code to user id
+	 */
+	private long[] userCodeIds = new long[16];
+
+	private int[] userNames = new int[16];
+
+	private final Dictionary userNameDict = new Dictionary();
+
+	public TweetTable() {
+	}
+
+	/**
+	 * @param statuses
+	 *            Copied into the table.
+	 */
+	public TweetTable(Collection<? extends Status> statuses) {
+		grow(statuses.size());
+		for (Status status : statuses) {
+			add(status);
+		}
+	}
+
+	/**
+	 * Add a row.
+	 *
+	 * @param status
+	 */
+	public void add(Status status) {
+		User user = status.getUser();
+		List<TweetEntity> tags = status.getTweetEntities(KEntityType.hashtags);
+		int row = add2_start(status.getIdLong(), status.createdAt == null ? 0
+				: status.createdAt.getTime(), user == null || user.id == null ? 0
+				: user.id, user == null ? null : user.screenName,
+				status.retweetCount, status.text, status.source);
+		if (tags != null) {
+			for (TweetEntity tag : tags) {
+				// the text slice includes the #
+				String t = tag.toString();
+				add2_hashtag(t.startsWith("#") ? t.substring(1) : t);
+			}
+		}
+		add2_end(row);
+	}
+
+	/**
+	 * Add a row straight from json.
+	 *
+	 * @param r
+	 *            Must have just returned START_OBJECT
+	 */
+	private void add(JSONReader r) throws JSONException {
+		long id = 0, userId = 0;
+		int rtc = -1;
+		String c = null, text = null, src = null, sn = null;
+		List<String> tags = null;
+		while (r.nextField()) {
+			Field f = FIELDS.get(r.getString());
+			if (f == null) {
+				r.skipValue();
+				continue;
+			}
+			switch (f) {
+			case id_str:
+				id = InternalUtils.jsonGetIdStr(r, id);
+				break;
+			case id:
+				id = InternalUtils.jsonGetId(r);
+				break;
+			case created_at:
+				c = InternalUtils.jsonGet(r);
+				break;
+			case text:
+				text = InternalUtils.unencode(InternalUtils.jsonGet(r));
+				break;
+			case source:
+				src = InternalUtils.jsonGet(r);
+				if (src != null && src.contains("&lt;")) {
+					src = InternalUtils.unencode(src);
+				}
+				break;
+			case retweet_count:
+				rtc = InternalUtils.jsonGetInt(r, -1);
+				break;
+			case user:
+				if (r.next() != JSONReader.Token.START_OBJECT) {
+					r.skipChildren();
+					break;
+				}
+				while (r.nextField()) {
+					String k = r.getString();
+					if ("id".equals(k)) {
+						userId = InternalUtils.jsonGetId(r);
+					} else if ("screen_name".equals(k)) {
+						sn = InternalUtils.jsonGet(r);
+					} else {
+						r.skipValue();
+					}
+				}
+				break;
+			case entities:
+				if (r.next() != JSONReader.Token.START_OBJECT) {
+					r.skipChildren();
+					break;
+				}
+				while (r.nextField()) {
+					if (!"hashtags".equals(r.getString())) {
+						r.skipValue();
+						continue;
+					}
+					if (r.next() != JSONReader.Token.START_ARRAY) {
+						r.skipChildren();
+						continue;
+					}
+					while (r.next() == JSONReader.Token.START_OBJECT) {
+						while (r.nextField()) {
+							if (!"text".equals(r.getString())) {
+								r.skipValue();
+								continue;
+							}
+							String tag = InternalUtils.jsonGet(r);
+							if (tag != null) {
+								if (tags == null)
+									tags = new ArrayList<String>(2);
+								tags.add(tag);
+							}
+						}
+					}
+					if (r.getToken() != JSONReader.Token.END_ARRAY)
+						throw r.syntaxError("Expected a hashtag object");
+				}
+				break;
+			}
+		}
+		if (id == 0)
+			throw r.syntaxError("No id");
+		if (sn != null && !Twitter.CASE_SENSITIVE_SCREENNAMES) {
+			sn = sn.toLowerCase();
+		}
+		long time = c == null ? 0 : InternalUtils.parseDate(c).getTime();
+		int row = add2_start(id, time, userId, sn, rtc, text, src);
+		if (tags != null) {
+			for (String tag : tags) {
+				add2_hashtag(tag);
+			}
+		}
+		add2_end(row);
+	}
+
+	private int add2_start(long id, long time, long userId, String screenName,
+			int retweetCount, String text, String source) {
+		grow(size + 1);
+		int row = size;
+		ids[row] = id;
+		times[row] = time;
+		userIds[row] = userId;
+		Integer code = userCodes.get(userId);
+		if (code == null) {
+			code = userCodes.size();
+			if (code == userCodeIds.length) {
+				userCodeIds = copyOf(userCodeIds, code * 2);
+			}
+			userCodeIds[code] = userId;
+			userCodes.put(userId, code);
+		}
+		users[row] = code;
+		userNames[row] = userNameDict.code(screenName);
+		retweetCounts[row] = retweetCount;
+		texts[row] = textDict.code(text);
+		sources[row] = sourceDict.code(source);
+		// no hashtags yet
+		hashtagStarts[row + 1] = hashtagStarts[row];
+		return row;
+	}
+
+	/**
+	 * @param tag
+	 *            without the #. Hashtags are case insensitive, so this is
+	 *            lower-cased.
+	 */
+	private void add2_hashtag(String tag) {
+		int n = hashtagStarts[size + 1];
+		if (n == hashtags.length) {
+			hashtags = copyOf(hashtags, n * 2);
+		}
+		hashtags[n] = hashtagDict.code(tag.toLowerCase());
+		hashtagStarts[size + 1] = n + 1;
+	}
+
+	private void add2_end(int row) {
+		assert row == size;
+		size++;
+	}
+
+	private void grow(int capacity) {
+		if (capacity <= ids.length)
+			return;
+		int n = Math.max(capacity, ids.length * 2);
+		ids = copyOf(ids, n);
+		times = copyOf(times, n);
+		userIds = copyOf(userIds, n);
+		users = copyOf(users, n);
+		userNames = copyOf(userNames, n);
+		retweetCounts = copyOf(retweetCounts, n);
+		texts = copyOf(texts, n);
+		sources = copyOf(sources, n);
+		hashtagStarts = copyOf(hashtagStarts, n + 1);
+	}
+
+	/**
+	 * Like Arrays.copyOf -- which isn't in Java 5 or older Androids.
+	 */
+	private static int[] copyOf(int[] a, int n) {
+		int[] b = new int[n];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, n));
+		return b;
+	}
+
+	private static long[] copyOf(long[] a, int n) {
+		long[] b = new long[n];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, n));
+		return b;
+	}
+
+	// ---- Rows ----
+
+	public int size() {
+		return size;
+	}
+
+	public long getId(int row) {
+		check(row);
+		return ids[row];
+	}
+
+	/**
+	 * @return milliseconds since the epoch, or 0 if unknown
+	 */
+	public long getTime(int row) {
+		check(row);
+		return times[row];
+	}
+
+	/**
+	 * @return 0 if unknown
+	 */
+	public long getUserId(int row) {
+		check(row);
+		return userIds[row];
+	}
+
+	/**
+	 * @return can be null
+	 */
+	public String getScreenName(int row) {
+		check(row);
+		return userNameDict.get(userNames[row]);
+	}
+
+	/**
+	 * @return -1 if unknown
+	 */
+	public int getRetweetCount(int row) {
+		check(row);
+		return retweetCounts[row];
+	}
+
+	public String getText(int row) {
+		check(row);
+		return textDict.get(texts[row]);
+	}
+
+	public String getSource(int row) {
+		check(row);
+		return sourceDict.get(sources[row]);
+	}
+
+	/**
+	 * @return the hashtags, lower-cased, without the #. Never null
+	 */
+	public List<String> getHashtags(int row) {
+		check(row);
+		int from = hashtagStarts[row], to = hashtagStarts[row + 1];
+		if (from == to)
+			return Collections.emptyList();
+		List<String> tags = new ArrayList<String>(to - from);
+		for (int i = from; i < to; i++) {
+			tags.add(hashtagDict.get(hashtags[i]));
+		}
+		return tags;
+	}
+
+	private void check(int row) {
+		if (row < 0 || row >= size)
+			throw new IndexOutOfBoundsException(row + " of " + size);
+	}
+
+	// ---- Filters ----
+
+	/**
+	 * @return a selection of every row
+	 */
+	public BitSet all() {
+		BitSet rows = new BitSet(size);
+		rows.set(0, size);
+		return rows;
+	}
+
+	/**
+	 * @param from
+	 *            inclusive, milliseconds since the epoch
+	 * @param to
+	 *            exclusive
+	 * @return the rows posted in [from, to)
+	 */
+	public BitSet between(long from, long to) {
+		BitSet rows = new BitSet(size);
+		long[] ts = times;
+		for (int i = 0, n = size; i < n; i++) {
+			long t = ts[i];
+			if (t >= from && t < to) {
+				rows.set(i);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows by this user
+	 */
+	public BitSet byUser(long userId) {
+		BitSet rows = new BitSet(size);
+		long[] us = userIds;
+		for (int i = 0, n = size; i < n; i++) {
+			if (us[i] == userId) {
+				rows.set(i);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @param tag
+	 *            with or without the #. Case insensitive.
+	 * @return the rows with this hashtag
+	 */
+	public BitSet withHashtag(String tag) {
+		BitSet rows = new BitSet(size);
+		if (tag.startsWith("#")) {
+			tag = tag.substring(1);
+		}
+		int code = hashtagDict.find(tag.toLowerCase());
+		if (code == -1)
+			return rows;
+		int[] starts = hashtagStarts, tags = hashtags;
+		for (int i = 0, n = size; i < n; i++) {
+			for (int j = starts[i], e = starts[i + 1]; j < e; j++) {
+				if (tags[j] == code) {
+					rows.set(i);
+					break;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows with at least min retweets
+	 */
+	public BitSet withRetweets(int min) {
+		BitSet rows = new BitSet(size);
+		int[] rts = retweetCounts;
+		for (int i = 0, n = size; i < n; i++) {
+			if (rts[i] >= min) {
+				rows.set(i);
+			}
+		}
+		return rows;
+	}
+
+	// ---- Aggregates ----
+
+	/**
+	 * @param rows
+	 *            null for all
+	 * @return the number of rows
+	 */
+	public int count(BitSet rows) {
+		return rows == null ? size : rows.cardinality();
+	}
+
+	/**
+	 * A histogram over time.
+	 *
+	 * @param rows
+	 *            null for all
+	 * @param start
+	 *            milliseconds since the epoch
+	 * @param bucket
+	 *            the width of each bucket, in milliseconds
+	 * @param buckets
+	 * @return counts per bucket. Rows outside [start, start +
+	 *         bucket*buckets) are not counted.
+	 */
+	public int[] countByTime(BitSet rows, long start, long bucket, int buckets) {
+		assert bucket > 0 : bucket;
+		int[] counts = new int[buckets];
+		long[] ts = times;
+		if (rows == null) {
+			for (int i = 0, n = size; i < n; i++) {
+				long b = (ts[i] - start) / bucket;
+				if (ts[i] >= start && b < buckets) {
+					counts[(int) b]++;
+				}
+			}
+			return counts;
+		}
+		for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows
+				.nextSetBit(i + 1)) {
+			long b = (ts[i] - start) / bucket;
+			if (ts[i] >= start && b < buckets) {
+				counts[(int) b]++;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @param rows
+	 *            null for all
+	 * @return user id to number of tweets
+	 */
+	public Map<Long, Integer> countByUser(BitSet rows) {
+		int[] counts = new int[userCodes.size()];
+		int[] us = users;
+		if (rows == null) {
+			for (int i = 0, n = size; i < n; i++) {
+				counts[us[i]]++;
+			}
+		} else {
+			for (int i = next(rows, 0); i != -1; i = next(rows, i + 1)) {
+				counts[us[i]]++;
+			}
+		}
+		Map<Long, Integer> map = new HashMap<Long, Integer>();
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] != 0) {
+				map.put(userCodeIds[code], counts[code]);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * @param rows
+	 *            null for all
+	 * @return hashtag (lower-case, without the #) to number of tweets using it
+	 */
+	public Map<String, Integer> countHashtags(BitSet rows) {
+		int[] counts = new int[hashtagDict.size()];
+		int[] starts = hashtagStarts, tags = hashtags;
+		if (rows == null) {
+			// every row: just run through the codes
+			for (int j = 0, e = starts[size]; j < e; j++) {
+				counts[tags[j]]++;
+			}
+		} else {
+			for (int i = next(rows, 0); i != -1; i = next(rows, i + 1)) {
+				for (int j = starts[i], e = starts[i + 1]; j < e; j++) {
+					counts[tags[j]]++;
+				}
+			}
+		}
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] != 0) {
+				map.put(hashtagDict.get(code), counts[code]);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * @param rows
+	 *            null for all
+	 * @return the total retweet count (unknown counts are skipped)
+	 */
+	public long sumRetweets(BitSet rows) {
+		long sum = 0;
+		int[] rts = retweetCounts;
+		if (rows == null) {
+			for (int i = 0, n = size; i < n; i++) {
+				sum += Math.max(0, rts[i]);
+			}
+			return sum;
+		}
+		for (int i = next(rows, 0); i != -1; i = next(rows, i + 1)) {
+			sum += Math.max(0, rts[i]);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the next selected row from i, or -1
+	 */
+	private int next(BitSet rows, int i) {
+		if (rows == null)
+			return i < size ? i : -1;
+		i = rows.nextSetBit(i);
+		return i < size ? i : -1;
+	}
+
+	@Override
+	public String toString() {
+		return "TweetTable[" + size + " tweets]";
+	}
+
+}
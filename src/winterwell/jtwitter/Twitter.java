@@ -8,6 +8,7 @@ import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,8 @@ import java.util.regex.Pattern;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONWriter;
 import winterwell.jtwitter.Twitter.KEntityType;
 import winterwell.jtwitter.TwitterException.E401;
 import winterwell.jtwitter.TwitterException.E403;
@@ -453,56 +456,154 @@ public class Twitter implements Serializable {
 		TweetEntity(ITweet tweet, String rawText, KEntityType type, JSONObject obj)
 				throws JSONException 
 		{
-			this.tweet = tweet;
-			this.type = type;
+			this(tweet, rawText, type, obj.getJSONArray("indices").getInt(0), 
+					obj.getJSONArray("indices").getInt(1), display(type, obj));
+		}
+
+		private static String display(KEntityType type, JSONObject obj) throws JSONException {
 			switch (type) {
 			case urls:
 				Object eu = obj.opt("expanded_url");
-				display = JSONObject.NULL.equals(eu) ? null : (String) eu;
-				break;
+				return JSONObject.NULL.equals(eu) ? null : (String) eu;
 			case user_mentions:
-				display = obj.getString("name");
-				break;
+				return obj.getString("name");
 			default:
-				display = null;
+				return null;
 			}
-			
-			// start, end
-			JSONArray indices = obj.getJSONArray("indices");
-			int _start = indices.getInt(0);
-			int _end = indices.getInt(1);
-			assert _start >= 0 && _end >= _start : obj;
+		}
+
+		/**
+		 * 
+		 * @param tweet
+		 * @param rawText Needed to undo the indexing errors created by entity encoding
+		 * @param type
+		 * @param _start As given by Twitter
+		 * @param _end As given by Twitter
+		 * @param display
+		 */
+		TweetEntity(ITweet tweet, String rawText, KEntityType type, int _start, int _end, String display) 
+		{
+			this.tweet = tweet;
+			this.type = type;
+			this.display = display;
+			assert _start >= 0 && _end >= _start : type+" "+_start+" "+_end;
+			// Protect against (rare) dud data from Twitter
+			_end = Math.min(_end, rawText.length());
+			_start = Math.min(_start, _end);
 			// Sadly, due to entity encoding, start/end may be off!
 			String text = tweet.getText();
-			if (rawText.regionMatches(_start, text, _start, _end - _start)) {
-				// normal case: all OK			
+			if (rawText == text || rawText.indexOf('&') == -1) {
+				// normal case: all OK
 				start = _start; end = _end;
 				return;
 			}
-			// oh well - let's correct start/end
-			// Note: This correction go wrong in a particular case: 
-			// encoding has messed up the indices & we have a repeated entity.
-			// ??Do we care enough to fix such a rare corner case with moderately harmless side-effects?
-			
-			// Protect against (rare) dud data from Twitter
-			_end = Math.min(_end, rawText.length());
-			_start = Math.min(_start, _end);
-			if (_start==_end) { // paranoia
-				start = _start; 
-				end = _end;
+			if (rawText.indexOf(0) == -1) {
+				// correct start/end by counting the entities before them
+				start = InternalUtils.unencodedIndex(rawText, _start);
+				end = InternalUtils.unencodedIndex(rawText, _end);
 				return;
 			}
-				
-			String entityText = rawText.substring(_start, _end);
+			// oh well - zero-byte chars get trimmed, so search for it
+			// Note: This correction go wrong in a particular case: 
+			// encoding has messed up the indices & we have a repeated entity.
+			String entityText = InternalUtils.unencode(rawText.substring(_start, _end));
 			int i = text.indexOf(entityText);
-			if (i==-1) {
-				// This can't legitimately happen, but handle it anyway 'cos it does (rare & random)
-				entityText = InternalUtils.unencode(entityText);
-				i = text.indexOf(entityText);
-				if (i==-1) i = _start; // give up gracefully
+			start = i == -1 ? Math.min(_start, text.length()) : i; // give up gracefully
+			end = Math.min(start + entityText.length(), text.length());
+		}
+
+		/**
+		 * Entity info as read from json, before the tweet text is known.
+		 * Only used with {@link JSONReader}.
+		 */
+		static final class Raw {
+			final String display;
+			final int end;
+			final int start;
+			final KEntityType type;
+
+			Raw(KEntityType type, int start, int end, String display) {
+				this.type = type;
+				this.start = start;
+				this.end = end;
+				this.display = display;
+			}
+		}
+
+		/**
+		 * Read an "entities" object. The reader must have just returned
+		 * START_OBJECT. Unknown entity types are skipped.
+		 * 
+		 * @param r
+		 * @return all the entities
+		 * @throws JSONException
+		 */
+		static List<Raw> read(JSONReader r) throws JSONException {
+			List<Raw> raws = new ArrayList<Raw>();
+			while (r.nextField()) {
+				KEntityType type = ENTITY_TYPES.get(r.getString());
+				if (type == null || r.next() != JSONReader.Token.START_ARRAY) {
+					r.skipChildren();
+					continue;
+				}
+				while (r.next() == JSONReader.Token.START_OBJECT) {
+					int _start = -1, _end = -1;
+					String display = null;
+					while (r.nextField()) {
+						String k = r.getString();
+						if ("indices".equals(k)) {
+							if (r.next() != JSONReader.Token.START_ARRAY) {
+								throw r.syntaxError("Bad indices");
+							}
+							r.next();
+							_start = r.getInt();
+							r.next();
+							_end = r.getInt();
+							r.next();
+							r.skipChildren(); // paranoia: skip extra numbers
+						} else if (("expanded_url".equals(k) && type == KEntityType.urls) 
+								|| ("name".equals(k) && type == KEntityType.user_mentions)) {
+							r.next();
+							display = r.getValue() == JSONObject.NULL? null : r.getString();
+							r.skipChildren();
+						} else {
+							r.skipValue();
+						}
+					}
+					raws.add(new Raw(type, _start, _end, display));
+				}
+				if (r.getToken() != JSONReader.Token.END_ARRAY) {
+					throw r.syntaxError("Expected an entity object");
+				}
+			}
+			return raws;
+		}
+
+		/**
+		 * Returns null for unknown types (e.g. media)
+		 */
+		private static final FieldTable<KEntityType> ENTITY_TYPES = new FieldTable<KEntityType>(
+				KEntityType.class);
+
+		/**
+		 * Companion to {@link #read(JSONReader)}
+		 * @return Can be null if no entities of this type are specified
+		 */
+		static List<TweetEntity> parse(ITweet tweet, String rawText, KEntityType type,
+				List<Raw> raws) 
+		{
+			ArrayList<TweetEntity> list = null;
+			try {
+				for (Raw raw : raws) {
+					if (raw.type != type) continue;
+					if (list == null) list = new ArrayList<TweetEntity>(2);
+					list.add(new TweetEntity(tweet, rawText, type, raw.start, raw.end, raw.display));
+				}
+				return list;
+			} catch (Throwable e) {
+				// whatever bogus data Twitter send, don't fail
+				return null;
 			}
-			start = i; 
-			end = start + _end - _start;		
 		}
 
 		/**
@@ -516,6 +617,135 @@ public class Twitter implements Serializable {
 			this.display = display;
 		}
 
+		/**
+		 * Write an "entities" object, in Twitter's format.
+		 * 
+		 * @param entities
+		 *            As held by a Status or Message. Lists can be null.
+		 */
+		static void writeJSON(JSONWriter w,
+				Map<KEntityType, List<TweetEntity>> entities)
+				throws JSONException {
+			w.object();
+			for (KEntityType type : KEntityType.values()) {
+				List<TweetEntity> es = entities.get(type);
+				if (es == null)
+					continue;
+				w.key(type.name()).array();
+				for (TweetEntity te : es) {
+					te.writeJSON(w);
+				}
+				w.endArray();
+			}
+			w.endObject();
+		}
+
+		/**
+		 * Write entities for {@link BinaryWriter}: per type, the number of
+		 * entities + 1 (0 for none), then each one's start, length and
+		 * display text.
+		 *
+		 * @param entities
+		 *            As held by a Status or Message. Lists can be null.
+		 */
+		static void writeBinary(BinaryWriter out,
+				Map<KEntityType, List<TweetEntity>> entities) {
+			for (KEntityType type : KEntityType.values()) {
+				List<TweetEntity> es = entities.get(type);
+				if (es == null) {
+					out.writeInt(0);
+					continue;
+				}
+				out.writeInt(es.size() + 1);
+				for (TweetEntity te : es) {
+					out.writeInt(te.start);
+					out.writeInt(te.end - te.start);
+					// urls are rarely repeated, names often are
+					if (type == KEntityType.urls) {
+						out.writeString(te.display);
+					} else {
+						out.writeSymbol(te.display);
+					}
+				}
+			}
+		}
+
+		/**
+		 * The reverse of {@link #writeBinary(BinaryWriter, Map)}
+		 */
+		static EnumMap<KEntityType, List<TweetEntity>> readBinary(
+				BinaryReader in, ITweet tweet) throws IOException {
+			EnumMap<KEntityType, List<TweetEntity>> entities = new EnumMap<KEntityType, List<TweetEntity>>(
+					KEntityType.class);
+			for (KEntityType type : KEntityType.values()) {
+				int n = in.readInt() - 1;
+				if (n < 0) {
+					continue;
+				}
+				List<TweetEntity> es = new ArrayList<TweetEntity>(n);
+				for (int i = 0; i < n; i++) {
+					int start = in.readInt();
+					int end = start + in.readInt();
+					String display = type == KEntityType.urls ? in
+							.readString() : in.readSymbol();
+					es.add(new TweetEntity(tweet, type, start, end, display));
+				}
+				entities.put(type, es);
+			}
+			return entities;
+		}
+
+		/**
+		 * Write as Twitter would, e.g.
+		 * {"screen_name":"bob","name":"Bob","indices":[0,4]}
+		 */
+		void writeJSON(JSONWriter w) throws JSONException {
+			w.object();
+			String s = toString();
+			switch (type) {
+			case hashtags:
+				w.key("text").value(s.startsWith("#") ? s.substring(1) : s);
+				break;
+			case urls:
+				w.key("url").value(s);
+				if (display != null)
+					w.key("expanded_url").value(display);
+				break;
+			case user_mentions:
+				String sn = s.startsWith("@") ? s.substring(1) : s;
+				w.key("screen_name").value(sn);
+				// name is required when reading
+				w.key("name").value(display == null ? sn : display);
+				break;
+			}
+			// The text is written entity-encoded, so shift the indices to
+			// match (which is what the constructor expects).
+			String text = tweet.getText();
+			int shift = encodingShift(text, 0, start);
+			w.key("indices").array().value(start + shift)
+					.value(end + shift + encodingShift(text, start, end))
+					.endArray();
+			w.endObject();
+		}
+
+		/**
+		 * @return the extra characters which
+		 *         {@link InternalUtils#encodeEntities(String)} adds to
+		 *         text[from, to)
+		 */
+		private static int encodingShift(String text, int from, int to) {
+			int shift = 0;
+			to = Math.min(to, text.length());
+			for (int i = from; i < to; i++) {
+				char c = text.charAt(i);
+				if (c == '&')
+					shift += 4;
+				else if (c == '<' || c == '>')
+					shift += 3;
+			}
+			return shift;
+		}
+
 		/**
 		 * @return For a url: the expanded version For a user-mention: the
 		 *         user's name
@@ -566,6 +796,21 @@ public class Twitter implements Serializable {
 	 */
 	public static int LINK_LENGTH = 20;
 
+	/**
+	 * Json arrays of tweets or users longer than this (in characters) are
+	 * decoded on several threads. The default is 64k -- around 20 tweets.
+	 * Set to Integer.MAX_VALUE to always decode on the calling thread.
+	 * Single-processor machines always do.
+	 */
+	public static int PARALLEL_PARSE_THRESHOLD = 64 * 1024;
+
+	/**
+	 * How many authors to remember, so that tweets by the same author share one
+	 * User object (see {@link Status#getUser()}). The least recently seen
+	 * authors are dropped first. Set to 0 to give every tweet its own User.
+	 */
+	public static int USER_CACHE_SIZE = 10000;
+
 	public static long PHOTO_SIZE_LIMIT;
 
 	public static final String SEARCH_MIXED = "mixed";
@@ -1361,8 +1606,19 @@ public class Twitter implements Serializable {
 			int hits = obj.getInt("remaining_hits");
 			// Update the RateLimit objects
 			// http.updateRateLimits(KRequestType.NORMAL); no header info sent!
-			if (http instanceof URLConnectionHttpClient) {
-				URLConnectionHttpClient _http = (URLConnectionHttpClient) http;
+			// unwrap -- the wrappers can be nested
+			IHttpClient base = http;
+			while (true) {
+				if (base instanceof CoalescingHttpClient) {
+					base = ((CoalescingHttpClient) base).getBase();
+				} else if (base instanceof PooledHttpClient) {
+					base = ((PooledHttpClient) base).getBase();
+				} else {
+					break;
+				}
+			}
+			if (base instanceof URLConnectionHttpClient) {
+				URLConnectionHttpClient _http = (URLConnectionHttpClient) base;
 				RateLimit rateLimit = new RateLimit(
 						obj.getString("hourly_limit"), Integer.toString(hits),
 						obj.getString("reset_time"));
@@ -1575,11 +1831,7 @@ public class Twitter implements Serializable {
 				: null;
 		String json = http.getPage(TWITTER_URL + "/statuses/show/" + id
 				+ ".json", vars, http.canAuthenticate());
-		try {
-			return new Status(new JSONObject(json), null);
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(json, e);
-		}
+		return Status.getStatus(json);
 	}
 
 	/**
@@ -1638,13 +1890,13 @@ public class Twitter implements Serializable {
 				break;
 			}
 			// Next page must start strictly before this one
-			maxId = nextpage.get(nextpage.size() - 1).id
-					.subtract(BigInteger.ONE);
+			long nextMaxId = nextpage.get(nextpage.size() - 1).getIdLong() - 1;
+			maxId = BigInteger.valueOf(nextMaxId);
 			// System.out.println(maxId + " -> " + nextpage.get(0).id);
 
 			msgs.addAll(dateFilter(nextpage));
 			// pageNumber++;
-			var.put("max_id", maxId.toString());
+			var.put("max_id", Long.toString(nextMaxId));
 		}
 		return msgs;
 	}
@@ -1965,7 +2217,7 @@ public class Twitter implements Serializable {
 			String result = post(
 					TWITTER_URL + "/statuses/retweet/" + tweet.getId()
 							+ ".json", null, true);
-			return new Status(new JSONObject(result), null);
+			return Status.getStatus(result);
 
 			// error handling
 		} catch (E403 e) {
@@ -2659,13 +2911,9 @@ public class Twitter implements Serializable {
 		// media[] Supported image formats are PNG, JPG and GIF. Animated GIFs are not supported.
 		String result = http.post(TWITTER_URL + "/statuses/update.json", vars,
 					true);
-		try {
-			Status s = new Status(new JSONObject(result), null);
-			s = updateStatus2_safetyCheck(statusText, s);
-			return s;
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(result, e);
-		}
+		Status s = Status.getStatus(result);
+		s = updateStatus2_safetyCheck(statusText, s);
+		return s;
 	}
 
 	/**
@@ -2741,13 +2989,9 @@ public class Twitter implements Serializable {
 		}
 		String result = http.post(TWITTER_URL + "/statuses/update.json", vars,
 					true);
-		try {
-			Status s = new Status(new JSONObject(result), null);
-			s = updateStatus2_safetyCheck(statusText, s);
-			return s;
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(result, e);
-		}
+		Status s = Status.getStatus(result);
+		s = updateStatus2_safetyCheck(statusText, s);
+		return s;
 	}
 
 	private Status updateStatus2_safetyCheck(String statusText, Status s) {
@@ -2829,7 +3073,7 @@ public class Twitter implements Serializable {
 					// TWITTER_URL +
 					"http://upload.twitter.com/1/statuses/update_with_media.json",
 							vars, true);
-			Status s = new Status(new JSONObject(result), null);
+			Status s = Status.getStatus(result);
 			return s;
 		} catch (E403 e) {
 			// test for repetition (which gets a 403)
@@ -4,6 +4,7 @@ import java.util.Date;
 
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONWriter;
 
 public class TwitterEvent {
 
@@ -117,4 +118,35 @@ public class TwitterEvent {
 	public String toString() {
 		return source + " " + type + " " + target + " " + getTargetObject();
 	}
+
+	/**
+	 * Write this event as json, in the format of Twitter's user streams.
+	 * 
+	 * @param w
+	 * @throws JSONException
+	 *             (wrapping an IOException) if the writer fails
+	 * @see NDJSONWriter
+	 */
+	public void writeJSON(JSONWriter w) throws JSONException {
+		w.object();
+		w.key("event").value(type);
+		if (createdAt != null) {
+			w.key("created_at").value(InternalUtils.formatDate(createdAt));
+		}
+		w.key("source");
+		source.writeJSON(w);
+		w.key("target");
+		target.writeJSON(w);
+		if (targetObject instanceof TwitterList) {
+			w.key("target_object");
+			((TwitterList) targetObject).writeJSON(w);
+		} else if (targetObject instanceof Status) {
+			w.key("target_object");
+			((Status) targetObject).writeJSON(w);
+		} else if (targetObject != null) {
+			// the raw json
+			w.key("target_object").value(targetObject);
+		}
+		w.endObject();
+	}
 }
@@ -1,7 +1,5 @@
 package winterwell.jtwitter;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -13,6 +11,7 @@ import java.util.Map;
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONWriter;
 import winterwell.jtwitter.Twitter.IHttpClient;
 
 /**
@@ -231,13 +230,9 @@ public class TwitterList extends AbstractList<User> {
 	 *             on failure
 	 */
 	public void delete() {
-		try {
-			String URL = jtwit.TWITTER_URL + "/" + owner.screenName + "/lists/"
-					+ URLEncoder.encode(slug, "utf-8") + ".json?_method=DELETE";
-			http.post(URL, null, http.canAuthenticate());
-		} catch (UnsupportedEncodingException e) {
-			throw new TwitterException(e);
-		}
+		String URL = jtwit.TWITTER_URL + "/" + owner.screenName + "/lists/"
+				+ InternalUtils.encode(slug) + ".json?_method=DELETE";
+		http.post(URL, null, http.canAuthenticate());
 	}
 
 	@Override
@@ -296,16 +291,12 @@ public class TwitterList extends AbstractList<User> {
 	 */
 	// Added TG 3/31/10
 	public List<Status> getStatuses() throws TwitterException {
-		try {
-			String jsonListStatuses = http.getPage(
-					jtwit.TWITTER_URL + "/" + owner.screenName + "/lists/"
-							+ URLEncoder.encode(slug, "UTF-8")
-							+ "/statuses.json", null, http.canAuthenticate());
-			List<Status> msgs = Status.getStatuses(jsonListStatuses);
-			return msgs;
-		} catch (UnsupportedEncodingException e) {
-			throw new TwitterException(e);
-		}
+		String jsonListStatuses = http.getPage(
+				jtwit.TWITTER_URL + "/" + owner.screenName + "/lists/"
+						+ InternalUtils.encode(slug)
+						+ "/statuses.json", null, http.canAuthenticate());
+		List<Status> msgs = Status.getStatuses(jsonListStatuses);
+		return msgs;
 	}
 
 	public int getSubscriberCount() {
@@ -365,6 +356,26 @@ public class TwitterList extends AbstractList<User> {
 		owner = new User(user, null);
 	}
 
+	/**
+	 * Write the list's details (not its members) as json, as read by
+	 * {@link #init2(JSONObject)}. This does not fetch anything.
+	 */
+	void writeJSON(JSONWriter w) throws JSONException {
+		w.object();
+		if (id != null) {
+			w.key("id").value(id);
+		}
+		w.key("name").value(name);
+		w.key("slug").value(slug);
+		w.key("member_count").value(memberCount);
+		w.key("subscriber_count").value(subscriberCount);
+		w.key("mode").value(_private ? "private" : "public");
+		w.key("description").value(description);
+		w.key("user");
+		owner.writeJSON(w);
+		w.endObject();
+	}
+
 	public boolean isPrivate() {
 		init();
 		return _private;
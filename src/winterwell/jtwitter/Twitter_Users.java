@@ -123,7 +123,7 @@ public class Twitter_Users {
 					vars, true);
 			// is this needed? doesn't seem to fix things
 			// http.getPage(jtwit.TWITTER_URL+"/friends", null, true);
-			return new User(new JSONObject(page), null);
+			return User.getUser(page);
 		} catch (SuspendedUser e) {
 			throw e;
 		} catch (TwitterException.Repetition e) {
@@ -553,11 +553,7 @@ public class Twitter_Users {
 				screenName);
 		String page = http.getPage(jtwit.TWITTER_URL
 				+ "/notifications/leave.json", vars, true);
-		try {
-			return new User(new JSONObject(page), null);
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(page, e);
-		}
+		return User.getUser(page);
 	}
 
 	/**
@@ -573,11 +569,7 @@ public class Twitter_Users {
 		Map<String, String> vars = InternalUtils.asMap("screen_name", username);
 		String page = http.getPage(jtwit.TWITTER_URL
 				+ "/notifications/follow.json", vars, true);
-		try {
-			return new User(new JSONObject(page), null);
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(page, e);
-		}
+		return User.getUser(page);
 	}
 
 	public User reportSpammer(String screenName) {
@@ -655,12 +647,7 @@ public class Twitter_Users {
 				userId.toString());
 		String json = http.getPage(jtwit.TWITTER_URL + "/users/show.json",
 				vars, http.canAuthenticate());
-		try {
-			User user = new User(new JSONObject(json), null);
-			return user;
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(json, e);
-		}
+		return User.getUser(json);
 	}
 
 	/**
@@ -692,12 +679,7 @@ public class Twitter_Users {
 		if (json.length() == 0)
 			throw new TwitterException.E404(screenName
 					+ " does not seem to exist");
-		try {
-			User user = new User(new JSONObject(json), null);
-			return user;
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(json, e);
-		}
+		return User.getUser(json);
 	}
 
 	/**
@@ -714,6 +696,55 @@ public class Twitter_Users {
 		return bulkShow2("/users/lookup.json", Number.class, userIds);
 	}
 
+	/**
+	 * Fill in stub users (see {@link User#isStub()}). Twitter occasionally
+	 * send a tweet's user as just an id, and parsing never goes back to ask
+	 * -- so call this when you need the full users. Afterwards the tweets'
+	 * {@link Status#getUser()} give the full users (the {@link Status#user}
+	 * fields stay as the stubs). Retweeted originals are included.
+	 * <p>
+	 * Costs one call to Twitter per 100 distinct stub users (via
+	 * {@link #showById(Collection)}), and none if there are no stubs. Users
+	 * which Twitter do not return (e.g. suspended accounts) stay as stubs.
+	 * 
+	 * @param tweets
+	 *            Can include tweets with full users, which are left alone.
+	 * @return the number of tweets which got a full user
+	 */
+	public int hydrate(Collection<? extends Status> tweets) {
+		Map<Long, List<Status>> stubs = new HashMap<Long, List<Status>>();
+		for (Status s : tweets) {
+			hydrate2_collect(s, stubs);
+			hydrate2_collect(s.getOriginal(), stubs);
+		}
+		if (stubs.isEmpty())
+			return 0;
+		List<User> users = showById(stubs.keySet());
+		int cnt = 0;
+		for (User user : users) {
+			List<Status> ss = stubs.get(user.id);
+			if (ss == null)
+				continue;
+			for (Status s : ss) {
+				s.setHydratedUser(user);
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	private static void hydrate2_collect(Status s, Map<Long, List<Status>> stubs) {
+		User user = s == null ? null : s.getUser();
+		if (user == null || ! user.isStub())
+			return;
+		List<Status> ss = stubs.get(user.id);
+		if (ss == null) {
+			ss = new ArrayList<Status>(1);
+			stubs.put(user.id, ss);
+		}
+		ss.add(s);
+	}
+
 	/**
 	 * Destroy: Discontinues friendship with the user specified in the ID
 	 * parameter as the authenticating user.
@@ -743,12 +774,7 @@ public class Twitter_Users {
 			throw e;
 		}
 		// outside the try-catch block in case there is a json exception
-		try {
-			User user = new User(new JSONObject(page), null);
-			return user;
-		} catch (JSONException e) {
-			throw new TwitterException.Parsing(page, e);
-		}
+		return User.getUser(page);
 	}
 
 	/**
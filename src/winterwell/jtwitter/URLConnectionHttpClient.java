@@ -16,6 +16,7 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.MessageDigest;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -81,16 +82,36 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 			KRequestType.class);
 
 	/**
-	 * If true, will wait 1/2 second and make a 2nd request when presented with
-	 * a server error (E50X). Only retries once -- a 2nd fail will throw an exception.
+	 * How to handle server errors (E50X) and timeouts. null by default, for
+	 * no retries.
 	 * 
-	 * This policy handles most Twitter server glitches.
+	 * @see #setRetryOnError(boolean)
+	 * @see #setRetryPolicy(RetryPolicy)
 	 */
-	boolean retryOnError;
+	RetryPolicy retryPolicy;
 
 	protected int timeout = dfltTimeOutMilliSecs;
 
 	private boolean htmlImpliesError = true;
+
+	/**
+	 * If true, don't disconnect after a successful request. The response
+	 * stream has been read to the end & closed, so the JVM returns the socket
+	 * to its keep-alive cache for re-use by the next request to Twitter.
+	 * disconnect() would close it, costing a new TCP (and TLS) handshake per
+	 * call.
+	 */
+	boolean keepAlive = true;
+
+	/**
+	 * @param keepAlive
+	 *            true by default: re-use connections between requests. Set
+	 *            false to close the connection after every request (the old
+	 *            behaviour).
+	 */
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
 	
 	/**
 	 * @param htmlImpliesError default is true. If true, an html response will
@@ -121,20 +142,15 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 			boolean authenticate) throws IOException {
 		if (vars != null && vars.size() != 0) {
 			// add get variables
-			StringBuilder uri = new StringBuilder(url);
+			StringBuilder uri = new StringBuilder(url.length() + 16 * vars.size());
+			uri.append(url);
 			if (url.indexOf('?') == -1) {
-				uri.append("?");
+				uri.append('?');
 			} else if (!url.endsWith("&")) {
-				uri.append("&");
-			}
-			for (Entry<String, String> e : vars.entrySet()) {
-				if (e.getValue() == null) {
-					continue;
-				}
-				String ek = InternalUtils.encode(e.getKey());
-				assert !url.contains(ek + "=") : url + " " + vars;
-				uri.append(ek + "=" + InternalUtils.encode(e.getValue()) + "&");
+				uri.append('&');
 			}
+			assert noRepeats(url, vars) : url + " " + vars;
+			InternalUtils.encodeVars(vars, uri);
 			url = uri.toString();
 		}
 		// Setup a connection
@@ -158,11 +174,19 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 		return connection;
 	}
 
+	private static boolean noRepeats(String url, Map<String, String> vars) {
+		for (String k : vars.keySet()) {
+			if (url.contains(InternalUtils.encode(k) + "=")) return false;
+		}
+		return true;
+	}
+
 	@Override
 	public Twitter.IHttpClient copy() {
 		URLConnectionHttpClient c = new URLConnectionHttpClient(name, password);
 		c.setTimeout(timeout);
-		c.setRetryOnError(retryOnError);
+		c.setRetryPolicy(retryPolicy);
+		c.setKeepAlive(keepAlive);
 		c.setMinRateLimit(minRateLimit);
 		c.rateLimits.putAll(rateLimits);
 		return c;
@@ -198,48 +222,62 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 		return name;
 	}
 
+	/**
+	 * Who we log in as, for {@link CoalescingHttpClient}: the name plus a
+	 * digest of the password. So a client with the wrong password is never
+	 * handed a page fetched with the right one -- and the password itself is
+	 * not kept in the key.
+	 * 
+	 * @return null if we don't log in
+	 */
+	String getAuthKey() {
+		if (name == null)
+			return null;
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+					String.valueOf(password).getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder(name).append(':');
+			for (byte b : digest) {
+				key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return key.toString();
+		} catch (Exception e) {
+			// SHA-1 and UTF-8 are always there -- but if not, don't share
+			return null;
+		}
+	}
+
 	@Override
-	public final String getPage(String url, Map<String, String> vars,
-			boolean authenticate) throws TwitterException 
+	public final String getPage(final String url, final Map<String, String> vars,
+			final boolean authenticate) throws TwitterException 
 	{		
 		assert url != null;
 		InternalUtils.count(url);
-		// This method handles the retry behaviour.
-		try {
-			// Do the actual work
-			String json = getPage2(url, vars, authenticate);
-			// ?? Test for and treat html as an error??
-			if (htmlImpliesError && 
-				(json.startsWith("<!DOCTYPE html") || json.startsWith("<html"))) {
-				// whitelist: sometimes we do expect html
-				if (url.startsWith("http://twitter.com")/*used by flush()*/) {
-					// OK
-				} else {
-					String meat = InternalUtils.stripTags(json);
-					throw new TwitterException.E50X(meat);
+		RetryPolicy.IRequest req = new RetryPolicy.IRequest() {
+			@Override
+			public String run() throws Exception {
+				// Do the actual work
+				String json = getPage2(url, vars, authenticate);
+				// ?? Test for and treat html as an error??
+				if (htmlImpliesError && 
+					(json.startsWith("<!DOCTYPE html") || json.startsWith("<html"))) {
+					// whitelist: sometimes we do expect html
+					if (url.startsWith("http://twitter.com")/*used by flush()*/) {
+						// OK
+					} else {
+						String meat = InternalUtils.stripTags(json);
+						throw new TwitterException.E50X(meat);
+					}
 				}
+				return json;
 			}
-			return json;			
-		} catch (SocketTimeoutException e) {
-			if ( ! retryOnError) throw getPage2_ex(e, url);
-			try {
-				// wait half a second before retrying
-				Thread.sleep(500);
-				return getPage2(url, vars, authenticate);
-			} catch (Exception e2) {
-				throw getPage2_ex(e, url);
-			}
-		} catch (TwitterException.E50X e) {
-			if ( ! retryOnError) throw getPage2_ex(e, url);
-			try {
-				// wait half a second before retrying
-				Thread.sleep(500);
-				return getPage2(url, vars, authenticate);
-			} catch (Exception e2) {
-				throw getPage2_ex(e, url);
-			}
-		} catch (IOException e) {
-			throw new TwitterException.IO(e);
+		};
+		// This method handles the retry behaviour.
+		try {
+			if (retryPolicy == null) return req.run();
+			return retryPolicy.execute(req, true);
+		} catch (Exception e) {
+			throw getPage2_ex(e, url);
 		} 
 	}
 
@@ -268,15 +306,17 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 	private String getPage2(String url, Map<String, String> vars,
 			boolean authenticate) throws IOException {
 		HttpURLConnection connection = null;	
+		boolean ok = false;
 		try {
 			connection = connect(url, vars, authenticate);
 			InputStream inStream = connection.getInputStream();
 			// Read in the web page
 			String page = InternalUtils.toString(inStream);
 			// Done
+			ok = true;
 			return page;
 		} finally {
-			disconnect(connection);
+			if ( ! ok || ! keepAlive) disconnect(connection);
 		}		
 	}
 
@@ -314,32 +354,19 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 	}
 
 	@Override
-	public final String post(String uri, Map<String, String> vars,
-			boolean authenticate) throws TwitterException {		
+	public final String post(final String uri, final Map<String, String> vars,
+			final boolean authenticate) throws TwitterException {		
 		InternalUtils.count(uri);
-		try {
-			// do the actual work
-			String json = post2(uri, vars, authenticate);
-			// ?? Test for and treat html as an error??
-			return json;
-		} catch (TwitterException.E50X e) {
-			if ( ! retryOnError) throw getPage2_ex(e, uri);
-			try {
-				// wait half a second before retrying
-				Thread.sleep(500);
+		RetryPolicy.IRequest req = new RetryPolicy.IRequest() {
+			@Override
+			public String run() throws Exception {
+				// do the actual work
 				return post2(uri, vars, authenticate);
-			} catch (Exception e2) {
-				throw getPage2_ex(e, uri);
-			}
-		} catch (SocketTimeoutException e) {
-			if ( ! retryOnError) throw getPage2_ex(e, uri);
-			try {
-				// wait half a second before retrying
-				Thread.sleep(500);
-				return post2(uri, vars, authenticate);
-			} catch (Exception e2) {
-				throw getPage2_ex(e, uri);
 			}
+		};
+		try {
+			if (retryPolicy == null) return req.run();
+			return retryPolicy.execute(req, false);
 		} catch (Exception e) {
 			throw getPage2_ex(e, uri);
 		}
@@ -349,14 +376,16 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 			boolean authenticate) throws Exception 
 	{
 		HttpURLConnection connection = null;
+		boolean ok = false;
 		try {
 			connection = post2_connect(uri, vars);
 			// Get the response
 			String response = InternalUtils.toString(connection
 					.getInputStream());
+			ok = true;
 			return response;
 		} finally {
-			disconnect(connection);
+			if ( ! ok || ! keepAlive) disconnect(connection);
 		}
 	}
 
@@ -390,16 +419,8 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 	protected String post2_getPayload(Map<String, String> vars) {
 		if (vars == null || vars.isEmpty())
 			return "";
-		StringBuilder encodedData = new StringBuilder();
-
-		for (String key : vars.keySet()) {
-			String val = InternalUtils.encode(vars.get(key));
-			encodedData.append(InternalUtils.encode(key));
-			encodedData.append('=');
-			encodedData.append(val);
-			encodedData.append('&');
-		}
-		encodedData.deleteCharAt(encodedData.length() - 1);
+		StringBuilder encodedData = new StringBuilder(32 * vars.size());
+		InternalUtils.encodeVars(vars, encodedData);
 		return encodedData.toString();
 	}
 
@@ -613,9 +634,28 @@ public class URLConnectionHttpClient implements Twitter.IHttpClient,
 	 * False by default. Setting this to true switches on a robustness
 	 * workaround: when presented with a 50X server error, the system will wait
 	 * 1/2 a second and make a second attempt.
+	 * <p>
+	 * This is a convenience for {@link #setRetryPolicy(RetryPolicy)} with
+	 * {@link RetryPolicy#simple()}.
 	 */
 	public void setRetryOnError(boolean retryOnError) {
-		this.retryOnError = retryOnError;
+		this.retryPolicy = retryOnError ? RetryPolicy.simple() : null;
+	}
+
+	/**
+	 * @param retryPolicy
+	 *            Can be null for no retries (the default). Policies are thread
+	 *            safe, and copies of this client will share it.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * @return the retry policy, or null if retries are off
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
 	}
 
 	@Override
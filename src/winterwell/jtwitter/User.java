@@ -1,15 +1,20 @@
 package winterwell.jtwitter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import winterwell.json.JSONArray;
 import winterwell.json.JSONException;
 import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONWriter;
 
 /**
  * A Twitter user. Fields are null if unset.
@@ -19,6 +24,35 @@ import winterwell.json.JSONObject;
 public final class User implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Convert from a json object into a user. Equivalent to
+	 * <code>new User(new JSONObject(json), null)</code>, but decoded in one
+	 * pass without building a JSONObject.
+	 * 
+	 * @param json
+	 *            must not be null
+	 * @throws TwitterException
+	 */
+	static User getUser(String json) throws TwitterException {
+		try {
+			JSONReader r = new JSONReader(InternalUtils.jsonTokener(json));
+			if (r.next() != JSONReader.Token.START_OBJECT)
+				throw r.syntaxError("A JSONObject text must begin with '{'");
+			return new User(r, null);
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(json, e);
+		}
+	}
+
+	private static final ParallelParser<User> PARSER = new ParallelParser<User>() {
+		@Override
+		User decode(JSONReader r) throws JSONException, TwitterException {
+			if (r.next() != JSONReader.Token.START_OBJECT)
+				throw r.syntaxError("Expected a user object");
+			return new User(r, null);
+		}
+	};
+
 	/**
 	 * Convert from a JSON array into a list of users.
 	 * 
@@ -28,9 +62,19 @@ public final class User implements Serializable {
 	static List<User> getUsers(String json) throws TwitterException {
 		if (json.trim().equals(""))
 			return Collections.emptyList();
+		if (ParallelParser.isWorthIt(json))
+			return PARSER.parse(json);
 		try {
-			JSONArray arr = new JSONArray(json);
-			return getUsers2(arr);
+			JSONReader r = new JSONReader(InternalUtils.jsonTokener(json));
+			if (r.next() != JSONReader.Token.START_ARRAY)
+				throw r.syntaxError("A JSONArray text must start with '['");
+			List<User> users = new ArrayList<User>();
+			while (r.next() == JSONReader.Token.START_OBJECT) {
+				users.add(new User(r, null));
+			}
+			if (r.getToken() != JSONReader.Token.END_ARRAY)
+				throw r.syntaxError("Expected a user object");
+			return users;
 		} catch (JSONException e) {
 			throw new TwitterException.Parsing(json, e);
 		}
@@ -46,6 +90,104 @@ public final class User implements Serializable {
 		return users;
 	}
 
+	/**
+	 * Users embedded in recent tweets, by id, least recently seen first.
+	 * Bounded by {@link Twitter#USER_CACHE_SIZE}.
+	 */
+	private static final Map<Long, User> INTERNED = new LinkedHashMap<Long, User>(
+			256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, User> eldest) {
+			return size() > Twitter.USER_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Share one User between tweets by the same author: if we've recently
+	 * seen this user with the same profile and counts, return that User object
+	 * instead. Otherwise a copy of this user replaces it -- unless it's older
+	 * than the cached one, in which case it's returned as is. Users are never
+	 * edited, so each tweet's user has the counts Twitter sent with it.
+	 * <p>
+	 * Shared users have no status: the tweet they came with would be the
+	 * wrong one for the other tweets (and would be kept alive by the cache).
+	 * 
+	 * @param user
+	 *            A freshly parsed user, as embedded in a tweet.
+	 * @return an equivalent User
+	 * @see Twitter#USER_CACHE_SIZE
+	 */
+	static User intern(User user) {
+		if (Twitter.USER_CACHE_SIZE <= 0 || user.id == null
+				|| user.screenName == null)
+			return user;
+		synchronized (INTERNED) {
+			User old = INTERNED.get(user.id);
+			if (old != null && old.sameProfile(user)) {
+				if (old.sameCounts(user))
+					return old;
+				// Tweets don't always arrive in order -- the user with more
+				// statuses is the more recent. Keep that one cached.
+				if (user.statusesCount < old.statusesCount)
+					return user;
+			}
+			User shared = user.status == null ? user : new User(user);
+			INTERNED.put(user.id, shared);
+			return shared;
+		}
+	}
+
+	private boolean sameCounts(User other) {
+		return statusesCount == other.statusesCount
+				&& followersCount == other.followersCount
+				&& friendsCount == other.friendsCount
+				&& favoritesCount == other.favoritesCount
+				&& listedCount == other.listedCount;
+	}
+
+	/**
+	 * @return true if other has the same profile as this. Ignores the counts
+	 *         (which change all the time) and the status.
+	 */
+	private boolean sameProfile(User other) {
+		return eq(screenName, other.screenName) && eq(name, other.name)
+				&& eq(location, other.location)
+				&& eq(description, other.description)
+				&& eq(rawProfileImageUrl, other.rawProfileImageUrl)
+				&& eq(rawWebsite, other.rawWebsite)
+				&& eq(rawProfileBackgroundImageUrl, other.rawProfileBackgroundImageUrl)
+				&& eq(profileBackgroundColor, other.profileBackgroundColor)
+				&& eq(profileLinkColor, other.profileLinkColor)
+				&& eq(profileTextColor, other.profileTextColor)
+				&& eq(profileSidebarFillColor, other.profileSidebarFillColor)
+				&& eq(profileSidebarBorderColor, other.profileSidebarBorderColor)
+				&& profileBackgroundTile == other.profileBackgroundTile
+				&& protectedUser == other.protectedUser
+				&& verified == other.verified
+				&& notifications == other.notifications
+				&& followRequestSent == other.followRequestSent
+				&& eq(followedByYou, other.followedByYou)
+				&& eq(followingYou, other.followingYou)
+				&& eq(timezone, other.timezone)
+				&& timezoneOffSet == other.timezoneOffSet
+				&& eq(lang, other.lang) && eq(createdAt, other.createdAt)
+				&& (place == null) == (other.place == null);
+	}
+
+	/**
+	 * @return the url, preferring the URI if it's been set (it may have been
+	 *         edited, or this may be a User serialized by an older version)
+	 */
+	private static String url(URI uri, String raw) {
+		return uri == null ? raw : uri.toString();
+	}
+
+	private static boolean eq(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
 	public final Date createdAt;
 	public final String description;
 	public final int favoritesCount;
@@ -95,16 +237,36 @@ public final class User implements Serializable {
 	public final boolean notifications;
 	private Place place;
 	public final String profileBackgroundColor;
-	public final URI profileBackgroundImageUrl;
+	/**
+	 * @deprecated Use {@link #getProfileBackgroundImageUrl()}. The urls are
+	 *             kept as Strings, and only parsed into URIs on demand, so
+	 *             this is null until the getter has been called.
+	 */
+	@Deprecated
+	public volatile URI profileBackgroundImageUrl;
+	/**
+	 * The url as sent by Twitter. Parsed by
+	 * {@link #getProfileBackgroundImageUrl()}
+	 */
+	private final String rawProfileBackgroundImageUrl;
 	public final boolean profileBackgroundTile;
 
 	/**
 	 * The url for the user's Twitter profile picture.
+	 * 
+	 * @deprecated Use {@link #getProfileImageUrl()}. This is null until the
+	 *             getter has been called (the url is parsed on demand).
+	 */
+	@Deprecated
+	public volatile URI profileImageUrl;
+
+	/**
+	 * The url as sent by Twitter.
 	 * <p>
 	 * Note: we allow this to be edited as a convenience for the User objects
 	 * generated by search
 	 */
-	public URI profileImageUrl;
+	String rawProfileImageUrl;
 
 	public final String profileLinkColor;
 
@@ -145,7 +307,16 @@ public final class User implements Serializable {
 	public final double timezoneOffSet;
 
 	public final boolean verified;
-	public final URI website;
+	/**
+	 * @deprecated Use {@link #getWebsite()}. This is null until the getter
+	 *             has been called (the url is parsed on demand).
+	 */
+	@Deprecated
+	public volatile URI website;
+	/**
+	 * As sent by Twitter. Parsed by {@link #getWebsite()}
+	 */
+	private final String rawWebsite;
 
 	/**
 	 * Create a User from a json blob
@@ -173,10 +344,8 @@ public final class User implements Serializable {
 
 			description = InternalUtils.unencode(InternalUtils.jsonGet(
 					"description", obj));
-			String img = InternalUtils.jsonGet("profile_image_url", obj);
-			profileImageUrl = img == null ? null : InternalUtils.URI(img);
-			String url = InternalUtils.jsonGet("url", obj);
-			website = url == null ? null : InternalUtils.URI(url);
+			rawProfileImageUrl = InternalUtils.jsonGet("profile_image_url", obj);
+			rawWebsite = InternalUtils.jsonGet("url", obj);
 			protectedUser = obj.optBoolean("protected");
 			followersCount = obj.optInt("followers_count");
 			profileBackgroundColor = InternalUtils.jsonGet(
@@ -199,9 +368,8 @@ public final class User implements Serializable {
 			timezoneOffSet = utcOffSet == null ? 0 : Double
 					.parseDouble(utcOffSet);
 			timezone = InternalUtils.jsonGet("time_zone", obj);
-			img = InternalUtils.jsonGet("profile_background_image_url", obj);
-			profileBackgroundImageUrl = img == null ? null : InternalUtils
-					.URI(img);
+			rawProfileBackgroundImageUrl = InternalUtils.jsonGet(
+					"profile_background_image_url", obj);
 			profileBackgroundTile = obj.optBoolean("profile_background_tile");
 			statusesCount = obj.optInt("statuses_count");
 			notifications = obj.optBoolean("notifications");
@@ -249,6 +417,300 @@ public final class User implements Serializable {
 		}
 	}
 
+	/**
+	 * The keys read by {@link #User(JSONReader, Status)}, in roughly
+	 * Twitter's order.
+	 */
+	private enum Field {
+		id, name, screen_name, location, description, url, protected_,
+		followers_count, friends_count, listed_count, created_at,
+		favourites_count, utc_offset, time_zone, verified, statuses_count, lang,
+		status, profile_background_color, profile_background_image_url,
+		profile_background_tile, profile_image_url, profile_link_color,
+		profile_sidebar_border_color, profile_sidebar_fill_color,
+		profile_text_color, following, followed_by, follow_request_sent,
+		notifications, connections, place, geo
+	}
+
+	private static final FieldTable<Field> FIELDS = new FieldTable<Field>(Field.class);
+
+	/**
+	 * Create a User with a {@link JSONReader}, which must have just returned
+	 * START_OBJECT. Equivalent to {@link #User(JSONObject, Status)}, but
+	 * without building a JSONObject.
+	 * <p>
+	 * Note: if the json has no screen_name (which Twitter occasionally do),
+	 * then screenName will be null.
+	 * 
+	 * @param r
+	 * @param status
+	 *            can be null
+	 * @throws TwitterException
+	 */
+	User(JSONReader r, Status status) throws TwitterException {
+		Long _id = null;
+		String _name = null, sn = null, _location = null, _description = null, img = null, url = null,
+				bgColor = null, linkColor = null, textColor = null, fillColor = null, borderColor = null,
+				c = null, utcOffSet = null, tz = null, bgImg = null, geo = null;
+		Place _place = null;
+		boolean _protected = false, bgTile = false, _notifications = false, _verified = false,
+				_followRequested = false, hasConnections = false;
+		int followers = 0, friends = 0, favorites = 0, statuses = 0, listed = -1;
+		Boolean _following = null, _followedBy = null;
+		Status _status = null;
+		try {
+			while (r.nextField()) {
+				Field f = FIELDS.get(r.getString());
+				if (f == null) {
+					r.skipValue();
+					continue;
+				}
+				switch (f) {
+				case id:
+					r.next();
+					_id = r.getLong();
+					break;
+				case name:
+					_name = InternalUtils.jsonGet(r);
+					break;
+				case screen_name:
+					sn = InternalUtils.jsonGet(r);
+					break;
+				case location:
+					_location = InternalUtils.jsonGet(r);
+					break;
+				case description:
+					_description = InternalUtils.jsonGet(r);
+					break;
+				case url:
+					url = InternalUtils.jsonGet(r);
+					break;
+				case protected_:
+					_protected = InternalUtils.jsonGetBoolean(r);
+					break;
+				case followers_count:
+					followers = InternalUtils.jsonGetInt(r, 0);
+					break;
+				case friends_count:
+					friends = InternalUtils.jsonGetInt(r, 0);
+					break;
+				case listed_count:
+					listed = InternalUtils.jsonGetInt(r, -1);
+					break;
+				case created_at:
+					c = InternalUtils.jsonGet(r);
+					break;
+				case favourites_count:
+					favorites = InternalUtils.jsonGetInt(r, 0);
+					break;
+				case utc_offset:
+					utcOffSet = InternalUtils.jsonGet(r);
+					break;
+				case time_zone:
+					tz = InternalUtils.jsonGet(r);
+					break;
+				case verified:
+					_verified = InternalUtils.jsonGetBoolean(r);
+					break;
+				case statuses_count:
+					statuses = InternalUtils.jsonGetInt(r, 0);
+					break;
+				case lang:
+					lang = InternalUtils.jsonGet(r);
+					break;
+				case status:
+					if (r.next() == JSONReader.Token.START_OBJECT) {
+						_status = new Status(r, this);
+					} else {
+						r.skipChildren();
+					}
+					break;
+				case profile_background_color:
+					bgColor = InternalUtils.jsonGet(r);
+					break;
+				case profile_background_image_url:
+					bgImg = InternalUtils.jsonGet(r);
+					break;
+				case profile_background_tile:
+					bgTile = InternalUtils.jsonGetBoolean(r);
+					break;
+				case profile_image_url:
+					img = InternalUtils.jsonGet(r);
+					break;
+				case profile_link_color:
+					linkColor = InternalUtils.jsonGet(r);
+					break;
+				case profile_sidebar_border_color:
+					borderColor = InternalUtils.jsonGet(r);
+					break;
+				case profile_sidebar_fill_color:
+					fillColor = InternalUtils.jsonGet(r);
+					break;
+				case profile_text_color:
+					textColor = InternalUtils.jsonGet(r);
+					break;
+				case following:
+					if (hasConnections) {
+						r.skipValue();
+					} else {
+						_following = InternalUtils.jsonGetOptBoolean(r);
+					}
+					break;
+				case followed_by:
+					// Warning: Twitter have stopped sending this in many cases.
+					if (hasConnections) {
+						r.skipValue();
+					} else {
+						_followedBy = InternalUtils.jsonGetOptBoolean(r);
+					}
+					break;
+				case follow_request_sent:
+					if (hasConnections) {
+						r.skipValue();
+					} else {
+						_followRequested = InternalUtils.jsonGetBoolean(r);
+					}
+					break;
+				case notifications:
+					_notifications = InternalUtils.jsonGetBoolean(r);
+					break;
+				case connections:
+					// from a getRelationshipInfo call
+					if (r.next() != JSONReader.Token.START_ARRAY) {
+						r.skipChildren();
+						break;
+					}
+					hasConnections = true;
+					_following = false;
+					_followedBy = false;
+					_followRequested = false;
+					while (r.next() != JSONReader.Token.END_ARRAY) {
+						String ci = r.getString();
+						if ("following".equals(ci)) {
+							_following = true;
+						} else if ("followed_by".equals(ci)) {
+							_followedBy = true;
+						} else if ("following_requested".equals(ci)) {
+							_followRequested = true;
+						}
+					}
+					break;
+				case place:
+					if (r.next() == JSONReader.Token.START_OBJECT) {
+						_place = new Place(r);
+					} else {
+						r.skipChildren();
+					}
+					break;
+				case geo:
+					geo = Status.jsonGetGeo(r);
+					break;
+				}
+			}
+			if (_id == null) {
+				throw r.syntaxError("No id");
+			}
+		} catch (JSONException e) {
+			throw new TwitterException.Parsing(null, e);
+		}
+		id = _id;
+		name = InternalUtils.unencode(_name);
+		screenName = Twitter.CASE_SENSITIVE_SCREENNAMES || sn == null ? sn : sn
+				.toLowerCase();
+		// location - normalise a bit
+		Object _locn = Status.jsonGetLocn(_location, _place, geo);
+		location = _locn == null ? null : _locn.toString();
+		if (_locn instanceof Place) {
+			place = (Place) _locn;
+		}
+		description = InternalUtils.unencode(_description);
+		rawProfileImageUrl = img;
+		rawWebsite = url;
+		protectedUser = _protected;
+		followersCount = followers;
+		profileBackgroundColor = bgColor;
+		profileLinkColor = linkColor;
+		profileTextColor = textColor;
+		profileSidebarFillColor = fillColor;
+		profileSidebarBorderColor = borderColor;
+		friendsCount = friends;
+		// null when fetching relationship-info
+		createdAt = c == null ? null : InternalUtils.parseDate(c);
+		favoritesCount = favorites;
+		timezoneOffSet = utcOffSet == null ? 0 : Double.parseDouble(utcOffSet);
+		timezone = tz;
+		rawProfileBackgroundImageUrl = bgImg;
+		profileBackgroundTile = bgTile;
+		statusesCount = statuses;
+		notifications = _notifications;
+		verified = _verified;
+		followedByYou = _following;
+		followingYou = _followedBy;
+		followRequestSent = _followRequested;
+		listedCount = listed;
+		this.status = status == null ? _status : status;
+	}
+
+	/**
+	 * Bits for the flags in {@link #writeBinary(BinaryWriter, boolean)}
+	 */
+	private static final int PROTECTED = 1, BACKGROUND_TILE = 2,
+			NOTIFICATIONS = 4, VERIFIED = 8, FOLLOW_REQUEST_SENT = 16,
+			FOLLOWED_BY_YOU = 32, NOT_FOLLOWED_BY_YOU = 64, FOLLOWING_YOU = 128,
+			NOT_FOLLOWING_YOU = 256, HAS_ID = 512, HAS_PLACE = 1024,
+			HAS_STATUS = 2048;
+
+	/**
+	 * Read a User written by {@link #writeBinary(BinaryWriter, boolean)}.
+	 *
+	 * @param status
+	 *            Set when reading a Status's user. null otherwise.
+	 */
+	User(BinaryReader in, Status status) throws IOException {
+		int flags = in.readInt();
+		id = (flags & HAS_ID) == 0 ? null : in.readVarLong();
+		name = in.readSymbol();
+		screenName = in.readSymbol();
+		if ((flags & HAS_PLACE) != 0) {
+			place = new Place(in);
+			location = place.toString();
+		} else {
+			location = in.readSymbol();
+		}
+		lang = in.readSymbol();
+		description = in.readSymbol();
+		rawProfileImageUrl = in.readSymbol();
+		rawWebsite = in.readSymbol();
+		followersCount = in.readInt();
+		friendsCount = in.readInt();
+		createdAt = in.readDate(false);
+		favoritesCount = in.readInt();
+		timezoneOffSet = in.readDouble();
+		timezone = in.readSymbol();
+		rawProfileBackgroundImageUrl = in.readSymbol();
+		profileBackgroundColor = in.readSymbol();
+		profileLinkColor = in.readSymbol();
+		profileTextColor = in.readSymbol();
+		profileSidebarFillColor = in.readSymbol();
+		profileSidebarBorderColor = in.readSymbol();
+		statusesCount = in.readInt();
+		listedCount = in.readInt() - 1;
+		protectedUser = (flags & PROTECTED) != 0;
+		profileBackgroundTile = (flags & BACKGROUND_TILE) != 0;
+		notifications = (flags & NOTIFICATIONS) != 0;
+		verified = (flags & VERIFIED) != 0;
+		followRequestSent = (flags & FOLLOW_REQUEST_SENT) != 0;
+		followedByYou = (flags & FOLLOWED_BY_YOU) != 0 ? Boolean.TRUE
+				: (flags & NOT_FOLLOWED_BY_YOU) != 0 ? Boolean.FALSE : null;
+		followingYou = (flags & FOLLOWING_YOU) != 0 ? Boolean.TRUE
+				: (flags & NOT_FOLLOWING_YOU) != 0 ? Boolean.FALSE : null;
+		if ((flags & HAS_STATUS) != 0) {
+			this.status = new Status(in, this);
+		} else {
+			this.status = status;
+		}
+	}
+
 	/**
 	 * Create a dummy User object. All fields are set to null. This will be
 	 * equals() to an actual User object, so it can be used to query
@@ -266,6 +728,53 @@ public final class User implements Serializable {
 		this(screenName, null);
 	}
 
+	/**
+	 * @param id
+	 * @return a stub user, with just an id
+	 * @see #isStub()
+	 */
+	static User stub(Long id) {
+		assert id != null;
+		return new User(null, id);
+	}
+
+	/**
+	 * Copy a user, without their status. For {@link #intern(User)}
+	 */
+	private User(User user) {
+		id = user.id;
+		name = user.name;
+		screenName = user.screenName;
+		status = null;
+		location = user.location;
+		place = user.place;
+		lang = user.lang;
+		description = user.description;
+		rawProfileImageUrl = user.rawProfileImageUrl;
+		rawWebsite = user.rawWebsite;
+		protectedUser = user.protectedUser;
+		followersCount = user.followersCount;
+		profileBackgroundColor = user.profileBackgroundColor;
+		profileLinkColor = user.profileLinkColor;
+		profileTextColor = user.profileTextColor;
+		profileSidebarFillColor = user.profileSidebarFillColor;
+		profileSidebarBorderColor = user.profileSidebarBorderColor;
+		friendsCount = user.friendsCount;
+		createdAt = user.createdAt;
+		favoritesCount = user.favoritesCount;
+		timezoneOffSet = user.timezoneOffSet;
+		timezone = user.timezone;
+		rawProfileBackgroundImageUrl = user.rawProfileBackgroundImageUrl;
+		profileBackgroundTile = user.profileBackgroundTile;
+		statusesCount = user.statusesCount;
+		notifications = user.notifications;
+		verified = user.verified;
+		followedByYou = user.followedByYou;
+		followingYou = user.followingYou;
+		followRequestSent = user.followRequestSent;
+		listedCount = user.listedCount;
+	}
+
 	private User(String screenName, Long id) {
 		this.id = id;
 		name = null;
@@ -276,8 +785,8 @@ public final class User implements Serializable {
 		status = null;
 		location = null;
 		description = null;
-		profileImageUrl = null;
-		website = null;
+		rawProfileImageUrl = null;
+		rawWebsite = null;
 		protectedUser = false;
 		followersCount = 0;
 		profileBackgroundColor = null;
@@ -290,7 +799,7 @@ public final class User implements Serializable {
 		favoritesCount = 0;
 		timezoneOffSet = -1;
 		timezone = null;
-		profileBackgroundImageUrl = null;
+		rawProfileBackgroundImageUrl = null;
 		profileBackgroundTile = false;
 		statusesCount = 0;
 		notifications = false;
@@ -311,9 +820,10 @@ public final class User implements Serializable {
 		// normal case
 		if (screenName != null && ou.screenName != null)
 			return screenName.equals(ou.screenName);
-		// fake user case
-		if (id != null && ou.id != null)
-			return id == ou.id;
+		// A stub is only equal to another stub. It can't equal a full user,
+		// as hashCode() uses the screen-name when there is one.
+		if (screenName == null && ou.screenName == null && id != null)
+			return id.equals(ou.id);
 		// can't compare = fail
 		return false;
 	}
@@ -398,12 +908,29 @@ public final class User implements Serializable {
 		return profileBackgroundColor;
 	}
 
+	/**
+	 * @return the url, or null if unset or badly formatted
+	 */
 	public URI getProfileBackgroundImageUrl() {
-		return profileBackgroundImageUrl;
+		URI uri = profileBackgroundImageUrl;
+		if (uri == null && rawProfileBackgroundImageUrl != null) {
+			uri = InternalUtils.URI(rawProfileBackgroundImageUrl);
+			profileBackgroundImageUrl = uri;
+		}
+		return uri;
 	}
 
+	/**
+	 * @return the url for the user's Twitter profile picture, or null if unset
+	 *         or badly formatted
+	 */
 	public URI getProfileImageUrl() {
-		return profileImageUrl;
+		URI uri = profileImageUrl;
+		if (uri == null && rawProfileImageUrl != null) {
+			uri = InternalUtils.URI(rawProfileImageUrl);
+			profileImageUrl = uri;
+		}
+		return uri;
 	}
 
 	public String getProfileLinkColor() {
@@ -464,14 +991,36 @@ public final class User implements Serializable {
 		return timezoneOffSet;
 	}
 
+	/**
+	 * @return the user's website, or null if unset or badly formatted
+	 */
 	public URI getWebsite() {
-		return website;
+		URI uri = website;
+		if (uri == null && rawWebsite != null) {
+			uri = InternalUtils.URI(rawWebsite);
+			website = uri;
+		}
+		return uri;
 	}
 
 	@Override
 	public int hashCode() {
 		// normal case
-		return screenName.hashCode();
+		if (screenName != null)
+			return screenName.hashCode();
+		// stub
+		return id == null ? 0 : id.hashCode();
+	}
+
+	/**
+	 * @return true if this is just a user-id, without even a screen-name.
+	 *         Twitter occasionally send the user in a tweet as just
+	 *         <code>{"id":24147187,"id_str":"24147187"}</code>. Use
+	 *         {@link Twitter_Users#hydrate(java.util.Collection)} to fill them in.
+	 *         A stub is not equals() to the full User.
+	 */
+	public boolean isStub() {
+		return screenName == null && id != null;
 	}
 
 	/**
@@ -534,4 +1083,159 @@ public final class User implements Serializable {
 	public String toString() {
 		return screenName;
 	}
+
+	/**
+	 * Write this user as json, in Twitter's format (only the fields which
+	 * JTwitter reads), including their status if we have it. Fields go
+	 * straight to the writer.
+	 * 
+	 * @param w
+	 * @throws JSONException
+	 *             (wrapping an IOException) if the writer fails
+	 * @see NDJSONWriter
+	 */
+	public void writeJSON(JSONWriter w) throws JSONException {
+		writeJSON2(w, true);
+	}
+
+	/**
+	 * @param withStatus
+	 *            false when writing the user inside their status
+	 */
+	void writeJSON2(JSONWriter w, boolean withStatus) throws JSONException {
+		w.object();
+		if (id != null) {
+			w.key("id").value(id.longValue());
+			w.key("id_str").value(id.toString());
+		}
+		w.key("name").value(InternalUtils.encodeEntities(name));
+		w.key("screen_name").value(screenName);
+		if (place != null) {
+			w.key("place");
+			place.writeJSON(w);
+		} else if (location != null) {
+			w.key("location").value(location);
+		}
+		if (lang != null) {
+			w.key("lang").value(lang);
+		}
+		w.key("description").value(InternalUtils.encodeEntities(description));
+		String img = url(profileImageUrl, rawProfileImageUrl);
+		if (img != null) {
+			w.key("profile_image_url").value(img);
+		}
+		String url = url(website, rawWebsite);
+		if (url != null) {
+			w.key("url").value(url);
+		}
+		w.key("protected").value(protectedUser);
+		w.key("followers_count").value(followersCount);
+		w.key("friends_count").value(friendsCount);
+		if (createdAt != null) {
+			w.key("created_at").value(InternalUtils.formatDate(createdAt));
+		}
+		w.key("favourites_count").value(favoritesCount);
+		if (timezoneOffSet == (long) timezoneOffSet) {
+			w.key("utc_offset").value((long) timezoneOffSet);
+		} else {
+			w.key("utc_offset").value(timezoneOffSet);
+		}
+		if (timezone != null) {
+			w.key("time_zone").value(timezone);
+		}
+		String bgImg = url(profileBackgroundImageUrl,
+				rawProfileBackgroundImageUrl);
+		if (bgImg != null) {
+			w.key("profile_background_image_url").value(bgImg);
+		}
+		w.key("profile_background_tile").value(profileBackgroundTile);
+		writeJSON3(w, "profile_background_color", profileBackgroundColor);
+		writeJSON3(w, "profile_link_color", profileLinkColor);
+		writeJSON3(w, "profile_text_color", profileTextColor);
+		writeJSON3(w, "profile_sidebar_fill_color", profileSidebarFillColor);
+		writeJSON3(w, "profile_sidebar_border_color", profileSidebarBorderColor);
+		w.key("statuses_count").value(statusesCount);
+		w.key("notifications").value(notifications);
+		w.key("verified").value(verified);
+		if (followedByYou != null) {
+			w.key("following").value(followedByYou.booleanValue());
+		}
+		if (followingYou != null) {
+			w.key("followed_by").value(followingYou.booleanValue());
+		}
+		w.key("follow_request_sent").value(followRequestSent);
+		if (listedCount != -1) {
+			w.key("listed_count").value(listedCount);
+		}
+		if (withStatus && status != null) {
+			w.key("status");
+			status.writeJSON2(w, false);
+		}
+		w.endObject();
+	}
+
+	private static void writeJSON3(JSONWriter w, String key, String value)
+			throws JSONException {
+		if (value != null) {
+			w.key(key).value(value);
+		}
+	}
+
+	/**
+	 * Write this user in {@link BinaryWriter}'s format. Read it back with
+	 * {@link #User(BinaryReader, Status)}. The profile goes via the
+	 * dictionary, so a user seen before costs little more than their counts.
+	 *
+	 * @param withStatus
+	 *            false when writing the user inside their status
+	 */
+	void writeBinary(BinaryWriter out, boolean withStatus) {
+		boolean hasStatus = withStatus && status != null;
+		int flags = (protectedUser ? PROTECTED : 0)
+				| (profileBackgroundTile ? BACKGROUND_TILE : 0)
+				| (notifications ? NOTIFICATIONS : 0)
+				| (verified ? VERIFIED : 0)
+				| (followRequestSent ? FOLLOW_REQUEST_SENT : 0)
+				| (id != null ? HAS_ID : 0) | (place != null ? HAS_PLACE : 0)
+				| (hasStatus ? HAS_STATUS : 0);
+		if (followedByYou != null) {
+			flags |= followedByYou ? FOLLOWED_BY_YOU : NOT_FOLLOWED_BY_YOU;
+		}
+		if (followingYou != null) {
+			flags |= followingYou ? FOLLOWING_YOU : NOT_FOLLOWING_YOU;
+		}
+		out.writeInt(flags);
+		if (id != null) {
+			out.writeVarLong(id);
+		}
+		out.writeSymbol(name);
+		out.writeSymbol(screenName);
+		if (place != null) {
+			place.writeBinary(out);
+		} else {
+			out.writeSymbol(location);
+		}
+		out.writeSymbol(lang);
+		out.writeSymbol(description);
+		out.writeSymbol(url(profileImageUrl, rawProfileImageUrl));
+		out.writeSymbol(url(website, rawWebsite));
+		out.writeInt(followersCount);
+		out.writeInt(friendsCount);
+		out.writeDate(createdAt, false);
+		out.writeInt(favoritesCount);
+		out.writeDouble(timezoneOffSet);
+		out.writeSymbol(timezone);
+		out.writeSymbol(url(profileBackgroundImageUrl,
+				rawProfileBackgroundImageUrl));
+		out.writeSymbol(profileBackgroundColor);
+		out.writeSymbol(profileLinkColor);
+		out.writeSymbol(profileTextColor);
+		out.writeSymbol(profileSidebarFillColor);
+		out.writeSymbol(profileSidebarBorderColor);
+		out.writeInt(statusesCount);
+		out.writeInt(listedCount + 1);
+		if (hasStatus) {
+			status.writeBinary(out, false);
+		}
+	}
 }
\ No newline at end of file
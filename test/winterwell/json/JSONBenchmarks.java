@@ -0,0 +1,236 @@
+package winterwell.json;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Timings and heap sizes for the json classes. These are not unit
+ * tests -- the numbers depend on the machine, and they take a while -- so
+ * they are run by hand:
+ * 
+ * <pre>
+ * java winterwell.json.JSONBenchmarks [method-name...]
+ * </pre>
+ * 
+ * With no arguments, every benchmark is run.
+ * 
+ * @author daniel
+ */
+public class JSONBenchmarks {
+
+	public static void main(String[] args) throws Exception {
+		List<String> only = Arrays.asList(args);
+		JSONBenchmarks b = new JSONBenchmarks();
+		for (Method m : JSONBenchmarks.class.getDeclaredMethods()) {
+			int mods = m.getModifiers();
+			if (!Modifier.isPublic(mods) || Modifier.isStatic(mods)
+					|| m.getParameterTypes().length != 0) {
+				continue;
+			}
+			if (!only.isEmpty() && !only.contains(m.getName())) {
+				continue;
+			}
+			System.out.println(m.getName());
+			m.invoke(b);
+		}
+	}
+
+	/**
+	 * Timing test on timeline & stream payloads. Prints MB/sec.
+	 */
+	public void parse() throws Exception {
+		String timeline = Payloads.timeline(200);
+		String[] frames = Payloads.stream(200).split("\r\n");
+		// warm up
+		for (int i = 0; i < 50; i++) {
+			new JSONArray(timeline);
+		}
+		int n = 200;
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			new JSONArray(timeline);
+		}
+		long t = System.nanoTime() - start;
+		double mb = n * (double) timeline.length() / (1024 * 1024);
+		long frameChars = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (String frame : frames) {
+				new JSONObject(frame);
+				frameChars += frame.length();
+			}
+		}
+		long t2 = System.nanoTime() - start;
+		double mb2 = frameChars / (1024.0 * 1024);
+		System.out.println("JSON parse MB/sec: timeline " + Math.round(mb * 1e9 / t)
+				+ "\tstream " + Math.round(mb2 * 1e9 / t2));
+	}
+
+	/**
+	 * Timing test on stream frames: decode-then-parse vs parsing the UTF-8
+	 * bytes directly. Prints MB/sec (of UTF-8 input).
+	 */
+	public void parseBytes() throws Exception {
+		String[] frames = Payloads.stream(200).split("\r\n");
+		byte[][] utf8 = new byte[frames.length][];
+		long bytes = 0;
+		for (int i = 0; i < frames.length; i++) {
+			utf8[i] = frames[i].getBytes("UTF-8");
+			bytes += utf8[i].length;
+		}
+		int n = 200;
+		for (int i = 0; i < 50; i++) {
+			for (byte[] f : utf8) {
+				new JSONObject(new String(f, "UTF-8"));
+				new JSONObject(new JSONTokener(f, 0, f.length));
+			}
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (byte[] f : utf8) {
+				new JSONObject(new String(f, "UTF-8"));
+			}
+		}
+		long t = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (byte[] f : utf8) {
+				new JSONObject(new JSONTokener(f, 0, f.length));
+			}
+		}
+		long t2 = System.nanoTime() - start;
+		// pull id & text only
+		for (int i = 0; i < 50; i++) {
+			for (byte[] f : utf8) {
+				idAndText(new JSONReader(new String(f, "UTF-8")));
+				idAndText(new JSONReader(f));
+			}
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (byte[] f : utf8) {
+				idAndText(new JSONReader(new String(f, "UTF-8")));
+			}
+		}
+		long t3 = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (byte[] f : utf8) {
+				idAndText(new JSONReader(f));
+			}
+		}
+		long t4 = System.nanoTime() - start;
+		double mb = n * bytes / (1024.0 * 1024);
+		System.out.println("Stream frames MB/sec: JSONObject via String " + Math.round(mb * 1e9 / t)
+				+ "\tJSONObject from bytes " + Math.round(mb * 1e9 / t2)
+				+ "\tJSONReader via String " + Math.round(mb * 1e9 / t3)
+				+ "\tJSONReader from bytes " + Math.round(mb * 1e9 / t4));
+	}
+
+	private static Object idAndText(JSONReader r) throws JSONException {
+		r.next();
+		Object text = null;
+		while (r.nextField()) {
+			String k = r.getString();
+			if ("id".equals(k) || "text".equals(k)) {
+				r.next();
+				text = r.getValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Timing test: parse stream frames and read a few fields.
+	 */
+	public void lazyPick() throws Exception {
+		String[] frames = Payloads.stream(200).split("\r\n");
+		for (int i = 0; i < 50; i++) {
+			for (String f : frames) {
+				pick(new JSONObject(f));
+				pick(new LazyJSONObject(f));
+			}
+		}
+		int n = 200;
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (String f : frames) {
+				pick(new JSONObject(f));
+			}
+		}
+		long t = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (String f : frames) {
+				pick(new LazyJSONObject(f));
+			}
+		}
+		long t2 = System.nanoTime() - start;
+		long cnt = (long) n * frames.length;
+		System.out.println("Frames/sec (read id, text, user.screen_name): JSONObject "
+				+ (cnt * 1000000000L / t) + "\tLazyJSONObject " + (cnt * 1000000000L / t2));
+	}
+
+	private static Object pick(JSONObject jo) {
+		JSONObject user = jo.optJSONObject("user");
+		return jo.opt("id") + jo.optString("text")
+				+ (user == null ? null : user.optString("screen_name"));
+	}
+
+	/**
+	 * Retained heap for 10k tweets as JSONObjects.
+	 */
+	public void jsonObjectFootprint() throws Exception {
+		int n = 10000;
+		long before = usedHeap();
+		List<JSONObject> tweets = new ArrayList<JSONObject>(n);
+		for (int i = 0; i < n; i++) {
+			tweets.add(new JSONObject(Payloads.tweet(i)));
+		}
+		long after = usedHeap();
+		assert tweets.size() == n;
+		System.out.println("JSONObject heap per tweet: " + (after - before) / n + " bytes");
+	}
+
+	static long usedHeap() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(50);
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * Allocation & retained heap for 10k tweets, with and without the table.
+	 */
+	public void symbolsFootprint() throws Exception {
+		int n = 10000;
+		String[] tweets = new String[n];
+		for (int i = 0; i < n; i++) {
+			tweets[i] = Payloads.tweet(i);
+		}
+		for (JSONSymbols symbols : new JSONSymbols[] { null, JSONSymbols.TWITTER, null,
+				JSONSymbols.TWITTER }) {
+			JSONObject[] parsed = new JSONObject[n];
+			long before = usedHeap();
+			long alloc = JSONSymbolsTest.allocated();
+			for (int i = 0; i < n; i++) {
+				parsed[i] = new JSONObject(JSONSymbolsTest.tokener(tweets[i], symbols));
+			}
+			alloc = JSONSymbolsTest.allocated() - alloc;
+			long after = usedHeap();
+			assert parsed[n - 1] != null;
+			System.out.println("JSONObject per tweet, " + (symbols == null ? "no symbols" : "symbols")
+					+ ": allocated " + (alloc / n) + " bytes, retained " + ((after - before) / n) + " bytes");
+		}
+	}
+
+}
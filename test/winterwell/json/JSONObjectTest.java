@@ -0,0 +1,166 @@
+package winterwell.json;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JSONObjectTest {
+
+	@Test
+	public void testCompact() throws Exception {
+		JSONObject jo = new JSONObject();
+		assert jo.length() == 0;
+		assert !jo.keys().hasNext();
+		assert jo.opt("a") == null;
+		jo.put("a", 1).put("b", "x").put(new String("a"), 2);
+		assert jo.length() == 2;
+		assert jo.getInt("a") == 2;
+		assert jo.has("b") && !jo.has("c");
+		assert jo.toString().equals("{\"a\":2,\"b\":\"x\"}") : jo;
+		assert jo.remove("a").equals(2);
+		assert jo.remove("a") == null;
+		assert jo.toString().equals("{\"b\":\"x\"}") : jo;
+		jo.put("b", (Object) null);
+		assert jo.length() == 0;
+
+		// grow past the compact limit, and check nothing gets lost
+		for (int i = 0; i < 20; i++) {
+			jo.put("k" + i, i);
+			assert jo.length() == i + 1;
+			for (int j = 0; j <= i; j++) {
+				assert jo.getInt("k" + j) == j;
+			}
+		}
+		assert jo.remove("k3").equals(3);
+		assert jo.length() == 19;
+
+		// iterator removal
+		JSONObject small = new JSONObject("{a:1,b:2,c:3}");
+		for (Iterator it = small.keys(); it.hasNext();) {
+			if (!"b".equals(it.next())) {
+				it.remove();
+			}
+		}
+		assert small.toString().equals("{\"b\":2}") : small;
+
+		Map map = new HashMap();
+		map.put("x", "y");
+		assert new JSONObject(map).getString("x").equals("y");
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		JSONObject jo = new JSONObject(
+				"{a:1, b:-2147483649, id:1234567890123456789, d:1.5, s:\"7\", big:99999999999999999999}");
+		// boxed types are as before
+		assert jo.opt("a").equals(Integer.valueOf(1)) : jo.opt("a").getClass();
+		assert jo.opt("b").equals(Long.valueOf(-2147483649L));
+		assert jo.opt("d") instanceof Double;
+		assert jo.toString().startsWith("{\"a\":1,\"b\":-2147483649,\"id\":1234567890123456789,") : jo;
+		// above 2^53, so a trip through double would lose the last digits
+		assert jo.getLong("id") == 1234567890123456789L;
+		assert jo.optLong("id") == 1234567890123456789L;
+		assert jo.getDouble("a") == 1;
+		assert jo.getInt("d") == 1;
+		assert jo.optInt("s") == 7;
+		assert jo.optInt("nope", -1) == -1;
+		assert jo.optLong("nope", -1) == -1;
+		assert Double.isNaN(jo.optDouble("nope"));
+		assert jo.optDouble("s") == 7;
+		assert jo.opt("big") instanceof Double;
+
+		jo.put("a", "x");
+		assert jo.opt("a").equals("x");
+		assert jo.optInt("a", -1) == -1;
+		jo.put("a", 5L);
+		assert jo.opt("a").equals(Long.valueOf(5));
+		jo.put("a", 5);
+		assert jo.opt("a").equals(Integer.valueOf(5));
+		assert jo.remove("b").equals(Long.valueOf(-2147483649L));
+		assert jo.getLong("id") == 1234567890123456789L;
+
+		// lots of numbers: the ones over the unboxed limit get boxed
+		JSONObject many = new JSONObject();
+		for (int i = 0; i < 100; i++) {
+			many.put("n" + i, i * 1000000000L);
+		}
+		for (int i = 0; i < 100; i++) {
+			assert many.getLong("n" + i) == i * 1000000000L;
+			assert many.opt("n" + i).equals(Long.valueOf(i * 1000000000L));
+		}
+
+		// the getters should not allocate
+		JSONObject tweet = new JSONObject(Payloads.TWEET);
+		JSONObject user = tweet.getJSONObject("user");
+		long sum = 0;
+		for (int i = 0; i < 1000; i++) {
+			sum += tweet.getLong("id") + user.optInt("followers_count");
+		}
+		long before = JSONSymbolsTest.allocated();
+		for (int i = 0; i < 100000; i++) {
+			sum += tweet.getLong("id") + user.optInt("followers_count");
+		}
+		long alloc = JSONSymbolsTest.allocated() - before;
+		assert sum != 0;
+		assert alloc < 10000 : alloc;
+	}
+
+	@Test
+	public void testBigObjectOrder() throws Exception {
+		JSONObject jo = new JSONObject();
+		for (int i = 0; i < 40; i++) {
+			jo.put("k" + i, "v" + i);
+		}
+		jo.remove("k0");
+		jo.remove("k20");
+		jo.put("k5", "five");
+		Iterator it = jo.keys();
+		for (int i = 1; i < 40; i++) {
+			if (i == 20) {
+				continue;
+			}
+			assert it.next().equals("k" + i);
+			assert jo.getString("k" + i).equals(i == 5 ? "five" : "v" + i);
+		}
+		assert !it.hasNext();
+		assert !jo.has("k20") && jo.length() == 38;
+		// shrink back to a small object
+		for (Iterator it2 = jo.keys(); it2.hasNext();) {
+			if (!((String) it2.next()).startsWith("k1")) {
+				it2.remove();
+			}
+		}
+		assert jo.length() == 11 : jo;
+		assert jo.getString("k19").equals("v19");
+		for (int i = 10; i < 20; i++) {
+			jo.remove("k" + i);
+		}
+		assert jo.toString().equals("{\"k1\":\"v1\"}") : jo;
+	}
+
+	/**
+	 * Measures the heap used by 10k parsed tweets. Prints bytes/tweet.
+	 */
+	@Test
+	public void testQuoteAndWriter() throws Exception {
+		String s = "a \"b\" c\\d</e>\n\u0001 caf\u00e9";
+		String q = JSONObject.quote(s);
+		assert q.equals("\"a \\\"b\\\" c\\\\d<\\/e>\\n\\u0001 caf\u00e9\"") : q;
+		assert new JSONTokener(q).nextValue().equals(s);
+		assert JSONObject.quote("").equals("\"\"");
+
+		JSONObject inner = new JSONObject().put("s", s).put("n", 3);
+		StringWriter sw = new StringWriter();
+		new JSONWriter(sw).object().key("x").value(inner)
+			.key("y").value((String) null)
+			.key("z").array().value("q").value(new JSONArray().put(1)).endArray()
+			.endObject();
+		JSONObject back = new JSONObject(sw.toString());
+		assert back.getJSONObject("x").getString("s").equals(s) : sw;
+		assert back.isNull("y");
+		assert back.getJSONArray("z").toString().equals("[\"q\",[1]]") : sw;
+	}
+}
@@ -0,0 +1,151 @@
+package winterwell.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import winterwell.json.JSONReader.Token;
+
+public class JSONReaderTest {
+
+	@Test
+	public void testTokens() throws Exception {
+		JSONReader r = new JSONReader("{\"a\":[1, 2.5, \"x\", true, false, null], \"b\":{}, \"c\":[]}");
+		List<Token> tokens = new ArrayList<Token>();
+		List<Object> values = new ArrayList<Object>();
+		while (true) {
+			Token t = r.next();
+			tokens.add(t);
+			if (t == Token.END_DOCUMENT) break;
+			if (r.getValue() != null) values.add(r.getValue());
+			if (t == Token.FIELD_NAME) values.add(r.getString());
+		}
+		assert tokens.toString().equals("[START_OBJECT, FIELD_NAME, START_ARRAY, VALUE_NUMBER, VALUE_NUMBER, "
+				+ "VALUE_STRING, VALUE_TRUE, VALUE_FALSE, VALUE_NULL, END_ARRAY, FIELD_NAME, START_OBJECT, "
+				+ "END_OBJECT, FIELD_NAME, START_ARRAY, END_ARRAY, END_OBJECT, END_DOCUMENT]") : tokens;
+		assert values.toString().equals("[a, 1, 2.5, x, true, false, null, b, c]") : values;
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		JSONReader r = new JSONReader("[1234567890123456789, 7, 3000000000]");
+		r.next();
+		assert r.next() == Token.VALUE_NUMBER;
+		assert r.getLong() == 1234567890123456789L;
+		assert r.getString().equals("1234567890123456789");
+		assert r.getValue().equals(Long.valueOf(1234567890123456789L));
+		r.next();
+		assert r.getInt() == 7 && r.getDouble() == 7;
+		assert r.getValue().equals(Integer.valueOf(7));
+		r.next();
+		assert r.getValue().equals(Long.valueOf(3000000000L));
+		assert r.next() == Token.END_ARRAY;
+		assert r.getValue() == null;
+	}
+
+	@Test
+	public void testSkip() throws Exception {
+		JSONReader r = new JSONReader(
+				"{\"skip\":{\"x\":[1,{\"y\":\"}]\\\"\"}]}, \"arr\":[[1],[2]], \"s\":\"str\", \"keep\":7}");
+		r.next();
+		assert r.nextField();
+		assert r.getString().equals("skip");
+		r.skipValue();
+		assert r.nextField();
+		assert r.getString().equals("arr");
+		assert r.next() == Token.START_ARRAY;
+		assert r.next() == Token.START_ARRAY;
+		r.skipChildren();
+		assert r.getToken() == Token.END_ARRAY;
+		r.skipValue(); // [2]
+		assert r.next() == Token.END_ARRAY;
+		assert r.nextField();
+		r.skipValue();
+		assert r.nextField();
+		assert r.getString().equals("keep");
+		r.next();
+		assert r.getInt() == 7;
+		assert ! r.nextField();
+		assert r.next() == Token.END_DOCUMENT;
+	}
+
+	@Test
+	public void testReadObject() throws Exception {
+		JSONReader r = new JSONReader("[{\"a\":{\"b\":1}}, 2]");
+		r.next();
+		assert r.next() == Token.START_OBJECT;
+		JSONObject jo = r.readObject();
+		assert jo.getJSONObject("a").getInt("b") == 1;
+		assert r.next() == Token.VALUE_NUMBER;
+		assert r.getLong() == 2;
+		assert r.next() == Token.END_ARRAY;
+		assert r.getDepth() == 0;
+	}
+
+	@Test
+	public void testNextLazyObject() throws Exception {
+		for (JSONReader r : new JSONReader[] {
+				new JSONReader("{\"rt\":{\"a\":{\"b\":\"café\"}}, \"n\":null, \"x\":2}"),
+				new JSONReader("{\"rt\":{\"a\":{\"b\":\"café\"}}, \"n\":null, \"x\":2}".getBytes("UTF-8")) }) {
+			assert r.next() == Token.START_OBJECT;
+			assert r.nextField() && r.getString().equals("rt");
+			LazyJSONObject rt = r.nextLazyObject();
+			assert r.nextField() && r.getString().equals("n");
+			assert r.nextLazyObject() == null;
+			assert r.nextField() && r.getString().equals("x");
+			try {
+				r.nextLazyObject();
+				assert false;
+			} catch (JSONException e) {
+				// good
+			}
+			assert !r.nextField();
+			assert r.getDepth() == 0;
+			// decoded after the reader has finished
+			assert rt.getJSONObject("a").getString("b").equals("café");
+		}
+	}
+
+	@Test
+	public void testStreamFrames() throws Exception {
+		JSONReader r = new JSONReader(Payloads.stream(10));
+		int frames = 0;
+		while (r.next() != Token.END_DOCUMENT) {
+			assert r.getToken() == Token.START_OBJECT;
+			r.skipChildren();
+			frames++;
+		}
+		assert frames == 10 : frames;
+		// and straight from the bytes
+		r = new JSONReader(Payloads.stream(10).getBytes("UTF-8"));
+		r.next();
+		assert r.nextField();
+		assert r.getString().equals("created_at");
+		r.skipValue();
+		while (r.nextField()) {
+			r.skipValue();
+		}
+		frames = 1;
+		while (r.next() != Token.END_DOCUMENT) {
+			r.skipChildren();
+			frames++;
+		}
+		assert frames == 10 : frames;
+	}
+
+	@Test
+	public void testSyntaxErrors() throws Exception {
+		String[] bad = new String[] { "{\"a\" 1}", "[1 \"2\"]", "{\"a\":1", "{\"a\":}", "[1}" };
+		for (String b : bad) {
+			try {
+				JSONReader r = new JSONReader(b);
+				while (r.next() != Token.END_DOCUMENT) {
+				}
+				assert false : b;
+			} catch (JSONException e) {
+				// good
+			}
+		}
+	}
+}
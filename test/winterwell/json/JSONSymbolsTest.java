@@ -0,0 +1,78 @@
+package winterwell.json;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class JSONSymbolsTest {
+
+	static JSONTokener tokener(String json, JSONSymbols symbols) {
+		JSONTokener x = new JSONTokener(json);
+		x.setSymbols(symbols);
+		return x;
+	}
+
+	@Test
+	public void testKeys() throws Exception {
+		JSONObject a = new JSONObject(tokener(Payloads.tweet(1), JSONSymbols.TWITTER));
+		JSONObject b = new JSONObject(tokener(Payloads.tweet(2), JSONSymbols.TWITTER));
+		for (Iterator it = a.keys(); it.hasNext();) {
+			String k = (String) it.next();
+			assert k == k.intern() : k;
+		}
+		JSONObject ua = a.getJSONObject("user"), ub = b.getJSONObject("user");
+		for (Iterator it = ua.keys(); it.hasNext();) {
+			String k = (String) it.next();
+			assert k == k.intern() : k;
+		}
+		// keys outside the vocabulary get added
+		JSONObject c = new JSONObject(tokener("{\"not_a_twitter_key\":1}", JSONSymbols.TWITTER));
+		JSONObject d = new JSONObject(tokener("{\"not_a_twitter_key\":2}", JSONSymbols.TWITTER));
+		assert c.keys().next() == d.keys().next();
+		// nothing changes without a table
+		JSONObject e = new JSONObject(Payloads.TWEET);
+		assert LazyJSONObjectTest.same(e, a) == false; // different ids
+		assert LazyJSONObjectTest.same(new JSONObject(Payloads.tweet(1)), a);
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		JSONSymbols symbols = new JSONSymbols(Arrays.asList("a"), Arrays.asList("src"), 64, 4);
+		String json = "{\"a\":\"en\",\"b\":\"a long value\",\"src\":\"a \\\"long\\\" value\",\"u\":\"\u00e9t\u00e9\"}";
+		JSONObject x = new JSONObject(tokener(json, symbols));
+		JSONObject y = new JSONObject(tokener(json, symbols));
+		assert x.getString("a") == y.getString("a");
+		assert x.getString("b") != y.getString("b");
+		// escaped, but deduped by key
+		assert x.getString("src").equals("a \"long\" value");
+		assert x.getString("src") == y.getString("src");
+		assert x.getString("u") == y.getString("u");
+		// byte input: non-ascii is decoded properly
+		byte[] utf8 = json.getBytes("UTF-8");
+		JSONTokener bx = new JSONTokener(utf8, 0, utf8.length);
+		bx.setSymbols(symbols);
+		JSONObject z = new JSONObject(bx);
+		assert z.getString("u").equals("\u00e9t\u00e9") : z.getString("u");
+		assert z.getString("a") == x.getString("a");
+		// via the reader & lazy objects too
+		JSONTokener rx = tokener(json, symbols);
+		JSONReader r = new JSONReader(rx);
+		r.next();
+		r.nextField();
+		r.next();
+		assert r.getString() == x.getString("a");
+		assert new LazyJSONObject(tokener(json, symbols)).getString("src") == x.getString("src");
+	}
+
+	/**
+	 * @return bytes allocated by this thread, or 0 if the JVM can't say
+	 */
+	static long allocated() {
+		java.lang.management.ThreadMXBean mx = java.lang.management.ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
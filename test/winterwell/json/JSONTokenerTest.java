@@ -0,0 +1,123 @@
+package winterwell.json;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JSONTokenerTest {
+
+	@Test
+	public void testStrings() throws Exception {
+		JSONObject jo = new JSONObject("{\"a\":\"plain\",\"b\":\"esc\\\"aped\\n\\u00e9\\/x\",'c':'single \"q\"'}");
+		assert jo.getString("a").equals("plain");
+		assert jo.getString("b").equals("esc\"aped\né/x") : jo.getString("b");
+		assert jo.getString("c").equals("single \"q\"");
+		try {
+			new JSONObject("{\"a\":\"unterminated}");
+			assert false;
+		} catch (JSONException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		JSONArray ja = new JSONArray("[0, 1, -17, 2147483647, 2147483648, -2147483649, 257833226163781632,"
+				+ " 1.5, -2e3, 012, 0x1F, 123456789012345678901, +5, -0]");
+		assert ja.get(0).equals(0);
+		assert ja.get(1).equals(1);
+		assert ja.get(2).equals(-17);
+		assert ja.get(3).equals(Integer.MAX_VALUE);
+		assert ja.get(4).equals(2147483648L) : ja.get(4).getClass();
+		assert ja.get(5).equals(-2147483649L);
+		assert ja.get(6).equals(257833226163781632L);
+		assert ja.get(7).equals(1.5);
+		assert ja.get(8).equals(-2000.0);
+		// legacy octal & hex
+		assert ja.get(9).equals(10);
+		assert ja.get(10).equals(31);
+		// too big for a long
+		assert ja.get(11) instanceof Double;
+		assert ja.get(12).equals(5);
+		assert ja.get(13).equals(0);
+	}
+
+	@Test
+	public void testLiterals() throws Exception {
+		JSONArray ja = new JSONArray("[true, FALSE, null, bare word , ]");
+		assert ja.get(0) == Boolean.TRUE;
+		assert ja.get(1) == Boolean.FALSE;
+		assert ja.get(2) == JSONObject.NULL;
+		assert ja.get(3).equals("bare word") : ja.get(3);
+		assert ja.length() == 4;
+	}
+
+	@Test
+	public void testTweet() throws Exception {
+		JSONObject jo = new JSONObject(Payloads.TWEET);
+		assert jo.getLong("id") == 257833226163781632L;
+		assert jo.getString("text").startsWith("RT @winterwell: Café tonight? \"Bring\" friends 😀") : jo.getString("text");
+		assert jo.getJSONObject("user").getString("screen_name").equals("example");
+		assert jo.getJSONObject("user").getString("description").equals("Java, data & the odd tweet.\nViews my own.");
+		JSONArray ja = new JSONArray(Payloads.timeline(5));
+		assert ja.length() == 5;
+	}
+
+	@Test
+	public void testSplitArray() throws Exception {
+		String json = " [ {\"a\":\"]}, [\"}, 1, null ,\"x,\\\"y\", [[2],{}], true ] ";
+		JSONTokener x = new JSONTokener(json);
+		List<JSONTokener> elements = x.splitArray();
+		assert elements.size() == 6 : elements.size();
+		assert ((JSONObject) elements.get(0).nextValue()).getString("a").equals("]}, [");
+		assert elements.get(1).nextValue().equals(1);
+		assert elements.get(2).nextValue() == JSONObject.NULL;
+		assert elements.get(3).nextValue().equals("x,\"y");
+		assert elements.get(4).nextValue().toString().equals("[[2],{}]");
+		assert elements.get(5).nextValue() == Boolean.TRUE;
+		assert x.nextClean() == 0;
+		// utf-8 too
+		byte[] utf8 = Payloads.timeline(3).getBytes("UTF-8");
+		elements = new JSONTokener(utf8, 0, utf8.length).splitArray();
+		assert elements.size() == 3;
+		assert new JSONObject(elements.get(2)).getString("text").startsWith("RT @winterwell: Caf\u00e9");
+		assert new JSONTokener("[]").splitArray().isEmpty();
+		for (String bad : new String[] { "{}", "[1}", "[{]", "[1," }) {
+			try {
+				new JSONTokener(bad).splitArray();
+				assert false : bad;
+			} catch (JSONException e) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void testBytes() throws Exception {
+		String json = "{\"a\":\"Caf\u00e9 \ud83d\ude00 \u20ac\",\"b\":\"esc\\\"\u00e9\\u00e9\",\"c\":[1,-2.5,null]}";
+		byte[] utf8 = json.getBytes("UTF-8");
+		JSONObject jo = new JSONObject(new JSONTokener(utf8, 0, utf8.length));
+		assert jo.getString("a").equals("Caf\u00e9 \ud83d\ude00 \u20ac") : jo.getString("a");
+		assert jo.getString("b").equals("esc\"\u00e9\u00e9") : jo.getString("b");
+		assert jo.toString().equals(new JSONObject(json).toString());
+		// a whole tweet
+		byte[] tweet = Payloads.TWEET.getBytes("UTF-8");
+		assert new JSONObject(new JSONTokener(tweet, 0, tweet.length)).toString().equals(
+				new JSONObject(Payloads.TWEET).toString());
+		// part of an array, BOM, direct buffers & streams
+		byte[] padded = ("xx\ufeff" + json + "yy").getBytes("UTF-8");
+		JSONObject jo2 = new JSONObject(new JSONTokener(padded, 2, utf8.length + 3));
+		assert jo2.toString().equals(jo.toString());
+		ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+		direct.put(utf8).flip();
+		assert new JSONObject(new JSONTokener(direct)).toString().equals(jo.toString());
+		assert direct.remaining() == utf8.length;
+		assert new JSONObject(new JSONTokener(new ByteArrayInputStream(utf8))).toString()
+				.equals(jo.toString());
+		// malformed UTF-8 doesn't kill the parse
+		byte[] bad = new byte[] { '[', '"', 'a', (byte) 0xC3, '"', ']' };
+		assert new JSONArray(new JSONTokener(bad, 0, bad.length)).getString(0).equals("a\ufffd");
+	}
+}
@@ -0,0 +1,103 @@
+package winterwell.json;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class LazyJSONObjectTest {
+
+	@Test
+	public void testSameAsJSONObject() throws Exception {
+		String[] jsons = (Payloads.TWEET + "\r\n" + Payloads.stream(60)).split("\r\n");
+		for (String json : jsons) {
+			JSONObject lazy = new LazyJSONObject(json);
+			JSONObject eager = new JSONObject(json);
+			assert same(eager, lazy) : json;
+		}
+		JSONObject lazy = new LazyJSONObject("{a:1, 'b' => [1,,{\"c\":null}], \"d\":{}; e=\"x\",}");
+		assert same(new JSONObject("{a:1, 'b' => [1,,{\"c\":null}], \"d\":{}; e=\"x\",}"), lazy);
+		assert lazy.getJSONArray("b").getJSONObject(2) instanceof LazyJSONObject;
+		// bytes too
+		byte[] utf8 = Payloads.TWEET.getBytes("UTF-8");
+		assert same(new JSONObject(Payloads.TWEET),
+				new LazyJSONObject(new JSONTokener(utf8, 0, utf8.length)));
+	}
+
+	@Test
+	public void testLazy() throws Exception {
+		LazyJSONObject jo = new LazyJSONObject("{\"a\":1,\"b\":{\"c\" 2},\"d\":\"x\"}");
+		assert jo.length() == 3;
+		assert jo.has("b");
+		assert jo.getInt("a") == 1;
+		assert jo.getString("d").equals("x");
+		try {
+			jo.opt("b");
+			assert false;
+		} catch (JSONException e) {
+			// good: only found when asked for
+		}
+		assert jo.remove("a").equals(1);
+		try {
+			jo.remove("b");
+			assert false;
+		} catch (JSONException e) {
+			// good
+		}
+		jo.put("b", 2);
+		assert jo.put("e", "y").toString().contains("\"e\":\"y\"") : jo;
+		// the structure is still checked up front
+		try {
+			new LazyJSONObject("{\"a\":1 \"b\":2}");
+			assert false;
+		} catch (JSONException e) {
+			// good
+		}
+		// the tokener carries on after the object
+		JSONTokener x = new JSONTokener("{\"a\":[1,2]} {\"b\":3}");
+		new LazyJSONObject(x);
+		assert new LazyJSONObject(x).getInt("b") == 3;
+	}
+
+	@Test
+	public void testReader() throws Exception {
+		JSONTokener x = new JSONTokener("[1, {\"a\":[1,2], \"b\":{\"c\":3}}]");
+		x.nextClean();
+		x.skipValue();
+		x.nextClean();
+		LazyJSONObject jo = new LazyJSONObject(x);
+		JSONReader r = jo.reader();
+		assert r.next() == JSONReader.Token.START_OBJECT;
+		JSONObject all = r.readObject();
+		assert all.getJSONArray("a").length() == 2;
+		assert all.getJSONObject("b").getInt("c") == 3;
+		// nested (lazy) objects too
+		r = ((LazyJSONObject) jo.getJSONObject("b")).reader();
+		assert r.next() == JSONReader.Token.START_OBJECT;
+		assert r.nextField() && r.getString().equals("c");
+		assert r.next() == JSONReader.Token.VALUE_NUMBER && r.getInt() == 3;
+		assert r.next() == JSONReader.Token.END_OBJECT;
+	}
+
+	static boolean same(Object a, Object b) {
+		if (a instanceof JSONObject) {
+			if (!(b instanceof JSONObject)) return false;
+			JSONObject ja = (JSONObject) a, jb = (JSONObject) b;
+			if (ja.length() != jb.length()) return false;
+			for (Iterator it = ja.keys(); it.hasNext();) {
+				String k = (String) it.next();
+				if (!same(ja.opt(k), jb.opt(k))) return false;
+			}
+			return true;
+		}
+		if (a instanceof JSONArray) {
+			if (!(b instanceof JSONArray)) return false;
+			JSONArray ja = (JSONArray) a, jb = (JSONArray) b;
+			if (ja.length() != jb.length()) return false;
+			for (int i = 0; i < ja.length(); i++) {
+				if (!same(ja.opt(i), jb.opt(i))) return false;
+			}
+			return true;
+		}
+		return a == null ? b == null : a.equals(b);
+	}
+}
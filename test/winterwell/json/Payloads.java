@@ -0,0 +1,106 @@
+package winterwell.json;
+
+/**
+ * Recorded-style Twitter payloads (v1 API) for parser tests and benchmarks.
+ * Ids, names and text have been anonymised.
+ */
+public class Payloads {
+
+	/**
+	 * A timeline tweet with entities, a place, unicode escapes and an html
+	 * source link -- i.e. all the awkward bits.
+	 */
+	public static final String TWEET = "{\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\","
+			+ "\"id\":257833226163781632,\"id_str\":\"257833226163781632\","
+			+ "\"text\":\"RT @winterwell: Caf\\u00e9 tonight? \\\"Bring\\\" friends \\ud83d\\ude00 #jtwitter http:\\/\\/t.co\\/abc123 @daniel\","
+			+ "\"source\":\"\\u003ca href=\\\"http:\\/\\/twitter.com\\/download\\/android\\\" rel=\\\"nofollow\\\"\\u003eTwitter for Android\\u003c\\/a\\u003e\","
+			+ "\"truncated\":false,\"in_reply_to_status_id\":null,\"in_reply_to_status_id_str\":null,"
+			+ "\"in_reply_to_user_id\":null,\"in_reply_to_user_id_str\":null,\"in_reply_to_screen_name\":null,"
+			+ "\"user\":{\"id\":14603515,\"id_str\":\"14603515\",\"name\":\"Example User\",\"screen_name\":\"example\","
+			+ "\"location\":\"Edinburgh, Scotland\",\"description\":\"Java, data & the odd tweet.\\nViews my own.\","
+			+ "\"url\":\"http:\\/\\/www.example.com\",\"protected\":false,\"followers_count\":1032,"
+			+ "\"friends_count\":341,\"listed_count\":57,\"created_at\":\"Thu May 01 10:23:45 +0000 2008\","
+			+ "\"favourites_count\":12,\"utc_offset\":0,\"time_zone\":\"Edinburgh\",\"geo_enabled\":true,"
+			+ "\"verified\":false,\"statuses_count\":4821,\"lang\":\"en\",\"contributors_enabled\":false,"
+			+ "\"is_translator\":false,\"profile_background_color\":\"C0DEED\","
+			+ "\"profile_background_image_url\":\"http:\\/\\/a0.twimg.com\\/images\\/themes\\/theme1\\/bg.png\","
+			+ "\"profile_background_tile\":false,"
+			+ "\"profile_image_url\":\"http:\\/\\/a0.twimg.com\\/profile_images\\/1234\\/me_normal.jpg\","
+			+ "\"profile_link_color\":\"0084B4\",\"profile_sidebar_border_color\":\"C0DEED\","
+			+ "\"profile_sidebar_fill_color\":\"DDEEF6\",\"profile_text_color\":\"333333\","
+			+ "\"profile_use_background_image\":true,\"default_profile\":true,\"default_profile_image\":false,"
+			+ "\"following\":null,\"follow_request_sent\":null,\"notifications\":null},"
+			+ "\"geo\":{\"type\":\"Point\",\"coordinates\":[55.9486,-3.1999]},"
+			+ "\"coordinates\":{\"type\":\"Point\",\"coordinates\":[-3.1999,55.9486]},"
+			+ "\"place\":{\"id\":\"7ae9e2f2ff7a87cd\",\"url\":\"http:\\/\\/api.twitter.com\\/1\\/geo\\/id\\/7ae9e2f2ff7a87cd.json\","
+			+ "\"place_type\":\"city\",\"name\":\"Edinburgh\",\"full_name\":\"Edinburgh, Edinburgh\","
+			+ "\"country_code\":\"GB\",\"country\":\"United Kingdom\","
+			+ "\"bounding_box\":{\"type\":\"Polygon\",\"coordinates\":[[[-3.33,55.89],[-3.08,55.89],[-3.08,55.99],[-3.33,55.99]]]},"
+			+ "\"attributes\":{}},"
+			+ "\"contributors\":null,\"retweet_count\":3,\"favorited\":false,\"retweeted\":false,"
+			+ "\"possibly_sensitive\":false,"
+			+ "\"entities\":{\"hashtags\":[{\"text\":\"jtwitter\",\"indices\":[47,56]}],"
+			+ "\"urls\":[{\"url\":\"http:\\/\\/t.co\\/abc123\",\"expanded_url\":\"http:\\/\\/www.example.com\\/blog\\/2012\\/10\\/cafe\","
+			+ "\"display_url\":\"example.com\\/blog\\/2012\\/10\\/\\u2026\",\"indices\":[57,77]}],"
+			+ "\"user_mentions\":[{\"screen_name\":\"winterwell\",\"name\":\"Winterwell\",\"id\":15170520,"
+			+ "\"id_str\":\"15170520\",\"indices\":[3,14]},{\"screen_name\":\"daniel\",\"name\":\"Daniel\","
+			+ "\"id\":6253282,\"id_str\":\"6253282\",\"indices\":[78,85]}]}}";
+
+	/**
+	 * A stream delete notice
+	 */
+	public static final String DELETE = "{\"delete\":{\"status\":{\"id\":1234567890123456789,"
+			+ "\"user_id\":3,\"id_str\":\"1234567890123456789\",\"user_id_str\":\"3\"}}}";
+
+	/**
+	 * A stream limit notice
+	 */
+	public static final String LIMIT = "{\"limit\":{\"track\":1234}}";
+
+	/**
+	 * @param n
+	 * @return a timeline of n (varied) tweets, as returned by e.g.
+	 *         statuses/home_timeline.json
+	 */
+	public static String timeline(int n) {
+		StringBuilder sb = new StringBuilder(n * TWEET.length() + 2);
+		sb.append('[');
+		for (int i = 0; i < n; i++) {
+			if (i != 0) {
+				sb.append(',');
+			}
+			sb.append(tweet(i));
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * @param i
+	 * @return TWEET with a different id
+	 */
+	public static String tweet(int i) {
+		String id = Long.toString(257833226163781632L + i);
+		return TWEET.replace("257833226163781632", id);
+	}
+
+	/**
+	 * @param n
+	 * @return n stream frames (mostly tweets, with some delete & limit
+	 *         notices), newline separated as on the wire
+	 */
+	public static String stream(int n) {
+		StringBuilder sb = new StringBuilder(n * TWEET.length());
+		for (int i = 0; i < n; i++) {
+			if (i % 20 == 7) {
+				sb.append(DELETE);
+			} else if (i % 50 == 13) {
+				sb.append(LIMIT);
+			} else {
+				sb.append(tweet(i));
+			}
+			sb.append("\r\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,161 @@
+package winterwell.jtwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import winterwell.json.JSONObject;
+import winterwell.json.Payloads;
+import winterwell.jtwitter.AStream.DeleteNotice;
+import winterwell.jtwitter.AStream.IListen;
+import winterwell.jtwitter.AStream.IListenNotices;
+import winterwell.jtwitter.AStream.LimitNotice;
+import winterwell.jtwitter.AStream.Notice;
+import winterwell.jtwitter.Twitter.ITweet;
+
+/**
+ * Offline tests: the stream is read from canned frames.
+ */
+public class AStreamTest {
+
+	@Test
+	public void testReadParse() throws Exception {
+		Object del = AStream.read3_parse(new JSONObject(Payloads.DELETE), null);
+		assert del.equals(new DeleteNotice(1234567890123456789L, 3)) : del;
+		Object[] arr = ((Notice) del).toArray();
+		assert arr[0].equals("delete");
+		assert ((Status) arr[1]).getId().longValue() == 1234567890123456789L;
+		assert arr[2].equals(3L);
+
+		Object limit = AStream.read3_parse(new JSONObject(Payloads.LIMIT), null);
+		assert ((LimitNotice) limit).getTrack() == 1234;
+		assert ((Notice) limit).toArray()[1].equals(1234);
+
+		// recycled
+		DeleteNotice rd = new DeleteNotice(0, 0);
+		LimitNotice rl = new LimitNotice(0);
+		assert AStream.read3_parse(new JSONObject(Payloads.DELETE), null, rd, rl) == rd;
+		assert rd.getStatusId() == 1234567890123456789L && rd.getUserId() == 3;
+		assert AStream.read3_parse(new JSONObject(Payloads.LIMIT), null, rd, rl) == rl;
+		assert rl.getTrack() == 1234;
+		DeleteNotice copy = rd.copy();
+		assert copy != rd && copy.equals(rd);
+	}
+
+	@Test
+	public void testListeners() throws Exception {
+		for (boolean reuse : new boolean[] { false, true }) {
+			TwitterStream ts = new TwitterStream(new Twitter());
+			ts.setListenersOnly(true);
+			ts.setReuseNotices(reuse);
+			final List<Object[]> oldStyle = new ArrayList<Object[]>();
+			final List<Notice> notices = new ArrayList<Notice>();
+			final int[] tweets = new int[1];
+			ts.addListener(new Listener() {
+				@Override
+				public boolean processSystemEvent(Object[] obj) {
+					oldStyle.add(obj);
+					return true;
+				}
+			});
+			ts.addListener(new NoticeListener() {
+				@Override
+				public boolean processNotice(Notice notice) {
+					notices.add(notice);
+					return true;
+				}
+
+				@Override
+				public boolean processTweet(ITweet tweet) {
+					tweets[0]++;
+					return true;
+				}
+			});
+			gobble(ts, Payloads.stream(100));
+
+			assert tweets[0] == 93 : tweets[0];
+			assert notices.size() == 7 : notices;
+			assert notices.get(0).equals(new DeleteNotice(1234567890123456789L, 3));
+			assert notices.get(1).equals(new LimitNotice(1234));
+			// the same object, or new ones
+			assert (notices.get(0) == notices.get(2)) == reuse;
+			// old listeners still get arrays: 7 notices, then the end of the stream
+			assert oldStyle.size() == 8 : oldStyle.size();
+			assert oldStyle.get(0)[0].equals("delete");
+			assert ((Status) oldStyle.get(0)[1]).getId().longValue() == 1234567890123456789L;
+			assert oldStyle.get(1)[0].equals("limit") && oldStyle.get(1)[1].equals(1234);
+			assert oldStyle.get(7)[0].equals("exception");
+			// nothing buffered for polling
+			assert ts.getTweets().isEmpty();
+		}
+	}
+
+	@Test
+	public void testSystemEvents() throws Exception {
+		TwitterStream ts = new TwitterStream(new Twitter());
+		String deleteTweet7 = Payloads.DELETE.replace("1234567890123456789",
+				Long.toString(257833226163781632L + 7));
+		gobble(ts, Payloads.tweet(7) + "\r\n" + Payloads.tweet(8) + "\r\n" + deleteTweet7
+				+ "\r\n" + Payloads.DELETE + "\r\n" + Payloads.LIMIT + "\r\n");
+
+		List<Object[]> sysEvents = ts.popSystemEvents();
+		// the local copy of tweet 7 was pruned, so no event for that
+		List<ITweet> tweets = ts.popTweets();
+		assert tweets.size() == 1 : tweets;
+		assert tweets.get(0).getId().toString().equals(Long.toString(257833226163781632L + 8));
+		// end of stream, delete, limit
+		assert sysEvents.size() == 3 : sysEvents.size();
+		assert sysEvents.get(0)[0].equals("exception");
+		assert sysEvents.get(1)[0].equals("delete");
+		assert sysEvents.get(1)[1].equals(new Status(null, null, 1234567890123456789L, null));
+		assert sysEvents.get(1)[2].equals(3L);
+		assert sysEvents.get(2)[0].equals("limit");
+		assert ts.getForgotten() == 1234 : ts.getForgotten();
+		assert ts.popSystemEvents().isEmpty();
+	}
+
+	/**
+	 * Run a gobbler over the frames (in this thread), as if they'd come from
+	 * Twitter.
+	 */
+	private static void gobble(AStream ts, String frames) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		for (String frame : frames.split("\r\n")) {
+			byte[] utf8 = frame.getBytes("UTF-8");
+			// as Twitter send it: the length includes the trailing \r\n
+			bos.write((utf8.length + 2 + "\r\n").getBytes("UTF-8"));
+			bos.write(utf8);
+			bos.write("\r\n".getBytes("UTF-8"));
+		}
+		ts.stream = new ByteArrayInputStream(bos.toByteArray());
+		StreamGobbler gobbler = new StreamGobbler(ts);
+		ts.readThread = gobbler;
+		// runs until the end of the stream
+		gobbler.run();
+		// an orderly stop, so polling doesn't try to reconnect
+		gobbler.stopFlag = true;
+	}
+
+	static class Listener implements IListen {
+		@Override
+		public boolean processEvent(TwitterEvent event) {
+			return true;
+		}
+
+		@Override
+		public boolean processSystemEvent(Object[] obj) {
+			return true;
+		}
+
+		@Override
+		public boolean processTweet(ITweet tweet) {
+			return true;
+		}
+	}
+
+	static abstract class NoticeListener extends Listener implements IListenNotices {
+	}
+}
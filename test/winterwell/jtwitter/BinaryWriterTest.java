@@ -0,0 +1,166 @@
+package winterwell.jtwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import winterwell.json.JSONObject;
+import winterwell.json.Payloads;
+
+public class BinaryWriterTest {
+
+	@Test
+	public void testStatusRoundTrip() throws Exception {
+		List<Status> statuses = new ArrayList<Status>();
+		statuses.add(new Status(new JSONObject(Payloads.TWEET), null));
+		statuses.add(new Status(new JSONObject(StatusTest.RETWEET), null));
+		statuses.addAll(Status.getStatuses(TweetTableTest.timeline(200)));
+		// the same author (and counts) as the first
+		statuses.add(new Status(new JSONObject(Payloads.tweet(1)), null));
+		// a fake one: no user, no entities, a time which isn't whole seconds
+		statuses.add(new Status(null, "fake", 7, new Date(1350309146123L)));
+		byte[] bytes = write(statuses.toArray());
+		BinaryReader r = new BinaryReader(new ByteArrayInputStream(bytes));
+		for (Status a : statuses) {
+			Status b = (Status) r.read();
+			StatusTest.assertSame(a, b);
+			if (a.getOriginal() != null) {
+				StatusTest.assertSame(a.getOriginal(), b.getOriginal());
+			}
+			assert a.getMentions().equals(b.getMentions());
+		}
+		assert r.read() == null;
+		assert r.getCount() == statuses.size();
+		// The same users are shared
+		List<Object> again = read(bytes);
+		assert ((Status) again.get(0)).getUser() == ((Status) again.get(202)).getUser();
+	}
+
+	@Test
+	public void testUserMessagePlace() throws Exception {
+		User user = new User(new JSONObject(StatusTest.USER_WITH_STATUS), null);
+		String msgJson = "{\"id\":42,\"text\":\"fish &amp; chips @daniel?\","
+				+ "\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\",\"sender\":" + NDJSONWriterTest.USER
+				+ ",\"recipient\":" + NDJSONWriterTest.USER + ",\"entities\":{\"user_mentions\":[{\"screen_name\":\"daniel\","
+				+ "\"name\":\"Daniel\",\"indices\":[17,24]}]}}";
+		Message msg = new Message(new JSONObject(msgJson));
+		Place place = new Status(new JSONObject(Payloads.TWEET), null).getPlace();
+		List<Object> things = read(write(user, msg, place, User.stub(123L)));
+		assert things.size() == 4;
+
+		User user2 = (User) things.get(0);
+		StatusTest.assertSame(user, user2);
+		StatusTest.assertSame(user.status, user2.status);
+		assert user2.status.getUser() == user2;
+
+		Message msg2 = (Message) things.get(1);
+		assert msg2.getId().equals(42L);
+		assert msg2.inReplyToMessageId == null;
+		assert msg2.getText().equals("fish & chips @daniel?") : msg2.getText();
+		assert msg2.getCreatedAt().equals(msg.getCreatedAt());
+		StatusTest.assertSame(msg.getSender(), msg2.getSender());
+		StatusTest.assertSame(msg.getRecipient(), msg2.getRecipient());
+		assert msg2.getTweetEntities(Twitter.KEntityType.user_mentions).toString().equals("[@daniel]");
+
+		StatusTest.assertSame(place, (Place) things.get(2));
+		assert ((User) things.get(3)).isStub();
+	}
+
+	@Test
+	public void testBadStreams() throws Exception {
+		assert read(write()).isEmpty();
+		byte[] bytes = write(new Status(new JSONObject(Payloads.TWEET), null));
+		// not ours
+		try {
+			new BinaryReader(new ByteArrayInputStream("{\"id\":1}".getBytes("UTF-8")));
+			assert false;
+		} catch (TwitterException.IO e) {
+			// good
+		}
+		// from the future
+		byte[] future = bytes.clone();
+		future[3] = (byte) (BinaryWriter.VERSION + 1);
+		try {
+			new BinaryReader(new ByteArrayInputStream(future));
+			assert false;
+		} catch (TwitterException.IO e) {
+			assert e.getMessage().contains("version") : e;
+		}
+		// cut short
+		try {
+			read(Arrays.copyOf(bytes, bytes.length - 5));
+			assert false;
+		} catch (TwitterException.IO e) {
+			// good
+		}
+		// garbage
+		byte[] garbage = bytes.clone();
+		garbage[4] = 99;
+		try {
+			read(garbage);
+			assert false;
+		} catch (TwitterException.IO e) {
+			// good
+		}
+	}
+
+	/**
+	 * Smaller than Java serialization and json (via NDJSONWriter). Without
+	 * places: Java serialization can't handle them.
+	 */
+	@Test
+	public void testSize() throws Exception {
+		// (new screen-names, so we don't share Users from other tests, whose
+		// status has a place)
+		List<Status> statuses = Status.getStatuses(TweetTableTest.timeline(1000)
+				.replaceAll("\"place\":\\{.*?\"attributes\":\\{\\}\\},", "")
+				.replace("\"screen_name\":\"example", "\"screen_name\":\"compact"));
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		BinaryWriter bw = new BinaryWriter(binary);
+		ByteArrayOutputStream java = new ByteArrayOutputStream();
+		ObjectOutputStream ow = new ObjectOutputStream(java);
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		NDJSONWriter jw = new NDJSONWriter(json);
+		for (Status s : statuses) {
+			bw.write(s);
+			ow.writeObject(s);
+			jw.write(s);
+		}
+		bw.close();
+		ow.close();
+		jw.close();
+		assert binary.size() < java.size() : binary.size() + " vs " + java.size();
+		assert binary.size() < json.size() : binary.size() + " vs " + json.size();
+		assert read(binary.toByteArray()).size() == statuses.size();
+	}
+
+	private static List<Object> read(byte[] bytes) {
+		BinaryReader r = new BinaryReader(new ByteArrayInputStream(bytes));
+		List<Object> things = new ArrayList<Object>();
+		Object thing;
+		while ((thing = r.read()) != null) {
+			things.add(thing);
+		}
+		return things;
+	}
+
+	private static byte[] write(Object... things) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BinaryWriter w = new BinaryWriter(bos);
+		for (Object thing : things) {
+			if (thing instanceof Status) w.write((Status) thing);
+			else if (thing instanceof User) w.write((User) thing);
+			else if (thing instanceof Message) w.write((Message) thing);
+			else w.write((Place) thing);
+		}
+		w.close();
+		assert w.getCount() == things.length;
+		return bos.toByteArray();
+	}
+}
@@ -0,0 +1,229 @@
+package winterwell.jtwitter;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import winterwell.jtwitter.Twitter.IHttpClient;
+import winterwell.jtwitter.Twitter.KRequestType;
+
+public class CoalescingHttpClientTest {
+
+	/**
+	 * Fake server: counts calls, and blocks GETs until released.
+	 */
+	static class SlowClient implements IHttpClient {
+		final AtomicInteger gets = new AtomicInteger();
+		final AtomicInteger posts = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		volatile boolean fail;
+		volatile Error error;
+
+		@Override
+		public boolean canAuthenticate() {
+			return false;
+		}
+
+		@Override
+		public HttpURLConnection connect(String url, Map<String, String> vars,
+				boolean authenticate) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public IHttpClient copy() {
+			return this;
+		}
+
+		@Override
+		public String getHeader(String headerName) {
+			return null;
+		}
+
+		@Override
+		public String getPage(String uri, Map<String, String> vars,
+				boolean authenticate) throws TwitterException {
+			gets.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new TwitterException(e);
+			}
+			if (fail)
+				throw new TwitterException.E50X("down");
+			if (error != null)
+				throw error;
+			return "page:" + uri;
+		}
+
+		@Override
+		public RateLimit getRateLimit(KRequestType reqType) {
+			return null;
+		}
+
+		@Override
+		public String post(String uri, Map<String, String> vars,
+				boolean authenticate) throws TwitterException {
+			posts.incrementAndGet();
+			return "posted";
+		}
+
+		@Override
+		public HttpURLConnection post2_connect(String uri,
+				Map<String, String> vars) throws Exception {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setTimeout(int millisecs) {
+		}
+	}
+
+	/**
+	 * Start n threads doing the same GET, wait until they're all waiting,
+	 * then let the server answer.
+	 */
+	private static List<Object> getInParallel(final IHttpClient client,
+			final SlowClient server, int n) throws Exception {
+		final List<Object> results = new ArrayList<Object>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < n; i++) {
+			// alternate between the client & a copy
+			final IHttpClient c = i % 2 == 0 ? client : client.copy();
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					Object r;
+					try {
+						r = c.getPage("http://x.com/users/show.json",
+								null, false);
+					} catch (Throwable e) {
+						r = e;
+					}
+					synchronized (results) {
+						results.add(r);
+					}
+				}
+			};
+			t.start();
+			threads.add(t);
+		}
+		CoalescingHttpClient cc = (CoalescingHttpClient) client;
+		while (cc.getCoalescedCount() < n - 1) {
+			Thread.sleep(5);
+		}
+		server.release.countDown();
+		for (Thread t : threads) {
+			t.join(5000);
+		}
+		return results;
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		SlowClient server = new SlowClient();
+		CoalescingHttpClient client = new CoalescingHttpClient(server);
+		List<Object> results = getInParallel(client, server, 8);
+		assert results.size() == 8 : results;
+		for (Object r : results) {
+			assert "page:http://x.com/users/show.json".equals(r) : r;
+		}
+		assert server.gets.get() == 1 : server.gets;
+		assert client.getCoalescedCount() == 7 : client.getCoalescedCount();
+		// not a cache
+		client.getPage("http://x.com/users/show.json", null, false);
+		assert server.gets.get() == 2;
+	}
+
+	@Test
+	public void testSharedError() throws Exception {
+		SlowClient server = new SlowClient();
+		server.fail = true;
+		CoalescingHttpClient client = new CoalescingHttpClient(server);
+		List<Object> results = getInParallel(client, server, 4);
+		assert results.size() == 4 : results;
+		for (Object r : results) {
+			assert r instanceof TwitterException.E50X : r;
+		}
+		assert server.gets.get() == 1 : server.gets;
+	}
+
+	/**
+	 * An Error in the leader must not look like a null page to the waiters.
+	 */
+	@Test
+	public void testSharedAssertionError() throws Exception {
+		SlowClient server = new SlowClient();
+		server.error = new AssertionError("oops");
+		CoalescingHttpClient client = new CoalescingHttpClient(server);
+		List<Object> results = getInParallel(client, server, 4);
+		assert results.size() == 4 : results;
+		int errors = 0;
+		for (Object r : results) {
+			if (r == server.error) {
+				errors++;
+			} else {
+				assert r instanceof TwitterException : r;
+				assert ((TwitterException) r).getCause() == server.error : r;
+			}
+		}
+		// the leader gets the Error itself
+		assert errors == 1 : results;
+		assert server.gets.get() == 1 : server.gets;
+	}
+
+	@Test
+	public void testNoMergePosts() throws Exception {
+		SlowClient server = new SlowClient();
+		CoalescingHttpClient client = new CoalescingHttpClient(server);
+		client.post("http://x.com/update.json", null, true);
+		client.post("http://x.com/update.json", null, true);
+		assert server.posts.get() == 2;
+		assert client.getCoalescedCount() == 0;
+	}
+
+	@Test
+	public void testKey() {
+		CoalescingHttpClient c = new CoalescingHttpClient(new URLConnectionHttpClient());
+		Map<String, String> a = new HashMap<String, String>();
+		a.put("screen_name", "jtwit");
+		a.put("count", "20");
+		Map<String, String> b = new LinkedHashMap<String, String>();
+		b.put("count", "20");
+		b.put("screen_name", "jtwit");
+		assert c.getKey("http://x.com/a", a, false).equals(c.getKey("http://x.com/a", b, false));
+		assert ! c.getKey("http://x.com/a", a, false).equals(c.getKey("http://x.com/b", a, false));
+		assert ! c.getKey("http://x.com/a", a, false).equals(c.getKey("http://x.com/a", a, true));
+		// different users don't share
+		CoalescingHttpClient bob = new CoalescingHttpClient(new URLConnectionHttpClient("bob", "pwd"));
+		CoalescingHttpClient ann = new CoalescingHttpClient(new URLConnectionHttpClient("ann", "pwd"));
+		assert ! bob.getKey("http://x.com/a", a, true).equals(ann.getKey("http://x.com/a", a, true));
+		assert bob.getKey("http://x.com/a", a, true).equals(
+				((CoalescingHttpClient) bob.copy()).getKey("http://x.com/a", a, true));
+	}
+
+	/**
+	 * Same name, different password: a wrong password must not be handed
+	 * pages fetched with the right one.
+	 */
+	@Test
+	public void testKeyPassword() {
+		Map<String, String> vars = new HashMap<String, String>();
+		CoalescingHttpClient right = new CoalescingHttpClient(new URLConnectionHttpClient("bob", "right"));
+		CoalescingHttpClient wrong = new CoalescingHttpClient(new URLConnectionHttpClient("bob", "wrong"));
+		CoalescingHttpClient same = new CoalescingHttpClient(new URLConnectionHttpClient("bob", "right"));
+		String key = right.getKey("http://x.com/a", vars, true);
+		assert ! key.equals(wrong.getKey("http://x.com/a", vars, true)) : key;
+		assert key.equals(same.getKey("http://x.com/a", vars, true)) : key;
+		// the password isn't kept in the key
+		assert ! key.contains("right") : key;
+	}
+}
@@ -1,5 +1,16 @@
 package winterwell.jtwitter;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 public class InternalUtilsTest {
@@ -8,8 +19,159 @@ public class InternalUtilsTest {
 	public void testEncode() {
 		String enc = InternalUtils.encode("+Justin Bieber");
 		assert enc.equals("%2BJustin%20Bieber") : enc;
+		// RFC 3986: ~ is unreserved, * is not
+		assert InternalUtils.encode("a~b*c").equals("a~b%2Ac") : InternalUtils.encode("a~b*c");
+		// utf-8, including a surrogate pair
+		enc = InternalUtils.encode("caf\u00e9 \u20ac \ud83d\ude00");
+		assert enc.equals("caf%C3%A9%20%E2%82%AC%20%F0%9F%98%80") : enc;
+		// no-op fast path
+		String plain = "jtwit_123";
+		assert InternalUtils.encode(plain) == plain;
+	}
+
+	@Test
+	public void testEncodeVars() {
+		Map<String, String> vars = new LinkedHashMap<String, String>();
+		vars.put("q", "a&b=c");
+		vars.put("skip", null);
+		vars.put("count", "20");
+		StringBuilder sb = new StringBuilder("http://x.com/s.json?");
+		boolean added = InternalUtils.encodeVars(vars, sb);
+		assert added;
+		assert sb.toString().equals("http://x.com/s.json?q=a%26b%3Dc&count=20") : sb;
+		assert ! InternalUtils.encodeVars(null, sb);
+	}
+
+	@Test
+	public void testParseDate() throws Exception {
+		SimpleDateFormat df = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+		String[] zones = { "UTC", "America/New_York", "Asia/Kolkata", "Asia/Kathmandu", "Pacific/Chatham" };
+		Random r = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// 1970 to 2100 (older dates can have zone offsets with seconds)
+			Date d = new Date((long) (r.nextDouble() * 4.1e12) / 1000 * 1000);
+			df.setTimeZone(TimeZone.getTimeZone(zones[i % zones.length]));
+			String s = df.format(d);
+			assert InternalUtils.parseDate(s).equals(d) : s;
+			assert InternalUtils.parseDate("[\"" + s + "\"]", 2, 32) == d.getTime() : s;
+		}
+		Date d = new Date(1219842525000L);
+		assert InternalUtils.parseDate("Wed Aug 27 13:08:45 +0000 2008").equals(d);
+		assert InternalUtils.parseDate("Wed Aug 27 15:08:45 +0200 2008").equals(d);
+		// not Twitter's format: the fallbacks
+		assert InternalUtils.parseDate("1219842525000").equals(d);
+		assert InternalUtils.parseDate("Wed, 27 Aug 2008 13:08:45 +0000").equals(d);
+		for (String bad : new String[] { "Wed Aug 27 13:08:45 +0000 2008x", "Wed Axg 27 13:08:45 +0000 2008",
+				"Wed Aug 27 13:08:45 *0000 2008", "Wed Aug 27 24:08:45 +0000 2008" }) {
+			assert InternalUtils.parseDate(bad, 0, bad.length()) == InternalUtils.NOT_A_DATE : bad;
+		}
+		try {
+			InternalUtils.parseDate("not a date");
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+	}
+
+	/**
+	 * Stream and REST parsing can happen at the same time: hammer parseDate
+	 * from several threads (both the fast path and the fallbacks) and check
+	 * every answer.
+	 */
+	@Test
+	public void testParseDateThreads() throws Exception {
+		final int n = 2000;
+		final String[] dates = new String[n];
+		final long[] expected = new long[n];
+		SimpleDateFormat twitter = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+		SimpleDateFormat rfc822 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+		twitter.setTimeZone(TimeZone.getTimeZone("UTC"));
+		rfc822.setTimeZone(TimeZone.getTimeZone("UTC"));
+		Random r = new Random(7);
+		for (int i = 0; i < n; i++) {
+			expected[i] = (long) (r.nextDouble() * 1.5e12) / 1000 * 1000;
+			Date d = new Date(expected[i]);
+			dates[i] = i % 10 == 0 ? rfc822.format(d) : twitter.format(d);
+		}
+		final AtomicInteger errors = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			final int offset = t * 257;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (int rep = 0; rep < 10; rep++) {
+						for (int j = 0; j < n; j++) {
+							int i = (j + offset) % n;
+							try {
+								if (InternalUtils.parseDate(dates[i]).getTime() != expected[i]) {
+									errors.incrementAndGet();
+								}
+							} catch (Exception e) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+				}
+			};
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join(60000);
+			assert !t.isAlive();
+		}
+		assert errors.get() == 0 : errors;
+	}
+
+	@Test
+	public void testUnencode() {
+		String plain = "no entities here \u00e9";
+		assert InternalUtils.unencode(plain) == plain;
+		assert InternalUtils.unencode(null) == null;
+		assert InternalUtils.unencode("fish &amp; chips &lt;3 &gt; &quot;x&quot; it&apos;s&nbsp;ok")
+				.equals("fish & chips <3 > \"x\" it's ok");
+		// numeric, including a surrogate pair
+		assert InternalUtils.unencode("&#39;&#x27;&#X1F600;").equals("''\ud83d\ude00");
+		// one pass: no double decoding
+		assert InternalUtils.unencode("&amp;lt;").equals("&lt;");
+		// unknown or broken entities are left alone
+		for (String s : new String[] { "&", "&;", "a & b", "&foo;", "&amp", "&#;", "&#x;", "&#0;",
+				"&#xD800;", "&#99999999;", "AT&T;", "&lt" }) {
+			assert InternalUtils.unencode(s).equals(s) : s + " -> " + InternalUtils.unencode(s);
+		}
+		// zero-byte chars
+		assert InternalUtils.unencode("\u0000hello &amp;\u0000world\u0000").equals("hello & world");
+	}
+
+	@Test
+	public void testUnencodedIndex() {
+		String[] forms = new String[] { "&amp;", "&lt;", "&gt;", "&quot;", "&#39;", "&#x1F600;", "&bogus;", "x" };
+		String[] decoded = new String[] { "&", "<", ">", "\"", "'", "\ud83d\ude00", "&bogus;", "x" };
+		Random r = new Random(3);
+		for (int t = 0; t < 1000; t++) {
+			StringBuilder enc = new StringBuilder(), dec = new StringBuilder();
+			// the index of each piece's start, encoded and decoded
+			List<int[]> starts = new ArrayList<int[]>();
+			for (int i = r.nextInt(10); i >= 0; i--) {
+				starts.add(new int[] { enc.length(), dec.length() });
+				int f = r.nextInt(forms.length);
+				enc.append(forms[f]);
+				dec.append(decoded[f]);
+			}
+			starts.add(new int[] { enc.length(), dec.length() });
+			assert InternalUtils.unencode(enc.toString()).equals(dec.toString()) : enc;
+			for (int[] s : starts) {
+				int i = InternalUtils.unencodedIndex(enc.toString(), s[0]);
+				assert i == s[1] : enc + " " + s[0] + " -> " + i + " not " + s[1];
+			}
+		}
+		// inside an entity: the entity's start
+		assert InternalUtils.unencodedIndex("a&amp;b", 3) == 1;
 	}
-	
 
 	@Test
 	public void testStripUrls() throws Exception {
@@ -0,0 +1,755 @@
+package winterwell.jtwitter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import oauth.signpost.AbstractOAuthConsumer;
+
+import com.sun.net.httpserver.HttpServer;
+
+import winterwell.json.JSONArray;
+import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.JSONSymbols;
+import winterwell.json.JSONTokener;
+import winterwell.json.LazyJSONObject;
+import winterwell.json.Payloads;
+import winterwell.jtwitter.Twitter.KEntityType;
+import winterwell.jtwitter.Twitter.TweetEntity;
+
+/**
+ * Timings and heap sizes for the jtwitter classes. These are not unit
+ * tests -- the numbers depend on the machine, and they take a while -- so
+ * they are run by hand:
+ * 
+ * <pre>
+ * java winterwell.jtwitter.JTwitterBenchmarks [method-name...]
+ * </pre>
+ * 
+ * With no arguments, every benchmark is run.
+ * 
+ * @author daniel
+ */
+public class JTwitterBenchmarks {
+
+	public static void main(String[] args) throws Exception {
+		List<String> only = Arrays.asList(args);
+		JTwitterBenchmarks b = new JTwitterBenchmarks();
+		for (Method m : JTwitterBenchmarks.class.getDeclaredMethods()) {
+			int mods = m.getModifiers();
+			if (!Modifier.isPublic(mods) || Modifier.isStatic(mods)
+					|| m.getParameterTypes().length != 0) {
+				continue;
+			}
+			if (!only.isEmpty() && !only.contains(m.getName())) {
+				continue;
+			}
+			System.out.println(m.getName());
+			m.invoke(b);
+		}
+	}
+
+	/**
+	 * {@link OAuthSigner} vs Signpost
+	 */
+	public void oauthSigning() throws Exception {
+		String url = "http://api.twitter.com/1/statuses/user_timeline.json?screen_name=jtwit&count=20&include_entities=1";
+		int n = 20000;
+		AbstractOAuthConsumer consumer = OAuthSignerTest.newSignpostConsumer();
+		// warm up
+		for (int i = 0; i < 2000; i++) {
+			OAuthSignerTest.signpost(consumer, url);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			OAuthSignerTest.signpost(consumer, url);
+		}
+		long spTime = System.nanoTime() - start;
+
+		OAuthSigner signer = new OAuthSigner("key", "secret", "token", "tokensecret");
+		URL u = new URL(url);
+		for (int i = 0; i < 2000; i++) {
+			signer.sign("GET", u, null);
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			signer.sign("GET", u, null);
+		}
+		long ourTime = System.nanoTime() - start;
+		System.out.println("Signatures/sec: Signpost " + (n * 1000000000L / spTime)
+				+ "\tOAuthSigner " + (n * 1000000000L / ourTime));
+	}
+
+	/**
+	 * {@link InternalUtils#encode(String)} vs URLEncoder
+	 */
+	public void urlEncoding() throws Exception {
+		String[] vals = new String[] { "jtwit", "Hello Ladies + Gentlemen!",
+				"caf\u00e9 au lait #yum", "1234567890", "http://t.co/abc?x=y" };
+		int n = 200000;
+		for (int i = 0; i < n / 10; i++) {
+			URLEncoder.encode(vals[i % vals.length], "UTF-8").replace("+", "%20");
+			InternalUtils.encode(vals[i % vals.length]);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			URLEncoder.encode(vals[i % vals.length], "UTF-8").replace("+", "%20");
+		}
+		long old = System.nanoTime() - start;
+		start = System.nanoTime();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			sb.setLength(0);
+			InternalUtils.encode(vals[i % vals.length], sb);
+		}
+		long ours = System.nanoTime() - start;
+		System.out.println("Encodes/sec: URLEncoder " + (n * 1000000000L / old)
+				+ "\tInternalUtils " + (n * 1000000000L / ours));
+	}
+
+	/**
+	 * Throughput comparison against a local stub server with 2ms latency:
+	 * close-per-request (the old behaviour) vs keep-alive vs a pool of 4
+	 * keep-alive connections.
+	 */
+	public void httpThroughput() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = PooledHttpClientTest.startServer(2, requests);
+		try {
+			String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/statuses/show.json";
+			int n = 100;
+			URLConnectionHttpClient closing = new URLConnectionHttpClient();
+			closing.setKeepAlive(false);
+			URLConnectionHttpClient keepAlive = new URLConnectionHttpClient();
+			// warm up
+			for (int i = 0; i < 10; i++) {
+				closing.getPage(url, null, false);
+				keepAlive.getPage(url, null, false);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				closing.getPage(url, null, false);
+			}
+			long tClosing = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				keepAlive.getPage(url, null, false);
+			}
+			long tKeepAlive = System.nanoTime() - start;
+
+			PooledHttpClient pool = new PooledHttpClient(keepAlive, 4);
+			start = System.nanoTime();
+			List<Future<String>> pages = new ArrayList<Future<String>>();
+			for (int i = 0; i < n; i++) {
+				pages.add(pool.getPageAsync(url, null, false));
+			}
+			for (Future<String> page : pages) {
+				page.get();
+			}
+			long tPool = System.nanoTime() - start;
+			pool.close();
+
+			System.out.println("Requests/sec: close-per-request " + (n * 1000000000L / tClosing)
+					+ "\tkeep-alive " + (n * 1000000000L / tKeepAlive)
+					+ "\tpool(4) " + (n * 1000000000L / tPool));
+			assert tPool < tKeepAlive;
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Timing test: tree (JSONObject) vs pull (JSONReader) decoding of a
+	 * timeline.
+	 */
+	public void statusDecoding() throws Exception {
+		String json = Payloads.timeline(100);
+		int n = 100;
+		for (int i = 0; i < 30; i++) {
+			viaTree(json);
+			Status.getStatuses(json);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			viaTree(json);
+		}
+		long tTree = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			Status.getStatuses(json);
+		}
+		long tPull = System.nanoTime() - start;
+		String[] frames = Payloads.timeline(100).substring(1).split(",(?=\\{\"created_at)");
+		frames[99] = frames[99].substring(0, frames[99].length() - 1);
+		for (int i = 0; i < 30; i++) {
+			for (String f : frames) {
+				new Status(new LazyJSONObject(f), null);
+			}
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (String f : frames) {
+				new Status(new LazyJSONObject(f), null);
+			}
+		}
+		long tLazy = System.nanoTime() - start;
+		System.out.println("Statuses/sec: JSONObject " + (n * 100 * 1000000000L / tTree)
+				+ "\tJSONReader " + (n * 100 * 1000000000L / tPull)
+				+ "\tLazyJSONObject " + (n * 100 * 1000000000L / tLazy));
+	}
+
+	private static void viaTree(String json) throws Exception {
+		JSONArray arr = new JSONArray(json);
+		for (int i = 0; i < arr.length(); i++) {
+			new Status(arr.getJSONObject(i), null);
+		}
+	}
+
+	/**
+	 * Retained heap for 10k Statuses (as buffered by a stream), with and
+	 * without the shared symbol table.
+	 */
+	public void statusFootprint() throws Exception {
+		int n = 10000;
+		String[] tweets = new String[n];
+		for (int i = 0; i < n; i++) {
+			tweets[i] = Payloads.tweet(i);
+		}
+		for (JSONSymbols symbols : new JSONSymbols[] { null, JSONSymbols.TWITTER }) {
+			Status[] parsed = new Status[n];
+			System.gc();
+			long before = usedHeap();
+			for (int i = 0; i < n; i++) {
+				JSONTokener x = new JSONTokener(tweets[i]);
+				x.setSymbols(symbols);
+				JSONReader r = new JSONReader(x);
+				r.next();
+				parsed[i] = new Status(r, null);
+			}
+			long after = usedHeap();
+			assert parsed[n - 1].getId().longValue() == 257833226163781632L + n - 1;
+			System.out.println("Status retained heap per tweet, "
+					+ (symbols == null ? "no symbols: " : "symbols: ") + ((after - before) / n) + " bytes");
+		}
+	}
+
+	static long usedHeap() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(50);
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * Export speed vs. building the same text via JSONObject.toString().
+	 * Prints MB/sec of json output.
+	 */
+	public void ndjsonExport() throws Exception {
+		List<Status> statuses = new ArrayList<Status>();
+		List<JSONObject> trees = new ArrayList<JSONObject>();
+		for (int i = 0; i < 1000; i++) {
+			JSONObject jo = new JSONObject(Payloads.tweet(i));
+			trees.add(jo);
+			statuses.add(new Status(jo, null));
+		}
+		final long[] bytes = new long[1];
+		OutputStream sink = new OutputStream() {
+			public void write(int b) {
+				bytes[0]++;
+			}
+
+			public void write(byte[] b, int off, int len) {
+				bytes[0] += len;
+			}
+		};
+		// warm up
+		for (int rep = 0; rep < 20; rep++) {
+			export(statuses, sink);
+			for (JSONObject jo : trees) {
+				jo.toString();
+			}
+		}
+		int reps = 50;
+		bytes[0] = 0;
+		long t0 = System.nanoTime();
+		for (int rep = 0; rep < reps; rep++) {
+			export(statuses, sink);
+		}
+		long t1 = System.nanoTime();
+		long treeBytes = 0;
+		for (int rep = 0; rep < reps; rep++) {
+			for (JSONObject jo : trees) {
+				treeBytes += jo.toString().length();
+			}
+		}
+		long t2 = System.nanoTime();
+		System.out.println("Export MB/sec: NDJSONWriter " + bytes[0] * 1000 / (t1 - t0)
+				+ "\tJSONObject.toString() " + treeBytes * 1000 / (t2 - t1));
+	}
+
+	private static void export(List<Status> statuses, OutputStream out) throws Exception {
+		NDJSONWriter w = new NDJSONWriter(out);
+		for (Status s : statuses) {
+			w.write(s);
+		}
+		w.flush();
+		assert w.getCount() == statuses.size();
+	}
+
+	/**
+	 * Timing test for single objects (as returned by e.g. show()): the
+	 * JSONObject constructors -- with and without the cost of building the
+	 * tree -- vs the one-pass decoders. Prints objects/sec.
+	 */
+	public void singleObjectDecoding() throws Exception {
+		String tweet = Payloads.tweet(1);
+		JSONObject tweetTree = new JSONObject(tweet);
+		String user = tweetTree.getJSONObject("user").toString();
+		JSONObject userTree = new JSONObject(user);
+		assert Status.getStatus(tweet).getUser().getProfileImageUrl() != null;
+		int n = 20000;
+		long[] t = new long[6];
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				new Status(new JSONObject(tweet), null);
+			}
+			long t1 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				new Status(tweetTree, null);
+			}
+			long t2 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				Status.getStatus(tweet);
+			}
+			long t3 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				new User(new JSONObject(user), null);
+			}
+			long t4 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				new User(userTree, null);
+			}
+			long t5 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				User.getUser(user);
+			}
+			long t6 = System.nanoTime();
+			t = new long[] { t1 - t0, t2 - t1, t3 - t2, t4 - t3, t5 - t4, t6 - t5 };
+		}
+		System.out.println("Statuses/sec: parse+JSONObject " + n * 1000000000L / t[0]
+				+ "\tJSONObject only " + n * 1000000000L / t[1]
+				+ "\tgetStatus " + n * 1000000000L / t[2]);
+		System.out.println("Users/sec: parse+JSONObject " + n * 1000000000L / t[3]
+				+ "\tJSONObject only " + n * 1000000000L / t[4]
+				+ "\tgetUser " + n * 1000000000L / t[5]);
+	}
+
+	/**
+	 * Timing test: a 200 tweet timeline, on one thread vs all of them. Prints
+	 * statuses/sec. On a single processor machine, this measures the cost of
+	 * the extra scan.
+	 */
+	public void parallelParsing() throws Exception {
+		String json = Payloads.timeline(200);
+		int cpus = Math.max(2, Runtime.getRuntime().availableProcessors());
+		long[] t = new long[2];
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			for (int p = 0; p < 2; p++) {
+				long t0 = System.nanoTime();
+				for (int i = 0; i < 20; i++) {
+					ParallelParserTest.getStatuses(json, p == 0 ? 1 : cpus);
+				}
+				t[p] = System.nanoTime() - t0;
+			}
+		}
+		System.out.println("Statuses/sec: 1 thread " + 4000 * 1000000000L / t[0]
+				+ "\t" + cpus + " threads " + 4000 * 1000000000L / t[1]
+				+ "\t(" + Runtime.getRuntime().availableProcessors() + " processors)");
+	}
+
+	/**
+	 * Timing test: the old way (a regex, then the deprecated
+	 * {@link Date#Date(String)}) vs SimpleDateFormat vs the fast path. Prints
+	 * dates/sec.
+	 */
+	@SuppressWarnings("deprecation")
+	public void dateParsing() throws Exception {
+		SimpleDateFormat df = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String[] dates = new String[1000];
+		Random r = new Random(1);
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = df.format(new Date((long) (r.nextDouble() * 1.5e12)));
+		}
+		int reps = 50;
+		long[] t = new long[3];
+		long sum = 0;
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			long t0 = System.nanoTime();
+			for (int rep = 0; rep < reps; rep++) {
+				for (String s : dates) {
+					if (!InternalUtils.REGEX_JUST_DIGITS.matcher(s).matches()) {
+						sum += new Date(s).getTime();
+					}
+				}
+			}
+			long t1 = System.nanoTime();
+			for (int rep = 0; rep < reps; rep++) {
+				for (String s : dates) {
+					sum += df.parse(s).getTime();
+				}
+			}
+			long t2 = System.nanoTime();
+			for (int rep = 0; rep < reps; rep++) {
+				for (String s : dates) {
+					sum += InternalUtils.parseDate(s).getTime();
+				}
+			}
+			long t3 = System.nanoTime();
+			t = new long[] { t1 - t0, t2 - t1, t3 - t2 };
+		}
+		long n = reps * dates.length * 1000000000L;
+		System.out.println("Dates/sec: new Date(String) " + n / t[0]
+				+ "\tSimpleDateFormat " + n / t[1]
+				+ "\tparseDate " + n / t[2]);
+		// (and don't let the loops get optimised away)
+		assert sum != 0;
+	}
+
+	/**
+	 * Timing test for sort + de-dup of 1M tweets -- the primitive long ids vs
+	 * the same work done with BigInteger ids (as Status used to have). Prints
+	 * tweets/sec.
+	 */
+	public void idSorting() throws Exception {
+		int n = 1000000;
+		Random r = new Random(42);
+		List<Status> statuses = new ArrayList<Status>(n);
+		List<BigInteger> bigIds = new ArrayList<BigInteger>(n);
+		for (int i = 0; i < n; i++) {
+			// some duplicates, as when merging overlapping pages
+			long id = 257833226163781632L + r.nextInt(n);
+			statuses.add(new Status(null, null, id, null));
+			bigIds.add(BigInteger.valueOf(id));
+		}
+		Comparator<BigInteger> newestFirst = new Comparator<BigInteger>() {
+			@Override
+			public int compare(BigInteger o1, BigInteger o2) {
+				return -o1.compareTo(o2);
+			}
+		};
+		long[] t = new long[2];
+		int unique = 0;
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			List<Status> a = new ArrayList<Status>(statuses);
+			List<BigInteger> b = new ArrayList<BigInteger>(bigIds);
+			long t0 = System.nanoTime();
+			Collections.sort(a, InternalUtils.NEWEST_FIRST);
+			unique = new HashSet<Status>(a).size();
+			long t1 = System.nanoTime();
+			Collections.sort(b, newestFirst);
+			int bigUnique = new HashSet<BigInteger>(b).size();
+			long t2 = System.nanoTime();
+			assert unique == bigUnique;
+			assert a.get(0).getId().equals(b.get(0));
+			t = new long[] { t1 - t0, t2 - t1 };
+		}
+		System.out.println("Sort+de-dup tweets/sec (" + unique + " unique): long ids "
+				+ n * 1000000000L / t[0] + "	BigInteger ids " + n * 1000000000L / t[1]);
+	}
+
+	/**
+	 * Retained heap for a window of 100k tweets by 5000 authors, with and
+	 * without shared Users. Prints bytes per tweet, and MB per 1M tweets.
+	 */
+	public void userFootprint() throws Exception {
+		int n = 100000, authors = 5000;
+		String[] tweets = new String[authors];
+		for (int i = 0; i < authors; i++) {
+			tweets[i] = StatusTest.byAuthor(i, 1000 + i, 100);
+		}
+		int size = Twitter.USER_CACHE_SIZE;
+		try {
+			for (int cache : new int[] { 0, 10000 }) {
+				Twitter.USER_CACHE_SIZE = cache;
+				Status[] window = new Status[n];
+				long before = usedHeap();
+				for (int i = 0; i < n; i++) {
+					window[i] = Status.getStatus(tweets[i % authors]);
+				}
+				long after = usedHeap();
+				assert (window[0].getUser() == window[authors].getUser()) == (cache != 0);
+				long perTweet = (after - before) / n;
+				System.out.println("Retained heap per tweet, " + (cache == 0 ? "own Users: " : "shared Users: ")
+						+ perTweet + " bytes\t(" + perTweet + "MB per 1M tweets)");
+			}
+		} finally {
+			Twitter.USER_CACHE_SIZE = size;
+		}
+	}
+
+	/**
+	 * Timing test: the old chain of String.replace() calls vs
+	 * {@link InternalUtils#unencode(String)}, on a mix of texts with and
+	 * without entities. Prints texts/sec.
+	 */
+	public void unencoding() throws Exception {
+		String[] vals = new String[] { "RT @winterwell: Caf\u00e9 tonight? Bring friends #jtwitter http://t.co/abc123",
+				"fish &amp; chips &lt;3", "Example User", "Java, data &amp; the odd tweet.\nViews my own.",
+				"&quot;Quoted&quot; &gt; unquoted" };
+		int n = 500000;
+		long[] t = new long[2];
+		int sum = 0;
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				sum += oldUnencode(vals[i % vals.length]).length();
+			}
+			long t1 = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				sum += InternalUtils.unencode(vals[i % vals.length]).length();
+			}
+			long t2 = System.nanoTime();
+			t = new long[] { t1 - t0, t2 - t1 };
+		}
+		System.out.println("Unencodes/sec: String.replace chain " + n * 1000000000L / t[0]
+				+ "\tunencode " + n * 1000000000L / t[1]);
+		assert sum != 0;
+	}
+
+	/**
+	 * How unencode used to work
+	 */
+	private static String oldUnencode(String text) {
+		text = text.replace("&quot;", "\"");
+		text = text.replace("&apos;", "'");
+		text = text.replace("&nbsp;", " ");
+		text = text.replace("&amp;", "&");
+		text = text.replace("&gt;", ">");
+		text = text.replace("&lt;", "<");
+		if (text.indexOf(0) != -1) {
+			text = text.replace((char) 0, ' ').trim();
+		}
+		return text;
+	}
+
+	/**
+	 * Timing test: repeated analytics scans (count in a time window, count by
+	 * user, count by hashtag) over a List&lt;Status&gt; vs a TweetTable of the
+	 * same 100k tweets. Prints scans/sec.
+	 */
+	public void tweetTableScans() throws Exception {
+		List<Status> statuses = new ArrayList<Status>();
+		for (int i = 0; i < 20; i++) {
+			statuses.addAll(Status.getStatuses(TweetTableTest.timeline(5000, i * 5000)));
+		}
+		TweetTable t = new TweetTable(statuses);
+		long from = TweetTableTest.T0 + 1000 * 60000L;
+		long to = TweetTableTest.T0 + 50000 * 60000L;
+		int reps = 20;
+		long[] times = new long[6];
+		long sum = 0;
+		// the first pass is a warm-up
+		for (int pass = 0; pass < 2; pass++) {
+			long t0 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				for (Status s : statuses) {
+					long time = s.getCreatedAt().getTime();
+					if (time >= from && time < to) sum++;
+				}
+			}
+			long t1 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				sum += t.between(from, to).cardinality();
+			}
+			long t2 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				Map<Long, Integer> byUser = new HashMap<Long, Integer>();
+				for (Status s : statuses) {
+					Integer c = byUser.get(s.getUser().id);
+					byUser.put(s.getUser().id, c == null ? 1 : c + 1);
+				}
+				sum += byUser.size();
+			}
+			long t3 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				sum += t.countByUser(null).size();
+			}
+			long t4 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				Map<String, Integer> tags = new HashMap<String, Integer>();
+				for (Status s : statuses) {
+					List<TweetEntity> es = s.getTweetEntities(KEntityType.hashtags);
+					if (es == null) continue;
+					for (TweetEntity e : es) {
+						String tag = e.toString().substring(1).toLowerCase();
+						Integer c = tags.get(tag);
+						tags.put(tag, c == null ? 1 : c + 1);
+					}
+				}
+				sum += tags.size();
+			}
+			long t5 = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				sum += t.countHashtags(null).size();
+			}
+			long t6 = System.nanoTime();
+			times = new long[] { t1 - t0, t2 - t1, t3 - t2, t4 - t3, t5 - t4, t6 - t5 };
+		}
+		assert sum != 0;
+		String[] names = new String[] { "time window", "by user", "by hashtag" };
+		for (int i = 0; i < 3; i++) {
+			System.out.println("Scans/sec over 100k tweets, " + names[i] + ": List<Status> "
+					+ reps * 1000000000L / times[2 * i] + "\tTweetTable "
+					+ reps * 1000000000L / times[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Size and speed vs. Java serialization and json (via NDJSONWriter), for
+	 * 10k tweets by 50 users. Prints bytes per tweet, and tweets/sec for
+	 * writing and reading.
+	 * <p>
+	 * Without places: Java serialization can't handle them.
+	 */
+	public void binaryCodec() throws Exception {
+		List<Status> statuses = new ArrayList<Status>();
+		for (int i = 0; i < 10; i++) {
+			// (new screen-names, so we don't share Users from other tests,
+			// whose status has a place)
+			statuses.addAll(Status.getStatuses(TweetTableTest.timeline(1000, i * 1000)
+					.replaceAll("\"place\":\\{.*?\"attributes\":\\{\\}\\},", "")
+					.replace("\"screen_name\":\"example", "\"screen_name\":\"speedy")));
+		}
+		int n = statuses.size();
+		String[] names = new String[] { "binary", "java", "json" };
+		long[] size = new long[3], write = new long[3], read = new long[3];
+		// the first passes are a warm-up
+		for (int pass = 0; pass < 3; pass++) {
+			for (int f = 0; f < 3; f++) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				long t0 = System.nanoTime();
+				if (f == 0) {
+					BinaryWriter w = new BinaryWriter(bos);
+					for (Status s : statuses) {
+						w.write(s);
+					}
+					w.close();
+				} else if (f == 1) {
+					ObjectOutputStream w = new ObjectOutputStream(bos);
+					for (Status s : statuses) {
+						w.writeObject(s);
+					}
+					w.close();
+				} else {
+					NDJSONWriter w = new NDJSONWriter(bos);
+					for (Status s : statuses) {
+						w.write(s);
+					}
+					w.close();
+				}
+				long t1 = System.nanoTime();
+				byte[] bytes = bos.toByteArray();
+				ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+				int cnt = 0;
+				if (f == 0) {
+					BinaryReader r = new BinaryReader(bis);
+					while (r.read() != null) {
+						cnt++;
+					}
+				} else if (f == 1) {
+					ObjectInputStream r = new ObjectInputStream(bis);
+					for (int i = 0; i < n; i++) {
+						r.readObject();
+						cnt++;
+					}
+				} else {
+					BufferedReader r = new BufferedReader(new InputStreamReader(bis, "UTF-8"));
+					String line;
+					while ((line = r.readLine()) != null) {
+						Status.getStatus(line);
+						cnt++;
+					}
+				}
+				long t2 = System.nanoTime();
+				assert cnt == n;
+				size[f] = bytes.length;
+				write[f] = t1 - t0;
+				read[f] = t2 - t1;
+			}
+		}
+		for (int f = 0; f < 3; f++) {
+			System.out.println("10k tweets, " + names[f] + ":\t" + size[f] / n + " bytes/tweet\twrite "
+					+ n * 1000000000L / write[f] + "/sec\tread " + n * 1000000000L / read[f] + "/sec");
+		}
+		assert size[0] < size[1] && size[0] < size[2];
+	}
+
+	/**
+	 * Timing test: a timeline of 200 retweets, just parsed vs parsed and
+	 * then each original looked at (which is what parsing used to cost).
+	 * Prints statuses/sec.
+	 */
+	public void retweetDecoding() throws Exception {
+		String rt = StatusTest.RETWEET.replace("\"truncated\":true", "\"truncated\":false");
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 200; i++) {
+			if (i != 0) sb.append(',');
+			sb.append(rt.replace("257835381088112640", Long.toString(257835381088112640L + i)));
+		}
+		String json = sb.append(']').toString();
+		long[] t = new long[2];
+		// the first passes are a warm-up
+		for (int pass = 0; pass < 3; pass++) {
+			for (int look = 0; look < 2; look++) {
+				long t0 = System.nanoTime();
+				for (int i = 0; i < 20; i++) {
+					for (Status s : Status.getStatuses(json)) {
+						if (look == 1) s.getOriginal();
+					}
+				}
+				t[look] = System.nanoTime() - t0;
+			}
+		}
+		System.out.println("Retweets/sec: parsed " + 4000 * 1000000000L / t[0]
+				+ "	parsed + original " + 4000 * 1000000000L / t[1]);
+	}
+
+}
@@ -0,0 +1,97 @@
+package winterwell.jtwitter;
+
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import winterwell.json.JSONObject;
+import winterwell.json.Payloads;
+
+public class NDJSONWriterTest {
+
+	static final String USER = "{\"id\":6253282,\"name\":\"Daniel\",\"screen_name\":\"Daniel\"}";
+
+	@Test
+	public void testStatusRoundTrip() throws Exception {
+		for (String json : new String[] { Payloads.TWEET, StatusTest.RETWEET }) {
+			Status a = new Status(new JSONObject(json), null);
+			String line = writeLines(a);
+			assert line.indexOf('\n') == line.length() - 1 : line;
+			Status b = new Status(new JSONObject(line), null);
+			StatusTest.assertSame(a, b);
+			if (a.getOriginal() != null) {
+				StatusTest.assertSame(a.getOriginal(), b.getOriginal());
+			}
+			// and it's stable
+			assert writeLines(b).equals(line) : line;
+		}
+	}
+
+	@Test
+	public void testUserRoundTrip() throws Exception {
+		User a = new User(new JSONObject(StatusTest.USER_WITH_STATUS), null);
+		String line = writeLines(a);
+		assert line.contains("\"name\":\"Example &amp; Co\"") : line;
+		User b = new User(new JSONObject(line), null);
+		StatusTest.assertSame(a, b);
+		StatusTest.assertSame(a.status, b.status);
+		assert b.status.getUser() == b;
+	}
+
+	@Test
+	public void testMessageAndEvent() throws Exception {
+		String msgJson = "{\"id\":42,\"text\":\"fish &amp; chips @daniel?\","
+				+ "\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\",\"sender\":" + USER
+				+ ",\"recipient\":" + USER + ",\"entities\":{\"user_mentions\":[{\"screen_name\":\"daniel\","
+				+ "\"name\":\"Daniel\",\"indices\":[17,24]}]}}";
+		Message m = new Message(new JSONObject(msgJson));
+		Message m2 = new Message(new JSONObject(writeLines(m)));
+		assert m2.getId().equals(42L);
+		assert m2.getText().equals("fish & chips @daniel?") : m2.getText();
+		assert m2.getCreatedAt().equals(m.getCreatedAt());
+		assert m2.getRecipient().screenName.equals("daniel");
+		assert m2.getTweetEntities(Twitter.KEntityType.user_mentions).toString().equals("[@daniel]");
+
+		String eventJson = "{\"event\":\"favorite\",\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\","
+				+ "\"source\":" + USER + ",\"target\":" + USER + ",\"target_object\":" + Payloads.TWEET + "}";
+		TwitterEvent e = new TwitterEvent(new JSONObject(eventJson), null);
+		TwitterEvent e2 = new TwitterEvent(new JSONObject(writeLines(e)), null);
+		assert e2.is(TwitterEvent.Type.FAVORITE);
+		assert e2.getCreatedAt().equals(e.getCreatedAt());
+		assert e2.getSource().equals(e.getSource());
+		Status fav = new Status((JSONObject) e2.getTargetObject(), null);
+		StatusTest.assertSame(new Status(new JSONObject(Payloads.TWEET), null), fav);
+	}
+
+	@Test
+	public void testFormatDate() throws Exception {
+		SimpleDateFormat df = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		Random r = new Random(7);
+		for (int i = 0; i < 10000; i++) {
+			// 1900 to 2100
+			Date d = new Date((long) ((r.nextDouble() - 0.35) * 6.3e12) / 1000 * 1000);
+			String s = InternalUtils.formatDate(d);
+			assert s.equals(df.format(d)) : s + " vs " + df.format(d);
+		}
+		Date d = new Date(1350309146000L);
+		assert InternalUtils.formatDate(d).equals("Mon Oct 15 13:52:26 +0000 2012");
+		assert InternalUtils.parseDate(InternalUtils.formatDate(d)).equals(d);
+	}
+
+	private static String writeLines(Object thing) throws Exception {
+		StringWriter sw = new StringWriter();
+		NDJSONWriter w = new NDJSONWriter(sw);
+		if (thing instanceof Status) w.write((Status) thing);
+		else if (thing instanceof User) w.write((User) thing);
+		else if (thing instanceof Message) w.write((Message) thing);
+		else w.write((TwitterEvent) thing);
+		w.close();
+		return sw.toString();
+	}
+}
@@ -0,0 +1,134 @@
+package winterwell.jtwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.http.HttpRequest;
+
+import org.junit.Test;
+
+public class OAuthSignerTest {
+
+	/**
+	 * The worked example from https://dev.twitter.com/docs/auth/creating-signature
+	 */
+	@Test
+	public void testTwitterExample() throws Exception {
+		OAuthSigner signer = new OAuthSigner("xvz1evFS4wEEPTGEFPHBog",
+				"kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw",
+				"370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb",
+				"LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE");
+		Map<String, String> vars = new HashMap<String, String>();
+		vars.put("status", "Hello Ladies + Gentlemen, a signed OAuth request!");
+		String header = signer.sign("POST", new URL(
+				"https://api.twitter.com/1/statuses/update.json?include_entities=true"),
+				vars, "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg", 1318622958);
+		assert header.contains("oauth_signature=\"tnnArxj06cWHq44gCs1OSKk%2FjLY%3D\"") : header;
+		assert header.startsWith("OAuth ");
+		assert header.contains("oauth_token=\"370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb\"");
+		assert ! header.contains("status") : header;
+	}
+
+	@Test
+	public void testSameAsSignpost() throws Exception {
+		String url = "http://api.twitter.com/1/statuses/user_timeline.json?screen_name=jtwit&count=20&q=%2BJustin%20Bieber";
+		String sp = signpost(newSignpostConsumer(), url);
+		String ours = new OAuthSigner("key", "secret", "token", "tokensecret")
+				.sign("GET", new URL(url), null, "nonce123", 1318622958);
+		assert sig(sp).equals(sig(ours)) : sp + " vs " + ours;
+	}
+
+	private static String sig(String header) {
+		int i = header.indexOf("oauth_signature=\"");
+		return header.substring(i, header.indexOf('"', i + 17));
+	}
+
+	static AbstractOAuthConsumer newSignpostConsumer() {
+		AbstractOAuthConsumer consumer = new AbstractOAuthConsumer("key", "secret") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected HttpRequest wrap(Object request) {
+				return (HttpRequest) request;
+			}
+
+			@Override
+			protected String generateNonce() {
+				return "nonce123";
+			}
+
+			@Override
+			protected String generateTimestamp() {
+				return "1318622958";
+			}
+		};
+		consumer.setTokenWithSecret("token", "tokensecret");
+		return consumer;
+	}
+
+	static String signpost(AbstractOAuthConsumer consumer, String url)
+			throws Exception {
+		FakeRequest req = new FakeRequest(url);
+		consumer.sign(req);
+		return req.headers.get("Authorization");
+	}
+
+	static class FakeRequest implements HttpRequest {
+		final Map<String, String> headers = new HashMap<String, String>();
+		String url;
+
+		FakeRequest(String url) {
+			this.url = url;
+		}
+
+		@Override
+		public Map<String, String> getAllHeaders() {
+			return headers;
+		}
+
+		@Override
+		public String getContentType() {
+			return null;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return headers.get(name);
+		}
+
+		@Override
+		public InputStream getMessagePayload() throws IOException {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public String getMethod() {
+			return "GET";
+		}
+
+		@Override
+		public String getRequestUrl() {
+			return url;
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			headers.put(name, value);
+		}
+
+		@Override
+		public void setRequestUrl(String url) {
+			this.url = url;
+		}
+
+		@Override
+		public Object unwrap() {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package winterwell.jtwitter;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import winterwell.json.JSONObject;
+import winterwell.json.Payloads;
+
+public class ParallelParserTest {
+
+	@Test
+	public void testSameAsSequential() throws Exception {
+		String json = Payloads.timeline(200);
+		List<Status> seq = getStatuses(json, 1);
+		List<Status> par = getStatuses(json, 4);
+		assert seq.size() == 200 && par.size() == 200;
+		for (int i = 0; i < 200; i++) {
+			StatusTest.assertSame(seq.get(i), par.get(i));
+		}
+
+		StringBuilder sb = new StringBuilder("[");
+		JSONObject user = new JSONObject(Payloads.TWEET).getJSONObject("user");
+		for (int i = 0; i < 100; i++) {
+			if (i != 0)
+				sb.append(',');
+			sb.append(user.put("id", 1000 + i).toString());
+		}
+		sb.append(']');
+		List<User> useq = getUsers(sb.toString(), 1);
+		List<User> upar = getUsers(sb.toString(), 4);
+		assert upar.size() == 100;
+		for (int i = 0; i < 100; i++) {
+			assert upar.get(i).getId() == 1000 + i;
+			StatusTest.assertSame(useq.get(i), upar.get(i));
+		}
+	}
+
+	@Test
+	public void testNullsAndErrors() throws Exception {
+		String json = "[null," + Payloads.tweet(1) + ",null," + Payloads.tweet(2) + "]";
+		List<Status> tweets = getStatuses(json, 4);
+		assert tweets.size() == 2;
+		assert tweets.get(1).getId().longValue() == 257833226163781634L;
+		assert getStatuses("[]", 4).isEmpty();
+		// a bad tweet near the end: decoded by a pool thread, not this one
+		String bad = Payloads.timeline(40).replace("\"id\":257833226163781670,", "\"id\":{,");
+		assert !bad.equals(Payloads.timeline(40));
+		try {
+			getStatuses(bad, 4);
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+		try {
+			getStatuses(json.substring(0, json.length() - 1), 4);
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+	}
+
+	static List<Status> getStatuses(String json, int threads) {
+		int old = ParallelParser.threads;
+		int oldThreshold = Twitter.PARALLEL_PARSE_THRESHOLD;
+		ParallelParser.threads = threads;
+		Twitter.PARALLEL_PARSE_THRESHOLD = 0;
+		try {
+			return Status.getStatuses(json);
+		} finally {
+			ParallelParser.threads = old;
+			Twitter.PARALLEL_PARSE_THRESHOLD = oldThreshold;
+		}
+	}
+
+	private static List<User> getUsers(String json, int threads) {
+		int old = ParallelParser.threads;
+		int oldThreshold = Twitter.PARALLEL_PARSE_THRESHOLD;
+		ParallelParser.threads = threads;
+		Twitter.PARALLEL_PARSE_THRESHOLD = 0;
+		try {
+			return User.getUsers(json);
+		} finally {
+			ParallelParser.threads = old;
+			Twitter.PARALLEL_PARSE_THRESHOLD = oldThreshold;
+		}
+	}
+}
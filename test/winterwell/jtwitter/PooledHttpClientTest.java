@@ -0,0 +1,138 @@
+package winterwell.jtwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledHttpClientTest {
+
+	/**
+	 * A local stub server: answers every GET with a small json object after a
+	 * short delay.
+	 */
+	static HttpServer startServer(final int delayMillis,
+			final AtomicInteger requests) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange ex) throws IOException {
+				requests.incrementAndGet();
+				try {
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException e) {
+					// oh well
+				}
+				byte[] body = ("{\"path\":\"" + ex.getRequestURI() + "\"}").getBytes("UTF-8");
+				ex.getResponseHeaders().set("Content-Type", "application/json");
+				ex.sendResponseHeaders(200, body.length);
+				OutputStream out = ex.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		// daemon threads, so the test JVM can exit
+		server.setExecutor(Executors.newFixedThreadPool(8, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "stub-server");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
+		server.start();
+		return server;
+	}
+
+	@Test
+	public void testGetPageAsync() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = startServer(0, requests);
+		try {
+			String url = "http://127.0.0.1:" + server.getAddress().getPort();
+			PooledHttpClient pool = new PooledHttpClient(new URLConnectionHttpClient(), 3);
+			List<Future<String>> pages = new ArrayList<Future<String>>();
+			for (int i = 0; i < 20; i++) {
+				pages.add(pool.getPageAsync(url + "/users/" + i + ".json", null, false));
+			}
+			for (int i = 0; i < 20; i++) {
+				String page = pages.get(i).get();
+				assert page.equals("{\"path\":\"/users/" + i + ".json\"}") : page;
+			}
+			assert requests.get() == 20;
+			// synchronous calls work too
+			assert pool.getPage(url + "/x", null, false).contains("/x");
+			pool.close();
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void testCopiesSharePool() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = startServer(0, requests);
+		try {
+			String url = "http://127.0.0.1:" + server.getAddress().getPort();
+			int before = poolThreads();
+			PooledHttpClient pool = new PooledHttpClient(new URLConnectionHttpClient(), 2);
+			Twitter jtwit = new Twitter(null, pool);
+			List<PooledHttpClient> copies = new ArrayList<PooledHttpClient>();
+			for (int i = 0; i < 5; i++) {
+				copies.add((PooledHttpClient) new Twitter(jtwit).getHttpClient());
+			}
+			for (PooledHttpClient copy : copies) {
+				assert copy != pool;
+				for (int i = 0; i < 4; i++) {
+					copy.getPageAsync(url + "/" + i, null, false).get();
+				}
+			}
+			assert poolThreads() - before <= 2 : poolThreads() - before;
+			// closing one closes them all
+			copies.get(0).close();
+			try {
+				pool.getPageAsync(url, null, false);
+				assert false;
+			} catch (RejectedExecutionException e) {
+				// good
+			}
+
+			// serializable, with a new pool on the other side
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bos);
+			out.writeObject(jtwit);
+			out.close();
+			Twitter jtwit2 = (Twitter) new ObjectInputStream(new ByteArrayInputStream(
+					bos.toByteArray())).readObject();
+			PooledHttpClient pool2 = (PooledHttpClient) jtwit2.getHttpClient();
+			assert pool2.getPageAsync(url + "/y", null, false).get().contains("/y");
+			pool2.close();
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static int poolThreads() {
+		int n = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().startsWith("JTwitter-pool") && t.isAlive()) n++;
+		}
+		return n;
+	}
+}
@@ -0,0 +1,157 @@
+package winterwell.jtwitter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+	/**
+	 * Fails n times with a server error, then succeeds.
+	 */
+	static class Flaky implements RetryPolicy.IRequest {
+		final AtomicInteger calls = new AtomicInteger();
+		final int fails;
+
+		Flaky(int fails) {
+			this.fails = fails;
+		}
+
+		@Override
+		public String run() throws Exception {
+			if (calls.incrementAndGet() <= fails)
+				throw new TwitterException.E50X("flaky");
+			return "ok";
+		}
+	}
+
+	@Test
+	public void testRetryGet() throws Exception {
+		RetryPolicy rp = new RetryPolicy(3, 1, 10);
+		Flaky req = new Flaky(2);
+		String ok = rp.execute(req, true);
+		assert ok.equals("ok");
+		assert req.calls.get() == 3 : req.calls;
+	}
+
+	@Test
+	public void testGiveUp() throws Exception {
+		RetryPolicy rp = new RetryPolicy(2, 1, 10);
+		Flaky req = new Flaky(5);
+		try {
+			rp.execute(req, true);
+			assert false;
+		} catch (TwitterException.E50X e) {
+			// good
+		}
+		assert req.calls.get() == 3 : req.calls;
+	}
+
+	@Test
+	public void testNoRetryPost() throws Exception {
+		RetryPolicy rp = new RetryPolicy(3, 1, 10);
+		Flaky req = new Flaky(1);
+		try {
+			rp.execute(req, false);
+			assert false;
+		} catch (TwitterException.E50X e) {
+			// good
+		}
+		assert req.calls.get() == 1;
+		// the old behaviour retries posts
+		RetryPolicy simple = RetryPolicy.simple();
+		Flaky req2 = new Flaky(1);
+		assert simple.execute(req2, false).equals("ok");
+	}
+
+	@Test
+	public void testNoRetryUserError() throws Exception {
+		RetryPolicy rp = new RetryPolicy(3, 1, 10);
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			rp.execute(new RetryPolicy.IRequest() {
+				@Override
+				public String run() throws Exception {
+					calls.incrementAndGet();
+					throw new TwitterException.E404("nope");
+				}
+			}, true);
+			assert false;
+		} catch (TwitterException.E404 e) {
+			// good
+		}
+		assert calls.get() == 1;
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		RetryPolicy rp = new RetryPolicy(1, 0, 0);
+		rp.setBudget(0, 2);
+		for (int i = 0; i < 2; i++) {
+			assert rp.execute(new Flaky(1), true).equals("ok");
+		}
+		// budget spent
+		try {
+			rp.execute(new Flaky(1), true);
+			assert false;
+		} catch (TwitterException.E50X e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testNoBudget() throws Exception {
+		// like the old retry-on-error flag: never runs out
+		RetryPolicy rp = new RetryPolicy(1, 0, 0);
+		rp.setBudget(0, Double.POSITIVE_INFINITY);
+		for (int i = 0; i < 50; i++) {
+			assert rp.execute(new Flaky(1), true).equals("ok");
+		}
+		assert Double.isInfinite(RetryPolicy.simple().getBudget());
+	}
+
+	@Test
+	public void testDelay() {
+		RetryPolicy rp = new RetryPolicy(10, 100, 1000);
+		for (int i = 0; i < 10; i++) {
+			long d = rp.getDelay(i);
+			long full = Math.min(1000, 100L << i);
+			assert d >= full / 2 && d <= full : i + " " + d;
+		}
+		assert RetryPolicy.simple().getDelay(0) == 500;
+	}
+
+	@Test
+	public void testHedge() throws Exception {
+		RetryPolicy rp = new RetryPolicy(0, 0, 0);
+		rp.setHedging(true);
+		rp.setMinHedgeDelay(1);
+		// warm up the latency stats
+		for (int i = 0; i < 30; i++) {
+			rp.execute(new RetryPolicy.IRequest() {
+				@Override
+				public String run() throws Exception {
+					Thread.sleep(5);
+					return "ok";
+				}
+			}, true);
+		}
+		assert rp.getHedgeDelay() > 0;
+		// 1st call hangs, the hedge should answer
+		final AtomicInteger calls = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		String s = rp.execute(new RetryPolicy.IRequest() {
+			@Override
+			public String run() throws Exception {
+				if (calls.incrementAndGet() == 1) {
+					Thread.sleep(5000);
+					return "slow";
+				}
+				return "fast";
+			}
+		}, true);
+		assert s.equals("fast") : s;
+		assert System.currentTimeMillis() - start < 2000;
+		assert calls.get() == 2;
+	}
+}
@@ -0,0 +1,370 @@
+package winterwell.jtwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import winterwell.json.JSONObject;
+import winterwell.json.JSONReader;
+import winterwell.json.LazyJSONObject;
+import winterwell.json.Payloads;
+import winterwell.jtwitter.Twitter.KEntityType;
+import winterwell.jtwitter.Twitter.TweetEntity;
+
+public class StatusTest {
+
+	static final String RETWEET = "{\"created_at\":\"Mon Oct 15 14:01:00 +0000 2012\",\"id\":257835381088112640,"
+			+ "\"id_str\":\"257835381088112640\",\"truncated\":true,"
+			+ "\"text\":\"RT @example: RT @winterwell: Caf\\u00e9 tonight? \\\"Bring\\\" friends \\ud83d\\ude00 #jtwitter http:\\/\\/t.co\\/abc123 \\u2026\","
+			+ "\"source\":\"web\",\"retweet_count\":3,"
+			+ "\"user\":{\"id\":6253282,\"name\":\"Daniel\",\"screen_name\":\"Daniel\",\"location\":\"\","
+			+ "\"utc_offset\":-18000,\"created_at\":\"Thu May 01 10:23:45 +0000 2008\",\"following\":\"true\"},"
+			+ "\"retweeted_status\":" + Payloads.TWEET
+			+ ",\"entities\":{\"hashtags\":[],\"urls\":[],\"user_mentions\":[]}}";
+
+	static final String USER_WITH_STATUS = "{\"id\":14603515,\"name\":\"Example &amp; Co\",\"screen_name\":\"Example\","
+			+ "\"location\":\"\\u00dcT: 55.948600,-3.199900\",\"followers_count\":\"12\",\"protected\":false,"
+			+ "\"connections\":[\"following\",\"following_requested\"],\"following\":false,"
+			+ "\"status\":{\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\",\"id\":257833226163781632,"
+			+ "\"id_str\":\"257833226163781632\",\"text\":\"Hello &lt;world&gt;\",\"source\":\"web\","
+			+ "\"in_reply_to_status_id\":257833226163781000,\"geo\":{\"type\":\"Point\",\"coordinates\":[55.9486,-3.1999]},"
+			+ "\"place\":null}}";
+
+	@Test
+	public void testReaderSameAsJSONObject() throws Exception {
+		for (String json : new String[] { Payloads.TWEET, RETWEET }) {
+			Status a = new Status(new JSONObject(json), null);
+			JSONReader r = new JSONReader(json);
+			r.next();
+			Status b = new Status(r, null);
+			assert r.next() == JSONReader.Token.END_DOCUMENT;
+			assertSame(a, b);
+			if (a.getOriginal() != null) {
+				assertSame(a.getOriginal(), b.getOriginal());
+			}
+		}
+	}
+
+	@Test
+	public void testLazyJSONObject() throws Exception {
+		for (String json : new String[] { Payloads.TWEET, RETWEET }) {
+			Status a = new Status(new JSONObject(json), null);
+			Status b = new Status(new LazyJSONObject(json), null);
+			assertSame(a, b);
+		}
+		User a = new User(new JSONObject(USER_WITH_STATUS), null);
+		User b = new User(new LazyJSONObject(USER_WITH_STATUS), null);
+		assertSame(a, b);
+		assertSame(a.status, b.status);
+	}
+
+	@Test
+	public void testUserReaderSameAsJSONObject() throws Exception {
+		User a = new User(new JSONObject(USER_WITH_STATUS), null);
+		JSONReader r = new JSONReader(USER_WITH_STATUS);
+		r.next();
+		User b = new User(r, null);
+		assertSame(a, b);
+		assert b.isFollowedByYou() == Boolean.TRUE;
+		assert b.followRequestSent;
+		assert b.followersCount == 12;
+		assert b.location.equals("55.948600,-3.199900") : b.location;
+		assertSame(a.status, b.status);
+		assert b.status.user == b;
+	}
+
+	@Test
+	public void testGetStatuses() throws Exception {
+		List<Status> tweets = Status.getStatuses("[" + Payloads.tweet(0) + ",null,"
+				+ Payloads.tweet(1) + "," + Payloads.tweet(2) + "]");
+		assert tweets.size() == 3 : tweets;
+		assert tweets.get(2).getId().longValue() == 257833226163781634L;
+		assert tweets.get(0).getUser().getScreenName().equals("example");
+		List<User> users = User.getUsers("[" + USER_WITH_STATUS + "," + USER_WITH_STATUS + "]");
+		assert users.size() == 2;
+		assert Status.getStatuses("[]").isEmpty();
+		try {
+			Status.getStatuses("{\"error\":\"oops\"}");
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+	}
+
+	static final String STUB_USER = "{\"id\":24147187,\"id_str\":\"24147187\"}";
+
+	/**
+	 * Twitter sometimes send the user as just an id. Parsing must not go
+	 * and fetch it.
+	 */
+	@Test
+	public void testStubUser() throws Exception {
+		JSONObject jo = new JSONObject(Payloads.TWEET);
+		jo.put("user", new JSONObject(STUB_USER));
+		String json = jo.toString();
+		for (Status s : new Status[] { new Status(new JSONObject(json), null),
+				Status.getStatus(json), Status.getStatuses("[" + json + "]").get(0) }) {
+			assert s.getUser().isStub();
+			// the user's id, not the tweet's
+			assert s.getUser().getId() == 24147187L : s.getUser().getId();
+			assert s.getUser().getScreenName() == null;
+			assert s.getUser().equals(User.stub(24147187L));
+			assert s.getUser().hashCode() == User.stub(24147187L).hashCode();
+		}
+		User full = Status.getStatus(Payloads.TWEET).getUser();
+		assert ! full.isStub();
+		// stubs aren't equal to the full user (whose hashCode is by screen-name)
+		assert ! User.stub(full.id).equals(full) && ! full.equals(User.stub(full.id));
+		assert ! new User("bob").isStub();
+	}
+
+	@Test
+	public void testHydrate() throws Exception {
+		final List<String> asked = new ArrayList<String>();
+		CoalescingHttpClientTest.SlowClient server = new CoalescingHttpClientTest.SlowClient() {
+			@Override
+			public String getPage(String uri, Map<String, String> vars, boolean authenticate) {
+				assert uri.endsWith("/users/lookup.json") : uri;
+				asked.add(vars.get("user_id"));
+				// 99 is suspended
+				return "[{\"id\":24147187,\"name\":\"Hydrated\",\"screen_name\":\"Hydrated\"}]";
+			}
+		};
+		Twitter_Users tu = new Twitter(null, server).users();
+		JSONObject jo = new JSONObject(Payloads.TWEET);
+		jo.put("user", new JSONObject(STUB_USER));
+		Status stub1 = Status.getStatus(jo.toString());
+		Status stub2 = Status.getStatus(jo.put("id", 2).toString());
+		Status suspended = Status.getStatus(jo.put("user", new JSONObject("{\"id\":99}")).toString());
+		Status full = Status.getStatus(Payloads.TWEET);
+		JSONObject rt = new JSONObject(RETWEET);
+		rt.getJSONObject("retweeted_status").put("user", new JSONObject(STUB_USER));
+		Status retweet = Status.getStatus(rt.toString());
+		assert retweet.getOriginal().getUser().isStub();
+		User fullUser = full.getUser();
+
+		assert tu.hydrate(Arrays.asList(full)) == 0;
+		assert asked.isEmpty();
+
+		int n = tu.hydrate(Arrays.asList(stub1, stub2, suspended, full, retweet));
+		assert n == 3 : n;
+		assert asked.size() == 1 : asked;
+		assert asked.get(0).equals("24147187,99") || asked.get(0).equals("99,24147187") : asked;
+		assert stub1.getUser().getScreenName().equals("hydrated");
+		assert stub1.getUser() == stub2.getUser();
+		assert retweet.getOriginal().getUser() == stub1.getUser();
+		assert suspended.getUser().isStub();
+		assert full.getUser() == fullUser;
+		assert ! retweet.getUser().isStub();
+	}
+
+	@Test
+	public void testIds() throws Exception {
+		Status s = new Status(new JSONObject(USER_WITH_STATUS).getJSONObject("status"), null);
+		assert s.getIdLong() == 257833226163781632L;
+		assert s.getId().equals(new BigInteger("257833226163781632")) && s.getId() == s.id;
+		assert s.getInReplyToIdLong() == 257833226163781000L;
+		assert s.inReplyToStatusId.longValue() == 257833226163781000L;
+		Status tweet = Status.getStatus(Payloads.TWEET);
+		assert tweet.getInReplyToIdLong() == 0 && tweet.inReplyToStatusId == null;
+		// retweets report the original as in-reply-to
+		Status retweet = Status.getStatus(RETWEET);
+		assert retweet.inReplyToStatusId.equals(retweet.getOriginal().id);
+		// a BigInteger id still works for fakes
+		Status fake = new Status(null, "hello", new BigInteger("257833226163781633"), null);
+		assert fake.getIdLong() == 257833226163781633L;
+		assert new Status(null, "hello", null, null).getId() == null;
+		// ordering and equality are by id
+		List<Status> list = new ArrayList<Status>(Arrays.asList(fake, s, fake, tweet));
+		Collections.sort(list, InternalUtils.NEWEST_FIRST);
+		assert list.get(0) == fake && list.get(1).equals(fake) && list.get(2) == s : list;
+		assert new HashSet<Status>(list).size() == 2;
+	}
+
+	@Test
+	public void testLazyEntities() throws Exception {
+		// the indices are for the entity-encoded text
+		String json = "{\"id\":1,\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\",\"source\":\"web\",\"text\":\"fish &amp; chips @Daniel #food\","
+				+ "\"entities\":{\"hashtags\":[{\"text\":\"food\",\"indices\":[25,30]}],"
+				+ "\"user_mentions\":[{\"screen_name\":\"Daniel\",\"name\":\"Daniel\",\"indices\":[17,24]}]}}";
+		for (Status s : new Status[] { Status.getStatus(json), new Status(new JSONObject(json), null) }) {
+			assert s.getText().equals("fish & chips @Daniel #food");
+			List<TweetEntity> tags = s.getTweetEntities(KEntityType.hashtags);
+			assert tags.get(0).toString().equals("#food") : tags;
+			assert s.getTweetEntities(KEntityType.user_mentions).get(0).toString().equals("@Daniel");
+			assert s.getTweetEntities(KEntityType.urls) == null;
+			// made once
+			assert s.getTweetEntities(KEntityType.hashtags) == tags;
+			assert s.getMentions().equals(Arrays.asList("daniel"));
+			assert s.getMentions() == s.getMentions();
+		}
+		// no entities: the regex does mentions, and skips emails
+		Status plain = Status.getStatus("{\"id\":2,\"created_at\":\"Mon Oct 15 13:52:26 +0000 2012\",\"source\":\"web\",\"text\":\"@bob hi bob@example.com @Al\"}");
+		assert plain.getTweetEntities(KEntityType.user_mentions) == null;
+		assert plain.getMentions().equals(Arrays.asList("bob", "al")) : plain.getMentions();
+		// entities with no mentions
+		Status none = Status.getStatus(json.substring(0, json.indexOf(",\"user_mentions\"")) + "}}");
+		assert none.getTweetEntities(KEntityType.hashtags) != null;
+		assert none.getMentions().isEmpty();
+
+		// serializing makes the entities
+		Status s = Status.getStatus(json);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(s);
+		out.close();
+		Status s2 = (Status) new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())).readObject();
+		assertSame(s, s2);
+		assert s2.getMentions().equals(Arrays.asList("daniel")) : s2.getMentions();
+	}
+
+	@Test
+	public void testLazyOriginal() throws Exception {
+		java.lang.reflect.Field raw = Status.class.getDeclaredField("rawOriginal");
+		raw.setAccessible(true);
+		Status tweet = Status.getStatus(Payloads.TWEET);
+		String plainRT = RETWEET.replace("\"truncated\":true", "\"truncated\":false");
+		for (String json : new String[] { RETWEET, plainRT }) {
+			for (Status rt : new Status[] { Status.getStatus(json), new Status(new JSONObject(json), null),
+					new Status(new LazyJSONObject(json), null) }) {
+				// not decoded yet...
+				assert raw.get(rt) != null;
+				assert rt.getInReplyToIdLong() == tweet.getIdLong();
+				if (json == RETWEET) {
+					assert rt.getText().equals("RT @example: " + tweet.getText()) : rt.getText();
+				}
+				// ...until asked for
+				Status original = rt.getOriginal();
+				assert raw.get(rt) == null;
+				assert rt.getOriginal() == original;
+				assertSame(tweet, original);
+			}
+		}
+		// the truncated text's entities come from the original
+		Status rt = Status.getStatus(RETWEET);
+		assert rt.getTweetEntities(KEntityType.hashtags).get(0).start == "RT @example: ".length()
+				+ tweet.getTweetEntities(KEntityType.hashtags).get(0).start;
+		assert raw.get(rt) == null;
+		// errors in the original are only spotted when it's decoded
+		Status bad = Status.getStatus(RETWEET.replace("13:52:26 +0000 2012", "not a date"));
+		try {
+			bad.getOriginal();
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testSharedUsers() throws Exception {
+		Status a = Status.getStatus(byAuthor(1, 777, 10));
+		Status a2 = Status.getStatus(byAuthor(2, 777, 10));
+		assert a.getUser() == a2.getUser();
+		// shared users don't point at one of the tweets
+		assert a.getUser().getStatus() == null;
+		// new counts get a new User -- the old one isn't edited
+		Status b = Status.getStatus(byAuthor(3, 777, 12));
+		assert b.getUser() != a.getUser() && b.getUser().equals(a.getUser());
+		assert a.getUser().getStatusesCount() == 10 && b.getUser().getStatusesCount() == 12;
+		// an older tweet keeps its own counts, and doesn't roll the cache back
+		Status old = Status.getStatus(byAuthor(0, 777, 9));
+		assert old.getUser() != b.getUser() && old.getUser().getStatusesCount() == 9;
+		// the JSONObject route shares too
+		assert new Status(new JSONObject(byAuthor(4, 777, 12)), null).getUser() == b.getUser();
+		// a changed profile gets a new User
+		Status renamed = Status.getStatus(byAuthor(5, 777, 12).replace("Example User", "Renamed"));
+		assert renamed.getUser() != b.getUser() && renamed.getUser().equals(b.getUser());
+		assert Status.getStatus(byAuthor(6, 777, 12)).getUser() != renamed.getUser();
+		// user lookups aren't shared
+		assert User.getUser(new JSONObject(byAuthor(6, 777, 14)).getJSONObject("user").toString())
+				!= renamed.getUser();
+		int size = Twitter.USER_CACHE_SIZE;
+		Twitter.USER_CACHE_SIZE = 0;
+		try {
+			Status s = Status.getStatus(byAuthor(7, 777, 14));
+			assert s.getUser() != Status.getStatus(byAuthor(8, 777, 14)).getUser();
+			assert s.getUser().getStatus() == s;
+		} finally {
+			Twitter.USER_CACHE_SIZE = size;
+		}
+		// urls are parsed on demand
+		User u = a.getUser();
+		assert u.getProfileImageUrl().toString().equals("http://a0.twimg.com/profile_images/1234/me_normal.jpg");
+		assert u.getProfileImageUrl() == u.getProfileImageUrl();
+		assert u.getWebsite().getHost().equals("www.example.com");
+		assert u.getProfileBackgroundImageUrl().getPath().equals("/images/themes/theme1/bg.png");
+	}
+
+	/**
+	 * @return TWEET with a different tweet id, author id and statuses_count
+	 */
+	static String byAuthor(int i, int author, int statuses) {
+		return Payloads.tweet(i).replace("\"id\":14603515,\"id_str\":\"14603515\"",
+				"\"id\":" + author + ",\"id_str\":\"" + author + "\"")
+				.replace("\"screen_name\":\"example\"", "\"screen_name\":\"example" + author + "\"")
+				.replace("\"statuses_count\":4821", "\"statuses_count\":" + statuses);
+	}
+
+	static void assertSame(Status a, Status b) throws Exception {
+		assertFieldsSame(Status.class, a, b, "user", "place", "original", "entities",
+				"rawEntities", "rawText", "rtPrefix", "mentions", "rawOriginal");
+		assertSame(a.getUser(), b.getUser());
+		assertSame(a.getPlace(), b.getPlace());
+		for (KEntityType type : KEntityType.values()) {
+			List<TweetEntity> ea = a.getTweetEntities(type);
+			List<TweetEntity> eb = b.getTweetEntities(type);
+			assert String.valueOf(ea).equals(String.valueOf(eb)) : type + " " + ea + " vs " + eb;
+			if (ea == null) continue;
+			for (int i = 0; i < ea.size(); i++) {
+				assert ea.get(i).start == eb.get(i).start;
+				assert ea.get(i).end == eb.get(i).end;
+				assert String.valueOf(ea.get(i).displayVersion()).equals(eb.get(i).displayVersion());
+			}
+		}
+	}
+
+	static void assertSame(User a, User b) throws Exception {
+		if (a == null) {
+			assert b == null;
+			return;
+		}
+		assertFieldsSame(User.class, a, b, "status", "place");
+		assertSame(a.getPlace(), b.getPlace());
+	}
+
+	static void assertSame(Place a, Place b) throws Exception {
+		if (a == null) {
+			assert b == null;
+			return;
+		}
+		assertFieldsSame(Place.class, a, b, "boundingBox", "geometry");
+		assert String.valueOf(a.getBoundingBox()).equals(String.valueOf(b.getBoundingBox()));
+		assert String.valueOf(a.getCentroid()).equals(String.valueOf(b.getCentroid()));
+	}
+
+	private static void assertFieldsSame(Class klass, Object a, Object b, String... skip)
+			throws Exception {
+		outer: for (Field f : klass.getDeclaredFields()) {
+			if (Modifier.isStatic(f.getModifiers())) continue;
+			for (String s : skip) {
+				if (s.equals(f.getName())) continue outer;
+			}
+			f.setAccessible(true);
+			Object va = f.get(a), vb = f.get(b);
+			assert va == null ? vb == null : va.equals(vb) : f.getName() + ": " + va + " vs " + vb;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package winterwell.jtwitter;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import winterwell.jtwitter.Twitter.KEntityType;
+
+public class TweetTableTest {
+
+	/**
+	 * Start of the test tweets' times: Mon Oct 15 13:52:26 +0000 2012
+	 */
+	static final long T0 = 1350309146000L;
+
+	@Test
+	public void testStatusesSameAsJSON() throws Exception {
+		String json = timeline(500);
+		List<Status> statuses = Status.getStatuses(json);
+		TweetTable a = new TweetTable(statuses);
+		TweetTable b = TweetTable.parse(json);
+		assert a.size() == 500 && b.size() == 500;
+		for (int i = 0; i < 500; i++) {
+			Status s = statuses.get(i);
+			for (TweetTable t : new TweetTable[] { a, b }) {
+				assert t.getId(i) == s.getIdLong();
+				assert t.getTime(i) == s.getCreatedAt().getTime();
+				assert t.getUserId(i) == s.getUser().id;
+				assert t.getScreenName(i).equals(s.getUser().screenName);
+				assert t.getRetweetCount(i) == s.retweetCount;
+				assert t.getText(i).equals(s.getText());
+				assert t.getSource(i).equals(s.source);
+				assert t.getHashtags(i).size() == 1;
+				assert ("#" + t.getHashtags(i).get(0)).equalsIgnoreCase(
+						s.getTweetEntities(KEntityType.hashtags).get(0).toString());
+			}
+		}
+		assert TweetTable.parse("[]").size() == 0;
+		assert TweetTable.parse("[null]").size() == 0;
+		try {
+			TweetTable.parse("[{\"text\":\"no id\"}]");
+			assert false;
+		} catch (TwitterException.Parsing e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testFiltersAndAggregates() throws Exception {
+		String json = timeline(1000);
+		List<Status> statuses = Status.getStatuses(json);
+		TweetTable t = TweetTable.parse(json);
+		long from = T0 + 100 * 60000L, to = T0 + 300 * 60000L;
+
+		// by time
+		BitSet window = t.between(from, to);
+		int n = 0;
+		for (Status s : statuses) {
+			long time = s.getCreatedAt().getTime();
+			if (time >= from && time < to) n++;
+		}
+		assert window.cardinality() == n && n == 200 : n;
+		int[] hours = t.countByTime(null, T0, 3600000L, 24);
+		int total = 0;
+		for (int h : hours) total += h;
+		assert total == 1000 && hours[0] == 60 : hours[0];
+		assert t.countByTime(window, T0, 3600000L, 24)[1] == 20;
+		assert t.countByTime(window, T0, 3600000L, 24)[2] == 60;
+
+		// by user
+		Map<Long, Integer> byUser = new HashMap<Long, Integer>();
+		for (Status s : statuses) {
+			Integer c = byUser.get(s.getUser().id);
+			byUser.put(s.getUser().id, c == null ? 1 : c + 1);
+		}
+		assert t.countByUser(null).equals(byUser);
+		assert t.byUser(1007).cardinality() == byUser.get(1007L);
+		BitSet both = t.byUser(1007);
+		both.and(window);
+		assert t.countByUser(both).size() == 1;
+
+		// by hashtag
+		Map<String, Integer> tags = t.countHashtags(null);
+		assert tags.size() == 10 && tags.get("tag00003") == 100 : tags;
+		assert t.withHashtag("#TAG00003").cardinality() == 100;
+		assert t.withHashtag("nope").isEmpty();
+		assert t.countHashtags(window).get("tag00003") == 20;
+
+		// retweets
+		long rts = 0;
+		for (Status s : statuses) rts += s.retweetCount;
+		assert t.sumRetweets(null) == rts;
+		assert t.sumRetweets(t.all()) == rts;
+		assert t.withRetweets(16).cardinality() == t.count(t.withRetweets(16)) && t.count(null) == 1000;
+	}
+
+	static String timeline(int n) {
+		return timeline(n, 0);
+	}
+
+	/**
+	 * @return n tweets, a minute apart, by 50 users, with 10 hashtags
+	 */
+	static String timeline(int n, int from) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = from; i < from + n; i++) {
+			if (i != from) sb.append(',');
+			String tweet = StatusTest.byAuthor(i, 1000 + i % 50, 100 + i)
+					.replace("Mon Oct 15 13:52:26 +0000 2012",
+							InternalUtils.formatDate(new java.util.Date(T0 + i * 60000L)))
+					.replace("jtwitter", "tag0000" + i % 10)
+					// (as UTF-16 indices, which is how Status reads them)
+					.replace("\"indices\":[47,56]", "\"indices\":[49,58]")
+					.replace("\"retweet_count\":3", "\"retweet_count\":" + i % 20);
+			sb.append(tweet);
+		}
+		return sb.append(']').toString();
+	}
+}